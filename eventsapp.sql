@@ -23,9 +23,32 @@ SET time_zone = "+00:00";
 
 -- --------------------------------------------------------
 
+--
+-- Table structure for table `change_log`
+--
+-- Written by the repositories on every event and user change and polled by
+-- each app instance to evict stale cache entries. `entity_key` is NULL when
+-- every cached entry of that entity type must be evicted.
+--
+
+CREATE TABLE `change_log` (
+  `seq` bigint(20) NOT NULL,
+  `entity` varchar(32) NOT NULL,
+  `entity_key` varchar(255) DEFAULT NULL,
+  `created_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- --------------------------------------------------------
+
 --
 -- Table structure for table `events`
 --
+-- A recurring event is stored once: `date` is its first occurrence and
+-- `recurrence` its rule (FREQ=WEEKLY;BYDAY=MO,...). `recurrence_end` is the
+-- last possible occurrence, or NULL for a series without an end.
+-- `capacity` limits RSVPs; NULL means unlimited.
+-- `version` is incremented by every update for optimistic concurrency.
+--
 
 CREATE TABLE `events` (
   `id` bigint(20) NOT NULL,
@@ -33,7 +56,11 @@ CREATE TABLE `events` (
   `date` date NOT NULL,
   `location` varchar(255) NOT NULL,
   `organizerid` bigint(20) DEFAULT NULL,
-  `description` text
+  `description` text,
+  `recurrence` varchar(255) DEFAULT NULL,
+  `recurrence_end` date DEFAULT NULL,
+  `capacity` int(11) DEFAULT NULL,
+  `version` int(11) NOT NULL DEFAULT '0'
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 --
@@ -46,6 +73,106 @@ INSERT INTO `events` (`id`, `name`, `date`, `location`, `organizerid`, `descript
 
 -- --------------------------------------------------------
 
+--
+-- Table structure for table `event_attendance`
+--
+-- RSVP counts per event, kept apart from the hot `events` row. `capacity` is
+-- written here by every event save (NULL for unlimited) and is what RSVPs are
+-- checked against. The row is locked by each batch of RSVP changes, by seat
+-- leases and by capacity changes, never by a single RSVP.
+--
+
+CREATE TABLE `event_attendance` (
+  `event_id` bigint(20) NOT NULL,
+  `capacity` int(11) DEFAULT NULL,
+  `attending` int(11) NOT NULL DEFAULT '0',
+  `waitlisted` int(11) NOT NULL DEFAULT '0',
+  `updated_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `rsvp_leases`
+--
+-- Seats each app instance has taken from an event's capacity in advance and
+-- not yet used. An instance hands them out from memory and renews its rows
+-- while it runs; the seats of an instance that stops renewing return to the
+-- event once `expires_at` passes.
+--
+
+CREATE TABLE `rsvp_leases` (
+  `event_id` bigint(20) NOT NULL,
+  `instance_id` char(36) NOT NULL,
+  `seats` int(11) NOT NULL,
+  `expires_at` timestamp(3) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `events_archive`
+--
+-- Past events are moved here in batches by the archive job so that the
+-- hot `events` table and its buffer pool footprint stay small.
+--
+
+CREATE TABLE `events_archive` (
+  `id` bigint(20) NOT NULL,
+  `name` varchar(255) NOT NULL,
+  `date` date NOT NULL,
+  `location` varchar(255) NOT NULL,
+  `organizerid` bigint(20) DEFAULT NULL,
+  `description` text,
+  `recurrence` varchar(255) DEFAULT NULL,
+  `recurrence_end` date DEFAULT NULL,
+  `capacity` int(11) DEFAULT NULL,
+  `version` int(11) NOT NULL DEFAULT '0',
+  `archived_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `id_blocks`
+--
+-- Next unallocated ID per table. Write-behind event creation reserves a block
+-- of IDs here so that it can hand out event IDs before the rows are inserted.
+--
+
+CREATE TABLE `id_blocks` (
+  `name` varchar(64) NOT NULL,
+  `next_id` bigint(20) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+--
+-- Dumping data for table `id_blocks`
+--
+
+INSERT INTO `id_blocks` (`name`, `next_id`) VALUES
+('events', 1);
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `idempotency_keys`
+--
+-- Responses to create requests sent with an Idempotency-Key header, when
+-- app.idempotency.db.enabled=true. `key_hash` is the SHA-256 of the caller,
+-- endpoint and key; `status` and `response` stay NULL while the first request
+-- is running. Rows older than app.idempotency.ttlMs are pruned.
+--
+
+CREATE TABLE `idempotency_keys` (
+  `key_hash` char(64) NOT NULL,
+  `fingerprint` char(64) NOT NULL,
+  `status` int(11) DEFAULT NULL,
+  `response` mediumtext,
+  `created_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- --------------------------------------------------------
+
 --
 -- Table structure for table `roles`
 --
@@ -65,6 +192,22 @@ INSERT INTO `roles` (`user_id`, `role`) VALUES
 
 -- --------------------------------------------------------
 
+--
+-- Table structure for table `rsvps`
+--
+-- One row per user who RSVPed to an event, with `status` ATTENDING or
+-- WAITLISTED. The waitlist is ordered by `created_at`.
+--
+
+CREATE TABLE `rsvps` (
+  `event_id` bigint(20) NOT NULL,
+  `user_id` bigint(20) NOT NULL,
+  `status` varchar(16) NOT NULL,
+  `created_at` timestamp(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- --------------------------------------------------------
+
 --
 -- Table structure for table `users`
 --
@@ -90,12 +233,50 @@ INSERT INTO `users` (`id`, `login_name`, `password`, `enabled`, `account_non_exp
 -- Indexes for dumped tables
 --
 
+--
+-- Indexes for table `change_log`
+--
+ALTER TABLE `change_log`
+  ADD PRIMARY KEY (`seq`),
+  ADD KEY `created_at` (`created_at`);
+
 --
 -- Indexes for table `events`
 --
 ALTER TABLE `events`
   ADD PRIMARY KEY (`id`),
-  ADD KEY `organizerid` (`organizerid`);
+  ADD KEY `organizerid` (`organizerid`),
+  ADD KEY `date` (`date`),
+  ADD KEY `recurrence_end` (`recurrence_end`),
+  ADD KEY `name` (`name`),
+  ADD KEY `location` (`location`);
+
+--
+-- Indexes for table `event_attendance`
+--
+ALTER TABLE `event_attendance`
+  ADD PRIMARY KEY (`event_id`);
+
+--
+-- Indexes for table `events_archive`
+--
+ALTER TABLE `events_archive`
+  ADD PRIMARY KEY (`id`),
+  ADD KEY `organizerid` (`organizerid`),
+  ADD KEY `date` (`date`);
+
+--
+-- Indexes for table `id_blocks`
+--
+ALTER TABLE `id_blocks`
+  ADD PRIMARY KEY (`name`);
+
+--
+-- Indexes for table `idempotency_keys`
+--
+ALTER TABLE `idempotency_keys`
+  ADD PRIMARY KEY (`key_hash`),
+  ADD KEY `created_at` (`created_at`);
 
 --
 -- Indexes for table `roles`
@@ -103,6 +284,20 @@ ALTER TABLE `events`
 ALTER TABLE `roles`
   ADD KEY `user_id` (`user_id`);
 
+--
+-- Indexes for table `rsvp_leases`
+--
+ALTER TABLE `rsvp_leases`
+  ADD PRIMARY KEY (`event_id`,`instance_id`),
+  ADD KEY `instance_id` (`instance_id`);
+
+--
+-- Indexes for table `rsvps`
+--
+ALTER TABLE `rsvps`
+  ADD PRIMARY KEY (`event_id`,`user_id`),
+  ADD KEY `waitlist` (`event_id`,`status`,`created_at`);
+
 --
 -- Indexes for table `users`
 --
@@ -114,6 +309,12 @@ ALTER TABLE `users`
 -- AUTO_INCREMENT for dumped tables
 --
 
+--
+-- AUTO_INCREMENT for table `change_log`
+--
+ALTER TABLE `change_log`
+  MODIFY `seq` bigint(20) NOT NULL AUTO_INCREMENT;
+
 --
 -- AUTO_INCREMENT for table `events`
 --
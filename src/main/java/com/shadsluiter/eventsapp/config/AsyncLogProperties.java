@@ -0,0 +1,119 @@
+package com.shadsluiter.eventsapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.shadsluiter.eventsapp.monitoring.AsyncLogWriter;
+
+/**
+ * Configuration for the access log and audit trail, bound from "app.async-log.*".
+ *
+ * Both logs are written by their own AsyncLogWriter, to access.log and
+ * audit.log in the configured directory, and share these settings. Example:
+ *
+ *   app.asyncLog.directory=/var/log/eventsapp
+ *   app.asyncLog.overflow=DROP_OLDEST
+ */
+@Component
+@ConfigurationProperties(prefix = "app.async-log")
+public class AsyncLogProperties {
+
+    /** Whether access logging is on */
+    private boolean access = true;
+
+    /** Whether the audit trail is on */
+    private boolean audit = true;
+
+    private String directory = "logs";
+
+    /** Records each log holds in memory awaiting the writer; rounded up to a power of two. */
+    private int capacity = 8192;
+
+    /** What happens to a record that arrives while the buffer is full. */
+    private AsyncLogWriter.OverflowPolicy overflow = AsyncLogWriter.OverflowPolicy.DROP_NEWEST;
+
+    /** The most records written to the file in one write. */
+    private int batchSize = 512;
+
+    /** How long the writer sleeps when it finds the buffer empty. */
+    private long flushMs = 200;
+
+    /** The size at which the file is rolled over. */
+    private DataSize maxFileSize = DataSize.ofMegabytes(50);
+
+    /** How many rolled-over files are kept, as access.log.1 (newest) to access.log.N. */
+    private int maxFiles = 5;
+
+    public boolean isAccess() {
+        return access;
+    }
+
+    public void setAccess(boolean access) {
+        this.access = access;
+    }
+
+    public boolean isAudit() {
+        return audit;
+    }
+
+    public void setAudit(boolean audit) {
+        this.audit = audit;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public AsyncLogWriter.OverflowPolicy getOverflow() {
+        return overflow;
+    }
+
+    public void setOverflow(AsyncLogWriter.OverflowPolicy overflow) {
+        this.overflow = overflow;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getFlushMs() {
+        return flushMs;
+    }
+
+    public void setFlushMs(long flushMs) {
+        this.flushMs = flushMs;
+    }
+
+    public DataSize getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(DataSize maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    public void setMaxFiles(int maxFiles) {
+        this.maxFiles = maxFiles;
+    }
+}
@@ -0,0 +1,144 @@
+package com.shadsluiter.eventsapp.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration for the adaptive concurrency limits, bound from "app.concurrencyLimit.*".
+ *
+ * API requests are grouped by Ant-style path pattern; the first matching group
+ * wins and unmatched requests share the default group. The db group limits the
+ * repository calls EventService makes. Example:
+ *
+ *   app.concurrencyLimit.groups[0].name=search
+ *   app.concurrencyLimit.groups[0].pattern=/api/events/query/**
+ *   app.concurrencyLimit.groups[0].slowMs=300
+ */
+@Component
+@ConfigurationProperties(prefix = "app.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+
+    /** Share of its limit a group keeps after a slow or failed request, e.g. 0.9. */
+    private double backoffRatio = 0.9;
+
+    private Group defaults = new Group("api", null);
+
+    private Group db = new Group("db", null);
+
+    private List<Group> groups = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public Group getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Group defaults) {
+        this.defaults = defaults;
+    }
+
+    public Group getDb() {
+        return db;
+    }
+
+    public void setDb(Group db) {
+        this.db = db;
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(List<Group> groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * One concurrency limit: where it starts, the range it adapts within, and
+     * the latency above which a request counts as slow.
+     */
+    public static class Group {
+
+        private String name;
+        private String pattern;
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        private long slowMs = 500;
+
+        public Group() {
+        }
+
+        public Group(String name, String pattern) {
+            this.name = name;
+            this.pattern = pattern;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public long getSlowMs() {
+            return slowMs;
+        }
+
+        public void setSlowMs(long slowMs) {
+            this.slowMs = slowMs;
+        }
+    }
+}
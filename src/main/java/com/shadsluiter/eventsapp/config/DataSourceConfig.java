@@ -0,0 +1,41 @@
+package com.shadsluiter.eventsapp.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Configuration class for the primary DataSource.
+ *
+ * The pool is wrapped in a LazyConnectionDataSourceProxy, so a @Transactional
+ * method takes its connection at its first statement rather than when the
+ * transaction begins. That statement first takes a slot in its QueryBulkheads
+ * budget, so no transaction holds a connection while it waits for a slot, and
+ * the budgets bound how many connections are in use.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * Wraps the "dataSource" bean in a LazyConnectionDataSourceProxy. Static, so
+     * it is registered before the DataSource is created.
+     *
+     * @return the post-processor
+     */
+    @Bean
+    public static BeanPostProcessor lazyConnectionDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource
+                        && !(bean instanceof LazyConnectionDataSourceProxy)) {
+                    return new LazyConnectionDataSourceProxy(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
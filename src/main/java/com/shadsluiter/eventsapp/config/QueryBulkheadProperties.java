@@ -0,0 +1,119 @@
+package com.shadsluiter.eventsapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration for the database bulkheads, bound from "app.bulkheads.*".
+ *
+ * Each class of query gets its own budget of connections and its own statement
+ * timeout. The budgets must add up to no more than the connection pool size
+ * (spring.datasource.hikari.maximum-pool-size), so every class can always get a
+ * connection; startup fails otherwise. Example:
+ *
+ *   app.bulkheads.search.maxConcurrent=2
+ *   app.bulkheads.search.queryTimeoutSeconds=10
+ */
+@Component
+@ConfigurationProperties(prefix = "app.bulkheads")
+public class QueryBulkheadProperties {
+
+    private boolean enabled = true;
+
+    /** How long a statement waits for a slot in its budget before it is rejected. */
+    private long maxWaitMs = 50;
+
+    /** Free text searches, facet counts and query plans */
+    private Budget search = new Budget(2, 10);
+
+    /** Event listings, date ranges, lookups by ID and reads of the change log */
+    private Budget listing = new Budget(3, 5);
+
+    /** Inserts, updates, deletes and archiving, RSVPs, idempotency keys and the change log */
+    private Budget writes = new Budget(3, 5);
+
+    /** User lookups for login and JWT authentication */
+    private Budget auth = new Budget(2, 2);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public void setMaxWaitMs(long maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public Budget getSearch() {
+        return search;
+    }
+
+    public void setSearch(Budget search) {
+        this.search = search;
+    }
+
+    public Budget getListing() {
+        return listing;
+    }
+
+    public void setListing(Budget listing) {
+        this.listing = listing;
+    }
+
+    public Budget getWrites() {
+        return writes;
+    }
+
+    public void setWrites(Budget writes) {
+        this.writes = writes;
+    }
+
+    public Budget getAuth() {
+        return auth;
+    }
+
+    public void setAuth(Budget auth) {
+        this.auth = auth;
+    }
+
+    /**
+     * The most statements of one class running at once, and how long each may run.
+     * JDBC statement timeouts are whole seconds; 0 means no timeout.
+     */
+    public static class Budget {
+
+        private int maxConcurrent;
+        private int queryTimeoutSeconds;
+
+        public Budget() {
+        }
+
+        public Budget(int maxConcurrent, int queryTimeoutSeconds) {
+            this.maxConcurrent = maxConcurrent;
+            this.queryTimeoutSeconds = queryTimeoutSeconds;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getQueryTimeoutSeconds() {
+            return queryTimeoutSeconds;
+        }
+
+        public void setQueryTimeoutSeconds(int queryTimeoutSeconds) {
+            this.queryTimeoutSeconds = queryTimeoutSeconds;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.shadsluiter.eventsapp.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * Configuration for the API rate limiter, bound from "app.rateLimit.*".
+ *
+ * Each route rule applies to requests whose path matches its Ant-style pattern;
+ * the first matching rule wins and unmatched requests fall back to the default rule.
+ * Example:
+ *
+ *   app.rateLimit.routes[0].pattern=/api/users/login
+ *   app.rateLimit.routes[0].permitsPerSecond=1
+ *   app.rateLimit.routes[0].burst=5
+ *
+ * Every rule needs a positive rate and a burst of at least one; the context
+ * fails to start otherwise.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
+@Validated
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /** Most buckets kept at once; new clients beyond this share one overflow bucket per rule. */
+    private int maxBuckets = 1_000_000;
+
+    /** How often idle buckets are swept from memory. */
+    private long evictIntervalMs = 30_000;
+
+    @Valid
+    @NotNull
+    private Rule defaults = new Rule(null, 20, 40);
+
+    @Valid
+    private List<Rule> routes = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxBuckets() {
+        return maxBuckets;
+    }
+
+    public void setMaxBuckets(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    public long getEvictIntervalMs() {
+        return evictIntervalMs;
+    }
+
+    public void setEvictIntervalMs(long evictIntervalMs) {
+        this.evictIntervalMs = evictIntervalMs;
+    }
+
+    public Rule getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Rule defaults) {
+        this.defaults = defaults;
+    }
+
+    public List<Rule> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(List<Rule> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * A token bucket limit: a steady refill rate plus the burst a client may spend at once.
+     */
+    public static class Rule {
+
+        private String pattern;
+        @Positive
+        private double permitsPerSecond;
+        @Min(1)
+        private int burst;
+
+        public Rule() {
+        }
+
+        public Rule(String pattern, double permitsPerSecond, int burst) {
+            this.pattern = pattern;
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        public void setPermitsPerSecond(double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.shadsluiter.eventsapp.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
@@ -11,11 +12,21 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
 
+import com.shadsluiter.eventsapp.monitoring.AccessLog;
+import com.shadsluiter.eventsapp.monitoring.AccessLogFilter;
+import com.shadsluiter.eventsapp.security.BoundedPasswordEncoder;
+import com.shadsluiter.eventsapp.security.ConcurrencyLimitFilter;
 import com.shadsluiter.eventsapp.security.JwtAuthenticationFilter;
+import com.shadsluiter.eventsapp.security.PasswordHashingRejectedException;
+import com.shadsluiter.eventsapp.security.RateLimitFilter;
+import com.shadsluiter.eventsapp.security.RateLimiter;
+import com.shadsluiter.eventsapp.service.ConcurrencyLimiters;
 
 import jakarta.servlet.http.HttpServletResponse;
 
@@ -31,14 +42,27 @@ import jakarta.servlet.http.HttpServletResponse;
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties rateLimitProperties;
+    private final ConcurrencyLimiters concurrencyLimiters;
+    private final AccessLog accessLog;
 
     /**
      * Constructs the SecurityConfig with a lazily-initialized JwtAuthenticationFilter.
      * 
      * @param jwtAuthenticationFilter the custom JWT authentication filter
+     * @param rateLimiter the token bucket store used by the API chain
+     * @param rateLimitProperties the per-route rate limits
+     * @param concurrencyLimiters the adaptive concurrency limits per API endpoint group
+     * @param accessLog the access log both chains write to
      */
-    public SecurityConfig(@Lazy JwtAuthenticationFilter jwtAuthenticationFilter) {
+    public SecurityConfig(@Lazy JwtAuthenticationFilter jwtAuthenticationFilter, RateLimiter rateLimiter, RateLimitProperties rateLimitProperties,
+                          ConcurrencyLimiters concurrencyLimiters, AccessLog accessLog) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.rateLimiter = rateLimiter;
+        this.rateLimitProperties = rateLimitProperties;
+        this.concurrencyLimiters = concurrencyLimiters;
+        this.accessLog = accessLog;
     }
 
     /**
@@ -46,7 +70,8 @@ public class SecurityConfig {
      * 
      * Applies to all requests that are not handled by the API chain.
      * Allows access to public pages, restricts event creation/editing to ADMIN role,
-     * and provides custom login/logout handling.
+     * and provides custom login/logout handling. Every request is written to
+     * the access log.
      * 
      * @param http the HttpSecurity to configure
      * @return the configured SecurityFilterChain
@@ -63,19 +88,22 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/", "/css/**", "/js/**", "/events", "/events/search", "/users/loginForm", "/users/register").permitAll()
                 .requestMatchers("/events/create", "/events/edit/**", "/events/delete/**").hasRole("ADMIN")
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .formLogin(login -> login
                 .loginPage("/users/loginForm")
                 .loginProcessingUrl("/login")
                 .defaultSuccessUrl("/", true)
-                .failureUrl("/users/loginForm?error=true")
+                .failureHandler(loginFailureHandler())
                 .permitAll()
             )
             .logout(logout -> logout
                 .logoutUrl("/users/logout")
                 .logoutSuccessUrl("/")
-            );
+            )
+            .addFilterAfter(new AccessLogFilter(accessLog, "web"), SecurityContextHolderFilter.class);
 
         return http.build();
     }
@@ -85,7 +113,11 @@ public class SecurityConfig {
      * 
      * Disables CSRF, session state, form login, and HTTP basic auth.
      * Applies to paths under /api/** and uses the JwtAuthenticationFilter
-     * to validate requests.
+     * to validate requests, followed by the RateLimitFilter so each JWT subject
+     * (or client IP when anonymous) is held to its per-route limit, and then the
+     * ConcurrencyLimitFilter, which sheds requests beyond each endpoint group's
+     * adaptive concurrency limit. Every request, including those the limits
+     * reject, is written to the access log.
      * 
      * @param http the HttpSecurity to configure
      * @return the configured SecurityFilterChain
@@ -101,6 +133,8 @@ public class SecurityConfig {
             .requiresChannel(channel -> channel.anyRequest().requiresSecure())
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/users/login", "/api/users/register").permitAll()
+                .requestMatchers("/api/users", "/api/users/export").hasRole("ADMIN")
+                .requestMatchers("/api/events/query/explain").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .exceptionHandling(exception -> exception
@@ -110,13 +144,40 @@ public class SecurityConfig {
                     response.getWriter().write("{\"error\": \"Unauthorized: JWT token required\"}");
                 })
             )
+            .addFilterAfter(new AccessLogFilter(accessLog, "api"), SecurityContextHolderFilter.class)
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            // Same position as the JWT filter: filters at equal order run in registration order
+            .addFilterBefore(new RateLimitFilter(rateLimiter, rateLimitProperties), UsernamePasswordAuthenticationFilter.class)
+            .addFilterBefore(new ConcurrencyLimitFilter(concurrencyLimiters), UsernamePasswordAuthenticationFilter.class)
             .formLogin(AbstractHttpConfigurer::disable)
             .httpBasic(AbstractHttpConfigurer::disable);
 
         return http.build();
     }
 
+    /**
+     * Builds the failure handler for the login form.
+     * 
+     * Bad credentials redirect back to the login page with an error flag. When the
+     * password hashing executor is saturated, the client gets 503 with Retry-After
+     * instead, since retrying with the same credentials may well succeed.
+     * 
+     * @return the AuthenticationFailureHandler for form login
+     */
+    private AuthenticationFailureHandler loginFailureHandler() {
+        SimpleUrlAuthenticationFailureHandler redirectHandler = new SimpleUrlAuthenticationFailureHandler("/users/loginForm?error=true");
+        return (request, response, exception) -> {
+            if (exception instanceof PasswordHashingRejectedException rejected) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.setHeader("Retry-After", String.valueOf(rejected.getRetryAfterSeconds()));
+                response.setContentType("text/plain");
+                response.getWriter().write("Login is temporarily unavailable, please try again shortly.");
+                return;
+            }
+            redirectHandler.onAuthenticationFailure(request, response, exception);
+        };
+    }
+
     /**
      * Provides the AuthenticationManager bean used for login authentication.
      * 
@@ -132,11 +193,20 @@ public class SecurityConfig {
     /**
      * Provides a PasswordEncoder bean using BCrypt hashing algorithm.
      * 
-     * @return a BCryptPasswordEncoder instance
+     * Hashing runs on a dedicated, bounded executor so a burst of logins or
+     * registrations cannot occupy every request thread.
+     * 
+     * @param threads the number of hashing threads
+     * @param queueCapacity the number of hashing requests allowed to wait
+     * @param timeoutMs the longest a request waits for a hashing result
+     * @return a BoundedPasswordEncoder wrapping a BCryptPasswordEncoder
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(
+            @Value("${app.passwordHashing.threads:2}") int threads,
+            @Value("${app.passwordHashing.queueCapacity:32}") int queueCapacity,
+            @Value("${app.passwordHashing.timeoutMs:3000}") long timeoutMs) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, queueCapacity, timeoutMs);
     }
 
 }
@@ -0,0 +1,53 @@
+package com.shadsluiter.eventsapp.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.ShardedEventRepository;
+
+/**
+ * Configuration class for the sharded event store.
+ * 
+ * Active only when app.sharding.enabled=true, in which case it replaces the
+ * single-database EventRepository. Each shard gets its own connection pool and
+ * its own bulkheads with the app.bulkheads budgets; users and roles keep using
+ * the primary spring.datasource.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    /**
+     * Creates the sharded repository with one connection pool per configured shard.
+     * 
+     * @param properties the shard list
+     * @param bulkheadProperties the budgets and timeouts applied to each shard
+     * @param changeLog the change log in the primary database
+     * @param archiveHorizonDays events older than this many days may live in the archive
+     * @return the ShardedEventRepository
+     */
+    @Bean
+    public ShardedEventRepository shardedEventRepository(ShardingProperties properties,
+                                                         QueryBulkheadProperties bulkheadProperties,
+                                                         ChangeLogRepository changeLog,
+                                                         @Value("${app.archive.horizonDays:365}") int archiveHorizonDays) {
+        List<DataSource> dataSources = new ArrayList<>();
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            dataSources.add(DataSourceBuilder.create()
+                .url(shard.getUrl())
+                .username(shard.getUsername())
+                .password(shard.getPassword())
+                .build());
+        }
+        return new ShardedEventRepository(dataSources, bulkheadProperties, changeLog, archiveHorizonDays, properties.getMaxResults());
+    }
+}
@@ -0,0 +1,90 @@
+package com.shadsluiter.eventsapp.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration for the sharded event store, bound from "app.sharding.*".
+ *
+ * When enabled, events are partitioned by organizer across the listed shard
+ * databases; users and roles stay in the primary spring.datasource. Example:
+ *
+ *   app.sharding.enabled=true
+ *   app.sharding.shards[0].url=jdbc:mysql://db0:3306/eventsapp
+ *   app.sharding.shards[1].url=jdbc:mysql://db1:3306/eventsapp
+ *
+ * The shard list is part of the data layout: adding or reordering shards moves
+ * organizers to different databases and requires rebalancing existing rows.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+
+    /** Cap on rows returned by a scatter-gather query, 0 for no cap. */
+    private int maxResults = 0;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    public void setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<Shard> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Connection settings for one shard database.
+     */
+    public static class Shard {
+
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.shadsluiter.eventsapp.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+/**
+ * Configuration class for serving the static assets under classpath:/static/.
+ *
+ * Asset URLs carry a hash of the file's content, e.g. /css/styles-3f2a….css.
+ * The ResourceUrlEncodingFilter rewrites every @{...} link the templates
+ * render to its fingerprinted form, so a deploy that changes a file changes
+ * its URL. Fingerprinted URLs are served with a year-long immutable
+ * Cache-Control and never revalidated; plain URLs must revalidate.
+ *
+ * Text assets are gzipped once by the StaticAssetResolver and served from
+ * memory to clients that accept gzip.
+ */
+@Configuration
+public class StaticAssetConfig implements WebMvcConfigurer {
+
+    static final String LOCATION = "classpath:/static/";
+
+    private final long maxAgeDays;
+    private final int gzipMinBytes;
+
+    /**
+     * Constructs the configuration.
+     *
+     * @param maxAgeDays how long browsers keep a fingerprinted asset
+     * @param gzipMinBytes the smallest asset worth gzipping
+     */
+    public StaticAssetConfig(@Value("${app.staticAssets.maxAgeDays:365}") long maxAgeDays,
+                             @Value("${app.staticAssets.gzipMinBytes:512}") int gzipMinBytes) {
+        this.maxAgeDays = maxAgeDays;
+        this.gzipMinBytes = gzipMinBytes;
+    }
+
+    /**
+     * Replaces Spring Boot's default handler for /** with one whose resource
+     * chain fingerprints and precompresses the assets.
+     */
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler("/**")
+            .addResourceLocations(LOCATION)
+            .setCacheControl(CacheControl.noCache())
+            .resourceChain(true)
+            .addResolver(new StaticAssetResolver(LOCATION + "**",
+                CacheControl.maxAge(Duration.ofDays(maxAgeDays)).cachePublic().immutable(), gzipMinBytes))
+            .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+    }
+
+    /**
+     * Provides the filter that rewrites asset links in rendered pages to their fingerprinted URLs.
+     *
+     * @return the ResourceUrlEncodingFilter
+     */
+    @Bean
+    public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+        return new ResourceUrlEncodingFilter();
+    }
+}
@@ -0,0 +1,242 @@
+package com.shadsluiter.eventsapp.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Serves static assets gzip-compressed from memory and marks fingerprinted
+ * ones as immutable.
+ *
+ * Text assets under the scanned location are gzipped once, at the highest
+ * compression level, when the resolver is built; an asset that is missed by
+ * the scan is gzipped on its first request. Clients that accept gzip get the
+ * stored bytes, so no request pays for compression.
+ *
+ * Sits ahead of the VersionResourceResolver. A request whose file name
+ * differs from the file it resolved to, e.g. styles-3f2a….css for styles.css,
+ * named the asset by its content hash, so its response can never change and
+ * is sent with the immutable Cache-Control. Plain names keep the handler's
+ * own Cache-Control and are revalidated.
+ */
+public class StaticAssetResolver extends AbstractResourceResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssetResolver.class);
+
+    private static final Set<String> COMPRESSIBLE = Set.of("css", "js", "mjs", "json", "map", "svg", "html", "txt", "xml");
+
+    private final CacheControl immutable;
+    private final int minBytes;
+    // Gzipped bytes by resource URL; an empty array when gzip does not help
+    private final Map<String, byte[]> gzipped = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs the resolver and gzips the text assets found by the pattern.
+     *
+     * @param pattern the assets to gzip ahead of time, e.g. "classpath:/static/**"
+     * @param immutable the Cache-Control for fingerprinted requests
+     * @param minBytes the smallest asset worth gzipping
+     */
+    public StaticAssetResolver(String pattern, CacheControl immutable, int minBytes) {
+        this.immutable = immutable;
+        this.minBytes = minBytes;
+        int count = 0;
+        try {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(pattern)) {
+                if (resource.isReadable() && gzipped(resource) != null) {
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not scan {} for static assets to compress: {}", pattern, e.toString());
+        }
+        logger.info("Precompressed {} static assets", count);
+    }
+
+    @Override
+    protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
+                                               List<? extends Resource> locations, ResourceResolverChain chain) {
+        Resource resource = chain.resolveResource(request, requestPath, locations);
+        if (resource == null || request == null) {
+            return resource;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        if (resource instanceof HttpResource httpResource) {
+            headers.putAll(httpResource.getResponseHeaders());
+        }
+        String filename = resource.getFilename();
+        if (filename != null && !filename.equals(StringUtils.getFilename(requestPath))) {
+            headers.setCacheControl(immutable);
+        }
+
+        byte[] gzip = gzipped(resource);
+        if (gzip == null) {
+            return headers.isEmpty() ? resource : new StaticAsset(resource, null, headers);
+        }
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null || !acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip")) {
+            return new StaticAsset(resource, null, headers);
+        }
+        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        String etag = headers.getETag();
+        if (etag != null && !etag.startsWith("W/")) {
+            // The bytes differ from the identity encoding's, so the tag can only be weak.
+            headers.setETag("W/" + etag);
+        }
+        return new StaticAsset(resource, gzip, headers);
+    }
+
+    @Override
+    protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations, ResourceResolverChain chain) {
+        return chain.resolveUrlPath(resourceUrlPath, locations);
+    }
+
+    /**
+     * Returns the asset's gzipped bytes, compressing it on first use, or null
+     * if it is not a text asset or gzip would not make it smaller.
+     */
+    private byte[] gzipped(Resource resource) {
+        String extension = StringUtils.getFilenameExtension(resource.getFilename());
+        if (extension == null || !COMPRESSIBLE.contains(extension.toLowerCase(Locale.ROOT))) {
+            return null;
+        }
+        String key;
+        try {
+            key = resource.getURL().toString();
+        } catch (IOException e) {
+            return null;
+        }
+        byte[] gzip = gzipped.computeIfAbsent(key, k -> compress(resource));
+        return gzip.length == 0 ? null : gzip;
+    }
+
+    private byte[] compress(Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            byte[] content = StreamUtils.copyToByteArray(in);
+            if (content.length < minBytes) {
+                return new byte[0];
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                gzip.write(content);
+            }
+            return out.size() < content.length ? out.toByteArray() : new byte[0];
+        } catch (IOException e) {
+            logger.warn("Could not compress {}: {}", resource, e.toString());
+            return new byte[0];
+        }
+    }
+
+    /**
+     * An asset with extra response headers, served either as is or from its
+     * gzipped bytes. The file name, and so the media type, is the original's.
+     */
+    static final class StaticAsset extends AbstractResource implements HttpResource {
+
+        private final Resource original;
+        private final byte[] gzip;
+        private final HttpHeaders headers;
+
+        StaticAsset(Resource original, byte[] gzip, HttpHeaders headers) {
+            this.original = original;
+            this.gzip = gzip;
+            this.headers = headers;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return gzip != null ? new ByteArrayInputStream(gzip) : original.getInputStream();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return gzip != null ? gzip.length : original.contentLength();
+        }
+
+        @Override
+        public boolean exists() {
+            return original.exists();
+        }
+
+        @Override
+        public boolean isReadable() {
+            return original.isReadable();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return original.lastModified();
+        }
+
+        @Override
+        public URL getURL() throws IOException {
+            return original.getURL();
+        }
+
+        @Override
+        public URI getURI() throws IOException {
+            return original.getURI();
+        }
+
+        @Override
+        public File getFile() throws IOException {
+            // The gzipped bytes are not a file; never let the container send the original's.
+            if (gzip != null) {
+                throw new IOException(getDescription() + " is served from memory");
+            }
+            return original.getFile();
+        }
+
+        @Override
+        public Resource createRelative(String relativePath) throws IOException {
+            return original.createRelative(relativePath);
+        }
+
+        @Override
+        public String getFilename() {
+            return original.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return (gzip != null ? "gzipped " : "") + original.getDescription();
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            return headers;
+        }
+    }
+}
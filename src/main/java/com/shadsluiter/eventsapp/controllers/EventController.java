@@ -1,12 +1,17 @@
 package com.shadsluiter.eventsapp.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
+import com.shadsluiter.eventsapp.data.OrganizerChangeException;
 import com.shadsluiter.eventsapp.models.EventModel;
+import com.shadsluiter.eventsapp.models.EventView;
+import com.shadsluiter.eventsapp.models.RecurrenceRule;
 import com.shadsluiter.eventsapp.models.EventSearch;
 import com.shadsluiter.eventsapp.models.UserModel;
 import com.shadsluiter.eventsapp.service.EventService;
@@ -14,6 +19,7 @@ import com.shadsluiter.eventsapp.service.UserService;
 import com.shadsluiter.eventsapp.security.InputSanitizer;
 
 import jakarta.validation.Valid;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -46,7 +52,7 @@ public class EventController {
      */
     @GetMapping
     public String getAllEvents(Model model) {
-        List<EventModel> events = eventService.findAll();
+        List<EventView> events = eventService.findAll();
         model.addAttribute("events", events);
         model.addAttribute("message", "Showing all events");
         model.addAttribute("pageTitle", "Events");
@@ -60,7 +66,6 @@ public class EventController {
     public String showCreateEventForm(Model model) {
         model.addAttribute("event", new EventModel());
         model.addAttribute("pageTitle", "Create Event");
-        System.out.println("Rendering event form, model contains: " + model.asMap());
 
         // Populate user dropdown
         List<UserModel> users = userService.findAll();  
@@ -76,6 +81,8 @@ public class EventController {
      */
     @PostMapping("/create")
     public String createEvent(@ModelAttribute @Valid EventModel event, BindingResult result, Model model) {
+        rejectInvalidRecurrence(event, result);
+        rejectNegativeCapacity(event, result);
         if (result.hasErrors()) {
             model.addAttribute("event", event);
             model.addAttribute("pageTitle", "Create Event");
@@ -87,6 +94,7 @@ public class EventController {
             return "create-event";
         }
 
+        event.setId(null);
         eventService.save(event);
         return "redirect:/events";
     }
@@ -95,7 +103,7 @@ public class EventController {
      * Displays the event editing form for a given event ID.
      */
     @GetMapping("/edit/{id}")
-    public String showEditEventForm(@PathVariable String id, Model model) {
+    public String showEditEventForm(@PathVariable long id, Model model) {
         EventModel event = eventService.findById(id);
         model.addAttribute("event", event);
 
@@ -109,10 +117,13 @@ public class EventController {
     /**
      * Handles form submission for editing an event.
      * 
-     * If validation fails, repopulates user data and redisplays the form.
+     * If validation fails, or the event was changed since the form was loaded,
+     * repopulates user data and redisplays the form.
      */
     @PostMapping("/edit/{id}")
-    public String updateEvent(@PathVariable String id, @ModelAttribute EventModel event, BindingResult result, Model model) {
+    public String updateEvent(@PathVariable long id, @ModelAttribute EventModel event, BindingResult result, Model model) {
+        rejectInvalidRecurrence(event, result);
+        rejectNegativeCapacity(event, result);
         if (result.hasErrors()) {
             model.addAttribute("event", event);
 
@@ -123,7 +134,21 @@ public class EventController {
             return "edit-event";
         }
 
-        eventService.updateEvent(id, event);
+        try {
+            eventService.updateEvent(id, event);
+        } catch (EmptyResultDataAccessException e) {
+            return "redirect:/events";
+        } catch (OptimisticLockingFailureException e) {
+            result.reject("conflict", "Someone else changed this event while you were editing it. Reload the page to see their changes.");
+            model.addAttribute("event", event);
+            model.addAttribute("users", userService.findAll());
+            return "edit-event";
+        } catch (OrganizerChangeException e) {
+            result.rejectValue("organizerid", "organizer.locked", "This event's organizer cannot be changed.");
+            model.addAttribute("event", event);
+            model.addAttribute("users", userService.findAll());
+            return "edit-event";
+        }
         return "redirect:/events";
     }
 
@@ -131,7 +156,7 @@ public class EventController {
      * Deletes the specified event by ID.
      */
     @GetMapping("/delete/{id}")
-    public String deleteEvent(@PathVariable String id) {
+    public String deleteEvent(@PathVariable long id) {
         eventService.delete(id);
         return "redirect:/events";
     }
@@ -148,6 +173,7 @@ public class EventController {
     /**
      * Processes the event search query and displays results.
      * 
+     * Every criterion on the form is optional; the ones filled in are combined.
      * If validation fails, returns to the search form.
      */
     @PostMapping("/search")
@@ -155,20 +181,72 @@ public class EventController {
         if (result.hasErrors()) {
             return "searchForm";
         }
+        if (eventSearch.getFrom() != null && eventSearch.getTo() != null && eventSearch.getFrom().isAfter(eventSearch.getTo())) {
+            model.addAttribute("error", "The first date must not be after the last date");
+            return "searchForm";
+        }
+        if (eventSearch.getLimit() != null && (eventSearch.getLimit() < 1 || eventSearch.getLimit() > EventSearch.MAX_LIMIT)) {
+            model.addAttribute("error", "The limit must be between 1 and " + EventSearch.MAX_LIMIT);
+            return "searchForm";
+        }
 
         try {
-            // Sanitize the search string to prevent XSS and SQL injection
+            // Sanitize the text criteria to prevent XSS and SQL injection
             eventSearch.setSearchString(InputSanitizer.sanitizeInput(eventSearch.getSearchString()));
+            eventSearch.setName(InputSanitizer.sanitizeInput(eventSearch.getName()));
+            eventSearch.setLocation(InputSanitizer.sanitizeInput(eventSearch.getLocation()));
         } catch (IllegalArgumentException e) {
             model.addAttribute("error", "Invalid search input: " + e.getMessage());
             return "searchForm";
         }
-        
 
-        List<EventModel> events = eventService.findByDescription(eventSearch.getSearchString());
-        model.addAttribute("message", "Search results for " + eventSearch.getSearchString());
+        List<EventView> events = eventService.search(eventSearch);
+        model.addAttribute("message", "Search results for " + describe(eventSearch));
         model.addAttribute("events", events);
+        model.addAttribute("facets", eventService.facets(eventSearch));
 
         return "events";
     }
+
+    /**
+     * Summarizes the criteria that are set, for the results page heading.
+     */
+    private static String describe(EventSearch eventSearch) {
+        List<String> criteria = new ArrayList<>();
+        if (eventSearch.getSearchString() != null && !eventSearch.getSearchString().isBlank()) {
+            criteria.add(eventSearch.getSearchString());
+        }
+        if (eventSearch.getName() != null && !eventSearch.getName().isBlank()) {
+            criteria.add("name " + eventSearch.getName() + "*");
+        }
+        if (eventSearch.getLocation() != null && !eventSearch.getLocation().isBlank()) {
+            criteria.add("location " + eventSearch.getLocation() + "*");
+        }
+        if (eventSearch.getOrganizerid() != null) {
+            criteria.add("organizer " + eventSearch.getOrganizerid());
+        }
+        if (eventSearch.getFrom() != null || eventSearch.getTo() != null) {
+            criteria.add((eventSearch.getFrom() != null ? eventSearch.getFrom() : "") + " to " + (eventSearch.getTo() != null ? eventSearch.getTo() : ""));
+        }
+        return criteria.isEmpty() ? "all events" : String.join(", ", criteria);
+    }
+
+    /**
+     * Flags an unsupported recurrence rule as a field error on the form.
+     */
+    private void rejectInvalidRecurrence(EventModel event, BindingResult result) {
+        String rule = event.getRecurrence();
+        if (rule != null && !rule.isBlank() && !RecurrenceRule.isValid(rule)) {
+            result.rejectValue("recurrence", "invalid", "Use a rule such as FREQ=WEEKLY;BYDAY=MO or leave blank");
+        }
+    }
+
+    /**
+     * Flags a negative capacity as a field error on the form.
+     */
+    private void rejectNegativeCapacity(EventModel event, BindingResult result) {
+        if (event.getCapacity() != null && event.getCapacity() < 0) {
+            result.rejectValue("capacity", "invalid", "Capacity cannot be negative; leave blank for no limit");
+        }
+    }
 }
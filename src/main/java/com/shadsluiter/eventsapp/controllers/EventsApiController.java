@@ -1,20 +1,34 @@
 package com.shadsluiter.eventsapp.controllers;
 
-import java.util.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.shadsluiter.eventsapp.data.OrganizerChangeException;
+import com.shadsluiter.eventsapp.models.AttendanceModel;
+import com.shadsluiter.eventsapp.models.EventBatch;
 import com.shadsluiter.eventsapp.models.EventModel;
+import com.shadsluiter.eventsapp.models.EventSearch;
+import com.shadsluiter.eventsapp.models.EventSearchResult;
+import com.shadsluiter.eventsapp.models.EventView;
+import com.shadsluiter.eventsapp.models.RecurrenceRule;
 import com.shadsluiter.eventsapp.models.UserModel;
 import com.shadsluiter.eventsapp.service.EventService;
+import com.shadsluiter.eventsapp.service.IdempotencyService;
+import com.shadsluiter.eventsapp.service.RsvpService;
 import com.shadsluiter.eventsapp.service.UserService;
-import com.shadsluiter.eventsapp.security.InputSanitizer;
 
 /**
  * REST API controller for managing event data.
@@ -26,29 +40,112 @@ import com.shadsluiter.eventsapp.security.InputSanitizer;
 @RequestMapping("/api/events")
 public class EventsApiController {
 
+    /** Most IDs accepted by a single batch lookup */
+    private static final int MAX_BATCH_SIZE = 1000;
+
     @Autowired
     private EventService eventService;
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private RsvpService rsvpService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     /**
      * Creates a new event associated with the authenticated user.
      * Defaults to fallback values if any key fields are missing.
      * 
+     * A recurring event is created once with a recurrence rule, e.g.
+     * "FREQ=WEEKLY;BYDAY=TU;COUNT=12", rather than as one event per occurrence.
+     * 
+     * With an Idempotency-Key header, retries of the same request return the
+     * original response instead of creating the event again.
+     * 
      * @param event the event data from the client
+     * @param idempotencyKey the client's key for safe retries, optional
      * @param authentication the authenticated user's credentials
-     * @return the created event wrapped in a response
+     * @return the created event wrapped in a response, or 400 for an invalid recurrence rule or capacity
      */
     @PostMapping
-    public ResponseEntity<EventModel> createEvent(@RequestBody EventModel event, Authentication authentication) {
+    public ResponseEntity<EventModel> createEvent(@RequestBody EventModel event,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        if (idempotencyKey == null) {
+            return createEventNow(event, authentication);
+        }
+        return idempotencyService.execute(authentication.getName() + " POST /api/events", idempotencyKey, event,
+            new TypeReference<EventModel>() {}, () -> createEventNow(event, authentication));
+    }
+
+    /**
+     * Creates many events for the authenticated user in one request.
+     * 
+     * Every event is validated before any is saved, and they are saved in one
+     * transaction. Supports the Idempotency-Key header like single creation.
+     * 
+     * @param events the events to create, at most MAX_BATCH_SIZE
+     * @param idempotencyKey the client's key for safe retries, optional
+     * @param authentication the authenticated user's credentials
+     * @return the created events in request order, or 400 if any event is invalid
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<List<EventModel>> createEvents(@RequestBody List<EventModel> events,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        if (idempotencyKey == null) {
+            return createEventsNow(events, authentication);
+        }
+        return idempotencyService.execute(authentication.getName() + " POST /api/events/bulk", idempotencyKey, events,
+            new TypeReference<List<EventModel>>() {}, () -> createEventsNow(events, authentication));
+    }
+
+    private ResponseEntity<EventModel> createEventNow(EventModel event, Authentication authentication) {
+        if (!isValidRecurrence(event) || !isValidCapacity(event)) {
+            return ResponseEntity.badRequest().build();
+        }
+
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
         UserModel user = userService.findByLoginName(userDetails.getUsername());
+        applyDefaults(event, user);
 
+        EventModel createdEvent = eventService.save(event);
+        return ResponseEntity.ok(createdEvent);
+    }
+
+    private ResponseEntity<List<EventModel>> createEventsNow(List<EventModel> events, Authentication authentication) {
+        if (events == null || events.isEmpty() || events.size() > MAX_BATCH_SIZE || events.contains(null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        for (EventModel event : events) {
+            if (!isValidRecurrence(event) || !isValidCapacity(event)) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+        UserModel user = userService.findByLoginName(userDetails.getUsername());
+        for (EventModel event : events) {
+            applyDefaults(event, user);
+        }
+        return ResponseEntity.ok(eventService.saveAll(events));
+    }
+
+    /**
+     * Assigns the organizer and fills in fallback values for missing fields.
+     * 
+     * @param event the new event
+     * @param user the authenticated user, who becomes the organizer
+     */
+    private static void applyDefaults(EventModel event, UserModel user) {
+        event.setId(null);
         event.setOrganizerid(user.getId());
 
         if (event.getDate() == null) {
-            event.setDate(new Date());
+            event.setDate(LocalDate.now());
         }
 
         if (event.getName() == null || event.getName().isEmpty()) {
@@ -62,31 +159,123 @@ public class EventsApiController {
         if (event.getLocation() == null || event.getLocation().isEmpty()) {
             event.setLocation("No location provided");
         }
-
-        EventModel createdEvent = eventService.save(event);
-        return ResponseEntity.ok(createdEvent);
     }
 
     /**
-     * Retrieves a list of all events.
+     * Retrieves a list of all events, optionally filtered by date.
      * 
-     * @return a list of all events in the system
+     * Only current events are returned unless includeArchived is set or the
+     * date range reaches back past the archive horizon.
+     * 
+     * Without a date range, recurring events are listed once as their series.
+     * With a range, they are expanded into one entry per occurrence in the range.
+     * 
+     * @param from the first date (yyyy-MM-dd), optional
+     * @param to the last date (yyyy-MM-dd), optional
+     * @param includeArchived true to include archived past events
+     * @return a list of matching events
      */
     @GetMapping
-    public ResponseEntity<List<EventModel>> getAllEvents() {
-        List<EventModel> events = eventService.findAll();
+    public ResponseEntity<List<EventView>> getAllEvents(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean includeArchived) {
+        List<EventView> events = (from == null && to == null)
+            ? eventService.findAll(includeArchived)
+            : eventService.findByDateRange(from, to, includeArchived);
         return ResponseEntity.ok(events);
     }
 
+    /**
+     * Retrieves many events by ID in one request, e.g. /api/events/batch?ids=2,3,7.
+     * 
+     * @param ids the event IDs, comma separated or repeated
+     * @return the found events in request order and the IDs that were not found, or 400 if an ID is not a number
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<EventBatch> getEventsByIds(@RequestParam List<String> ids) {
+        List<Long> parsedIds = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Long parsed = parseId(id);
+            if (parsed == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            parsedIds.add(parsed);
+        }
+        return postEventsByIds(parsedIds);
+    }
+
+    /**
+     * Retrieves many events by ID, taking the IDs as a JSON array body.
+     * 
+     * @param ids the event IDs
+     * @return the found events in request order and the IDs that were not found
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<EventBatch> postEventsByIds(@RequestBody List<Long> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > MAX_BATCH_SIZE || ids.contains(null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(eventService.findAllById(ids));
+    }
+
+    /**
+     * Searches events by any combination of criteria, taking them as a JSON body, e.g.
+     * {"name": "Jazz", "location": "Hall", "from": "2030-01-01", "to": "2030-01-31", "limit": 20}.
+     * 
+     * @param search the criteria; every one is optional and they are combined with AND
+     * @return the matching events ordered by date, or 400 if the criteria are invalid
+     */
+    @PostMapping("/query")
+    public ResponseEntity<List<EventView>> queryEvents(@RequestBody EventSearch search) {
+        if (!isValidSearch(search)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(eventService.search(search));
+    }
+
+    /**
+     * Searches events as /query does and also returns facet counts over every
+     * match: per location, month (yyyy-MM) and organizer.
+     * 
+     * @param search the criteria, as for /query; the limit applies to the events only
+     * @return the matching events and the facet counts, or 400 if the criteria are invalid
+     */
+    @PostMapping("/query/faceted")
+    public ResponseEntity<EventSearchResult> queryEventsWithFacets(@RequestBody EventSearch search) {
+        if (!isValidSearch(search)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new EventSearchResult(eventService.search(search), eventService.facets(search)));
+    }
+
+    /**
+     * Returns the database's query plan for a search. Restricted to admins.
+     * 
+     * @param search the criteria, as for /query
+     * @return the EXPLAIN rows, or 400 if the criteria are invalid
+     */
+    @PostMapping("/query/explain")
+    public ResponseEntity<List<Map<String, Object>>> explainQuery(@RequestBody EventSearch search) {
+        if (!isValidSearch(search)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(eventService.explain(search));
+    }
+
     /**
      * Retrieves all events created by a specific organizer.
      * 
      * @param organizerid the organizer's user ID
-     * @return a list of events associated with the organizer
+     * @return a list of events associated with the organizer, or 400 if the ID is not numeric
      */
     @GetMapping("/{organizerid}")
-    public ResponseEntity<List<EventModel>> getEventsByOrganizerId(@PathVariable String organizerid) {
-        List<EventModel> events = eventService.findByOrganizerid(InputSanitizer.sanitizeNumeric(organizerid));
+    public ResponseEntity<List<EventView>> getEventsByOrganizerId(@PathVariable String organizerid) {
+        Long organizer = parseId(organizerid);
+        if (organizer == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<EventView> events = eventService.findByOrganizerid(organizer);
         return ResponseEntity.ok(events);
     }
 
@@ -94,11 +283,15 @@ public class EventsApiController {
      * Deletes an event by its ID.
      * 
      * @param id the ID of the event to delete
-     * @return a generic OK response on success
+     * @return a generic OK response on success, or 400 if the ID is not numeric
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteEvent(@PathVariable String id) {
-        eventService.delete(InputSanitizer.sanitizeNumeric(id));
+        Long eventId = parseId(id);
+        if (eventId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        eventService.delete(eventId);
         return ResponseEntity.ok().build();
     }
 
@@ -108,18 +301,35 @@ public class EventsApiController {
      * Performs validation on required fields and updates the event if found.
      * Returns appropriate status codes depending on success or failure.
      * 
+     * The update is optimistic: with an If-Match header holding the ETag of a
+     * previous response, or a version in the body, it only applies if nobody has
+     * updated the event since. The new version is returned as the ETag.
+     * An omitted organizerid keeps the event's current organizer.
+     * 
      * @param id the ID of the event to update
      * @param event the updated event data
-     * @return a message indicating success or the type of error
+     * @param ifMatch the ETag the client last saw, optional
+     * @return a message indicating success or the type of error: 404 if the event does not
+     *         exist, 412 if If-Match is stale, 409 if the body version is stale or the
+     *         organizer cannot be changed
      */
     @PutMapping("/{id}")
-    public ResponseEntity<String> updateEvent(@PathVariable String id, @RequestBody EventModel event) {
+    public ResponseEntity<String> updateEvent(@PathVariable String id, @RequestBody EventModel event,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         if (event == null) {
             return new ResponseEntity<>("Error: event cannot be null", HttpStatus.BAD_REQUEST);
         }
 
         if (event.getDate() == null) {
-            event.setDate(new Date());
+            event.setDate(LocalDate.now());
+        }
+
+        Long expectedVersion = event.getVersion();
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expectedVersion = parseETag(ifMatch);
+            if (expectedVersion == null) {
+                return new ResponseEntity<>("Error: If-Match must be an ETag returned by this API", HttpStatus.BAD_REQUEST);
+            }
         }
 
         try {
@@ -135,15 +345,190 @@ public class EventsApiController {
                 return new ResponseEntity<>("Error: event location cannot be null or empty", HttpStatus.BAD_REQUEST);
             }
 
-            EventModel updatedEvent = eventService.updateEvent(InputSanitizer.sanitizeNumeric(id), event);
+            if (!isValidRecurrence(event)) {
+                return new ResponseEntity<>("Error: invalid recurrence rule", HttpStatus.BAD_REQUEST);
+            }
 
-            if (updatedEvent == null) {
+            if (!isValidCapacity(event)) {
+                return new ResponseEntity<>("Error: capacity cannot be negative", HttpStatus.BAD_REQUEST);
+            }
+
+            Long eventId = parseId(id);
+            if (eventId == null) {
                 return new ResponseEntity<>("Error: event not found", HttpStatus.NOT_FOUND);
             }
 
-            return new ResponseEntity<>("Event updated successfully", HttpStatus.OK);
+            EventModel updatedEvent = eventService.updateEvent(eventId, event, expectedVersion);
+            return ResponseEntity.ok()
+                .eTag(String.valueOf(updatedEvent.getVersion()))
+                .body("Event updated successfully");
+        } catch (EmptyResultDataAccessException e) {
+            return new ResponseEntity<>("Error: event not found", HttpStatus.NOT_FOUND);
+        } catch (OptimisticLockingFailureException e) {
+            HttpStatus status = ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT;
+            return new ResponseEntity<>("Error: event was modified by another request; reload it and retry", status);
+        } catch (OrganizerChangeException e) {
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.CONFLICT);
         } catch (Exception e) {
             return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    /**
+     * Parses an ETag such as "3" or W/"3" into an event version.
+     * 
+     * @param etag the If-Match header value
+     * @return the version, or null if the ETag is not one of ours
+     */
+    private static Long parseETag(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() < 3 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * RSVPs the authenticated user to an event.
+     * 
+     * The user takes a seat if one is free and joins the waitlist otherwise.
+     * Repeating the request returns the current status unchanged.
+     * 
+     * @param id the event ID
+     * @param authentication the authenticated user's credentials
+     * @return the event's attendance and the user's status, or 404 if the event does not exist
+     * @throws com.shadsluiter.eventsapp.service.WriteBehindQueueFullException served as 503 if too many RSVPs are waiting to be written
+     */
+    @PostMapping("/{id}/rsvp")
+    public ResponseEntity<AttendanceModel> rsvp(@PathVariable String id, Authentication authentication) {
+        Long eventId = parseId(id);
+        if (eventId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(rsvpService.rsvp(eventId, currentUserId(authentication)));
+        } catch (EmptyResultDataAccessException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Cancels the authenticated user's RSVP to an event.
+     * 
+     * A released seat goes to the first user on the waitlist.
+     * 
+     * @param id the event ID
+     * @param authentication the authenticated user's credentials
+     * @return the event's attendance, or 404 if the event does not exist or the user has no RSVP
+     * @throws com.shadsluiter.eventsapp.service.WriteBehindQueueFullException served as 503 if too many RSVPs are waiting to be written
+     */
+    @DeleteMapping("/{id}/rsvp")
+    public ResponseEntity<AttendanceModel> cancelRsvp(@PathVariable String id, Authentication authentication) {
+        Long eventId = parseId(id);
+        if (eventId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            AttendanceModel attendance = rsvpService.cancel(eventId, currentUserId(authentication));
+            return attendance != null ? ResponseEntity.ok(attendance) : ResponseEntity.notFound().build();
+        } catch (EmptyResultDataAccessException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Retrieves an event's capacity, attendance and waitlist size, and the authenticated user's status.
+     * 
+     * @param id the event ID
+     * @param authentication the authenticated user's credentials
+     * @return the event's attendance, or 404 if the event does not exist
+     */
+    @GetMapping("/{id}/attendance")
+    public ResponseEntity<AttendanceModel> getAttendance(@PathVariable String id, Authentication authentication) {
+        Long eventId = parseId(id);
+        if (eventId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(rsvpService.getAttendance(eventId, currentUserId(authentication)));
+        } catch (EmptyResultDataAccessException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Parses a numeric ID from the path or query string.
+     * 
+     * The whole value must be a number: "1a2" is rejected rather than read as 12,
+     * and so is a number too large for a long.
+     * 
+     * @param id the raw value
+     * @return the ID, or null if it is not a number
+     */
+    private static Long parseId(String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks up the ID of the authenticated user.
+     * 
+     * @param authentication the authenticated user's credentials
+     * @return the user ID
+     */
+    private long currentUserId(Authentication authentication) {
+        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+        return userService.findByLoginName(userDetails.getUsername()).getId();
+    }
+
+    /**
+     * Checks that the event has no capacity limit or a non-negative one.
+     * 
+     * @param event the event data from the client
+     * @return true if the capacity is absent or valid
+     */
+    private static boolean isValidCapacity(EventModel event) {
+        return event.getCapacity() == null || event.getCapacity() >= 0;
+    }
+
+    /**
+     * Checks that the event has no recurrence rule or a supported one.
+     * 
+     * @param event the event data from the client
+     * @return true if the rule is absent or valid
+     */
+    private static boolean isValidRecurrence(EventModel event) {
+        String rule = event.getRecurrence();
+        return rule == null || rule.isBlank() || RecurrenceRule.isValid(rule);
+    }
+
+    /**
+     * Checks that the search has an ordered date range and a limit within bounds.
+     * 
+     * @param search the search criteria from the client
+     * @return true if the criteria can be run
+     */
+    private static boolean isValidSearch(EventSearch search) {
+        if (search == null) {
+            return false;
+        }
+        if (search.getFrom() != null && search.getTo() != null && search.getFrom().isAfter(search.getTo())) {
+            return false;
+        }
+        Integer limit = search.getLimit();
+        return limit == null || (limit >= 1 && limit <= EventSearch.MAX_LIMIT);
+    }
 }
@@ -0,0 +1,92 @@
+package com.shadsluiter.eventsapp.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import com.shadsluiter.eventsapp.data.BulkheadFullException;
+import com.shadsluiter.eventsapp.security.PasswordHashingRejectedException;
+import com.shadsluiter.eventsapp.service.ConcurrencyLimitExceededException;
+import com.shadsluiter.eventsapp.service.IdempotencyKeyException;
+import com.shadsluiter.eventsapp.service.WriteBehindQueueFullException;
+
+/**
+ * Maps overload and capacity exceptions raised anywhere in the controllers
+ * to HTTP responses.
+ *
+ * Applies to both the web controllers and the REST API controllers.
+ */
+@ControllerAdvice
+public class GlobalExceptionHandler {
+
+    /**
+     * Handles a saturated password hashing executor during login or registration.
+     *
+     * @param e the rejection raised by the password encoder
+     * @return 503 Service Unavailable with a Retry-After header
+     */
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<String> handlePasswordHashingRejected(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+            .contentType(MediaType.APPLICATION_JSON)
+            .body("{\"error\": \"" + e.getMessage() + "\"}");
+    }
+
+    /**
+     * Handles a full write-behind queue for event creation.
+     *
+     * @param e the rejection raised by the write-behind service
+     * @return 503 Service Unavailable with a Retry-After header
+     */
+    @ExceptionHandler(WriteBehindQueueFullException.class)
+    public ResponseEntity<String> handleWriteBehindQueueFull(WriteBehindQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+            .contentType(MediaType.APPLICATION_JSON)
+            .body("{\"error\": \"" + e.getMessage() + "\"}");
+    }
+
+    /**
+     * Handles a database call shed by EventService's concurrency limit.
+     *
+     * @param e the rejection raised by the event service
+     * @return 503 Service Unavailable with a Retry-After header
+     */
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<String> handleConcurrencyLimitExceeded(ConcurrencyLimitExceededException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+            .contentType(MediaType.APPLICATION_JSON)
+            .body("{\"error\": \"" + e.getMessage() + "\"}");
+    }
+
+    /**
+     * Handles a statement rejected because its class of query is at its concurrency budget.
+     *
+     * @param e the rejection raised by the repository's bulkhead
+     * @return 503 Service Unavailable with a Retry-After header
+     */
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<String> handleBulkheadFull(BulkheadFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+            .contentType(MediaType.APPLICATION_JSON)
+            .body("{\"error\": \"" + e.getMessage() + "\"}");
+    }
+
+    /**
+     * Handles an Idempotency-Key that is malformed, reused with another request, or still in progress.
+     *
+     * @param e the rejection raised by the idempotency service
+     * @return 400, 422 or 409 with the reason
+     */
+    @ExceptionHandler(IdempotencyKeyException.class)
+    public ResponseEntity<String> handleIdempotencyKey(IdempotencyKeyException e) {
+        return ResponseEntity.status(e.getStatus())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body("{\"error\": \"" + e.getMessage() + "\"}");
+    }
+}
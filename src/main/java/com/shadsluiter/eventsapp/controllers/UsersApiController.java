@@ -1,5 +1,8 @@
 package com.shadsluiter.eventsapp.controllers;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -10,22 +13,35 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shadsluiter.eventsapp.models.UserModel;
+import com.shadsluiter.eventsapp.models.UserPage;
+import com.shadsluiter.eventsapp.models.UserSummary;
 import com.shadsluiter.eventsapp.security.JwtTokenProvider;
 import com.shadsluiter.eventsapp.service.UserService;
 
+import jakarta.servlet.http.HttpServletResponse;
+
 /**
  * REST API controller for user registration and authentication.
  * 
- * Provides endpoints for registering new users and issuing JWTs on successful login.
+ * Provides endpoints for registering new users, issuing JWTs on successful login,
+ * and listing users page by page or exporting them all for administrators.
  */
 @RestController
 @RequestMapping("/api/users")
 public class UsersApiController {
 
+    /** Largest page a client may request from the user listing */
+    private static final int MAX_PAGE_SIZE = 500;
+
+    /** Page size used internally while streaming the admin export */
+    private static final int EXPORT_PAGE_SIZE = 500;
+
     private final UserService userService;
     private final AuthenticationManager authManager;
     private final JwtTokenProvider tokenProvider;
+    private final ObjectMapper objectMapper;
 
     /**
      * Constructs the UsersApiController with required dependencies.
@@ -33,11 +49,68 @@ public class UsersApiController {
      * @param userService the user service to manage user data
      * @param authManager the authentication manager to validate credentials
      * @param tokenProvider the JWT token provider
+     * @param objectMapper the JSON mapper used by the streaming export
      */
-    public UsersApiController(UserService userService, AuthenticationManager authManager, JwtTokenProvider tokenProvider) {
+    public UsersApiController(UserService userService, AuthenticationManager authManager, JwtTokenProvider tokenProvider, ObjectMapper objectMapper) {
         this.userService = userService;
         this.authManager = authManager;
         this.tokenProvider = tokenProvider;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Lists users one page at a time, ordered by ID (admin only).
+     * 
+     * Password hashes are never included. Pass the returned nextCursor as
+     * "after" to fetch the following page.
+     * 
+     * @param after the cursor from the previous page, or empty for the first page
+     * @param limit the page size, capped at MAX_PAGE_SIZE
+     * @return the page of users, or 400 if the cursor or limit is invalid
+     */
+    @GetMapping
+    public ResponseEntity<UserPage> listUsers(@RequestParam(required = false) String after,
+                                              @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(userService.findPage(after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Streams every user as newline-delimited JSON (admin only).
+     * 
+     * Users are fetched and written page by page and the response is flushed
+     * after each page, so memory use does not grow with the number of users.
+     * 
+     * @param response the HTTP response to write to
+     * @throws IOException if the client connection fails
+     */
+    @GetMapping("/export")
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = response.getOutputStream();
+
+        try {
+            userService.exportAll(EXPORT_PAGE_SIZE, page -> {
+                try {
+                    for (UserSummary user : page) {
+                        out.write(objectMapper.writeValueAsBytes(user));
+                        out.write('\n');
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     /**
@@ -0,0 +1,29 @@
+package com.shadsluiter.eventsapp.data;
+
+import org.springframework.dao.TransientDataAccessResourceException;
+
+/**
+ * Thrown when a statement's bulkhead has no free slot within its wait time.
+ *
+ * A transient data access failure, so callers treat it like a timeout. Mapped to
+ * 503 Service Unavailable with a Retry-After header by GlobalExceptionHandler.
+ */
+public class BulkheadFullException extends TransientDataAccessResourceException {
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Creates the exception with a hint for how long the client should wait.
+     *
+     * @param message the detail message
+     * @param retryAfterSeconds suggested value for the Retry-After header
+     */
+    public BulkheadFullException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,136 @@
+package com.shadsluiter.eventsapp.data;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.shadsluiter.eventsapp.models.ChangeLogEntry;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JDBC repository for the change_log table.
+ * 
+ * Repositories record a row here whenever they write an event or user. Every app
+ * instance polls the table by sequence number and evicts the affected keys from
+ * its in-process caches.
+ * 
+ * With app.invalidation.enabled=false nobody reads the log, so writes are not
+ * recorded and cost no extra INSERT.
+ * 
+ * Records and deletes run in the writes bulkhead, reads of the log in the
+ * listings bulkhead.
+ */
+@Repository
+public class ChangeLogRepository {
+
+    public static final String EVENT = "event";
+    public static final String USER = "user";
+
+    private final QueryBulkheads.Bulkhead writes;
+    private final QueryBulkheads.Bulkhead listings;
+    private final boolean recording;
+
+    /**
+     * Constructs a repository with no bulkheads that records every write.
+     * 
+     * @param jdbcTemplate Spring JDBC template for database access
+     */
+    public ChangeLogRepository(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, true);
+    }
+
+    /**
+     * Constructs the repository with a JdbcTemplate instance and no bulkheads.
+     * 
+     * @param jdbcTemplate Spring JDBC template for database access
+     * @param recording true to record writes; false when no instance polls the log
+     */
+    public ChangeLogRepository(JdbcTemplate jdbcTemplate, boolean recording) {
+        this(new QueryBulkheads(jdbcTemplate), recording);
+    }
+
+    /**
+     * Constructs the repository with bulkheads for writes and listings.
+     * 
+     * @param bulkheads the budgets and JDBC templates, of which the log uses writes and listings
+     * @param recording true to record writes; false when no instance polls the log
+     */
+    @Autowired
+    public ChangeLogRepository(QueryBulkheads bulkheads,
+                               @Value("${app.invalidation.enabled:false}") boolean recording) {
+        this.writes = bulkheads.get(QueryBulkheads.QueryClass.WRITES);
+        this.listings = bulkheads.get(QueryBulkheads.QueryClass.LISTING);
+        this.recording = recording;
+    }
+
+    /**
+     * Records that an entity was written.
+     * 
+     * @param entity the entity type, e.g. EVENT or USER
+     * @param key the changed key, or null if every cached entry of the type is affected
+     */
+    public void record(String entity, String key) {
+        if (!recording) {
+            return;
+        }
+        writes.call("ChangeLogRepository.record",
+            jdbc -> jdbc.update("INSERT INTO change_log (entity, entity_key) VALUES (?, ?)", entity, key));
+    }
+
+    /**
+     * Records that many entities of one type were written, in one JDBC batch.
+     * 
+     * @param entity the entity type, e.g. EVENT or USER
+     * @param keys the changed keys
+     */
+    public void recordAll(String entity, Collection<String> keys) {
+        if (!recording || keys.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            rows.add(new Object[]{entity, key});
+        }
+        writes.call("ChangeLogRepository.recordAll",
+            jdbc -> jdbc.batchUpdate("INSERT INTO change_log (entity, entity_key) VALUES (?, ?)", rows));
+    }
+
+    /**
+     * Retrieves changes with a sequence number greater than the given one.
+     * 
+     * @param afterSeq the last sequence number already seen
+     * @param limit the most rows to return
+     * @return changes in sequence order
+     */
+    public List<ChangeLogEntry> findAfter(long afterSeq, int limit) {
+        String sql = "SELECT seq, entity, entity_key FROM change_log WHERE seq > ? ORDER BY seq LIMIT ?";
+        return listings.call("ChangeLogRepository.findAfter", jdbc -> jdbc.query(sql,
+            (rs, rowNum) -> new ChangeLogEntry(rs.getLong("seq"), rs.getString("entity"), rs.getString("entity_key")),
+            afterSeq, limit));
+    }
+
+    /**
+     * Returns the highest sequence number written so far, or 0 if the log is empty.
+     */
+    public long latestSequence() {
+        Long seq = listings.call("ChangeLogRepository.latestSequence",
+            jdbc -> jdbc.queryForObject("SELECT MAX(seq) FROM change_log", Long.class));
+        return seq != null ? seq : 0;
+    }
+
+    /**
+     * Deletes changes recorded before the given time.
+     * 
+     * @param cutoff rows created before this instant are removed
+     * @return the number of rows removed
+     */
+    public int deleteOlderThan(Timestamp cutoff) {
+        return writes.call("ChangeLogRepository.deleteOlderThan",
+            jdbc -> jdbc.update("DELETE FROM change_log WHERE created_at < ?", cutoff));
+    }
+}
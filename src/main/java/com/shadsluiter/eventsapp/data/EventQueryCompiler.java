@@ -0,0 +1,204 @@
+package com.shadsluiter.eventsapp.data;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.shadsluiter.eventsapp.models.EventFacets;
+import com.shadsluiter.eventsapp.models.EventSearch;
+
+/**
+ * Compiles an EventSearch into one parameterized SQL statement.
+ *
+ * The statement's text depends only on which criteria are set, its shape, so
+ * there are 32 possible statements. Each is built once and cached, and the
+ * values always travel as bind parameters, which also lets the driver reuse
+ * its prepared statement.
+ *
+ * Every criterion except free text is an index range or lookup: organizerid
+ * equality, date BETWEEN, and name and location prefixes with LIKE 'x%'.
+ * Free text is a LIKE '%x%' over name and description, which no B-tree index
+ * can serve, so the database applies it to the rows the other criteria select.
+ *
+ * With a date range, the statement is the same UNION ALL as
+ * EventRepository.findByDateRange: one-off events dated in the range plus
+ * recurring series overlapping it. Results are ordered by date and ID.
+ *
+ * Facet counts wrap the same statement, selecting only FACET_COLUMNS, in one
+ * GROUP BY, so every matching row is read once however many facets there are.
+ */
+final class EventQueryCompiler {
+
+    private static final int TEXT = 1;
+    private static final int NAME = 2;
+    private static final int LOCATION = 4;
+    private static final int ORGANIZER = 8;
+    private static final int DATES = 16;
+
+    /** The select list for searches passed to facetSql */
+    static final String FACET_COLUMNS = "location, date, organizerid";
+
+    private final String columns;
+    private final ConcurrentHashMap<Integer, String> statements = new ConcurrentHashMap<>();
+
+    /**
+     * @param columns the select list, e.g. EventRepository's EVENT_COLUMNS
+     */
+    EventQueryCompiler(String columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Compiles the search against the events table.
+     *
+     * @param search the criteria; blank strings count as unset
+     * @return the statement, without ORDER BY or LIMIT, and its parameters
+     */
+    Compiled compile(EventSearch search) {
+        String text = blankToNull(search.getSearchString());
+        String name = blankToNull(search.getName());
+        String location = blankToNull(search.getLocation());
+        Long organizerid = search.getOrganizerid();
+        boolean dates = search.getFrom() != null || search.getTo() != null;
+
+        int shape = (text != null ? TEXT : 0) | (name != null ? NAME : 0) | (location != null ? LOCATION : 0)
+            | (organizerid != null ? ORGANIZER : 0) | (dates ? DATES : 0);
+        String sql = statements.computeIfAbsent(shape, this::build);
+
+        List<Object> filters = new ArrayList<>(5);
+        if (organizerid != null) {
+            filters.add(organizerid);
+        }
+        if (name != null) {
+            filters.add(escapeLike(name) + "%");
+        }
+        if (location != null) {
+            filters.add(escapeLike(location) + "%");
+        }
+        if (text != null) {
+            String contains = "%" + escapeLike(text) + "%";
+            filters.add(contains);
+            filters.add(contains);
+        }
+
+        List<Object> args = new ArrayList<>(filters.size() * 2 + 4);
+        if (!dates) {
+            args.addAll(filters);
+        } else {
+            LocalDate lower = search.getFrom() != null ? search.getFrom() : LocalDate.of(1, 1, 1);
+            LocalDate upper = search.getTo() != null ? search.getTo() : LocalDate.of(9999, 12, 31);
+            args.add(lower);
+            args.add(upper);
+            args.addAll(filters);
+            args.add(upper);
+            args.add(lower);
+            args.addAll(filters);
+        }
+        return new Compiled(sql, args.toArray(), shape);
+    }
+
+    /**
+     * Returns the search's row limit, DEFAULT_LIMIT when unset and at most MAX_LIMIT.
+     */
+    static int limitOf(EventSearch search) {
+        Integer limit = search.getLimit();
+        return limit == null ? EventSearch.DEFAULT_LIMIT : Math.max(1, Math.min(limit, EventSearch.MAX_LIMIT));
+    }
+
+    /**
+     * Wraps a search compiled with FACET_COLUMNS in a GROUP BY that counts its
+     * matches per location, month and organizer.
+     */
+    static String facetSql(Compiled query) {
+        return "SELECT location, YEAR(date) AS y, MONTH(date) AS m, organizerid, COUNT(*) AS n FROM (" + query.sql +
+               ") matched GROUP BY location, YEAR(date), MONTH(date), organizerid";
+    }
+
+    /**
+     * Returns a handler adding each facetSql row to the facets. One-off matches
+     * lie within the search's dates, so a row dated before them is a recurring
+     * series and counts in the month of the first date.
+     */
+    static RowCallbackHandler facetCollector(EventSearch search, EventFacets facets) {
+        YearMonth first = search.getFrom() != null ? YearMonth.from(search.getFrom()) : null;
+        return rs -> {
+            YearMonth month = YearMonth.of(rs.getInt("y"), rs.getInt("m"));
+            if (first != null && month.isBefore(first)) {
+                month = first;
+            }
+            long organizerid = rs.getLong("organizerid");
+            Long organizer = rs.wasNull() ? null : organizerid;
+            facets.add(rs.getString("location"), month.toString(), organizer, rs.getLong("n"));
+        };
+    }
+
+    /**
+     * Returns the number of statement shapes compiled so far.
+     */
+    int getCachedShapes() {
+        return statements.size();
+    }
+
+    private String build(int shape) {
+        StringBuilder filters = new StringBuilder();
+        if ((shape & ORGANIZER) != 0) {
+            filters.append(" AND organizerid = ?");
+        }
+        if ((shape & NAME) != 0) {
+            filters.append(" AND name LIKE ?");
+        }
+        if ((shape & LOCATION) != 0) {
+            filters.append(" AND location LIKE ?");
+        }
+        if ((shape & TEXT) != 0) {
+            filters.append(" AND (name LIKE ? OR description LIKE ?)");
+        }
+
+        String select = "SELECT " + columns + " FROM events WHERE ";
+        if ((shape & DATES) == 0) {
+            return select + "1 = 1" + filters;
+        }
+        return select + "date BETWEEN ? AND ? AND recurrence IS NULL" + filters +
+               " UNION ALL " + select + "recurrence IS NOT NULL AND date <= ? AND (recurrence_end IS NULL OR recurrence_end >= ?)" + filters;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    /**
+     * Escapes LIKE wildcards so user input only matches literally.
+     */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * A compiled search: the SQL text shared by every search of its shape, and this search's values.
+     */
+    static final class Compiled {
+        final String sql;
+        final Object[] args;
+        final int shape;
+
+        Compiled(String sql, Object[] args, int shape) {
+            this.sql = sql;
+            this.args = args;
+            this.shape = shape;
+        }
+
+        /**
+         * Returns the parameters followed by extra ones, e.g. a LIMIT.
+         */
+        Object[] argsWith(Object... extra) {
+            Object[] all = new Object[args.length + extra.length];
+            System.arraycopy(args, 0, all, 0, args.length);
+            System.arraycopy(extra, 0, all, args.length, extra.length);
+            return all;
+        }
+    }
+}
@@ -1,57 +1,120 @@
 package com.shadsluiter.eventsapp.data;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.shadsluiter.eventsapp.models.EventEntity;
+import com.shadsluiter.eventsapp.models.EventFacets;
+import com.shadsluiter.eventsapp.models.EventSearch;
+import com.shadsluiter.eventsapp.models.EventView;
+import com.shadsluiter.eventsapp.models.RecurrenceRule;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
- * JDBC-based repository implementation for EventEntity.
+ * JDBC-based repository implementation for events: reads return immutable
+ * EventViews mapped straight from the rows, writes take EventEntity.
  * 
  * Provides custom SQL queries to manage events without using Spring Data JPA.
+ * 
+ * Past events are moved to the events_archive table by the archive job. Queries
+ * read only the hot events table unless the caller asks for history, either with
+ * an explicit flag or with a date range reaching past the archive horizon.
+ * 
+ * Every write also records the changed event ID in change_log, in the same
+ * transaction, so other app instances can evict it from their caches.
+ * 
+ * Statements run in QueryBulkheads by class: searches, listings and lookups by
+ * ID, and writes each have their own concurrency budget and query timeout.
+ * 
+ * Replaced by ShardedEventRepository when app.sharding.enabled=true.
  */
 @Repository
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "false", matchIfMissing = true)
 public class EventRepository implements EventRepositoryInterface {
 
-    private final JdbcTemplate jdbcTemplate;
+    /** Most IDs bound into a single IN (...) query */
+    private static final int ID_CHUNK_SIZE = 500;
+
+    /** Columns shared by events and events_archive, in the same order */
+    private static final String EVENT_COLUMNS = "id, name, date, location, organizerid, description, recurrence, recurrence_end, capacity, version";
+
+    private final QueryBulkheads.Bulkhead searches;
+    private final QueryBulkheads.Bulkhead listings;
+    private final QueryBulkheads.Bulkhead writes;
+    private final ChangeLogRepository changeLog;
+    private final int archiveHorizonDays;
+    private final EventQueryCompiler queryCompiler = new EventQueryCompiler(EVENT_COLUMNS);
+    private final EventQueryCompiler facetCompiler = new EventQueryCompiler(EventQueryCompiler.FACET_COLUMNS);
 
     /**
-     * Constructs the repository with a JdbcTemplate instance.
+     * Constructs the repository with a JdbcTemplate instance and no bulkheads.
      * 
      * @param jdbcTemplate Spring JDBC template for database access
+     * @param changeLog the change log recording each write
+     * @param archiveHorizonDays events older than this many days may live in the archive
+     */
+    public EventRepository(JdbcTemplate jdbcTemplate, ChangeLogRepository changeLog, int archiveHorizonDays) {
+        this(new QueryBulkheads(jdbcTemplate), changeLog, archiveHorizonDays);
+    }
+
+    /**
+     * Constructs the repository with bulkheads for each class of query.
+     * 
+     * @param bulkheads the budgets and JDBC templates for searches, listings and writes
+     * @param changeLog the change log recording each write
+     * @param archiveHorizonDays events older than this many days may live in the archive
      */
     @Autowired
-    public EventRepository(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public EventRepository(QueryBulkheads bulkheads, ChangeLogRepository changeLog,
+                           @Value("${app.archive.horizonDays:365}") int archiveHorizonDays) {
+        this.searches = bulkheads.get(QueryBulkheads.QueryClass.SEARCH);
+        this.listings = bulkheads.get(QueryBulkheads.QueryClass.LISTING);
+        this.writes = bulkheads.get(QueryBulkheads.QueryClass.WRITES);
+        this.changeLog = changeLog;
+        this.archiveHorizonDays = archiveHorizonDays;
     }
 
     /**
      * Retrieves all events created by a specific organizer.
      * 
      * @param organizerid the ID of the organizer
-     * @return list of matching EventEntity objects
+     * @return list of matching EventView objects
      */
     @Override
-    public List<EventEntity> findByOrganizerid(Long organizerid) {
+    public List<EventView> findByOrganizerid(Long organizerid) {
         String sql = "SELECT * FROM events WHERE organizerid = ?";
-        return jdbcTemplate.query(sql, new Object[]{organizerid}, new EventModelRowMapper());
+        return listings.call("EventRepository.findByOrganizerid", jdbc -> jdbc.query(sql, new Object[]{organizerid}, new EventViewRowMapper()));
     }
 
     /**
      * Retrieves all events from the database.
      * 
-     * @return list of all EventEntity objects
+     * @return list of all EventView objects
      */
     @Override
-    public List<EventEntity> findAll() {
+    public List<EventView> findAll() {
         String sql = "SELECT * FROM events";
-        return jdbcTemplate.query(sql, new EventModelRowMapper());
+        return listings.call("EventRepository.findAll", jdbc -> jdbc.query(sql, new EventViewRowMapper()));
     }
 
     /**
@@ -60,9 +123,11 @@ public class EventRepository implements EventRepositoryInterface {
      * @param id the ID of the event to delete
      */
     @Override
+    @Transactional
     public void deleteById(Long id) {
         String sql = "DELETE FROM events WHERE id = ?";
-        jdbcTemplate.update(sql, id);
+        writes.call("EventRepository.deleteById", jdbc -> jdbc.update(sql, id));
+        changeLog.record(ChangeLogRepository.EVENT, id.toString());
     }
 
     /**
@@ -72,32 +137,154 @@ public class EventRepository implements EventRepositoryInterface {
      * @return the saved EventEntity with generated ID
      */
     @Override
+    @Transactional
     public EventEntity save(EventEntity event) {
-        String sql = "INSERT INTO events (name, date, location, organizerid, description) " +
-                     "VALUES (?, ?, ?, ?, ?)";
-        jdbcTemplate.update(sql,
+        String sql = "INSERT INTO events (name, date, location, organizerid, description, recurrence, recurrence_end, capacity) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        Long id = writes.call("EventRepository.save", jdbc -> {
+            jdbc.update(sql,
+                event.getName(),
+                event.getDate(),
+                event.getLocation(),
+                event.getOrganizerid(),
+                event.getDescription(),
+                event.getRecurrence(),
+                recurrenceEnd(event),
+                event.getCapacity()
+            );
+            return jdbc.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+        });
+        event.setId(id);
+        changeLog.record(ChangeLogRepository.EVENT, id.toString());
+        return event;
+    }
+
+    /**
+     * Updates an existing event in place and increments its version.
+     * 
+     * With an expected version the update is a compare-and-set on the version
+     * column, so a concurrent writer is detected without holding any lock
+     * between reading the event and writing it back.
+     * 
+     * The new version is handed back through LAST_INSERT_ID(expr) on the
+     * connection that ran the UPDATE, so it is the version this update wrote even
+     * when another writer updates the event straight after.
+     * 
+     * @param event the new event data, with the ID of the event to update
+     * @param expectedVersion the version the caller last read, or null to update unconditionally
+     * @return the updated EventEntity with its new version
+     * @throws EmptyResultDataAccessException if no event has the ID
+     * @throws OptimisticLockingFailureException if the event's version is not expectedVersion
+     */
+    @Override
+    @Transactional
+    public EventEntity update(EventEntity event, Long expectedVersion) {
+        String sql = "UPDATE events SET name = ?, date = ?, location = ?, organizerid = ?, description = ?, " +
+                     "recurrence = ?, recurrence_end = ?, capacity = ?, version = LAST_INSERT_ID(version + 1) WHERE id = ?" +
+                     (expectedVersion != null ? " AND version = ?" : "");
+        List<Object> args = new ArrayList<>(Arrays.asList(
             event.getName(),
             event.getDate(),
             event.getLocation(),
             event.getOrganizerid(),
-            event.getDescription()
-        );
+            event.getDescription(),
+            event.getRecurrence(),
+            recurrenceEnd(event),
+            event.getCapacity(),
+            event.getId()
+        ));
+        if (expectedVersion != null) {
+            args.add(expectedVersion);
+        }
 
-        Long id = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
-        event.setId(id);
+        Long version = writes.call("EventRepository.update", jdbc -> jdbc.execute((ConnectionCallback<Long>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                new ArgumentPreparedStatementSetter(args.toArray()).setValues(ps);
+                if (ps.executeUpdate() == 0) {
+                    return null;
+                }
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT LAST_INSERT_ID()")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }));
+        if (version == null) {
+            if (!existsById(event.getId())) {
+                throw new EmptyResultDataAccessException("Event " + event.getId() + " not found", 1);
+            }
+            throw new OptimisticLockingFailureException("Event " + event.getId() + " was modified concurrently");
+        }
+
+        event.setVersion(version);
+        changeLog.record(ChangeLogRepository.EVENT, event.getId().toString());
         return event;
     }
 
+    /**
+     * Reserves a block of event IDs for write-behind creation.
+     * 
+     * The block starts past every stored event, so it cannot overlap IDs handed
+     * out by AUTO_INCREMENT before write-behind was enabled. While it is enabled,
+     * every instance must create events through it, since AUTO_INCREMENT does not
+     * know about reserved IDs that are not inserted yet.
+     * 
+     * @param count the number of IDs to reserve
+     * @return the first reserved ID; the block is [first, first + count)
+     */
+    @Transactional
+    public long allocateIds(int count) {
+        return writes.call("EventRepository.allocateIds", jdbc -> {
+            long next = jdbc.queryForObject("SELECT next_id FROM id_blocks WHERE name = 'events' FOR UPDATE", Long.class);
+            long maxId = jdbc.queryForObject(
+                "SELECT GREATEST(COALESCE((SELECT MAX(id) FROM events), 0), COALESCE((SELECT MAX(id) FROM events_archive), 0))",
+                Long.class);
+            long first = Math.max(next, maxId + 1);
+            jdbc.update("UPDATE id_blocks SET next_id = ? WHERE name = 'events'", first + count);
+            return first;
+        });
+    }
+
+    /**
+     * Inserts events whose IDs were already assigned, in one JDBC batch.
+     * 
+     * @param events the events to insert, each with an ID from allocateIds
+     */
+    @Transactional
+    public void insertAll(List<EventEntity> events) {
+        String sql = "INSERT INTO events (id, name, date, location, organizerid, description, recurrence, recurrence_end, capacity) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        List<Object[]> rows = new ArrayList<>(events.size());
+        List<String> ids = new ArrayList<>(events.size());
+        for (EventEntity event : events) {
+            rows.add(new Object[]{
+                event.getId(),
+                event.getName(),
+                event.getDate(),
+                event.getLocation(),
+                event.getOrganizerid(),
+                event.getDescription(),
+                event.getRecurrence(),
+                recurrenceEnd(event),
+                event.getCapacity()
+            });
+            ids.add(event.getId().toString());
+        }
+        writes.call("EventRepository.insertAll", jdbc -> jdbc.batchUpdate(sql, rows));
+        changeLog.recordAll(ChangeLogRepository.EVENT, ids);
+    }
+
     /**
      * Retrieves an event by its ID.
      * 
      * @param id the ID of the event
-     * @return the matching EventEntity object
+     * @return the matching EventView
      */
     @Override
-    public EventEntity findById(Long id) {
+    public EventView findById(Long id) {
         String sql = "SELECT * FROM events WHERE id = ?";
-        return jdbcTemplate.queryForObject(sql, new Object[]{id}, new EventModelRowMapper());
+        return listings.call("EventRepository.findById", jdbc -> jdbc.queryForObject(sql, new Object[]{id}, new EventViewRowMapper()));
     }
 
     /**
@@ -109,7 +296,7 @@ public class EventRepository implements EventRepositoryInterface {
     @Override
     public boolean existsById(Long id) {
         String sql = "SELECT COUNT(*) FROM events WHERE id = ?";
-        Integer count = jdbcTemplate.queryForObject(sql, new Object[]{id}, Integer.class);
+        Integer count = listings.call("EventRepository.existsById", jdbc -> jdbc.queryForObject(sql, new Object[]{id}, Integer.class));
         return count != null && count > 0;
     }
 
@@ -117,28 +304,210 @@ public class EventRepository implements EventRepositoryInterface {
      * Searches for events whose descriptions contain the given text.
      * 
      * @param description the search string
-     * @return list of matching EventEntity objects
+     * @return list of matching EventView objects
      */
     @Override
-    public List<EventEntity> findByDescription(String description) { 
+    public List<EventView> findByDescription(String description) { 
         String sql = "SELECT * FROM events WHERE description LIKE ?";
-        return jdbcTemplate.query(sql, ps -> ps.setString(1, "%" + description + "%"), new EventModelRowMapper());
+        return searches.call("EventRepository.findByDescription", jdbc -> jdbc.query(sql, ps -> ps.setString(1, "%" + description + "%"), new EventViewRowMapper()));
+    }
+
+    /**
+     * Retrieves current events matching every criterion of the search, in one
+     * parameterized statement compiled by EventQueryCompiler.
+     * 
+     * @param search the criteria
+     * @return up to the search's limit of matching EventView objects, ordered by date and ID
+     */
+    @Override
+    public List<EventView> search(EventSearch search) {
+        EventQueryCompiler.Compiled query = queryCompiler.compile(search);
+        return searches.call("EventRepository.search", jdbc -> jdbc.query(query.sql + " ORDER BY date, id LIMIT ?", new EventViewRowMapper(),
+            query.argsWith(EventQueryCompiler.limitOf(search))));
+    }
+
+    /**
+     * Returns the database's plan for a search, as EXPLAIN reports it.
+     * 
+     * @param search the criteria
+     * @return one map per plan row, keyed by EXPLAIN's column names
+     */
+    @Override
+    public List<Map<String, Object>> explain(EventSearch search) {
+        EventQueryCompiler.Compiled query = queryCompiler.compile(search);
+        return searches.call("EventRepository.explain", jdbc -> jdbc.queryForList("EXPLAIN " + query.sql + " ORDER BY date, id LIMIT ?",
+            query.argsWith(EventQueryCompiler.limitOf(search))));
+    }
+
+    /**
+     * Counts every event matching the search per location, month and organizer,
+     * in one grouped query over the matching rows.
+     * 
+     * @param search the criteria; the limit does not apply
+     * @return the facet counts
+     */
+    @Override
+    public EventFacets facets(EventSearch search) {
+        EventQueryCompiler.Compiled query = facetCompiler.compile(search);
+        EventFacets facets = new EventFacets();
+        return searches.call("EventRepository.facets", jdbc -> {
+            jdbc.query(EventQueryCompiler.facetSql(query), EventQueryCompiler.facetCollector(search, facets), query.args);
+            return facets;
+        });
+    }
+
+    /**
+     * Retrieves all events with the given IDs.
+     * 
+     * IDs are sent in chunks of up to ID_CHUNK_SIZE per IN (...) query, so a large
+     * batch costs a handful of primary key lookups rather than one round trip per ID.
+     * Results are in no particular order and IDs that do not exist are simply absent.
+     * 
+     * @param ids the IDs to look up
+     * @return list of matching EventView objects
+     */
+    @Override
+    public List<EventView> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Long> idList = new ArrayList<>(ids);
+        List<EventView> events = new ArrayList<>(idList.size());
+        for (int from = 0; from < idList.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = idList.subList(from, Math.min(from + ID_CHUNK_SIZE, idList.size()));
+            String sql = "SELECT * FROM events WHERE id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            events.addAll(listings.call("EventRepository.findAllById", jdbc -> jdbc.query(sql, new EventViewRowMapper(), chunk.toArray())));
+        }
+        return events;
+    }
+
+    /**
+     * Retrieves all events, optionally including archived ones.
+     * 
+     * @param includeArchived true to union in the events_archive table
+     * @return list of EventView objects
+     */
+    @Override
+    public List<EventView> findAll(boolean includeArchived) {
+        if (!includeArchived) {
+            return findAll();
+        }
+        String sql = "SELECT " + EVENT_COLUMNS + " FROM events " +
+                     "UNION ALL SELECT " + EVENT_COLUMNS + " FROM events_archive";
+        return listings.call("EventRepository.findAll", jdbc -> jdbc.query(sql, new EventViewRowMapper()));
+    }
+
+    /**
+     * Retrieves events whose date falls within the given range, inclusive.
+     * 
+     * The archive is only read when requested or when the range starts before
+     * the archive horizon, since newer events are never archived.
+     * 
+     * Recurring events are returned once, as the stored series, when any of their
+     * occurrences may fall within the range; the caller expands the occurrences.
+     * 
+     * @param from the first date, or null for no lower bound
+     * @param to the last date, or null for no upper bound
+     * @param includeArchived true to always union in the events_archive table
+     * @return list of matching EventView objects ordered by date
+     */
+    @Override
+    public List<EventView> findByDateRange(LocalDate from, LocalDate to, boolean includeArchived) {
+        LocalDate lower = from != null ? from : LocalDate.of(1, 1, 1);
+        LocalDate upper = to != null ? to : LocalDate.of(9999, 12, 31);
+        boolean history = includeArchived || lower.isBefore(LocalDate.now().minusDays(archiveHorizonDays));
+
+        if (!history) {
+            String sql = dateRangeSql("events") + " ORDER BY date, id";
+            return listings.call("EventRepository.findByDateRange", jdbc -> jdbc.query(sql, new EventViewRowMapper(), lower, upper, upper, lower));
+        }
+        String sql = dateRangeSql("events") + " UNION ALL " + dateRangeSql("events_archive") + " ORDER BY date, id";
+        return listings.call("EventRepository.findByDateRange", jdbc -> jdbc.query(sql, new EventViewRowMapper(), lower, upper, upper, lower, lower, upper, upper, lower));
+    }
+
+    /**
+     * Builds the date range query for one table: one-off events dated within the
+     * range, plus recurring series that start before the range ends and have not
+     * ended before it starts. Takes the bounds as lower, upper, upper, lower.
+     * 
+     * @param table events or events_archive
+     * @return the SQL without ORDER BY
+     */
+    private static String dateRangeSql(String table) {
+        return "SELECT " + EVENT_COLUMNS + " FROM " + table + " WHERE date BETWEEN ? AND ? AND recurrence IS NULL" +
+               " UNION ALL SELECT " + EVENT_COLUMNS + " FROM " + table +
+               " WHERE recurrence IS NOT NULL AND date <= ? AND (recurrence_end IS NULL OR recurrence_end >= ?)";
+    }
+
+    /**
+     * Computes the recurrence_end column: the last possible occurrence of a
+     * recurring event, or null for one-off events and series without an end.
+     * 
+     * @param event the event being saved
+     * @return the end date, or null
+     */
+    private static LocalDate recurrenceEnd(EventEntity event) {
+        if (event.getRecurrence() == null) {
+            return null;
+        }
+        return RecurrenceRule.parse(event.getRecurrence()).lastOccurrence(event.getDate());
+    }
+
+    /**
+     * Moves one batch of events dated before the horizon into events_archive.
+     * 
+     * Recurring events are only archived once their series has ended.
+     * 
+     * The batch is copied and deleted in a single short transaction, so rows are
+     * never visible in both tables or in neither. Callers repeat until fewer than
+     * batchSize rows are moved.
+     * 
+     * @param horizon events dated strictly before this day are archived
+     * @param batchSize the most events to move in this transaction
+     * @return the number of events moved
+     */
+    @Override
+    @Transactional
+    public int archiveOlderThan(LocalDate horizon, int batchSize) {
+        List<Long> ids = writes.call("EventRepository.archiveOlderThan", jdbc -> jdbc.queryForList(
+            "SELECT id FROM events WHERE date < ? AND (recurrence IS NULL OR recurrence_end < ?) ORDER BY id LIMIT ? FOR UPDATE",
+            Long.class, horizon, horizon, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String in = " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        Object[] args = ids.toArray();
+        writes.call("EventRepository.archiveOlderThan", jdbc -> {
+            jdbc.update("INSERT INTO events_archive (" + EVENT_COLUMNS + ") SELECT " + EVENT_COLUMNS + " FROM events" + in, args);
+            return jdbc.update("DELETE FROM events" + in, args);
+        });
+        changeLog.recordAll(ChangeLogRepository.EVENT, ids.stream().map(String::valueOf).toList());
+        return ids.size();
     }
 
     /**
-     * Maps database rows to EventEntity objects.
+     * Maps database rows straight to immutable EventView objects.
      */
-    private static class EventModelRowMapper implements RowMapper<EventEntity> {
+    private static class EventViewRowMapper implements RowMapper<EventView> {
         @Override
-        public EventEntity mapRow(ResultSet rs, int rowNum) throws SQLException {
-            EventEntity event = new EventEntity();
-            event.setId(rs.getLong("id"));
-            event.setName(rs.getString("name"));
-            event.setDate(rs.getDate("date"));
-            event.setLocation(rs.getString("location"));
-            event.setOrganizerid(rs.getString("organizerid"));
-            event.setDescription(rs.getString("description"));
-            return event;
+        public EventView mapRow(ResultSet rs, int rowNum) throws SQLException {
+            long organizerid = rs.getLong("organizerid");
+            Long organizer = rs.wasNull() ? null : organizerid;
+            int capacity = rs.getInt("capacity");
+            Integer seats = rs.wasNull() ? null : capacity;
+            return new EventView(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getObject("date", LocalDate.class),
+                rs.getString("location"),
+                organizer,
+                rs.getString("description"),
+                rs.getString("recurrence"),
+                seats,
+                rs.getLong("version")
+            );
         }
     }
 }
@@ -1,16 +1,30 @@
 package com.shadsluiter.eventsapp.data;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.shadsluiter.eventsapp.models.EventEntity;
+import com.shadsluiter.eventsapp.models.EventFacets;
+import com.shadsluiter.eventsapp.models.EventSearch;
+import com.shadsluiter.eventsapp.models.EventView;
 
 public interface EventRepositoryInterface {
 
-    List<EventEntity> findByOrganizerid(Long organizerid);
-    List<EventEntity> findAll();
+    List<EventView> findByOrganizerid(Long organizerid);
+    List<EventView> findAll();
     void deleteById(Long id);
     EventEntity save(EventEntity event);
-    EventEntity findById(Long id);
+    EventEntity update(EventEntity event, Long expectedVersion);
+    EventView findById(Long id);
     boolean existsById(Long id);
-    List<EventEntity> findByDescription(String description);
+    List<EventView> findByDescription(String description);
+    List<EventView> search(EventSearch search);
+    List<Map<String, Object>> explain(EventSearch search);
+    EventFacets facets(EventSearch search);
+    List<EventView> findAllById(Collection<Long> ids);
+    List<EventView> findAll(boolean includeArchived);
+    List<EventView> findByDateRange(LocalDate from, LocalDate to, boolean includeArchived);
+    int archiveOlderThan(LocalDate horizon, int batchSize);
 }
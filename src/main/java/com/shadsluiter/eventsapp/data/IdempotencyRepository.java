@@ -0,0 +1,122 @@
+package com.shadsluiter.eventsapp.data;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.shadsluiter.eventsapp.models.IdempotencyRecord;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * JDBC repository for the idempotency_keys table.
+ * 
+ * A request claims its key by inserting a row without a response, so a retry
+ * arriving at another app instance sees the claim through the primary key and
+ * does not repeat the write. The response is filled in once the request ends.
+ * 
+ * Every statement runs in the writes bulkhead.
+ */
+@Repository
+public class IdempotencyRepository {
+
+    private final QueryBulkheads.Bulkhead writes;
+
+    /**
+     * Constructs the repository with a JdbcTemplate instance and no bulkheads.
+     * 
+     * @param jdbcTemplate Spring JDBC template for database access
+     */
+    public IdempotencyRepository(JdbcTemplate jdbcTemplate) {
+        this(new QueryBulkheads(jdbcTemplate));
+    }
+
+    /**
+     * Constructs the repository with the writes bulkhead.
+     * 
+     * @param bulkheads the budgets and JDBC templates, of which idempotency keys use writes
+     */
+    @Autowired
+    public IdempotencyRepository(QueryBulkheads bulkheads) {
+        this.writes = bulkheads.get(QueryBulkheads.QueryClass.WRITES);
+    }
+
+    /**
+     * Retrieves the record for a key.
+     * 
+     * @param keyHash the SHA-256 of the scoped key
+     * @return the record, or null if the key was never claimed
+     */
+    public IdempotencyRecord findByKeyHash(String keyHash) {
+        String sql = "SELECT key_hash, fingerprint, status, response FROM idempotency_keys WHERE key_hash = ?";
+        List<IdempotencyRecord> records = writes.call("IdempotencyRepository.findByKeyHash", jdbc -> jdbc.query(sql, (rs, rowNum) -> {
+            int status = rs.getInt("status");
+            Integer completedStatus = rs.wasNull() ? null : status;
+            return new IdempotencyRecord(
+                rs.getString("key_hash"),
+                rs.getString("fingerprint"),
+                completedStatus,
+                rs.getString("response")
+            );
+        }, keyHash));
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    /**
+     * Claims a key for a request that is about to run.
+     * 
+     * @param keyHash the SHA-256 of the scoped key
+     * @param fingerprint the SHA-256 of the request body
+     * @throws org.springframework.dao.DuplicateKeyException if the key is already claimed
+     */
+    public void claim(String keyHash, String fingerprint) {
+        writes.call("IdempotencyRepository.claim",
+            jdbc -> jdbc.update("INSERT INTO idempotency_keys (key_hash, fingerprint) VALUES (?, ?)", keyHash, fingerprint));
+    }
+
+    /**
+     * Takes over a claim left unfinished by a request that died, e.g. on an instance that crashed.
+     * 
+     * @param keyHash the SHA-256 of the scoped key
+     * @param cutoff only claims made before this instant are taken over
+     * @return true if the claim was taken over
+     */
+    public boolean takeOver(String keyHash, Timestamp cutoff) {
+        String sql = "UPDATE idempotency_keys SET created_at = CURRENT_TIMESTAMP WHERE key_hash = ? AND status IS NULL AND created_at < ?";
+        return writes.call("IdempotencyRepository.takeOver", jdbc -> jdbc.update(sql, keyHash, cutoff)) == 1;
+    }
+
+    /**
+     * Stores the response of a claimed key.
+     * 
+     * @param keyHash the SHA-256 of the scoped key
+     * @param status the HTTP status of the response
+     * @param response the response body as JSON
+     */
+    public void complete(String keyHash, int status, String response) {
+        writes.call("IdempotencyRepository.complete",
+            jdbc -> jdbc.update("UPDATE idempotency_keys SET status = ?, response = ? WHERE key_hash = ?", status, response, keyHash));
+    }
+
+    /**
+     * Releases a claim whose request failed, so that a retry runs again.
+     * 
+     * @param keyHash the SHA-256 of the scoped key
+     */
+    public void release(String keyHash) {
+        writes.call("IdempotencyRepository.release",
+            jdbc -> jdbc.update("DELETE FROM idempotency_keys WHERE key_hash = ? AND status IS NULL", keyHash));
+    }
+
+    /**
+     * Deletes keys claimed before the given time.
+     * 
+     * @param cutoff rows created before this instant are removed
+     * @return the number of rows removed
+     */
+    public int deleteOlderThan(Timestamp cutoff) {
+        return writes.call("IdempotencyRepository.deleteOlderThan",
+            jdbc -> jdbc.update("DELETE FROM idempotency_keys WHERE created_at < ?", cutoff));
+    }
+}
@@ -0,0 +1,22 @@
+package com.shadsluiter.eventsapp.data;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * Thrown when an update would change the organizer of an event in a store
+ * that places events by organizer, such as ShardedEventRepository.
+ *
+ * The event's ID encodes where it is stored, so it cannot follow a new
+ * organizer without changing its ID and orphaning its RSVPs and links.
+ */
+public class OrganizerChangeException extends InvalidDataAccessApiUsageException {
+
+    /**
+     * Creates the exception.
+     *
+     * @param message the detail message
+     */
+    public OrganizerChangeException(String message) {
+        super(message);
+    }
+}
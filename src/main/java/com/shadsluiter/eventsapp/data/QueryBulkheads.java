@@ -0,0 +1,311 @@
+package com.shadsluiter.eventsapp.data;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.shadsluiter.eventsapp.config.QueryBulkheadProperties;
+import com.shadsluiter.eventsapp.monitoring.RepositoryCallEvent;
+import com.shadsluiter.eventsapp.monitoring.RequestTiming;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bulkheads between the classes of query the repositories run.
+ *
+ * Each class has its own budget of connections and its own JdbcTemplate with
+ * that class's statement timeout. A statement waits at most maxWaitMs for a slot
+ * and is otherwise rejected with BulkheadFullException, so a pile-up of slow
+ * description scans fills only the search budget and leaves connections for
+ * logins, lookups by ID and writes. Every repository on the primary database
+ * runs its statements through these bulkheads.
+ *
+ * A statement outside a transaction holds its slot while it runs. Within a
+ * transaction, the first statement's slot is held until the transaction
+ * completes, as its connection is, and later statements of any class reuse it,
+ * so a transaction never waits for a second slot. Transactions only take their
+ * connection at their first statement (see DataSourceConfig), so none holds a
+ * connection while waiting for its slot.
+ *
+ * The configured budgets must fit in the connection pool: startup fails if they
+ * add up to more than its maximum size.
+ *
+ * Rejections, timeouts and statements in flight are exported per class, and
+ * each call, including any wait for a slot, counts as the db phase of a
+ * sampled RequestTiming and is recorded as a JFR RepositoryCallEvent.
+ */
+@Component
+public class QueryBulkheads implements MeterBinder {
+
+    /**
+     * The classes of query, each with its own budget.
+     */
+    public enum QueryClass {
+        SEARCH, LISTING, WRITES, AUTH
+    }
+
+    private final Map<QueryClass, Bulkhead> bulkheads = new EnumMap<>(QueryClass.class);
+
+    /**
+     * Constructs bulkheads that share one unbounded JdbcTemplate, for tests and
+     * tools that construct repositories directly.
+     *
+     * @param jdbcTemplate the template every class uses as is
+     */
+    public QueryBulkheads(JdbcTemplate jdbcTemplate) {
+        for (QueryClass queryClass : QueryClass.values()) {
+            bulkheads.put(queryClass, new Bulkhead(this, queryClass, jdbcTemplate, 0, 0));
+        }
+    }
+
+    /**
+     * Constructs the configured bulkheads.
+     *
+     * @param jdbcTemplate the application's template, whose DataSource every class shares
+     * @param properties the budgets and timeouts
+     * @throws IllegalStateException if the budgets add up to more connections than the pool holds
+     */
+    @Autowired
+    public QueryBulkheads(JdbcTemplate jdbcTemplate, QueryBulkheadProperties properties) {
+        if (!properties.isEnabled()) {
+            for (QueryClass queryClass : QueryClass.values()) {
+                bulkheads.put(queryClass, new Bulkhead(this, queryClass, jdbcTemplate, 0, 0));
+            }
+            return;
+        }
+        int budgets = properties.getSearch().getMaxConcurrent() + properties.getListing().getMaxConcurrent()
+            + properties.getWrites().getMaxConcurrent() + properties.getAuth().getMaxConcurrent();
+        int poolSize = maximumPoolSize(jdbcTemplate.getDataSource());
+        if (poolSize > 0 && budgets > poolSize) {
+            throw new IllegalStateException("app.bulkheads budgets add up to " + budgets
+                + " connections, but the connection pool holds at most " + poolSize
+                + "; lower the budgets or raise spring.datasource.hikari.maximum-pool-size");
+        }
+        long maxWaitMs = properties.getMaxWaitMs();
+        bulkheads.put(QueryClass.SEARCH, new Bulkhead(this, QueryClass.SEARCH, withTimeout(jdbcTemplate, properties.getSearch()),
+            properties.getSearch().getMaxConcurrent(), maxWaitMs));
+        bulkheads.put(QueryClass.LISTING, new Bulkhead(this, QueryClass.LISTING, withTimeout(jdbcTemplate, properties.getListing()),
+            properties.getListing().getMaxConcurrent(), maxWaitMs));
+        bulkheads.put(QueryClass.WRITES, new Bulkhead(this, QueryClass.WRITES, withTimeout(jdbcTemplate, properties.getWrites()),
+            properties.getWrites().getMaxConcurrent(), maxWaitMs));
+        bulkheads.put(QueryClass.AUTH, new Bulkhead(this, QueryClass.AUTH, withTimeout(jdbcTemplate, properties.getAuth()),
+            properties.getAuth().getMaxConcurrent(), maxWaitMs));
+    }
+
+    /**
+     * Returns the most connections a Hikari pool behind the DataSource holds, or
+     * 0 if it is not a Hikari pool.
+     */
+    private static int maximumPoolSize(DataSource dataSource) {
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            // Not a pool we can inspect.
+        }
+        return 0;
+    }
+
+    private static JdbcTemplate withTimeout(JdbcTemplate jdbcTemplate, QueryBulkheadProperties.Budget budget) {
+        JdbcTemplate template = new JdbcTemplate(jdbcTemplate.getDataSource());
+        template.setExceptionTranslator(jdbcTemplate.getExceptionTranslator());
+        template.setQueryTimeout(budget.getQueryTimeoutSeconds());
+        return template;
+    }
+
+    /**
+     * Returns the bulkhead for a class of query.
+     *
+     * @param queryClass the class of query
+     * @return its bulkhead
+     */
+    public Bulkhead get(QueryClass queryClass) {
+        return bulkheads.get(queryClass);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            String name = bulkhead.queryClass.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("eventsapp.db.bulkhead.active", bulkhead, Bulkhead::getActive)
+                .description("Statements of this class currently running")
+                .tag("class", name)
+                .register(registry);
+            FunctionCounter.builder("eventsapp.db.bulkhead.rejected", bulkhead, Bulkhead::getRejected)
+                .description("Statements rejected because their class's budget was full")
+                .tag("class", name)
+                .register(registry);
+            FunctionCounter.builder("eventsapp.db.bulkhead.timeouts", bulkhead, Bulkhead::getTimeouts)
+                .description("Statements cancelled by their class's query timeout")
+                .tag("class", name)
+                .register(registry);
+        }
+    }
+
+    /**
+     * One class's budget of connections and its JdbcTemplate.
+     */
+    public static final class Bulkhead {
+
+        /** Bound to a transaction that holds a slot of any class of the owning QueryBulkheads */
+        private final Object transactionKey;
+        private final QueryClass queryClass;
+        private final JdbcTemplate jdbcTemplate;
+        private final Semaphore slots;
+        private final long maxWaitMs;
+        private final AtomicLong active = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+
+        Bulkhead(Object transactionKey, QueryClass queryClass, JdbcTemplate jdbcTemplate, int maxConcurrent, long maxWaitMs) {
+            this.transactionKey = transactionKey;
+            this.queryClass = queryClass;
+            this.jdbcTemplate = jdbcTemplate;
+            this.slots = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        /**
+         * Runs statements on this class's JdbcTemplate within its budget.
+         *
+         * Within a transaction that already holds a slot, the call runs at once.
+         * Otherwise it takes a slot, which a transaction keeps until it completes.
+         *
+         * The call is recorded as a RepositoryCallEvent when JFR is recording it.
+         *
+         * @param operation the repository and method, e.g. EventRepository.findById
+         * @param statement runs the statements, usually one
+         * @return the statement's result
+         * @throws BulkheadFullException if no slot is free within the wait time
+         * @throws QueryTimeoutException if a statement exceeds the class's timeout
+         */
+        public <T> T call(String operation, Function<JdbcTemplate, T> statement) {
+            long start = RequestTiming.start();
+            RepositoryCallEvent event = new RepositoryCallEvent();
+            event.begin();
+            boolean release = false;
+            if (slots != null && !TransactionSynchronizationManager.hasResource(transactionKey)) {
+                if (!acquire()) {
+                    RequestTiming.record(RequestTiming.DB, start);
+                    commit(event, operation, null, true);
+                    rejected.incrementAndGet();
+                    throw new BulkheadFullException("Too many " + queryClass.name().toLowerCase(Locale.ROOT) + " queries, please retry shortly", 1);
+                }
+                release = !holdForTransaction();
+            }
+            active.incrementAndGet();
+            T result = null;
+            boolean failed = true;
+            try {
+                result = statement.apply(jdbcTemplate);
+                failed = false;
+                return result;
+            } catch (QueryTimeoutException e) {
+                timeouts.incrementAndGet();
+                throw e;
+            } finally {
+                active.decrementAndGet();
+                if (release) {
+                    slots.release();
+                }
+                RequestTiming.record(RequestTiming.DB, start);
+                commit(event, operation, result, failed);
+            }
+        }
+
+        private void commit(RepositoryCallEvent event, String operation, Object result, boolean failed) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.queryClass = queryClass.name();
+                event.rows = rows(result);
+                event.failed = failed;
+                event.commit();
+            }
+        }
+
+        /**
+         * Counts the rows in a statement's result: list sizes for reads, update
+         * counts for writes, and one for any other single value.
+         */
+        private long rows(Object result) {
+            if (result instanceof Collection<?> list) {
+                return list.size();
+            }
+            if (result instanceof int[] counts) {
+                long rows = 0;
+                for (int count : counts) {
+                    rows += Math.max(0, count);
+                }
+                return rows;
+            }
+            if (queryClass == QueryClass.WRITES && result instanceof Integer count) {
+                return count;
+            }
+            return result != null ? 1 : 0;
+        }
+
+        /**
+         * Keeps the slot just taken until the current transaction completes.
+         *
+         * @return false if no transaction on this DataSource is active, so the caller releases the slot itself
+         */
+        private boolean holdForTransaction() {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()
+                    || !TransactionSynchronizationManager.isActualTransactionActive()
+                    || !TransactionSynchronizationManager.hasResource(jdbcTemplate.getDataSource())) {
+                return false;
+            }
+            TransactionSynchronizationManager.bindResource(transactionKey, this);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(transactionKey);
+                    slots.release();
+                }
+            });
+            return true;
+        }
+
+        private boolean acquire() {
+            try {
+                return slots.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        public long getActive() {
+            return active.get();
+        }
+
+        public long getRejected() {
+            return rejected.get();
+        }
+
+        public long getTimeouts() {
+            return timeouts.get();
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package com.shadsluiter.eventsapp.data;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shadsluiter.eventsapp.models.AttendanceModel;
+import com.shadsluiter.eventsapp.models.RsvpEntity;
+import com.shadsluiter.eventsapp.models.RsvpStatus;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC repository for the rsvps, event_attendance and rsvp_leases tables.
+ *
+ * All three live in the primary database even when events are sharded, and
+ * none touches the events table, so RSVP writes never lock an event row.
+ *
+ * event_attendance holds one row per event with its capacity and counts. The
+ * capacity is only ever written by storeCapacity, when the event is saved. Every
+ * transaction that changes an event's RSVPs, counts or leases first locks that
+ * row, so they are serialized across all app instances, and each locks a single
+ * event. These transactions run once per batch or per lease, not per RSVP.
+ *
+ * rsvp_leases holds the seats each app instance has taken from an event in
+ * advance and not yet used. A lease is only granted from seats that are neither
+ * attending nor leased, so the attending count plus every unexpired lease never
+ * exceeds the capacity, and an instance can hand out its leased seats without
+ * asking the database.
+ *
+ * Every statement runs in the writes bulkhead. A transaction runs within a single
+ * call, so it holds one slot from its first statement to its commit.
+ */
+@Repository
+public class RsvpRepository {
+
+    private final QueryBulkheads.Bulkhead writes;
+    private final TransactionTemplate transactions;
+
+    /**
+     * Constructs the repository with a JdbcTemplate instance, without bulkheads.
+     *
+     * @param jdbcTemplate Spring JDBC template for database access
+     */
+    public RsvpRepository(JdbcTemplate jdbcTemplate) {
+        this(new QueryBulkheads(jdbcTemplate), new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+    }
+
+    /**
+     * Constructs the repository with the bulkheads for each class of query.
+     *
+     * @param bulkheads the budgets and JDBC templates, of which RSVPs use writes
+     * @param transactionManager the transaction manager of the primary DataSource
+     */
+    @Autowired
+    public RsvpRepository(QueryBulkheads bulkheads, PlatformTransactionManager transactionManager) {
+        this.writes = bulkheads.get(QueryBulkheads.QueryClass.WRITES);
+        // Joins the caller's transaction on the same DataSource if there is one.
+        this.transactions = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Returns an event's capacity and counts.
+     *
+     * @param eventId the event ID
+     * @return the attendance without a user status, or null if the event has no attendance row
+     */
+    public AttendanceModel findAttendance(long eventId) {
+        return writes.call("RsvpRepository.findAttendance", jdbc -> {
+            Counts counts = read(jdbc, eventId, false);
+            return counts != null ? counts.toModel(eventId) : null;
+        });
+    }
+
+    /**
+     * Creates an event's attendance row if it does not exist yet, for events
+     * saved before capacities were stored here.
+     *
+     * @param eventId the event ID
+     * @param capacity the event's capacity, or null for unlimited
+     */
+    public void createAttendance(long eventId, Integer capacity) {
+        try {
+            writes.call("RsvpRepository.createAttendance", jdbc -> jdbc.update(
+                "INSERT INTO event_attendance (event_id, capacity, attending, waitlisted) VALUES (?, ?, 0, 0)", eventId, capacity));
+        } catch (DuplicateKeyException e) {
+            // Created by a save or by another instance first.
+        }
+    }
+
+    /**
+     * Stores an event's capacity on its attendance row, creating the row if needed,
+     * and promotes waitlisted users into any seats a larger capacity opens.
+     *
+     * Seats already leased stay with their instances if the capacity shrinks.
+     *
+     * @param eventId the event ID
+     * @param capacity the event's capacity, or null for unlimited
+     */
+    public void storeCapacity(long eventId, Integer capacity) {
+        writes.call("RsvpRepository.storeCapacity", jdbc -> transactions.execute(status -> {
+            // Update before inserting: in MySQL, locking a missing row takes a gap
+            // lock, and two transactions inserting under gap locks deadlock.
+            if (jdbc.update("UPDATE event_attendance SET capacity = ? WHERE event_id = ?", capacity, eventId) == 0) {
+                try {
+                    jdbc.update("INSERT INTO event_attendance (event_id, capacity, attending, waitlisted) VALUES (?, ?, 0, 0)",
+                        eventId, capacity);
+                } catch (DuplicateKeyException e) {
+                    jdbc.update("UPDATE event_attendance SET capacity = ? WHERE event_id = ?", capacity, eventId);
+                }
+            }
+            Counts counts = read(jdbc, eventId, true);
+            if (promote(jdbc, eventId, counts, now()) > 0) {
+                write(jdbc, eventId, counts);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Deletes an event's RSVPs, counts and leases.
+     *
+     * @param eventId the event ID
+     */
+    public void deleteAttendance(long eventId) {
+        writes.call("RsvpRepository.deleteAttendance", jdbc -> transactions.execute(status -> {
+            jdbc.update("DELETE FROM event_attendance WHERE event_id = ?", eventId);
+            jdbc.update("DELETE FROM rsvp_leases WHERE event_id = ?", eventId);
+            return jdbc.update("DELETE FROM rsvps WHERE event_id = ?", eventId);
+        }));
+    }
+
+    /**
+     * Returns a user's RSVP status for an event.
+     *
+     * @param eventId the event ID
+     * @param userId the user ID
+     * @return the status, or null if the user has no RSVP
+     */
+    public RsvpStatus findStatus(long eventId, long userId) {
+        List<RsvpStatus> status = writes.call("RsvpRepository.findStatus", jdbc -> jdbc.query(
+            "SELECT status FROM rsvps WHERE event_id = ? AND user_id = ?",
+            (rs, rowNum) -> RsvpStatus.valueOf(rs.getString("status")), eventId, userId));
+        return status.isEmpty() ? null : status.get(0);
+    }
+
+    /**
+     * Leases up to the requested number of seats for an app instance and renews
+     * its lease on the event.
+     *
+     * Nothing is granted while the event has a waitlist, so released seats go to
+     * waitlisted users before new RSVPs.
+     *
+     * @param eventId the event ID
+     * @param instanceId the app instance taking the seats
+     * @param seats the most seats to lease
+     * @param ttlMs how long the lease lasts unless renewed
+     * @return the number of seats granted, 0 if the event is full, has a waitlist or no longer exists
+     */
+    public int lease(long eventId, String instanceId, int seats, long ttlMs) {
+        return writes.call("RsvpRepository.lease", jdbc -> transactions.execute(status -> {
+            Counts counts = read(jdbc, eventId, true);
+            if (counts == null || counts.waitlisted > 0) {
+                return 0;
+            }
+            Timestamp now = now();
+            int granted = Math.min(seats, available(jdbc, eventId, counts, now));
+            if (granted > 0) {
+                Timestamp expires = new Timestamp(now.getTime() + ttlMs);
+                if (jdbc.update("UPDATE rsvp_leases SET seats = seats + ?, expires_at = ? WHERE event_id = ? AND instance_id = ?",
+                        granted, expires, eventId, instanceId) == 0) {
+                    jdbc.update("INSERT INTO rsvp_leases (event_id, instance_id, seats, expires_at) VALUES (?, ?, ?, ?)",
+                        eventId, instanceId, granted, expires);
+                }
+            }
+            return granted;
+        }));
+    }
+
+    /**
+     * Returns unused leased seats to an event and promotes waitlisted users into them.
+     *
+     * @param eventId the event ID
+     * @param instanceId the app instance returning the seats
+     * @param seats the number of seats returned
+     */
+    public void returnSeats(long eventId, String instanceId, int seats) {
+        writes.call("RsvpRepository.returnSeats", jdbc -> transactions.execute(status -> {
+            Counts counts = read(jdbc, eventId, true);
+            jdbc.update("UPDATE rsvp_leases SET seats = GREATEST(seats - ?, 0) WHERE event_id = ? AND instance_id = ?",
+                seats, eventId, instanceId);
+            jdbc.update("DELETE FROM rsvp_leases WHERE event_id = ? AND instance_id = ? AND seats = 0", eventId, instanceId);
+            if (counts != null && promote(jdbc, eventId, counts, now()) > 0) {
+                write(jdbc, eventId, counts);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Extends every unexpired lease an app instance holds.
+     *
+     * @param instanceId the app instance
+     * @param ttlMs how long the leases last from now unless renewed again
+     * @return the events whose leases were renewed and which now have a waitlist,
+     *         so the instance should return its unused seats to them
+     */
+    public List<Long> renewLeases(String instanceId, long ttlMs) {
+        return writes.call("RsvpRepository.renewLeases", jdbc -> {
+            Timestamp now = now();
+            jdbc.update("UPDATE rsvp_leases SET expires_at = ? WHERE instance_id = ? AND expires_at > ?",
+                new Timestamp(now.getTime() + ttlMs), instanceId, now);
+            return jdbc.queryForList(
+                "SELECT l.event_id FROM rsvp_leases l JOIN event_attendance a ON a.event_id = l.event_id " +
+                "WHERE l.instance_id = ? AND l.seats > 0 AND a.waitlisted > 0", Long.class, instanceId);
+        });
+    }
+
+    /**
+     * Writes a batch of one event's RSVP changes, with the resulting counts, in one transaction.
+     *
+     * Each ATTENDING insert uses a seat of the instance's lease. If the lease has
+     * expired, or has fewer seats than ATTENDING inserts, the rest are stored as
+     * WAITLISTED rather than overbook the event. An insert for a user who already
+     * has an RSVP, or a delete for one who has none, is skipped. Waitlisted users
+     * are then promoted into any seats the deletes released.
+     *
+     * @param eventId the event ID
+     * @param instanceId the app instance whose lease the inserts use
+     * @param inserts new RSVPs, at most one per user and none for a user in deletes
+     * @param deletes users whose RSVPs are cancelled
+     * @param ttlMs how long the instance's lease lasts from now unless renewed
+     * @return the outcome, or null if the event no longer has an attendance row
+     */
+    public FlushResult flush(long eventId, String instanceId, List<RsvpEntity> inserts, List<Long> deletes, long ttlMs) {
+        return writes.call("RsvpRepository.flush", jdbc -> transactions.execute(status -> {
+            Counts counts = read(jdbc, eventId, true);
+            if (counts == null) {
+                return null;
+            }
+            Timestamp now = now();
+            List<Integer> leased = jdbc.queryForList(
+                "SELECT seats FROM rsvp_leases WHERE event_id = ? AND instance_id = ? AND expires_at > ?",
+                Integer.class, eventId, instanceId, now);
+            int seats = leased.isEmpty() ? 0 : leased.get(0);
+            Map<Long, RsvpStatus> existing = findStatuses(jdbc, eventId, inserts, deletes);
+
+            List<Object[]> insertRows = new ArrayList<>(inserts.size());
+            int seated = 0;
+            int unused = 0;
+            boolean lost = false;
+            for (RsvpEntity rsvp : inserts) {
+                RsvpStatus stored = rsvp.getStatus();
+                lost |= stored == RsvpStatus.ATTENDING && leased.isEmpty();
+                if (existing.containsKey(rsvp.getUserId())) {
+                    if (stored == RsvpStatus.ATTENDING) {
+                        unused++;
+                    }
+                    continue;
+                }
+                if (stored == RsvpStatus.ATTENDING && seated < seats) {
+                    seated++;
+                    counts.attending++;
+                } else {
+                    stored = RsvpStatus.WAITLISTED;
+                    counts.waitlisted++;
+                }
+                insertRows.add(new Object[]{eventId, rsvp.getUserId(), stored.name(), rsvp.getCreatedAt()});
+            }
+            List<Object[]> deleteRows = new ArrayList<>(deletes.size());
+            for (Long userId : deletes) {
+                RsvpStatus stored = existing.get(userId);
+                if (stored == RsvpStatus.ATTENDING) {
+                    counts.attending--;
+                } else if (stored == RsvpStatus.WAITLISTED) {
+                    counts.waitlisted--;
+                } else {
+                    continue;
+                }
+                deleteRows.add(new Object[]{eventId, userId});
+            }
+
+            if (!insertRows.isEmpty()) {
+                jdbc.batchUpdate("INSERT INTO rsvps (event_id, user_id, status, created_at) VALUES (?, ?, ?, ?)", insertRows);
+            }
+            if (!deleteRows.isEmpty()) {
+                jdbc.batchUpdate("DELETE FROM rsvps WHERE event_id = ? AND user_id = ?", deleteRows);
+            }
+            if (!leased.isEmpty()) {
+                jdbc.update("UPDATE rsvp_leases SET seats = seats - ?, expires_at = ? WHERE event_id = ? AND instance_id = ?",
+                    seated, new Timestamp(now.getTime() + ttlMs), eventId, instanceId);
+            }
+            promote(jdbc, eventId, counts, now);
+            write(jdbc, eventId, counts);
+            boolean room = counts.waitlisted == 0 && available(jdbc, eventId, counts, now) > 0;
+            return new FlushResult(counts.toModel(eventId), leased.isEmpty() ? 0 : unused, lost, room);
+        }));
+    }
+
+    /**
+     * Reads the current RSVPs of the users a batch touches.
+     */
+    private static Map<Long, RsvpStatus> findStatuses(JdbcTemplate jdbc, long eventId, List<RsvpEntity> inserts, List<Long> deletes) {
+        List<Object> args = new ArrayList<>(inserts.size() + deletes.size() + 1);
+        args.add(eventId);
+        for (RsvpEntity rsvp : inserts) {
+            args.add(rsvp.getUserId());
+        }
+        args.addAll(deletes);
+        if (args.size() == 1) {
+            return Collections.emptyMap();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(args.size() - 1, "?"));
+        Map<Long, RsvpStatus> statuses = new HashMap<>();
+        jdbc.query("SELECT user_id, status FROM rsvps WHERE event_id = ? AND user_id IN (" + placeholders + ")",
+            rs -> {
+                statuses.put(rs.getLong("user_id"), RsvpStatus.valueOf(rs.getString("status")));
+            }, args.toArray());
+        return statuses;
+    }
+
+    /**
+     * Moves waitlisted users into seats that are neither attending nor leased, in
+     * waitlist order. Runs while the attendance row is locked, so no other change
+     * can interleave.
+     *
+     * @return the number of users promoted, already added to counts
+     */
+    private static int promote(JdbcTemplate jdbc, long eventId, Counts counts, Timestamp now) {
+        if (counts.waitlisted <= 0) {
+            return 0;
+        }
+        int seats = Math.min(counts.waitlisted, available(jdbc, eventId, counts, now));
+        if (seats <= 0) {
+            return 0;
+        }
+        List<Long> promoted = jdbc.queryForList(
+            "SELECT user_id FROM rsvps WHERE event_id = ? AND status = 'WAITLISTED' ORDER BY created_at, user_id LIMIT ?",
+            Long.class, eventId, seats);
+        List<Object[]> rows = new ArrayList<>(promoted.size());
+        for (Long userId : promoted) {
+            rows.add(new Object[]{eventId, userId});
+        }
+        jdbc.batchUpdate("UPDATE rsvps SET status = 'ATTENDING' WHERE event_id = ? AND user_id = ?", rows);
+        counts.attending += promoted.size();
+        counts.waitlisted -= promoted.size();
+        return promoted.size();
+    }
+
+    /**
+     * Returns the seats that are neither attending nor leased, after dropping
+     * expired leases. Runs while the attendance row is locked.
+     */
+    private static int available(JdbcTemplate jdbc, long eventId, Counts counts, Timestamp now) {
+        jdbc.update("DELETE FROM rsvp_leases WHERE event_id = ? AND expires_at <= ?", eventId, now);
+        if (counts.capacity == null) {
+            return Integer.MAX_VALUE;
+        }
+        Integer leased = jdbc.queryForObject("SELECT COALESCE(SUM(seats), 0) FROM rsvp_leases WHERE event_id = ?",
+            Integer.class, eventId);
+        return Math.max(0, counts.capacity - counts.attending - (leased != null ? leased : 0));
+    }
+
+    private static Counts read(JdbcTemplate jdbc, long eventId, boolean lock) {
+        List<Counts> counts = jdbc.query(
+            "SELECT capacity, attending, waitlisted FROM event_attendance WHERE event_id = ?" + (lock ? " FOR UPDATE" : ""),
+            (rs, rowNum) -> {
+                int capacity = rs.getInt("capacity");
+                return new Counts(rs.wasNull() ? null : Math.max(0, capacity), rs.getInt("attending"), rs.getInt("waitlisted"));
+            }, eventId);
+        return counts.isEmpty() ? null : counts.get(0);
+    }
+
+    private static void write(JdbcTemplate jdbc, long eventId, Counts counts) {
+        jdbc.update("UPDATE event_attendance SET attending = ?, waitlisted = ?, updated_at = CURRENT_TIMESTAMP WHERE event_id = ?",
+            counts.attending, counts.waitlisted, eventId);
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+
+    /**
+     * An event's capacity and counts, read from its locked row and adjusted by a
+     * transaction before being written back.
+     */
+    private static final class Counts {
+        final Integer capacity;
+        int attending;
+        int waitlisted;
+
+        Counts(Integer capacity, int attending, int waitlisted) {
+            this.capacity = capacity;
+            this.attending = attending;
+            this.waitlisted = waitlisted;
+        }
+
+        AttendanceModel toModel(long eventId) {
+            return new AttendanceModel(eventId, capacity, attending, waitlisted, null);
+        }
+    }
+
+    /**
+     * The outcome of flushing a batch of one event's RSVP changes.
+     */
+    public static final class FlushResult {
+
+        private final AttendanceModel attendance;
+        private final int unusedSeats;
+        private final boolean leaseLost;
+        private final boolean room;
+
+        FlushResult(AttendanceModel attendance, int unusedSeats, boolean leaseLost, boolean room) {
+            this.attendance = attendance;
+            this.unusedSeats = unusedSeats;
+            this.leaseLost = leaseLost;
+            this.room = room;
+        }
+
+        /**
+         * Returns the event's capacity and counts once the batch was committed.
+         */
+        public AttendanceModel getAttendance() {
+            return attendance;
+        }
+
+        /**
+         * Returns the leased seats taken by ATTENDING inserts that were skipped
+         * because the user already had an RSVP. They are still leased.
+         */
+        public int getUnusedSeats() {
+            return unusedSeats;
+        }
+
+        /**
+         * Returns true if the batch had ATTENDING inserts but the instance held no
+         * unexpired lease on the event, so any seats it still counts as leased are gone.
+         */
+        public boolean isLeaseLost() {
+            return leaseLost;
+        }
+
+        /**
+         * Returns true if the event has no waitlist and seats left to lease.
+         */
+        public boolean hasRoom() {
+            return room;
+        }
+    }
+}
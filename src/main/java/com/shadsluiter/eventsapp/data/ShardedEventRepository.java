@@ -0,0 +1,669 @@
+package com.shadsluiter.eventsapp.data;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shadsluiter.eventsapp.config.QueryBulkheadProperties;
+import com.shadsluiter.eventsapp.models.EventEntity;
+import com.shadsluiter.eventsapp.models.EventFacets;
+import com.shadsluiter.eventsapp.models.EventSearch;
+import com.shadsluiter.eventsapp.models.EventView;
+import com.shadsluiter.eventsapp.models.RecurrenceRule;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JDBC repository that partitions events by organizer across several databases.
+ *
+ * Each shard holds its own events and events_archive tables with a local
+ * AUTO_INCREMENT id. The global event ID exposed to the rest of the application
+ * is localId * SHARD_SLOTS + shardIndex, so any ID can be routed back to its
+ * shard without a lookup and IDs never collide across shards or app instances.
+ *
+ * Queries for one organizer, and lookups by ID, go to a single shard. Queries
+ * spanning all organizers are sent to every shard in parallel and the sorted
+ * per-shard results are merged, honouring the configured result cap.
+ *
+ * Each shard has its own QueryBulkheads over its own connection pool, with the
+ * same budgets and timeouts as the primary database, so a pile-up of searches
+ * on one shard leaves connections for listings and writes on it. A shard
+ * transaction runs within a single writes call and holds one slot.
+ *
+ * When a ChangeLogRepository is given, writes are recorded in the primary
+ * database's change_log after the shard write commits. The two databases are not
+ * updated atomically: a crash in between loses the record, and other instances
+ * then see the change once their cached entry expires.
+ */
+public class ShardedEventRepository implements EventRepositoryInterface, DisposableBean {
+
+    /** Shard index is stored in the low bits of every global event ID */
+    static final int SHARD_SLOTS = 64;
+
+    /** Most IDs bound into a single IN (...) query */
+    private static final int ID_CHUNK_SIZE = 500;
+
+    /** Columns shared by events and events_archive, in the same order */
+    private static final String EVENT_COLUMNS = "id, name, date, location, organizerid, description, recurrence, recurrence_end, capacity, version";
+
+    private static final Comparator<EventView> BY_ID = Comparator.comparing(EventView::getId);
+    private static final Comparator<EventView> BY_DATE = Comparator.comparing(EventView::getDate).thenComparing(EventView::getId);
+
+    private final List<DataSource> dataSources;
+    private final List<QueryBulkheads> shards = new ArrayList<>();
+    private final List<TransactionTemplate> transactions = new ArrayList<>();
+    private final ExecutorService scatterPool;
+    private final ChangeLogRepository changeLog;
+    private final int archiveHorizonDays;
+    private final int maxResults;
+    private final EventQueryCompiler queryCompiler = new EventQueryCompiler(EVENT_COLUMNS);
+    private final EventQueryCompiler facetCompiler = new EventQueryCompiler(EventQueryCompiler.FACET_COLUMNS);
+
+    /**
+     * Constructs the repository over the given shard databases.
+     *
+     * The repository takes ownership of the data sources and closes them on shutdown.
+     *
+     * @param dataSources one DataSource per shard, in shard order
+     * @param archiveHorizonDays events older than this many days may live in the archive
+     * @param maxResults cap on rows returned by scatter-gather queries, 0 for no cap
+     */
+    public ShardedEventRepository(List<DataSource> dataSources, int archiveHorizonDays, int maxResults) {
+        this(dataSources, null, archiveHorizonDays, maxResults);
+    }
+
+    /**
+     * Constructs the repository over the given shard databases, recording writes in a change log.
+     *
+     * @param dataSources one DataSource per shard, in shard order
+     * @param changeLog the change log recording each write, or null to record nothing
+     * @param archiveHorizonDays events older than this many days may live in the archive
+     * @param maxResults cap on rows returned by scatter-gather queries, 0 for no cap
+     */
+    public ShardedEventRepository(List<DataSource> dataSources, ChangeLogRepository changeLog,
+                                  int archiveHorizonDays, int maxResults) {
+        this(dataSources, null, changeLog, archiveHorizonDays, maxResults);
+    }
+
+    /**
+     * Constructs the repository over the given shard databases, with bulkheads on each shard.
+     *
+     * @param dataSources one DataSource per shard, in shard order
+     * @param bulkheadProperties the budgets and timeouts applied to each shard, or null for no bulkheads
+     * @param changeLog the change log recording each write, or null to record nothing
+     * @param archiveHorizonDays events older than this many days may live in the archive
+     * @param maxResults cap on rows returned by scatter-gather queries, 0 for no cap
+     * @throws IllegalStateException if the budgets add up to more connections than a shard's pool holds
+     */
+    public ShardedEventRepository(List<DataSource> dataSources, QueryBulkheadProperties bulkheadProperties,
+                                  ChangeLogRepository changeLog, int archiveHorizonDays, int maxResults) {
+        if (dataSources.isEmpty() || dataSources.size() > SHARD_SLOTS) {
+            throw new IllegalArgumentException("Between 1 and " + SHARD_SLOTS + " shards are required");
+        }
+        this.dataSources = dataSources;
+        this.changeLog = changeLog;
+        this.archiveHorizonDays = archiveHorizonDays;
+        this.maxResults = maxResults;
+
+        for (DataSource dataSource : dataSources) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            shards.add(bulkheadProperties != null
+                ? new QueryBulkheads(jdbcTemplate, bulkheadProperties)
+                : new QueryBulkheads(jdbcTemplate));
+            transactions.add(new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.scatterPool = Executors.newFixedThreadPool(dataSources.size() * 4, runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Retrieves all events of one organizer from the organizer's shard.
+     */
+    @Override
+    public List<EventView> findByOrganizerid(Long organizerid) {
+        int shard = shardForOrganizer(organizerid);
+        String sql = "SELECT * FROM events WHERE organizerid = ?";
+        return listings(shard).call("ShardedEventRepository.findByOrganizerid",
+            jdbc -> jdbc.query(sql, new ShardRowMapper(shard), organizerid));
+    }
+
+    /**
+     * Retrieves all events from every shard, ordered by ID.
+     */
+    @Override
+    public List<EventView> findAll() {
+        return scatter(QueryBulkheads.QueryClass.LISTING, "ShardedEventRepository.findAll", "SELECT * FROM events", "id", BY_ID);
+    }
+
+    /**
+     * Deletes an event from the shard encoded in its ID.
+     */
+    @Override
+    public void deleteById(Long id) {
+        int shard = shardOfId(id);
+        if (shard < shards.size()) {
+            writes(shard).call("ShardedEventRepository.deleteById",
+                jdbc -> jdbc.update("DELETE FROM events WHERE id = ?", localId(id)));
+            recordChange(id.toString());
+        }
+    }
+
+    /**
+     * Inserts a new event into its organizer's shard and assigns its global ID.
+     */
+    @Override
+    public EventEntity save(EventEntity event) {
+        int shard = shardForOrganizer(event.getOrganizerid());
+        String sql = "INSERT INTO events (name, date, location, organizerid, description, recurrence, recurrence_end, capacity) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        LocalDate recurrenceEnd = recurrenceEnd(event);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        writes(shard).call("ShardedEventRepository.save", jdbc -> jdbc.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, event.getName());
+            ps.setObject(2, event.getDate());
+            ps.setString(3, event.getLocation());
+            ps.setObject(4, event.getOrganizerid());
+            ps.setString(5, event.getDescription());
+            ps.setString(6, event.getRecurrence());
+            ps.setObject(7, recurrenceEnd, Types.DATE);
+            ps.setObject(8, event.getCapacity(), Types.INTEGER);
+            return ps;
+        }, keyHolder));
+
+        event.setId(globalId(keyHolder.getKey().longValue(), shard));
+        recordChange(event.getId().toString());
+        return event;
+    }
+
+    /**
+     * Updates an event in place on the shard encoded in its ID, checking its version if given.
+     *
+     * The organizer cannot change: the event's ID encodes its organizer's shard,
+     * and moving it would change the ID its RSVPs and links refer to.
+     *
+     * @throws OrganizerChangeException if the update names a different organizer
+     */
+    @Override
+    public EventEntity update(EventEntity event, Long expectedVersion) {
+        int shard = shardOfId(event.getId());
+        if (shard >= shards.size()) {
+            throw new EmptyResultDataAccessException("Event " + event.getId() + " not found", 1);
+        }
+        long localId = localId(event.getId());
+        String sql = "UPDATE events SET name = ?, date = ?, location = ?, organizerid = ?, description = ?, " +
+                     "recurrence = ?, recurrence_end = ?, capacity = ?, version = version + 1 WHERE id = ?";
+        List<Object> args = new ArrayList<>(Arrays.asList(
+            event.getName(),
+            event.getDate(),
+            event.getLocation(),
+            event.getOrganizerid(),
+            event.getDescription(),
+            event.getRecurrence(),
+            recurrenceEnd(event),
+            event.getCapacity(),
+            localId
+        ));
+        if (expectedVersion != null) {
+            sql += " AND version = ?";
+            args.add(expectedVersion);
+        }
+        String updateSql = sql;
+
+        Long version = writes(shard).call("ShardedEventRepository.update", jdbcTemplate -> transactions.get(shard).execute(status -> {
+            List<Long> organizer = jdbcTemplate.query("SELECT organizerid FROM events WHERE id = ? FOR UPDATE",
+                (rs, rowNum) -> rs.getObject("organizerid", Long.class), localId);
+            if (!organizer.isEmpty() && !Objects.equals(organizer.get(0), event.getOrganizerid())) {
+                throw new OrganizerChangeException("Event " + event.getId() + " cannot change organizer while events are sharded");
+            }
+            if (jdbcTemplate.update(updateSql, args.toArray()) == 0) {
+                return null;
+            }
+            return jdbcTemplate.queryForObject("SELECT version FROM events WHERE id = ?", Long.class, localId);
+        }));
+        if (version == null) {
+            if (!existsById(event.getId())) {
+                throw new EmptyResultDataAccessException("Event " + event.getId() + " not found", 1);
+            }
+            throw new OptimisticLockingFailureException("Event " + event.getId() + " was modified concurrently");
+        }
+
+        event.setVersion(version);
+        recordChange(event.getId().toString());
+        return event;
+    }
+
+    /**
+     * Retrieves an event from the shard encoded in its ID.
+     */
+    @Override
+    public EventView findById(Long id) {
+        int shard = shardOfId(id);
+        if (shard >= shards.size()) {
+            throw new EmptyResultDataAccessException(1);
+        }
+        String sql = "SELECT * FROM events WHERE id = ?";
+        return listings(shard).call("ShardedEventRepository.findById",
+            jdbc -> jdbc.queryForObject(sql, new ShardRowMapper(shard), localId(id)));
+    }
+
+    /**
+     * Checks the shard encoded in the ID for the event.
+     */
+    @Override
+    public boolean existsById(Long id) {
+        int shard = shardOfId(id);
+        if (shard >= shards.size()) {
+            return false;
+        }
+        Integer count = listings(shard).call("ShardedEventRepository.existsById",
+            jdbc -> jdbc.queryForObject("SELECT COUNT(*) FROM events WHERE id = ?", Integer.class, localId(id)));
+        return count != null && count > 0;
+    }
+
+    /**
+     * Searches descriptions on every shard in parallel, ordered by ID.
+     */
+    @Override
+    public List<EventView> findByDescription(String description) {
+        return scatter(QueryBulkheads.QueryClass.SEARCH, "ShardedEventRepository.findByDescription",
+            "SELECT * FROM events WHERE description LIKE ?", "id", BY_ID, "%" + description + "%");
+    }
+
+    /**
+     * Runs a search on the organizer's shard when the search names one, and on
+     * every shard in parallel otherwise, merging the results in date order.
+     */
+    @Override
+    public List<EventView> search(EventSearch search) {
+        EventQueryCompiler.Compiled query = queryCompiler.compile(search);
+        int limit = EventQueryCompiler.limitOf(search);
+        String shardSql = query.sql + " ORDER BY date, id LIMIT ?";
+        Object[] args = query.argsWith(limit);
+
+        if (search.getOrganizerid() != null) {
+            int shard = shardForOrganizer(search.getOrganizerid());
+            return searches(shard).call("ShardedEventRepository.search", jdbc -> jdbc.query(shardSql, new ShardRowMapper(shard), args));
+        }
+        List<CompletableFuture<List<EventView>>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            futures.add(CompletableFuture.supplyAsync(() -> searches(shard).call("ShardedEventRepository.search",
+                jdbc -> jdbc.query(shardSql, new ShardRowMapper(shard), args)), scatterPool));
+        }
+        return merge(joinAll(futures), BY_DATE, limit);
+    }
+
+    /**
+     * Explains a search on the shard it would run on first; every shard has the same schema.
+     */
+    @Override
+    public List<Map<String, Object>> explain(EventSearch search) {
+        EventQueryCompiler.Compiled query = queryCompiler.compile(search);
+        return searches(shardForOrganizer(search.getOrganizerid())).call("ShardedEventRepository.explain",
+            jdbc -> jdbc.queryForList("EXPLAIN " + query.sql + " ORDER BY date, id LIMIT ?", query.argsWith(EventQueryCompiler.limitOf(search))));
+    }
+
+    /**
+     * Counts a search's matches on the organizer's shard, or on every shard in parallel, and adds them up.
+     */
+    @Override
+    public EventFacets facets(EventSearch search) {
+        EventQueryCompiler.Compiled query = facetCompiler.compile(search);
+        String sql = EventQueryCompiler.facetSql(query);
+        List<Integer> involved = new ArrayList<>();
+        if (search.getOrganizerid() != null) {
+            involved.add(shardForOrganizer(search.getOrganizerid()));
+        } else {
+            for (int i = 0; i < shards.size(); i++) {
+                involved.add(i);
+            }
+        }
+
+        List<CompletableFuture<EventFacets>> futures = new ArrayList<>(involved.size());
+        for (int shard : involved) {
+            futures.add(CompletableFuture.supplyAsync(() -> searches(shard).call("ShardedEventRepository.facets", jdbc -> {
+                EventFacets shardFacets = new EventFacets();
+                jdbc.query(sql, EventQueryCompiler.facetCollector(search, shardFacets), query.args);
+                return shardFacets;
+            }), scatterPool));
+        }
+        EventFacets facets = new EventFacets();
+        for (EventFacets shardFacets : joinAll(futures)) {
+            facets.addAll(shardFacets);
+        }
+        return facets;
+    }
+
+    /**
+     * Looks up IDs grouped by shard, querying the involved shards in parallel.
+     */
+    @Override
+    public List<EventView> findAllById(Collection<Long> ids) {
+        List<List<Long>> localIds = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            localIds.add(new ArrayList<>());
+        }
+        for (Long id : ids) {
+            int shard = shardOfId(id);
+            if (shard < shards.size()) {
+                localIds.get(shard).add(localId(id));
+            }
+        }
+
+        List<CompletableFuture<List<EventView>>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            if (localIds.get(i).isEmpty()) {
+                continue;
+            }
+            int shard = i;
+            futures.add(CompletableFuture.supplyAsync(() -> findAllByLocalId(shard, localIds.get(shard)), scatterPool));
+        }
+
+        List<EventView> events = new ArrayList<>(ids.size());
+        for (List<EventView> shardEvents : joinAll(futures)) {
+            events.addAll(shardEvents);
+        }
+        return events;
+    }
+
+    /**
+     * Retrieves all events from every shard, optionally including archived ones.
+     */
+    @Override
+    public List<EventView> findAll(boolean includeArchived) {
+        if (!includeArchived) {
+            return findAll();
+        }
+        String sql = "SELECT " + EVENT_COLUMNS + " FROM events " +
+                     "UNION ALL SELECT " + EVENT_COLUMNS + " FROM events_archive";
+        return scatter(QueryBulkheads.QueryClass.LISTING, "ShardedEventRepository.findAll", sql, "id", BY_ID);
+    }
+
+    /**
+     * Retrieves events in a date range from every shard, merged in date order.
+     * Recurring series overlapping the range are returned once, unexpanded.
+     */
+    @Override
+    public List<EventView> findByDateRange(LocalDate from, LocalDate to, boolean includeArchived) {
+        LocalDate lower = from != null ? from : LocalDate.of(1, 1, 1);
+        LocalDate upper = to != null ? to : LocalDate.of(9999, 12, 31);
+        boolean history = includeArchived || lower.isBefore(LocalDate.now().minusDays(archiveHorizonDays));
+
+        if (!history) {
+            return scatter(QueryBulkheads.QueryClass.LISTING, "ShardedEventRepository.findByDateRange",
+                dateRangeSql("events"), "date, id", BY_DATE, lower, upper, upper, lower);
+        }
+        String sql = dateRangeSql("events") + " UNION ALL " + dateRangeSql("events_archive");
+        return scatter(QueryBulkheads.QueryClass.LISTING, "ShardedEventRepository.findByDateRange",
+            sql, "date, id", BY_DATE, lower, upper, upper, lower, lower, upper, upper, lower);
+    }
+
+    /**
+     * Builds the date range query for one table, including recurring series that
+     * may have occurrences in the range. Takes the bounds as lower, upper, upper, lower.
+     */
+    private static String dateRangeSql(String table) {
+        return "SELECT " + EVENT_COLUMNS + " FROM " + table + " WHERE date BETWEEN ? AND ? AND recurrence IS NULL" +
+               " UNION ALL SELECT " + EVENT_COLUMNS + " FROM " + table +
+               " WHERE recurrence IS NOT NULL AND date <= ? AND (recurrence_end IS NULL OR recurrence_end >= ?)";
+    }
+
+    /**
+     * Computes the recurrence_end column, or null for one-off events and open-ended series.
+     */
+    private static LocalDate recurrenceEnd(EventEntity event) {
+        if (event.getRecurrence() == null) {
+            return null;
+        }
+        return RecurrenceRule.parse(event.getRecurrence()).lastOccurrence(event.getDate());
+    }
+
+    /**
+     * Moves up to batchSize past events into the archive, shard by shard.
+     *
+     * Each shard's part of the batch runs in its own transaction on that shard.
+     */
+    @Override
+    public int archiveOlderThan(LocalDate horizon, int batchSize) {
+        int total = 0;
+        for (int i = 0; i < shards.size() && total < batchSize; i++) {
+            int shard = i;
+            int remaining = batchSize - total;
+            Integer moved = writes(shard).call("ShardedEventRepository.archiveOlderThan",
+                jdbc -> transactions.get(shard).execute(status -> archiveBatch(jdbc, horizon, remaining)));
+            total += moved != null ? moved : 0;
+        }
+        if (total > 0) {
+            recordChange(null);
+        }
+        return total;
+    }
+
+    /**
+     * Records an event write in the change log, if one is configured.
+     *
+     * @param key the global event ID, or null if any event may have changed
+     */
+    private void recordChange(String key) {
+        if (changeLog != null) {
+            changeLog.record(ChangeLogRepository.EVENT, key);
+        }
+    }
+
+    /**
+     * Moves one batch of past events into the archive on a single shard.
+     * Must run inside a transaction on that shard.
+     */
+    private int archiveBatch(JdbcTemplate jdbcTemplate, LocalDate horizon, int batchSize) {
+        List<Long> ids = jdbcTemplate.queryForList(
+            "SELECT id FROM events WHERE date < ? AND (recurrence IS NULL OR recurrence_end < ?) ORDER BY id LIMIT ? FOR UPDATE",
+            Long.class, horizon, horizon, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String in = " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        Object[] args = ids.toArray();
+        jdbcTemplate.update("INSERT INTO events_archive (" + EVENT_COLUMNS + ") SELECT " + EVENT_COLUMNS + " FROM events" + in, args);
+        jdbcTemplate.update("DELETE FROM events" + in, args);
+        return ids.size();
+    }
+
+    /**
+     * Retrieves events by local ID from one shard, in chunks.
+     */
+    private List<EventView> findAllByLocalId(int shard, List<Long> localIds) {
+        List<EventView> events = new ArrayList<>(localIds.size());
+        for (int from = 0; from < localIds.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = localIds.subList(from, Math.min(from + ID_CHUNK_SIZE, localIds.size()));
+            String sql = "SELECT * FROM events WHERE id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            events.addAll(listings(shard).call("ShardedEventRepository.findAllById",
+                jdbc -> jdbc.query(sql, new ShardRowMapper(shard), chunk.toArray())));
+        }
+        return events;
+    }
+
+    /**
+     * Runs a query on every shard in parallel and merges the sorted results.
+     *
+     * @param queryClass the bulkhead each shard's query runs in
+     * @param operation the repository and method, e.g. ShardedEventRepository.findAll
+     * @param sql the query without ORDER BY or LIMIT
+     * @param orderBy the ORDER BY columns each shard sorts by
+     * @param order the same ordering, applied when merging shard results
+     * @param args the query parameters
+     * @return the merged results, capped at maxResults when configured
+     */
+    private List<EventView> scatter(QueryBulkheads.QueryClass queryClass, String operation,
+                                      String sql, String orderBy, Comparator<EventView> order, Object... args) {
+        String shardSql = sql + " ORDER BY " + orderBy + (maxResults > 0 ? " LIMIT " + maxResults : "");
+
+        List<CompletableFuture<List<EventView>>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            futures.add(CompletableFuture.supplyAsync(() -> shards.get(shard).get(queryClass).call(operation,
+                jdbc -> jdbc.query(shardSql, new ShardRowMapper(shard), args)), scatterPool));
+        }
+        return merge(joinAll(futures), order, maxResults);
+    }
+
+    private QueryBulkheads.Bulkhead searches(int shard) {
+        return shards.get(shard).get(QueryBulkheads.QueryClass.SEARCH);
+    }
+
+    private QueryBulkheads.Bulkhead listings(int shard) {
+        return shards.get(shard).get(QueryBulkheads.QueryClass.LISTING);
+    }
+
+    private QueryBulkheads.Bulkhead writes(int shard) {
+        return shards.get(shard).get(QueryBulkheads.QueryClass.WRITES);
+    }
+
+    /**
+     * Waits for every shard query, rethrowing the first failure unwrapped.
+     */
+    private static <T> List<T> joinAll(List<CompletableFuture<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * K-way merges lists that are each sorted by the given order.
+     *
+     * @param sorted the per-shard results
+     * @param order the ordering each list is sorted by
+     * @param limit the most rows to return, 0 for all
+     * @return a single sorted list
+     */
+    static List<EventView> merge(List<List<EventView>> sorted, Comparator<EventView> order, int limit) {
+        int total = 0;
+        for (List<EventView> list : sorted) {
+            total += list.size();
+        }
+        int size = limit > 0 ? Math.min(limit, total) : total;
+
+        List<EventView> merged = new ArrayList<>(size);
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+            (a, b) -> order.compare(sorted.get(a[0]).get(a[1]), sorted.get(b[0]).get(b[1])));
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!sorted.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        while (merged.size() < size) {
+            int[] head = heads.poll();
+            merged.add(sorted.get(head[0]).get(head[1]));
+            if (++head[1] < sorted.get(head[0]).size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Picks the shard for an organizer; events without an organizer live on shard 0.
+     */
+    private int shardForOrganizer(Long organizerid) {
+        return organizerid == null ? 0 : (int) Math.floorMod(organizerid, (long) shards.size());
+    }
+
+    static long globalId(long localId, int shard) {
+        return localId * SHARD_SLOTS + shard;
+    }
+
+    static int shardOfId(long globalId) {
+        return (int) Math.floorMod(globalId, (long) SHARD_SLOTS);
+    }
+
+    static long localId(long globalId) {
+        return Math.floorDiv(globalId, SHARD_SLOTS);
+    }
+
+    /**
+     * Shuts down the scatter threads and closes the shard connection pools.
+     */
+    @Override
+    public void destroy() throws Exception {
+        scatterPool.shutdownNow();
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * Maps rows from one shard to EventViews carrying global IDs.
+     */
+    private static class ShardRowMapper implements RowMapper<EventView> {
+
+        private final int shard;
+
+        ShardRowMapper(int shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public EventView mapRow(ResultSet rs, int rowNum) throws SQLException {
+            long id = globalId(rs.getLong("id"), shard);
+            long organizerid = rs.getLong("organizerid");
+            Long organizer = rs.wasNull() ? null : organizerid;
+            int capacity = rs.getInt("capacity");
+            Integer seats = rs.wasNull() ? null : capacity;
+            return new EventView(
+                id,
+                rs.getString("name"),
+                rs.getObject("date", LocalDate.class),
+                rs.getString("location"),
+                organizer,
+                rs.getString("description"),
+                rs.getString("recurrence"),
+                seats,
+                rs.getLong("version")
+            );
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.shadsluiter.eventsapp.models.UserEntity;
 
@@ -18,20 +19,44 @@ import java.util.*;
  * 
  * Handles persistence and retrieval of UserEntity objects, including user roles,
  * using explicit SQL queries instead of Spring Data JPA.
+ * 
+ * Every write also records the changed login name in change_log, in the same
+ * transaction, so other app instances can evict it from their caches. Writes
+ * where the affected login names are unknown record a null key.
+ * 
+ * Lookups by login name and ID run in the auth bulkhead, so logins and JWT
+ * checks keep their own connections however busy searches and listings are.
  */
 @Repository
 public class UserRepository implements UserRepositoryInterface {
 
-    private final JdbcTemplate jdbcTemplate;
+    private final QueryBulkheads.Bulkhead auth;
+    private final QueryBulkheads.Bulkhead listings;
+    private final QueryBulkheads.Bulkhead writes;
+    private final ChangeLogRepository changeLog;
 
     /**
-     * Constructor injecting JdbcTemplate for database access.
+     * Constructor injecting JdbcTemplate for database access, without bulkheads.
      * 
      * @param jdbcTemplate Spring JDBC template
+     * @param changeLog the change log recording each write
+     */
+    public UserRepository(JdbcTemplate jdbcTemplate, ChangeLogRepository changeLog) {
+        this(new QueryBulkheads(jdbcTemplate), changeLog);
+    }
+
+    /**
+     * Constructor injecting the bulkheads for each class of query.
+     * 
+     * @param bulkheads the budgets and JDBC templates for auth lookups, listings and writes
+     * @param changeLog the change log recording each write
      */
     @Autowired
-    public UserRepository(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public UserRepository(QueryBulkheads bulkheads, ChangeLogRepository changeLog) {
+        this.auth = bulkheads.get(QueryBulkheads.QueryClass.AUTH);
+        this.listings = bulkheads.get(QueryBulkheads.QueryClass.LISTING);
+        this.writes = bulkheads.get(QueryBulkheads.QueryClass.WRITES);
+        this.changeLog = changeLog;
     }
 
     /**
@@ -44,7 +69,7 @@ public class UserRepository implements UserRepositoryInterface {
     public UserEntity findByLoginName(String loginName) {
         String sql = "SELECT u.*, r.role FROM users u LEFT JOIN roles r ON u.id = r.user_id WHERE u.login_name = ?";
         try {
-            List<UserEntity> users = jdbcTemplate.query(sql, ps -> ps.setString(1, loginName), new UserWithRolesExtractor());
+            List<UserEntity> users = auth.call("UserRepository.findByLoginName", jdbc -> jdbc.query(sql, ps -> ps.setString(1, loginName), new UserWithRolesExtractor()));
             return users.isEmpty() ? null : users.get(0);
         } catch (EmptyResultDataAccessException e) {
             return null;
@@ -59,7 +84,7 @@ public class UserRepository implements UserRepositoryInterface {
     @Override
     public List<UserEntity> findAll() {
         String sql = "SELECT u.*, r.role FROM users u LEFT JOIN roles r ON u.id = r.user_id";
-        return jdbcTemplate.query(sql, new UserWithRolesExtractor());
+        return listings.call("UserRepository.findAll", jdbc -> jdbc.query(sql, new UserWithRolesExtractor()));
     }
 
     /**
@@ -68,9 +93,11 @@ public class UserRepository implements UserRepositoryInterface {
      * @param id the user ID
      */
     @Override
+    @Transactional
     public void deleteById(Long id) {
         String sql = "DELETE FROM users WHERE id = ?";
-        jdbcTemplate.update(sql, id);
+        writes.call("UserRepository.deleteById", jdbc -> jdbc.update(sql, id));
+        changeLog.record(ChangeLogRepository.USER, null);
     }
 
     /**
@@ -82,6 +109,7 @@ public class UserRepository implements UserRepositoryInterface {
      * @return the saved UserEntity with ID populated
      */
     @Override
+    @Transactional
     public UserEntity save(UserEntity userEntity) {
         if (userEntity.getId() == null) {
             // Insert new user with default roles if not provided
@@ -92,20 +120,23 @@ public class UserRepository implements UserRepositoryInterface {
             }
 
             String sql = "INSERT INTO users (login_name, password, enabled, account_non_expired, credentials_non_expired, account_non_locked) VALUES (?, ?, ?, ?, ?, ?)";
-            jdbcTemplate.update(sql,
-                userEntity.getUserName(),
-                userEntity.getPassword(),
-                userEntity.isEnabled(),
-                userEntity.isAccountNonExpired(),
-                userEntity.isCredentialsNonExpired(),
-                userEntity.isAccountNonLocked()
-            );
-            Long id = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+            Long id = writes.call("UserRepository.save", jdbc -> {
+                jdbc.update(sql,
+                    userEntity.getUserName(),
+                    userEntity.getPassword(),
+                    userEntity.isEnabled(),
+                    userEntity.isAccountNonExpired(),
+                    userEntity.isCredentialsNonExpired(),
+                    userEntity.isAccountNonLocked()
+                );
+                return jdbc.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+            });
             userEntity.setId(id);
+            changeLog.record(ChangeLogRepository.USER, userEntity.getUserName());
         } else {
             // Update existing user
             String sql = "UPDATE users SET login_name = ?, password = ?, enabled = ?, account_non_expired = ?, credentials_non_expired = ?, account_non_locked = ? WHERE id = ?";
-            jdbcTemplate.update(sql,
+            writes.call("UserRepository.save", jdbc -> jdbc.update(sql,
                 userEntity.getUserName(),
                 userEntity.getPassword(),
                 userEntity.isEnabled(),
@@ -113,7 +144,9 @@ public class UserRepository implements UserRepositoryInterface {
                 userEntity.isCredentialsNonExpired(),
                 userEntity.isAccountNonLocked(),
                 userEntity.getId()
-            );
+            ));
+            // The login name itself may have changed, so the old key is unknown.
+            changeLog.record(ChangeLogRepository.USER, null);
         }
 
         // Update roles
@@ -132,7 +165,7 @@ public class UserRepository implements UserRepositoryInterface {
         if (userEntity.getRoles() != null) {
             String sql = "INSERT INTO roles (user_id, role) VALUES (?, ?)";
             for (String role : userEntity.getRoles()) {
-                jdbcTemplate.update(sql, userEntity.getId(), role);
+                writes.call("UserRepository.saveRoles", jdbc -> jdbc.update(sql, userEntity.getId(), role));
             }
         }
     }
@@ -144,7 +177,7 @@ public class UserRepository implements UserRepositoryInterface {
      */
     public void deleteRoles(UserEntity userEntity) {
         String sql = "DELETE FROM roles WHERE user_id = ?";
-        jdbcTemplate.update(sql, userEntity.getId());
+        writes.call("UserRepository.deleteRoles", jdbc -> jdbc.update(sql, userEntity.getId()));
     }
 
     /**
@@ -157,7 +190,7 @@ public class UserRepository implements UserRepositoryInterface {
     public UserEntity findById(Long id) {
         String sql = "SELECT u.*, r.role FROM users u LEFT JOIN roles r ON u.id = r.user_id WHERE u.id = ?";
         try {
-            List<UserEntity> users = jdbcTemplate.query(sql, new Object[]{id}, new UserWithRolesExtractor());
+            List<UserEntity> users = auth.call("UserRepository.findById", jdbc -> jdbc.query(sql, new Object[]{id}, new UserWithRolesExtractor()));
             return users.isEmpty() ? null : users.get(0);
         } catch (EmptyResultDataAccessException e) {
             return null;
@@ -170,7 +203,7 @@ public class UserRepository implements UserRepositoryInterface {
     @Override
     public long count() {
         String sql = "SELECT COUNT(*) FROM users";
-        Long result = jdbcTemplate.queryForObject(sql, Long.class);
+        Long result = listings.call("UserRepository.count", jdbc -> jdbc.queryForObject(sql, Long.class));
         return result != null ? result : 0;
     }
 
@@ -188,9 +221,11 @@ public class UserRepository implements UserRepositoryInterface {
      * Deletes all users from the database.
      */
     @Override
+    @Transactional
     public void deleteAll() {
         String sql = "DELETE FROM users";
-        jdbcTemplate.update(sql);
+        writes.call("UserRepository.deleteAll", jdbc -> jdbc.update(sql));
+        changeLog.record(ChangeLogRepository.USER, null);
     }
 
     /**
@@ -219,6 +254,59 @@ public class UserRepository implements UserRepositoryInterface {
         return (List<UserEntity>) users;
     }
 
+    /**
+     * Retrieves one page of users ordered by ID, starting after the given ID.
+     * 
+     * Uses keyset pagination on users.id so each page is an index range scan,
+     * and projects only the public columns: the password hash is never read.
+     * The returned entities have a null password.
+     * 
+     * @param afterId the last ID of the previous page, or 0 for the first page
+     * @param limit the maximum number of users to return
+     * @return list of UserEntity objects ordered by ID
+     */
+    @Override
+    public List<UserEntity> findPageAfter(long afterId, int limit) {
+        String sql = "SELECT u.id, u.login_name, u.enabled, u.account_non_expired, u.credentials_non_expired, u.account_non_locked, r.role " +
+                     "FROM (SELECT id, login_name, enabled, account_non_expired, credentials_non_expired, account_non_locked " +
+                     "FROM users WHERE id > ? ORDER BY id LIMIT ?) u " +
+                     "LEFT JOIN roles r ON u.id = r.user_id ORDER BY u.id";
+        return listings.call("UserRepository.findPageAfter", jdbc -> jdbc.query(sql, new OrderedUserSummaryExtractor(), afterId, limit));
+    }
+
+    /**
+     * ResultSetExtractor for user rows joined with roles and ordered by user ID.
+     * 
+     * Rows of the same user are adjacent, so users are grouped in a single pass
+     * without an intermediate map.
+     */
+    private static class OrderedUserSummaryExtractor implements ResultSetExtractor<List<UserEntity>> {
+        @Override
+        public List<UserEntity> extractData(ResultSet rs) throws SQLException, DataAccessException {
+            List<UserEntity> users = new ArrayList<>();
+            UserEntity user = null;
+            while (rs.next()) {
+                long id = rs.getLong("id");
+                if (user == null || user.getId() != id) {
+                    user = new UserEntity();
+                    user.setId(id);
+                    user.setUserName(rs.getString("login_name"));
+                    user.setEnabled(rs.getBoolean("enabled"));
+                    user.setAccountNonExpired(rs.getBoolean("account_non_expired"));
+                    user.setCredentialsNonExpired(rs.getBoolean("credentials_non_expired"));
+                    user.setAccountNonLocked(rs.getBoolean("account_non_locked"));
+                    user.setRoles(new HashSet<>());
+                    users.add(user);
+                }
+                String role = rs.getString("role");
+                if (role != null) {
+                    user.getRoles().add(role);
+                }
+            }
+            return users;
+        }
+    }
+
     /**
      * ResultSetExtractor implementation for extracting users with roles from joined query.
      */
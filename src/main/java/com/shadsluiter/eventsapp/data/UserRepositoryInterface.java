@@ -15,4 +15,5 @@ public interface UserRepositoryInterface {
     void deleteAll();
     void deleteAll(Iterable<? extends UserEntity> users); 
     List<UserEntity> saveAll(Iterable<UserEntity> users);
+    List<UserEntity> findPageAfter(long afterId, int limit);
 }
@@ -0,0 +1,66 @@
+package com.shadsluiter.eventsapp.models;
+
+/*
+ * This class contains the attendance of an event as returned by the RSVP endpoints
+ * capacity is null for unlimited events, status is the calling user's RSVP or null if they have none
+ */
+public class AttendanceModel {
+
+    private long eventId;
+    private Integer capacity;
+    private int attending;
+    private int waitlisted;
+    private RsvpStatus status;
+
+    public AttendanceModel() {
+    }
+
+    public AttendanceModel(long eventId, Integer capacity, int attending, int waitlisted, RsvpStatus status) {
+        this.eventId = eventId;
+        this.capacity = capacity;
+        this.attending = attending;
+        this.waitlisted = waitlisted;
+        this.status = status;
+    }
+
+    // Getters and setters
+    public long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(long eventId) {
+        this.eventId = eventId;
+    }
+
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getAttending() {
+        return attending;
+    }
+
+    public void setAttending(int attending) {
+        this.attending = attending;
+    }
+
+    public int getWaitlisted() {
+        return waitlisted;
+    }
+
+    public void setWaitlisted(int waitlisted) {
+        this.waitlisted = waitlisted;
+    }
+
+    public RsvpStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(RsvpStatus status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,47 @@
+package com.shadsluiter.eventsapp.models;
+
+/*
+ * This class contains one row of the change log
+ * It records that an entity was written so other app instances can evict it from their caches
+ * key is null when every cached entry of the entity type must be evicted
+ */
+public class ChangeLogEntry {
+
+    private long seq;
+    private String entity;
+    private String key;
+
+    public ChangeLogEntry() {
+    }
+
+    public ChangeLogEntry(long seq, String entity, String key) {
+        this.seq = seq;
+        this.entity = entity;
+        this.key = key;
+    }
+
+    // Getters and setters
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+}
@@ -8,7 +8,7 @@ public class Converters {
     
     public static UserEntity userModelToUserEntity(UserModel userModel) {
         UserEntity userEntity = new UserEntity();
-        userEntity.setId(Long.parseLong(userModel.getId()));
+        userEntity.setId(userModel.getId());
         userEntity.setUserName(userModel.getUserName());
         userEntity.setPassword(userModel.getPassword());
         return userEntity;
@@ -16,7 +16,7 @@ public class Converters {
 
     public static UserModel userEntityToUserModel(UserEntity userEntity) {
         UserModel userModel = new UserModel();
-        userModel.setId(String.valueOf(userEntity.getId()));
+        userModel.setId(userEntity.getId());
         userModel.setUserName(userEntity.getUserName());
         userModel.setPassword(userEntity.getPassword());
         return userModel;
@@ -0,0 +1,38 @@
+package com.shadsluiter.eventsapp.models;
+
+import java.util.List;
+
+/*
+ * This class contains the result of a batch lookup of events by ID
+ * events are in the order the IDs were requested, missing lists the IDs that were not found
+ */
+public class EventBatch {
+
+    private List<EventView> events;
+    private List<Long> missing;
+
+    public EventBatch() {
+    }
+
+    public EventBatch(List<EventView> events, List<Long> missing) {
+        this.events = events;
+        this.missing = missing;
+    }
+
+    // Getters and setters
+    public List<EventView> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<EventView> events) {
+        this.events = events;
+    }
+
+    public List<Long> getMissing() {
+        return missing;
+    }
+
+    public void setMissing(List<Long> missing) {
+        this.missing = missing;
+    }
+}
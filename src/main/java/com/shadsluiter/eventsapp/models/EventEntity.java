@@ -2,7 +2,7 @@ package com.shadsluiter.eventsapp.models;
 
  
 
-import java.sql.Date;
+import java.time.LocalDate;
 
 import org.springframework.format.annotation.DateTimeFormat;
 
@@ -19,17 +19,26 @@ public class EventEntity {
     private String name;
     
     @DateTimeFormat(pattern = "yyyy-MM-dd")
-    private Date date;
+    private LocalDate date;
     
     private String location;
     
-    private String organizerid;
+    private Long organizerid;
     
     private String description;
 
+    // Recurrence rule such as FREQ=WEEKLY;BYDAY=MO, or null for a one-off event
+    private String recurrence;
+
+    // Most attendees accepted by RSVP, or null for unlimited
+    private Integer capacity;
+
+    // Incremented on every update; used for optimistic concurrency
+    private long version;
+
     public EventEntity() {}
 
-    public EventEntity(Long id, String name, Date date, String location, String organizerid, String description) {
+    public EventEntity(Long id, String name, LocalDate date, String location, Long organizerid, String description) {
         this.id = id;
         this.name = name;
         this.date = date;
@@ -55,11 +64,11 @@ public class EventEntity {
         this.name = name;
     }
 
-    public Date getDate() {
+    public LocalDate getDate() {
         return date;
     }
 
-    public void setDate(Date date) {
+    public void setDate(LocalDate date) {
         this.date = date;
     }
 
@@ -71,11 +80,11 @@ public class EventEntity {
         this.location = location;
     }
 
-    public String getOrganizerid() {
+    public Long getOrganizerid() {
         return organizerid;
     }
 
-    public void setOrganizerid(String organizerid) {
+    public void setOrganizerid(Long organizerid) {
         this.organizerid = organizerid;
     }
 
@@ -86,4 +95,28 @@ public class EventEntity {
     public void setDescription(String description) {
         this.description = description;
     }
+
+    public String getRecurrence() {
+        return recurrence;
+    }
+
+    public void setRecurrence(String recurrence) {
+        this.recurrence = recurrence;
+    }
+
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,115 @@
+package com.shadsluiter.eventsapp.models;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * This class contains the facet counts of an event search
+ * total is the number of matching events, the maps count them per location, month (yyyy-MM) and organizer
+ * A recurring event counts once, in the month its first matching occurrence may fall in
+ */
+public class EventFacets {
+
+    // Most values kept per facet by top()
+    public static final int MAX_VALUES = 20;
+
+    private long total;
+    private Map<String, Long> locations = new HashMap<>();
+    private Map<String, Long> months = new HashMap<>();
+    private Map<Long, Long> organizers = new HashMap<>();
+
+    /**
+     * Counts events that share a location, month and organizer.
+     *
+     * @param location the location, or null
+     * @param month the month as yyyy-MM
+     * @param organizerid the organizer's user ID, or null
+     * @param count the number of events
+     */
+    public void add(String location, String month, Long organizerid, long count) {
+        total += count;
+        if (location != null) {
+            locations.merge(location, count, Long::sum);
+        }
+        months.merge(month, count, Long::sum);
+        if (organizerid != null) {
+            organizers.merge(organizerid, count, Long::sum);
+        }
+    }
+
+    /**
+     * Adds another set of counts to this one, e.g. from another shard.
+     */
+    public void addAll(EventFacets other) {
+        total += other.total;
+        other.locations.forEach((key, count) -> locations.merge(key, count, Long::sum));
+        other.months.forEach((key, count) -> months.merge(key, count, Long::sum));
+        other.organizers.forEach((key, count) -> organizers.merge(key, count, Long::sum));
+    }
+
+    /**
+     * Returns these counts with each facet ordered by count, largest first, and
+     * cut to its most common values. Months are ordered by month instead.
+     *
+     * @param max the most values kept per facet
+     */
+    public EventFacets top(int max) {
+        EventFacets top = new EventFacets();
+        top.total = total;
+        top.locations = largest(locations, max);
+        top.organizers = largest(organizers, max);
+        top.months = new LinkedHashMap<>();
+        largest(months, max).keySet().stream().sorted()
+            .forEach(month -> top.months.put(month, months.get(month)));
+        return top;
+    }
+
+    /**
+     * Returns the max largest counts in descending order, ties by key.
+     */
+    private static <K extends Comparable<K>> Map<K, Long> largest(Map<K, Long> counts, int max) {
+        Comparator<Map.Entry<K, Long>> order = Map.Entry.<K, Long>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey());
+        Map<K, Long> largest = new LinkedHashMap<>();
+        counts.entrySet().stream()
+            .sorted(order)
+            .limit(max)
+            .forEach(entry -> largest.put(entry.getKey(), entry.getValue()));
+        return largest;
+    }
+
+    // Getters and setters
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public Map<String, Long> getLocations() {
+        return locations;
+    }
+
+    public void setLocations(Map<String, Long> locations) {
+        this.locations = locations;
+    }
+
+    public Map<String, Long> getMonths() {
+        return months;
+    }
+
+    public void setMonths(Map<String, Long> months) {
+        this.months = months;
+    }
+
+    public Map<Long, Long> getOrganizers() {
+        return organizers;
+    }
+
+    public void setOrganizers(Map<Long, Long> organizers) {
+        this.organizers = organizers;
+    }
+}
@@ -1,27 +1,36 @@
 package com.shadsluiter.eventsapp.models; 
 
-import java.util.Date;
+import java.time.LocalDate;
 
 import org.springframework.format.annotation.DateTimeFormat;
 
 public class EventModel {
 
-    private String id;
+    private Long id;
     
     private String name;
     
     @DateTimeFormat(pattern = "yyyy-MM-dd")
-    private Date date;
+    private LocalDate date;
     
     private String location;
     
-    private String organizerid;
+    private Long organizerid;
     
     private String description;
 
+    // Recurrence rule such as FREQ=WEEKLY;BYDAY=MO, or null for a one-off event
+    private String recurrence;
+
+    // Most attendees accepted by RSVP, or null for unlimited
+    private Integer capacity;
+
+    // Version the client last read, or null to update without a version check
+    private Long version;
+
     public EventModel() {}
 
-    public EventModel(String id, String name, Date date, String location, String organizerid, String description) {
+    public EventModel(Long id, String name, LocalDate date, String location, Long organizerid, String description) {
         this.id = id;
         this.name = name;
         this.date = date;
@@ -31,11 +40,11 @@ public class EventModel {
     }
 
     // Getters and setters
-    public String getId() {
+    public Long getId() {
         return id;
     }
 
-    public void setId(String id) {
+    public void setId(Long id) {
         this.id = id;
     }
 
@@ -47,11 +56,11 @@ public class EventModel {
         this.name = name;
     }
 
-    public Date getDate() {
+    public LocalDate getDate() {
         return date;
     }
 
-    public void setDate(Date date) {
+    public void setDate(LocalDate date) {
         this.date = date;
     }
 
@@ -63,11 +72,11 @@ public class EventModel {
         this.location = location;
     }
 
-    public String getOrganizerid() {
+    public Long getOrganizerid() {
         return organizerid;
     }
 
-    public void setOrganizerid(String organizerid) {
+    public void setOrganizerid(Long organizerid) {
         this.organizerid = organizerid;
     }
 
@@ -78,4 +87,28 @@ public class EventModel {
     public void setDescription(String description) {
         this.description = description;
     }
+
+    public String getRecurrence() {
+        return recurrence;
+    }
+
+    public void setRecurrence(String recurrence) {
+        this.recurrence = recurrence;
+    }
+
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -1,8 +1,40 @@
 package com.shadsluiter.eventsapp.models;
 
+import java.time.LocalDate;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+/*
+ * This class contains the criteria of an event search
+ * Every criterion is optional and the criteria that are set are combined with AND
+ * It is used by the search form, the /api/events/query endpoint and the repositories
+ */
 public class EventSearch {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    // Free text matched anywhere in the name or description
     private String searchString;
 
+    // Name prefix
+    private String name;
+
+    // Location prefix
+    private String location;
+
+    private Long organizerid;
+
+    // First and last date, inclusive; recurring events match if any occurrence may fall within
+    @DateTimeFormat(pattern = "yyyy-MM-dd")
+    private LocalDate from;
+
+    @DateTimeFormat(pattern = "yyyy-MM-dd")
+    private LocalDate to;
+
+    // Most events returned, up to MAX_LIMIT; DEFAULT_LIMIT when null
+    private Integer limit;
+
     public EventSearch() {
         searchString = "";
     }
@@ -11,11 +43,60 @@ public class EventSearch {
         this.searchString = searchString;
     }
 
+    // Getters and setters
     public String getSearchString() {
         return searchString;
     }
 
     public void setSearchString(String searchString) {
         this.searchString = searchString;
-    }  
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public Long getOrganizerid() {
+        return organizerid;
+    }
+
+    public void setOrganizerid(Long organizerid) {
+        this.organizerid = organizerid;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
 }
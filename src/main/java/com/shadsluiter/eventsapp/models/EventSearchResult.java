@@ -0,0 +1,38 @@
+package com.shadsluiter.eventsapp.models;
+
+import java.util.List;
+
+/*
+ * This class contains the result of a faceted event search
+ * events are the matches up to the search's limit, facets count every match
+ */
+public class EventSearchResult {
+
+    private List<EventView> events;
+    private EventFacets facets;
+
+    public EventSearchResult() {
+    }
+
+    public EventSearchResult(List<EventView> events, EventFacets facets) {
+        this.events = events;
+        this.facets = facets;
+    }
+
+    // Getters and setters
+    public List<EventView> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<EventView> events) {
+        this.events = events;
+    }
+
+    public EventFacets getFacets() {
+        return facets;
+    }
+
+    public void setFacets(EventFacets facets) {
+        this.facets = facets;
+    }
+}
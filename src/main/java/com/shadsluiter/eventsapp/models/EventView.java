@@ -0,0 +1,87 @@
+package com.shadsluiter.eventsapp.models;
+
+import java.time.LocalDate;
+
+/*
+ * This class contains the read-only view of an event returned by list and lookup queries
+ * Repositories and the catalog build it straight from a row and nothing changes it afterwards,
+ * so one instance can be cached and handed to every caller without a copy
+ * Forms and request bodies keep binding to the mutable EventModel
+ */
+public final class EventView {
+
+    private final long id;
+    private final String name;
+    private final LocalDate date;
+    private final String location;
+    private final Long organizerid;
+    private final String description;
+    private final String recurrence;
+    private final Integer capacity;
+    private final long version;
+
+    public EventView(long id, String name, LocalDate date, String location, Long organizerid, String description,
+                     String recurrence, Integer capacity, long version) {
+        this.id = id;
+        this.name = name;
+        this.date = date;
+        this.location = location;
+        this.organizerid = organizerid;
+        this.description = description;
+        this.recurrence = recurrence;
+        this.capacity = capacity;
+        this.version = version;
+    }
+
+    /*
+     * Returns the view of a saved entity
+     */
+    public static EventView of(EventEntity event) {
+        return new EventView(event.getId(), event.getName(), event.getDate(), event.getLocation(), event.getOrganizerid(),
+            event.getDescription(), event.getRecurrence(), event.getCapacity(), event.getVersion());
+    }
+
+    /*
+     * Returns this event on another date, e.g. one occurrence of a recurring series
+     */
+    public EventView withDate(LocalDate date) {
+        return new EventView(id, name, date, location, organizerid, description, recurrence, capacity, version);
+    }
+
+    // Getters
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public Long getOrganizerid() {
+        return organizerid;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getRecurrence() {
+        return recurrence;
+    }
+
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,61 @@
+package com.shadsluiter.eventsapp.models;
+
+/*
+ * This class contains one row of the idempotency_keys table
+ * It records the response to a request sent with an Idempotency-Key header so retries can be answered without repeating the write
+ * status and body are null while the first request is still being processed
+ */
+public class IdempotencyRecord {
+
+    private String keyHash;
+    private String fingerprint;
+    private Integer status;
+    private String body;
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String keyHash, String fingerprint, Integer status, String body) {
+        this.keyHash = keyHash;
+        this.fingerprint = fingerprint;
+        this.status = status;
+        this.body = body;
+    }
+
+    public boolean isComplete() {
+        return status != null;
+    }
+
+    // Getters and setters
+    public String getKeyHash() {
+        return keyHash;
+    }
+
+    public void setKeyHash(String keyHash) {
+        this.keyHash = keyHash;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+}
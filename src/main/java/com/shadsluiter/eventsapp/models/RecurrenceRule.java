@@ -0,0 +1,411 @@
+package com.shadsluiter.eventsapp.models;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * A recurrence rule stored on a recurring event, in a subset of the iCalendar RRULE syntax.
+ *
+ * Supported parts are FREQ (DAILY, WEEKLY, MONTHLY or YEARLY), INTERVAL, COUNT,
+ * UNTIL (yyyy-MM-dd or yyyyMMdd) and, for weekly rules, BYDAY (MO,TU,...), e.g.
+ * "FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,TH;UNTIL=2030-06-30". The event date is the first
+ * occurrence. As in iCalendar, monthly and yearly rules skip months that lack the
+ * start day, e.g. the 31st or 29 February, and weeks start on Monday.
+ *
+ * Occurrences are computed with epoch-day arithmetic and produced lazily by
+ * occurrences(), which jumps straight to the first period of the requested window
+ * instead of walking the series from its start. Only the returned dates are allocated.
+ */
+public final class RecurrenceRule {
+
+    /** Most occurrences a rule may have when it ends by COUNT */
+    public static final int MAX_COUNT = 5000;
+
+    /** Largest INTERVAL accepted */
+    public static final int MAX_INTERVAL = 1000;
+
+    /** Occurrences are never generated past the last year a DATE column can hold */
+    private static final int MAX_YEAR = 9999;
+
+    public enum Frequency { DAILY, WEEKLY, MONTHLY, YEARLY }
+
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+    private final Frequency frequency;
+    private final int interval;
+    private final int count;
+    private final LocalDate until;
+    private final int dayMask;
+
+    private RecurrenceRule(Frequency frequency, int interval, int count, LocalDate until, int dayMask) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+        this.dayMask = dayMask;
+    }
+
+    /**
+     * Parses a rule such as "FREQ=WEEKLY;BYDAY=MO,WE;COUNT=10".
+     *
+     * @param rule the rule text, optionally prefixed with "RRULE:"
+     * @return the parsed rule
+     * @throws IllegalArgumentException if the rule is malformed or unsupported
+     */
+    public static RecurrenceRule parse(String rule) {
+        if (rule == null || rule.isBlank()) {
+            throw new IllegalArgumentException("Recurrence rule is empty");
+        }
+        String text = rule.trim().toUpperCase(Locale.ROOT);
+        if (text.startsWith("RRULE:")) {
+            text = text.substring("RRULE:".length());
+        }
+
+        Frequency frequency = null;
+        int interval = 1;
+        int count = 0;
+        LocalDate until = null;
+        int dayMask = 0;
+        for (String part : text.split(";")) {
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Malformed recurrence rule part: " + part);
+            }
+            String name = part.substring(0, eq);
+            String value = part.substring(eq + 1);
+            switch (name) {
+                case "FREQ" -> frequency = parseFrequency(value);
+                case "INTERVAL" -> interval = parseBounded(name, value, MAX_INTERVAL);
+                case "COUNT" -> count = parseBounded(name, value, MAX_COUNT);
+                case "UNTIL" -> until = parseDate(value);
+                case "BYDAY" -> dayMask = parseDays(value);
+                default -> throw new IllegalArgumentException("Unsupported recurrence rule part: " + name);
+            }
+        }
+
+        if (frequency == null) {
+            throw new IllegalArgumentException("Recurrence rule has no FREQ");
+        }
+        if (dayMask != 0 && frequency != Frequency.WEEKLY) {
+            throw new IllegalArgumentException("BYDAY is only supported for weekly rules");
+        }
+        return new RecurrenceRule(frequency, interval, count, until, dayMask);
+    }
+
+    /**
+     * Checks whether a rule would parse.
+     *
+     * @param rule the rule text
+     * @return true if parse() accepts it
+     */
+    public static boolean isValid(String rule) {
+        try {
+            parse(rule);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the occurrences of a series that fall within a window, in date order.
+     *
+     * The iterator is lazy and stops after maxOccurrences dates even if the window
+     * and the rule allow more, so an open-ended window is still bounded.
+     *
+     * @param start the date of the first occurrence
+     * @param from the first date of the window, or null to start with the series
+     * @param to the last date of the window, or null for no upper bound
+     * @param maxOccurrences the most dates to return
+     * @return the occurrences within the window
+     */
+    public Iterator<LocalDate> occurrences(LocalDate start, LocalDate from, LocalDate to, int maxOccurrences) {
+        long startDay = start.toEpochDay();
+        long fromDay = from != null ? Math.max(from.toEpochDay(), startDay) : startDay;
+        long toDay = to != null ? to.toEpochDay() : Long.MAX_VALUE;
+        if (until != null) {
+            toDay = Math.min(toDay, until.toEpochDay());
+        }
+        return new OccurrenceIterator(start, fromDay, toDay, maxOccurrences);
+    }
+
+    /**
+     * Returns the date of the last occurrence, or null if the series never ends.
+     *
+     * For rules ending by UNTIL the until date is returned, which may be later
+     * than the actual last occurrence but is a safe bound for range queries.
+     *
+     * @param start the date of the first occurrence
+     * @return the end of the series, or null if it is open-ended
+     */
+    public LocalDate lastOccurrence(LocalDate start) {
+        if (count == 0) {
+            return until;
+        }
+        LocalDate last = start;
+        Iterator<LocalDate> it = occurrences(start, null, until, count);
+        while (it.hasNext()) {
+            last = it.next();
+        }
+        return last;
+    }
+
+    /**
+     * Returns the rule in canonical form, suitable for storage.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("FREQ=").append(frequency);
+        if (interval != 1) {
+            sb.append(";INTERVAL=").append(interval);
+        }
+        if (dayMask != 0) {
+            String separator = ";BYDAY=";
+            for (int day = 0; day < 7; day++) {
+                if ((dayMask & (1 << day)) != 0) {
+                    sb.append(separator).append(DAY_CODES[day]);
+                    separator = ",";
+                }
+            }
+        }
+        if (count != 0) {
+            sb.append(";COUNT=").append(count);
+        }
+        if (until != null) {
+            sb.append(";UNTIL=").append(until);
+        }
+        return sb.toString();
+    }
+
+    private static Frequency parseFrequency(String value) {
+        try {
+            return Frequency.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported recurrence frequency: " + value);
+        }
+    }
+
+    private static int parseBounded(String name, String value, int max) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 1 && n <= max) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the range error below
+        }
+        throw new IllegalArgumentException(name + " must be between 1 and " + max);
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            if (value.length() >= 8 && value.indexOf('-') < 0) {
+                value = value.substring(0, 4) + "-" + value.substring(4, 6) + "-" + value.substring(6, 8);
+            }
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed UNTIL date: " + value);
+        }
+    }
+
+    private static int parseDays(String value) {
+        int mask = 0;
+        for (String code : value.split(",")) {
+            int day = -1;
+            for (int i = 0; i < DAY_CODES.length; i++) {
+                if (DAY_CODES[i].equals(code)) {
+                    day = i;
+                }
+            }
+            if (day < 0) {
+                throw new IllegalArgumentException("Unsupported BYDAY value: " + code);
+            }
+            mask |= 1 << day;
+        }
+        return mask;
+    }
+
+    private static boolean isLeap(long year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int monthLength(long year, int month) {
+        return switch (month) {
+            case 2 -> isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Walks the series period by period, holding only primitive state.
+     *
+     * A period is one step of the rule: a day, a week, a month or a year times the
+     * interval. Weekly periods have one slot per BYDAY day; the others have one slot,
+     * which is empty when the start day does not exist in that month or year.
+     */
+    private final class OccurrenceIterator implements Iterator<LocalDate> {
+
+        private final long startDay;
+        private final long toDay;
+        private final long fromDay;
+        private final int startDayOfMonth;
+        private final long startMonthIndex;
+        private final long weekStartDay;
+        private final int weekMask;
+
+        private long period;
+        private int slot;
+        private long index;
+        private int remaining;
+        private long nextDay = Long.MIN_VALUE;
+        private boolean done;
+
+        OccurrenceIterator(LocalDate start, long fromDay, long toDay, int maxOccurrences) {
+            this.startDay = start.toEpochDay();
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.startDayOfMonth = start.getDayOfMonth();
+            this.startMonthIndex = start.getYear() * 12L + start.getMonthValue() - 1;
+            this.weekStartDay = startDay - (start.getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+            this.weekMask = dayMask != 0 ? dayMask : 1 << (start.getDayOfWeek().getValue() - 1);
+            this.remaining = maxOccurrences;
+            this.done = maxOccurrences <= 0 || fromDay > toDay;
+            if (!done) {
+                skipTo(fromDay);
+            }
+        }
+
+        /**
+         * Positions the iterator at the first period that can contain fromDay,
+         * counting the occurrences passed over so that COUNT is still honoured.
+         */
+        private void skipTo(long fromDay) {
+            long gap = fromDay - startDay;
+            switch (frequency) {
+                case DAILY -> {
+                    period = Math.floorDiv(gap, interval);
+                    index = period;
+                }
+                case WEEKLY -> {
+                    period = Math.floorDiv(fromDay - weekStartDay, 7L * interval);
+                    if (period > 0) {
+                        int firstWeek = Integer.bitCount(weekMask >>> (int) (startDay - weekStartDay));
+                        index = firstWeek + (period - 1) * Integer.bitCount(weekMask);
+                    }
+                }
+                case MONTHLY, YEARLY -> {
+                    LocalDate from = LocalDate.ofEpochDay(fromDay);
+                    long months = from.getYear() * 12L + from.getMonthValue() - 1 - startMonthIndex;
+                    long step = frequency == Frequency.MONTHLY ? interval : 12L * interval;
+                    period = Math.max(0, months / step);
+                    for (long p = 0; p < period && (count == 0 || index < count); p++) {
+                        if (dayOfPeriod(p) != Long.MIN_VALUE) {
+                            index++;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the epoch day of the single slot of a monthly or yearly period,
+         * or Long.MIN_VALUE when the start day does not exist in that period.
+         */
+        private long dayOfPeriod(long p) {
+            long monthIndex = monthIndexOfPeriod(p);
+            long year = Math.floorDiv(monthIndex, 12);
+            int month = (int) Math.floorMod(monthIndex, 12) + 1;
+            if (startDayOfMonth > monthLength(year, month)) {
+                return Long.MIN_VALUE;
+            }
+            return LocalDate.of((int) year, month, startDayOfMonth).toEpochDay();
+        }
+
+        /**
+         * Returns true once a monthly or yearly period begins after the window,
+         * so that a run of periods lacking the start day cannot loop forever.
+         */
+        private boolean periodPastWindow(long p) {
+            long monthIndex = monthIndexOfPeriod(p);
+            long year = Math.floorDiv(monthIndex, 12);
+            if (year > MAX_YEAR) {
+                return true;
+            }
+            return LocalDate.of((int) year, (int) Math.floorMod(monthIndex, 12) + 1, 1).toEpochDay() > toDay;
+        }
+
+        private long monthIndexOfPeriod(long p) {
+            return startMonthIndex + p * (frequency == Frequency.MONTHLY ? interval : 12L * interval);
+        }
+
+        /**
+         * Returns the next day of the series, ignoring the window, or Long.MAX_VALUE
+         * if a monthly or yearly series has no more valid days before the window ends.
+         */
+        private long advance() {
+            while (true) {
+                long day;
+                switch (frequency) {
+                    case DAILY -> {
+                        day = startDay + period * interval;
+                        period++;
+                    }
+                    case WEEKLY -> {
+                        while (slot < 7 && (weekMask & (1 << slot)) == 0) {
+                            slot++;
+                        }
+                        if (slot == 7) {
+                            slot = 0;
+                            period++;
+                            continue;
+                        }
+                        day = weekStartDay + period * 7L * interval + slot;
+                        slot++;
+                    }
+                    default -> {
+                        day = dayOfPeriod(period);
+                        if (day == Long.MIN_VALUE && periodPastWindow(period)) {
+                            return Long.MAX_VALUE;
+                        }
+                        period++;
+                    }
+                }
+                if (day != Long.MIN_VALUE && day >= startDay) {
+                    return day;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!done && nextDay == Long.MIN_VALUE) {
+                long day = advance();
+                index++;
+                if (day == Long.MAX_VALUE || day > toDay || (count != 0 && index > count)) {
+                    done = true;
+                } else if (day >= fromDay) {
+                    nextDay = day;
+                }
+            }
+            return !done;
+        }
+
+        @Override
+        public LocalDate next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            LocalDate date = LocalDate.ofEpochDay(nextDay);
+            nextDay = Long.MIN_VALUE;
+            if (--remaining == 0) {
+                done = true;
+            }
+            return date;
+        }
+    }
+}
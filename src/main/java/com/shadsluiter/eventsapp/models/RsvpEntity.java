@@ -0,0 +1,58 @@
+package com.shadsluiter.eventsapp.models;
+
+import java.sql.Timestamp;
+
+/*
+ * This class contains one row of the rsvps table
+ * It is used by the RsvpService to store new RSVPs
+ */
+public class RsvpEntity {
+
+    private long eventId;
+    private long userId;
+    private RsvpStatus status;
+    private Timestamp createdAt;
+
+    public RsvpEntity() {
+    }
+
+    public RsvpEntity(long eventId, long userId, RsvpStatus status, Timestamp createdAt) {
+        this.eventId = eventId;
+        this.userId = userId;
+        this.status = status;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and setters
+    public long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(long eventId) {
+        this.eventId = eventId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public RsvpStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(RsvpStatus status) {
+        this.status = status;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,10 @@
+package com.shadsluiter.eventsapp.models;
+
+/*
+ * This enum contains the states of a user's RSVP to an event
+ * A cancelled RSVP is deleted, so it has no state
+ */
+public enum RsvpStatus {
+    ATTENDING,
+    WAITLISTED
+}
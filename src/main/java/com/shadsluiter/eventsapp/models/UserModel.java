@@ -4,8 +4,7 @@ import java.util.Set;
 
 public class UserModel {
 
-    // entity uses Long for id, model uses String. Using String for is allows for MongoDB and MySQL compatibility
-    private String id;
+    private Long id;
     private String userName;
     private String password;
     private boolean enabled;
@@ -17,7 +16,7 @@ public class UserModel {
     public UserModel() {
     }
 
-    public UserModel(String id, String userName, String password, boolean enabled, boolean accountNonExpired, boolean credentialsNonExpired, boolean accountNonLocked, Set<String> roles) {
+    public UserModel(Long id, String userName, String password, boolean enabled, boolean accountNonExpired, boolean credentialsNonExpired, boolean accountNonLocked, Set<String> roles) {
         this.id = id;
         this.userName = userName;
         this.password = password;
@@ -29,11 +28,11 @@ public class UserModel {
     }
 
     // Getters and setters
-    public String getId() {
+    public Long getId() {
         return id;
     }
 
-    public void setId(String id) {
+    public void setId(Long id) {
         this.id = id;
     }
 
@@ -0,0 +1,38 @@
+package com.shadsluiter.eventsapp.models;
+
+import java.util.List;
+
+/*
+ * This class contains one page of the user listing
+ * nextCursor is the id to pass as "after" for the following page, or null on the last page
+ */
+public class UserPage {
+
+    private List<UserSummary> users;
+    private String nextCursor;
+
+    public UserPage() {
+    }
+
+    public UserPage(List<UserSummary> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and setters
+    public List<UserSummary> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<UserSummary> users) {
+        this.users = users;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
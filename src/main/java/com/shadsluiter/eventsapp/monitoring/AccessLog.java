@@ -0,0 +1,97 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.shadsluiter.eventsapp.config.AsyncLogProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The access log: one line per request handled by either security chain,
+ * written to access.log by an AsyncLogWriter.
+ *
+ *   2026-10-19T10:15:30.123Z chain=api ip=10.0.0.7 user=alice method=GET path=/api/events status=200 duration_ms=4.21
+ *
+ * The query string is left out, since it can carry search text and tokens.
+ * Disabled with app.asyncLog.access=false.
+ */
+@Component
+public class AccessLog implements MeterBinder, DisposableBean {
+
+    private final AsyncLogWriter writer;
+
+    /**
+     * Constructs the access log and starts its writer.
+     *
+     * @param properties the async log configuration
+     */
+    @Autowired
+    public AccessLog(AsyncLogProperties properties) {
+        this(properties.isAccess() ? writer("access", properties) : null);
+    }
+
+    /**
+     * Constructs the access log over a writer the caller starts and closes.
+     *
+     * @param writer the writer, or null to log nothing
+     */
+    public AccessLog(AsyncLogWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Builds and starts a writer to name.log in the configured directory.
+     */
+    static AsyncLogWriter writer(String name, AsyncLogProperties properties) {
+        AsyncLogWriter writer = new AsyncLogWriter(name, Path.of(properties.getDirectory(), name + ".log"),
+            properties.getCapacity(), properties.getOverflow(), properties.getBatchSize(), properties.getFlushMs(),
+            properties.getMaxFileSize().toBytes(), properties.getMaxFiles());
+        writer.start();
+        return writer;
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Queues the request's line.
+     *
+     * @param chain the security chain that handled the request
+     * @param remoteAddress the client's address
+     * @param user the authenticated user's name, or null
+     * @param method the HTTP method
+     * @param path the request URI without the query string
+     * @param status the response status
+     * @param durationNanos the time spent in the chain
+     */
+    public void record(String chain, String remoteAddress, String user, String method, String path, int status, long durationNanos) {
+        if (writer == null) {
+            return;
+        }
+        writer.append(Instant.now() + " chain=" + chain + " ip=" + AsyncLogWriter.value(remoteAddress)
+            + " user=" + AsyncLogWriter.value(user) + " method=" + AsyncLogWriter.value(method)
+            + " path=" + AsyncLogWriter.value(path) + " status=" + status
+            + " duration_ms=" + RequestTiming.millis(durationNanos));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (writer != null) {
+            writer.bindTo(registry);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import java.io.IOException;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Writes each request of a security chain to the AccessLog.
+ *
+ * Sits just inside the chain's SecurityContextHolderFilter, so by the time
+ * the rest of the chain returns the authenticated user is known and the
+ * security context has not yet been cleared. Requests stopped by the filters
+ * after it, such as rate limiting and authorization, are logged with their
+ * status; a request that ends in an exception is logged as 500, as the
+ * container will answer it. Not a bean, so the servlet container does not
+ * also register it outside the chains.
+ */
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    private final AccessLog accessLog;
+    private final String chain;
+
+    /**
+     * Constructs the filter.
+     *
+     * @param accessLog the access log
+     * @param chain the name of the security chain it is added to, e.g. "api" or "web"
+     */
+    public AccessLogFilter(AccessLog accessLog, String chain) {
+        this.accessLog = accessLog;
+        this.chain = chain;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !accessLog.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = false;
+        } finally {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            String user = authentication == null || authentication instanceof AnonymousAuthenticationToken
+                ? null : authentication.getName();
+            accessLog.record(chain, request.getRemoteAddr(), user, request.getMethod(), request.getRequestURI(),
+                failed && response.getStatus() < 400 ? 500 : response.getStatus(), System.nanoTime() - start);
+        }
+    }
+}
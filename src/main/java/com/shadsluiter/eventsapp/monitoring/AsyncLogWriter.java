@@ -0,0 +1,326 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Appends lines to a rolling file from a background thread.
+ *
+ * Callers hand finished lines to append(), which only places them in a
+ * RingBuffer and never touches the file, so a slow or full disk cannot hold
+ * up a request thread. The writer thread drains the buffer in batches,
+ * encodes each batch into one direct buffer and writes it to a FileChannel
+ * in a single call. When the buffer is empty it sleeps for flushMs, or until
+ * a producer finds the buffer half full and wakes it.
+ *
+ * A line that arrives while the buffer is full is handled by the overflow
+ * policy: DROP_NEWEST discards it, DROP_OLDEST discards the oldest waiting
+ * line to make room. Either way the caller never waits and the loss is counted.
+ *
+ * Once the file reaches maxFileBytes it is renamed to name.1, older files
+ * move up one number and the oldest beyond maxFiles is deleted. Write
+ * failures are logged and the batch is counted as failed; the file is
+ * reopened for the next batch.
+ */
+public class AsyncLogWriter implements MeterBinder, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncLogWriter.class);
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * What to do with a line when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the new line */
+        DROP_NEWEST,
+        /** Discard the oldest waiting line and keep the new one */
+        DROP_OLDEST
+    }
+
+    private final String name;
+    private final Path file;
+    private final RingBuffer<String> ring;
+    private final OverflowPolicy overflow;
+    private final int batchSize;
+    private final long flushNanos;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final Thread writer;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running = true;
+
+    // Only used by the writer thread
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private FileChannel channel;
+    private long fileBytes;
+
+    /**
+     * Constructs the writer. Lines are buffered until start() is called.
+     *
+     * @param name the log's name, used for the thread and the metrics' log tag
+     * @param file the file to append to; its directory is created on the first write
+     * @param capacity the most lines waiting to be written, rounded up to a power of two
+     * @param overflow what happens to a line when the buffer is full
+     * @param batchSize the most lines written in one write
+     * @param flushMs how long the writer sleeps when the buffer is empty
+     * @param maxFileBytes the size at which the file is rolled over; 0 never rolls it
+     * @param maxFiles how many rolled-over files are kept
+     */
+    public AsyncLogWriter(String name, Path file, int capacity, OverflowPolicy overflow, int batchSize, long flushMs,
+                          long maxFileBytes, int maxFiles) {
+        this.name = name;
+        this.file = file;
+        this.ring = new RingBuffer<>(capacity);
+        this.overflow = overflow;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushMs));
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.writer = new Thread(this::run, name + "-log-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Queues a line for writing without blocking.
+     *
+     * @param line the line, without a line terminator
+     * @return false if this line was dropped because the buffer was full
+     */
+    public boolean append(String line) {
+        if (!ring.offer(line)) {
+            if (overflow == OverflowPolicy.DROP_NEWEST) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            do {
+                if (ring.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            } while (!ring.offer(line));
+        }
+        if (ring.size() > ring.capacity() / 2) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the writer once it has written every queued line, waiting up to five seconds.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getQueued() {
+        return ring.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("eventsapp.log.written", written, AtomicLong::get)
+            .description("Log lines written to file")
+            .tag("log", name)
+            .register(registry);
+        FunctionCounter.builder("eventsapp.log.dropped", dropped, AtomicLong::get)
+            .description("Log lines dropped because the log buffer was full")
+            .tag("log", name)
+            .register(registry);
+        FunctionCounter.builder("eventsapp.log.failed", failed, AtomicLong::get)
+            .description("Log lines lost to write errors")
+            .tag("log", name)
+            .register(registry);
+        Gauge.builder("eventsapp.log.queued", ring, RingBuffer::size)
+            .description("Log lines waiting to be written")
+            .tag("log", name)
+            .register(registry);
+    }
+
+    private void run() {
+        while (true) {
+            // Read the flag first so lines queued before close() are still drained.
+            boolean stopping = !running;
+            if (drainBatch() == 0) {
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(this, flushNanos);
+            }
+        }
+        closeChannel();
+    }
+
+    private int drainBatch() {
+        int count = 0;
+        String line;
+        buffer.clear();
+        try {
+            while (count < batchSize && (line = ring.poll()) != null) {
+                encode(line);
+                count++;
+            }
+            if (count > 0) {
+                flushBuffer();
+                written.addAndGet(count);
+                if (maxFileBytes > 0 && fileBytes >= maxFileBytes) {
+                    roll();
+                }
+            }
+        } catch (IOException e) {
+            failed.addAndGet(count);
+            logger.warn("Could not write {} lines to {}: {}", count, file, e.toString());
+            closeChannel();
+        }
+        return count;
+    }
+
+    private void encode(String line) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flushBuffer();
+            } else {
+                break;
+            }
+        }
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) '\n');
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        FileChannel out = channel();
+        while (buffer.hasRemaining()) {
+            fileBytes += out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            fileBytes = channel.size();
+        }
+        return channel;
+    }
+
+    private void roll() throws IOException {
+        closeChannel();
+        if (maxFiles <= 0) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.deleteIfExists(rolled(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            if (Files.exists(rolled(i))) {
+                Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Could not close {}: {}", file, e.toString());
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Returns the value quoted if it is empty or contains spaces, quotes or
+     * control characters, so every field of a line stays one key=value token.
+     */
+    static String value(String value) {
+        if (value == null) {
+            return "-";
+        }
+        boolean plain = !value.isEmpty();
+        for (int i = 0; i < value.length() && plain; i++) {
+            char c = value.charAt(i);
+            plain = c > ' ' && c != '"' && c != '\\' && c != 0x7F;
+        }
+        if (plain) {
+            return value;
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 8).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ' || c == 0x7F) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,86 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import java.time.Instant;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import com.shadsluiter.eventsapp.config.AsyncLogProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The audit trail: one line per event or user change made through
+ * EventService or UserService, written to audit.log by an AsyncLogWriter.
+ *
+ *   2026-10-19T10:15:30.123Z action=event.update id=42 actor=alice
+ *
+ * The actor is the authenticated user of the calling thread, or "-" for
+ * anonymous callers such as registration and background work. Disabled with
+ * app.asyncLog.audit=false.
+ */
+@Component
+public class AuditTrail implements MeterBinder, DisposableBean {
+
+    private final AsyncLogWriter writer;
+
+    /**
+     * Constructs the audit trail and starts its writer.
+     *
+     * @param properties the async log configuration
+     */
+    @Autowired
+    public AuditTrail(AsyncLogProperties properties) {
+        this(properties.isAudit() ? AccessLog.writer("audit", properties) : null);
+    }
+
+    /**
+     * Constructs the audit trail over a writer the caller starts and closes.
+     *
+     * @param writer the writer, or null to record nothing
+     */
+    public AuditTrail(AsyncLogWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Queues a line for a change.
+     *
+     * @param action what was done, e.g. "event.create" or "user.delete"
+     * @param id the ID of the changed record, or null if it has none yet
+     */
+    public void record(String action, Object id) {
+        if (writer == null) {
+            return;
+        }
+        writer.append(Instant.now() + " action=" + action + " id=" + (id != null ? id : "-")
+            + " actor=" + AsyncLogWriter.value(actor()));
+    }
+
+    private static String actor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (writer != null) {
+            writer.bindTo(registry);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
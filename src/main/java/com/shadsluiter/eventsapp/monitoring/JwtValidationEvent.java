@@ -0,0 +1,23 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one JWT signature and expiry check.
+ */
+@Name("com.shadsluiter.eventsapp.JwtValidation")
+@Label("JWT Validation")
+@Category({"EventsApp", "Security"})
+@Description("Parsing and verifying a JWT")
+@StackTrace(false)
+public class JwtValidationEvent extends Event {
+
+    @Label("Outcome")
+    @Description("valid, or the simple name of the exception that rejected the token")
+    public String outcome;
+}
@@ -0,0 +1,35 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one repository call: its statements, any wait for a bulkhead
+ * slot, and the rows it read or wrote.
+ */
+@Name("com.shadsluiter.eventsapp.RepositoryCall")
+@Label("Repository Call")
+@Category({"EventsApp", "Database"})
+@Description("A repository method's statements, including any wait for a bulkhead slot")
+@StackTrace(false)
+public class RepositoryCallEvent extends Event {
+
+    @Label("Operation")
+    @Description("Repository and method, e.g. EventRepository.findById")
+    public String operation;
+
+    @Label("Query Class")
+    @Description("The bulkhead the statements ran in")
+    public String queryClass;
+
+    @Label("Rows")
+    @Description("Rows returned, or rows changed by a write")
+    public long rows;
+
+    @Label("Failed")
+    public boolean failed;
+}
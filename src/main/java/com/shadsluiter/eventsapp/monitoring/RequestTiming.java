@@ -0,0 +1,151 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import java.util.Locale;
+
+/**
+ * Per-request breakdown of where a sampled request spent its time.
+ *
+ * ServerTimingFilter begins a timing for a sampled request on the request
+ * thread, and the code on that thread adds to its phases: JWT authentication,
+ * repository statements, recurrence expansion, and view rendering or
+ * body serialization. For requests that are not sampled there is no current
+ * timing, and start() returns 0 without reading the clock, so the hooks cost
+ * one ThreadLocal lookup.
+ *
+ * Phases may overlap: statements run while authenticating count in both auth
+ * and db. Work done on other threads, e.g. sharded scatter queries, is not seen.
+ *
+ * Usage:
+ *
+ *   long start = RequestTiming.start();
+ *   ...
+ *   RequestTiming.record(RequestTiming.DB, start);
+ */
+public final class RequestTiming {
+
+    public static final int AUTH = 0;
+    public static final int DB = 1;
+    public static final int CONVERT = 2;
+    public static final int RENDER = 3;
+
+    private static final String[] PHASES = {"auth", "db", "convert", "render"};
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final long[] nanos = new long[PHASES.length];
+    private final int[] counts = new int[PHASES.length];
+    private long renderStart;
+
+    private RequestTiming() {
+    }
+
+    /**
+     * Starts timing the current thread's request.
+     *
+     * @return the new timing, which end() must clear
+     */
+    static RequestTiming begin() {
+        RequestTiming timing = new RequestTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * Stops timing the current thread's request.
+     */
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the start of a phase for record, or 0 when the request is not sampled.
+     */
+    public static long start() {
+        return CURRENT.get() != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since start to a phase of the current request, if it is sampled.
+     *
+     * @param phase AUTH, DB, CONVERT or RENDER
+     * @param start the value start() returned when the work began
+     */
+    public static void record(int phase, long start) {
+        if (start == 0) {
+            return;
+        }
+        RequestTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.nanos[phase] += System.nanoTime() - start;
+            timing.counts[phase]++;
+        }
+    }
+
+    /**
+     * Marks the start of rendering or serialization, which lasts until the
+     * response is complete. Later calls for the same request are ignored.
+     */
+    public static void startRender() {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null && timing.renderStart == 0) {
+            timing.renderStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Ends rendering, if it started, and returns the request's total time so far.
+     */
+    long finish() {
+        long now = System.nanoTime();
+        if (renderStart != 0) {
+            nanos[RENDER] += now - renderStart;
+            counts[RENDER]++;
+            renderStart = 0;
+        }
+        return now - startNanos;
+    }
+
+    /**
+     * Formats the phases as a Server-Timing header value. Rendering still in
+     * progress counts up to now.
+     */
+    String toServerTiming() {
+        long now = System.nanoTime();
+        StringBuilder header = new StringBuilder(128);
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            long phaseNanos = nanos[phase];
+            if (phase == RENDER && renderStart != 0) {
+                phaseNanos += now - renderStart;
+            } else if (counts[phase] == 0) {
+                continue;
+            }
+            header.append(PHASES[phase]);
+            if (phase == DB) {
+                header.append(";desc=\"").append(counts[phase]).append(counts[phase] == 1 ? " statement\"" : " statements\"");
+            }
+            header.append(";dur=").append(millis(phaseNanos)).append(", ");
+        }
+        return header.append("total;dur=").append(millis(now - startNanos)).toString();
+    }
+
+    /**
+     * Formats the phases as key=value log fields, e.g. "db_ms=4.10 db_count=3".
+     */
+    String toLogFields() {
+        StringBuilder fields = new StringBuilder(128);
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            if (counts[phase] == 0) {
+                continue;
+            }
+            fields.append(' ').append(PHASES[phase]).append("_ms=").append(millis(nanos[phase]));
+            if (phase == DB) {
+                fields.append(" db_count=").append(counts[phase]);
+            }
+        }
+        return fields.toString();
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+}
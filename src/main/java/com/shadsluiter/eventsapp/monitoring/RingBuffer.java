@@ -0,0 +1,103 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue over a preallocated array, safe for any number of
+ * producers and consumers.
+ *
+ * Each slot carries a sequence number that says whose turn it is: a producer
+ * at position p may fill the slot once its sequence is p, and a consumer may
+ * take it once the sequence is p + 1. Claiming a position is one
+ * compare-and-set on the tail or head, so no thread ever waits for another
+ * and a full or empty buffer is reported at once.
+ *
+ * @param <T> the element type
+ */
+final class RingBuffer<T> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity the most elements held, rounded up to a power of two
+     */
+    RingBuffer(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds the element unless the buffer is full.
+     *
+     * @return false if the buffer is full
+     */
+    boolean offer(T element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long turn = sequences.get(index) - position;
+            if (turn == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    // Publishes the element to the consumer that reads this sequence.
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (turn < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the oldest element.
+     *
+     * @return the element, or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long turn = sequences.get(index) - (position + 1);
+            if (turn == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T element = (T) elements[index];
+                    elements[index] = null;
+                    // Hands the slot back to the producer one lap ahead.
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (turn < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements held, which may be stale by the time it is read.
+     */
+    int size() {
+        return (int) Math.max(0, Math.min(elements.length, tail.get() - head.get()));
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,30 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one InputSanitizer call. Carries lengths only, never the input.
+ */
+@Name("com.shadsluiter.eventsapp.Sanitization")
+@Label("Input Sanitization")
+@Category({"EventsApp", "Security"})
+@Description("Sanitizing one user input")
+@StackTrace(false)
+public class SanitizationEvent extends Event {
+
+    @Label("Kind")
+    @Description("username, numeric, password or input")
+    public String kind;
+
+    @Label("Input Length")
+    public int inputLength;
+
+    @Label("Removed")
+    @Description("Characters removed, including surrounding whitespace")
+    public int removed;
+}
@@ -0,0 +1,33 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Marks where view rendering starts for RequestTiming.
+ *
+ * postHandle runs after the controller and before its view is rendered. For
+ * @ResponseBody handlers the body is already written by then, and
+ * ServerTimingBodyAdvice has marked the start of serialization instead.
+ */
+@Configuration
+public class ServerTimingConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+                if (modelAndView != null) {
+                    RequestTiming.startRender();
+                }
+            }
+        });
+    }
+}
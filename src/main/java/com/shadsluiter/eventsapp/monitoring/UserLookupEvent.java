@@ -0,0 +1,27 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one UserService.loadUserByUsername call, as made by form
+ * login and by every JWT-authenticated request.
+ */
+@Name("com.shadsluiter.eventsapp.UserLookup")
+@Label("User Lookup")
+@Category({"EventsApp", "Security"})
+@Description("Loading a user's details for authentication")
+@StackTrace(false)
+public class UserLookupEvent extends Event {
+
+    @Label("Cached")
+    @Description("True if served from the local user cache")
+    public boolean cached;
+
+    @Label("Found")
+    public boolean found;
+}
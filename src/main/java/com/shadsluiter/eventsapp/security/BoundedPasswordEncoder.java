@@ -0,0 +1,166 @@
+package com.shadsluiter.eventsapp.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * PasswordEncoder that runs hashing and verification on a dedicated, bounded executor.
+ *
+ * BCrypt is slow on purpose, so running it on Tomcat request threads lets a burst of
+ * logins or registrations occupy every worker and starve ordinary page and API reads.
+ * This encoder limits concurrent hashing to a fixed number of threads and waiting work
+ * to a fixed queue. Once both are full, callers fail immediately with
+ * PasswordHashingRejectedException, which is reported to clients as 503 with Retry-After.
+ *
+ * Executor state is published as Micrometer metrics under "eventsapp.password.hashing".
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, MeterBinder, DisposableBean {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * Creates the encoder and starts its worker threads.
+     *
+     * @param delegate the encoder that does the actual hashing, e.g. BCryptPasswordEncoder
+     * @param threads the number of hashing threads
+     * @param queueCapacity the number of requests allowed to wait for a thread
+     * @param timeoutMs the longest a caller waits for its result, including queue time
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long timeoutMs) {
+        this.delegate = delegate;
+        this.timeoutMs = timeoutMs;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Runs a hashing task on the executor and waits for its result.
+     *
+     * @param task the hashing work
+     * @return the task result
+     * @throws PasswordHashingRejectedException if the executor is full or the wait times out
+     */
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new PasswordHashingRejectedException("Password hashing capacity exceeded", retryAfterSeconds());
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.incrementAndGet();
+            throw new PasswordHashingRejectedException("Password hashing timed out", retryAfterSeconds());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingRejectedException("Interrupted while waiting for password hashing", retryAfterSeconds());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+    /**
+     * Estimates how long a rejected client should wait, based on the configured timeout.
+     */
+    private long retryAfterSeconds() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMs));
+    }
+
+    /**
+     * Returns the number of requests rejected because the executor was full.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of requests that gave up waiting for a result.
+     */
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("eventsapp.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Password hashing tasks currently running")
+            .register(registry);
+        Gauge.builder("eventsapp.password.hashing.queued", executor, e -> e.getQueue().size())
+            .description("Password hashing tasks waiting for a thread")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.password.hashing.completed", executor, ThreadPoolExecutor::getCompletedTaskCount)
+            .description("Password hashing tasks completed")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.password.hashing.rejected", rejected, AtomicLong::get)
+            .description("Password hashing requests rejected because the executor was full")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.password.hashing.timeouts", timedOut, AtomicLong::get)
+            .description("Password hashing requests that timed out waiting for a result")
+            .register(registry);
+    }
+
+    /**
+     * Stops the hashing threads when the application context closes.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
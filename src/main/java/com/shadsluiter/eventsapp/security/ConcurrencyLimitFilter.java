@@ -0,0 +1,88 @@
+package com.shadsluiter.eventsapp.security;
+
+import java.io.IOException;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.shadsluiter.eventsapp.service.AimdLimiter;
+import com.shadsluiter.eventsapp.service.ConcurrencyLimiters;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Load shedding for the API filter chain.
+ *
+ * Each request is admitted by its endpoint group's AimdLimiter. When the group
+ * is at its limit the request gets 503 Service Unavailable with a Retry-After
+ * header straight away, instead of waiting for a request thread and a database
+ * connection behind requests that are already slow. A request that ends in
+ * 503 or 504, or fails with a timeout or connection failure, counts as failed,
+ * so the limit also backs off when the database limiter in EventService or a
+ * bulkhead sheds load. Other errors are the request's own, as in
+ * EventService.limited, and do not shrink the limit.
+ *
+ * Runs after RateLimitFilter, so requests over a client's rate never take a slot.
+ * Not a Spring bean, for the same reason as RateLimitFilter.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final ConcurrencyLimiters limiters;
+
+    /**
+     * Constructs the filter.
+     *
+     * @param limiters the per-group limiters
+     */
+    public ConcurrencyLimitFilter(ConcurrencyLimiters limiters) {
+        this.limiters = limiters;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !limiters.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        AimdLimiter limiter = limiters.forPath(request.getRequestURI());
+        if (!limiter.tryAcquire()) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            response.setContentType("application/json");
+            response.getWriter().write("{\"error\": \"Server is busy, please retry shortly\"}");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() == HttpServletResponse.SC_SERVICE_UNAVAILABLE
+                || response.getStatus() == HttpServletResponse.SC_GATEWAY_TIMEOUT;
+        } catch (ServletException | IOException | RuntimeException e) {
+            failed = isOverload(e);
+            throw e;
+        } finally {
+            limiter.release(start, failed);
+        }
+    }
+
+    /**
+     * Returns true if the exception, or one it wraps, is a timeout or connection failure.
+     */
+    private static boolean isOverload(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof DataAccessResourceFailureException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
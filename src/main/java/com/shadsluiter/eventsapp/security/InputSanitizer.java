@@ -2,12 +2,16 @@ package com.shadsluiter.eventsapp.security;
 
 import java.util.regex.Pattern;
 
+import com.shadsluiter.eventsapp.monitoring.SanitizationEvent;
+
 /**
  * Utility class for sanitizing user input to help prevent SQL Injection, 
  * control character injection, and general malicious payloads.
  * 
  * This class demonstrates multiple sanitization approaches based on 
  * the input context (username, password, numeric, generic text).
+ * 
+ * Each call is recorded as a SanitizationEvent when JFR is recording it.
  */
 public class InputSanitizer {
 
@@ -41,8 +45,10 @@ public class InputSanitizer {
         if (username == null) {
             return null;
         }
-        username = username.trim();
-        return USERNAME_ALLOWED.matcher(username).replaceAll("");
+        SanitizationEvent event = new SanitizationEvent();
+        event.begin();
+        String sanitized = USERNAME_ALLOWED.matcher(username.trim()).replaceAll("");
+        return recorded(event, "username", username, sanitized);
     }
 
     /**
@@ -57,8 +63,10 @@ public class InputSanitizer {
         if (numeric == null) {
             return null;
         }
-        numeric = numeric.trim();
-        return NUMERIC_ONLY.matcher(numeric).replaceAll("");
+        SanitizationEvent event = new SanitizationEvent();
+        event.begin();
+        String sanitized = NUMERIC_ONLY.matcher(numeric.trim()).replaceAll("");
+        return recorded(event, "numeric", numeric, sanitized);
     }
 
     /**
@@ -74,8 +82,10 @@ public class InputSanitizer {
         if (password == null) {
             return null;
         }
-        password = password.trim();
-        return CONTROL_CHARS.matcher(password).replaceAll("");
+        SanitizationEvent event = new SanitizationEvent();
+        event.begin();
+        String sanitized = CONTROL_CHARS.matcher(password.trim()).replaceAll("");
+        return recorded(event, "password", password, sanitized);
     }
 
     /**
@@ -94,6 +104,9 @@ public class InputSanitizer {
         if (text == null) {
             return null;
         }
+        SanitizationEvent event = new SanitizationEvent();
+        event.begin();
+        String input = text;
         text = text.trim();
 
         if (text.length() > 100) {
@@ -106,6 +119,23 @@ public class InputSanitizer {
             text = text.replaceAll("(?i)" + keyword, ""); // Remove keywords case-insensitively
         }
 
-        return text.replaceAll("[^a-zA-Z0-9 ]", ""); // Allow only alphanumeric and spaces
+        text = text.replaceAll("[^a-zA-Z0-9 ]", ""); // Allow only alphanumeric and spaces
+        return recorded(event, "input", input, text);
+    }
+
+    /**
+     * Ends a sanitization event and commits it if JFR is recording it.
+     *
+     * @return the sanitized string
+     */
+    private static String recorded(SanitizationEvent event, String kind, String input, String sanitized) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.inputLength = input.length();
+            event.removed = Math.max(0, input.length() - sanitized.length());
+            event.commit();
+        }
+        return sanitized;
     }
 }
@@ -8,6 +8,8 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.shadsluiter.eventsapp.monitoring.RequestTiming;
+
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -20,6 +22,7 @@ import java.io.IOException;
  * 
  * Extracts the JWT token from the Authorization header, validates it,
  * and populates the SecurityContext with an authenticated user.
+ * The time taken counts as the auth phase of a sampled RequestTiming.
  */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -47,6 +50,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
 
+        long start = RequestTiming.start();
         String token = getJwtFromRequest(request);
 
         if (token != null && tokenProvider.validateToken(token)) {
@@ -61,6 +65,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             }
         }
+        RequestTiming.record(RequestTiming.AUTH, start);
 
         filterChain.doFilter(request, response);
     }
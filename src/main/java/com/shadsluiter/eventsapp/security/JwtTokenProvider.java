@@ -12,6 +12,8 @@ import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 
+import com.shadsluiter.eventsapp.monitoring.JwtValidationEvent;
+
 /**
  * Provides functionality for generating, parsing, and validating JWT tokens.
  */
@@ -72,10 +74,15 @@ public class JwtTokenProvider {
     /**
      * Validates the authenticity and expiration of a JWT token.
      * 
+     * Each check is recorded as a JwtValidationEvent when JFR is recording it.
+     * 
      * @param authToken the JWT token to validate
      * @return true if valid, false otherwise
      */
     public boolean validateToken(String authToken) {
+        JwtValidationEvent event = new JwtValidationEvent();
+        event.begin();
+        String outcome = "valid";
         try {
             Jwts.parser()
                 .verifyWith(getSigningKey())
@@ -84,7 +91,14 @@ public class JwtTokenProvider {
             return true;
         } catch (Exception e) {
             // Token is invalid or expired
+            outcome = e.getClass().getSimpleName();
             return false;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.outcome = outcome;
+                event.commit();
+            }
         }
     }
 }
@@ -0,0 +1,29 @@
+package com.shadsluiter.eventsapp.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Thrown when the password hashing executor is saturated and cannot accept more work.
+ *
+ * Extends AuthenticationServiceException so that Spring Security reports it to the
+ * login failure handler instead of treating it as bad credentials.
+ */
+public class PasswordHashingRejectedException extends AuthenticationServiceException {
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Creates the exception with a hint for how long the client should wait.
+     *
+     * @param message the detail message
+     * @param retryAfterSeconds suggested value for the Retry-After header
+     */
+    public PasswordHashingRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
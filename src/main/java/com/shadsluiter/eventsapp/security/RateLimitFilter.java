@@ -0,0 +1,95 @@
+package com.shadsluiter.eventsapp.security;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.shadsluiter.eventsapp.config.RateLimitProperties;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Admission control for the API filter chain.
+ *
+ * Runs after JwtAuthenticationFilter so that authenticated requests are metered per
+ * JWT subject and anonymous ones per client IP. Each route rule has its own buckets.
+ * Requests over the limit get 429 Too Many Requests with a Retry-After header.
+ *
+ * Not a Spring bean on purpose: it is added to the API chain only, so it must not be
+ * picked up by Spring Boot's automatic servlet filter registration.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * Constructs the filter.
+     *
+     * @param rateLimiter the bucket store
+     * @param properties the route rules
+     */
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        String path = request.getRequestURI();
+        List<RateLimitProperties.Rule> routes = properties.getRoutes();
+        RateLimitProperties.Rule rule = properties.getDefaults();
+        int ruleIndex = -1;
+        for (int i = 0; i < routes.size(); i++) {
+            if (pathMatcher.match(routes.get(i).getPattern(), path)) {
+                rule = routes.get(i);
+                ruleIndex = i;
+                break;
+            }
+        }
+
+        long waitNanos = rateLimiter.tryAcquire(ruleIndex + "|" + clientKey(request), rule);
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            response.setStatus(429);
+            response.setHeader("Retry-After", String.valueOf(retryAfter));
+            response.setContentType("application/json");
+            response.getWriter().write("{\"error\": \"Too many requests\"}");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Identifies the client: the JWT subject when authenticated, otherwise the remote address.
+     *
+     * @param request the incoming HTTP request
+     * @return the bucket key for this client
+     */
+    private String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "sub:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,157 @@
+package com.shadsluiter.eventsapp.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.shadsluiter.eventsapp.config.RateLimitProperties;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Lock-free token bucket store keyed by client.
+ *
+ * Each bucket is a single AtomicLong holding its "theoretical arrival time" (the
+ * generic cell rate algorithm): the instant at which the bucket will be full again.
+ * Taking a token is one compare-and-set on that value, so concurrent requests never
+ * lock, and the map itself is a ConcurrentHashMap with per-bin locking on insert only.
+ *
+ * A bucket whose arrival time has passed is full, which is exactly the state of a new
+ * bucket, so idle buckets can be dropped without changing behaviour. They are swept
+ * periodically and whenever the map grows past the configured maximum, keeping memory
+ * proportional to the clients active in the last burst window.
+ *
+ * If the map is still full of active clients, a new client gets no bucket of its
+ * own and shares one overflow bucket per rule with every other such client, so a
+ * flood of new keys is held to a single client's rate instead of going unmetered.
+ */
+@Component
+public class RateLimiter implements MeterBinder {
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<RateLimitProperties.Rule, AtomicLong> overflowBuckets = new ConcurrentHashMap<>();
+    private final int maxBuckets;
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong lastInlineSweep = new AtomicLong(System.nanoTime());
+
+    /**
+     * Constructs the limiter.
+     *
+     * @param properties the rate limit configuration
+     */
+    public RateLimiter(RateLimitProperties properties) {
+        this.maxBuckets = properties.getMaxBuckets();
+    }
+
+    /**
+     * Tries to take one token from the client's bucket.
+     *
+     * @param key the client key, e.g. rule index plus subject or IP
+     * @param rule the limit to apply
+     * @return 0 if the request is allowed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String key, RateLimitProperties.Rule rule) {
+        long now = System.nanoTime();
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rule.getPermitsPerSecond());
+        long tolerance = interval * (rule.getBurst() - 1);
+
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxBuckets && !sweepWhenFull(now)) {
+                // Table is full of active clients: meter the newcomer with everyone else who did not fit.
+                overflowed.incrementAndGet();
+                bucket = overflowBuckets.computeIfAbsent(rule, r -> new AtomicLong(now));
+            } else {
+                bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+        }
+
+        while (true) {
+            long arrival = bucket.get();
+            long start = Math.max(arrival, now);
+            if (start - now > tolerance) {
+                rejected.incrementAndGet();
+                return start - tolerance - now;
+            }
+            if (bucket.compareAndSet(arrival, start + interval)) {
+                allowed.incrementAndGet();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Sweeps idle buckets on the request path when the table is full.
+     *
+     * At most one thread sweeps at a time and at most once per second, so a table
+     * full of active clients does not turn every new client into a full scan.
+     *
+     * @param now the current System.nanoTime()
+     * @return true if room was made for a new bucket
+     */
+    private boolean sweepWhenFull(long now) {
+        long last = lastInlineSweep.get();
+        if (now - last < TimeUnit.SECONDS.toNanos(1) || !lastInlineSweep.compareAndSet(last, now)) {
+            return false;
+        }
+        return evictIdle() > 0;
+    }
+
+    /**
+     * Periodically sweeps idle buckets, every RateLimitProperties.evictIntervalMs.
+     */
+    @Scheduled(fixedDelayString = "#{@rateLimitProperties.evictIntervalMs}")
+    public void evictIdleBuckets() {
+        evictIdle();
+    }
+
+    /**
+     * Removes buckets that have refilled completely.
+     *
+     * A request racing with removal may spend its token on the removed bucket,
+     * which at worst grants that client one extra token.
+     *
+     * @return the number of buckets removed
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int removed = 0;
+        for (var entry : buckets.entrySet()) {
+            if (entry.getValue().get() - now <= 0 && buckets.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of buckets currently held in memory.
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("eventsapp.ratelimit.buckets", buckets, ConcurrentHashMap::size)
+            .description("Rate limit buckets held in memory")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.ratelimit.allowed", allowed, AtomicLong::get)
+            .description("API requests admitted by the rate limiter")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.ratelimit.rejected", rejected, AtomicLong::get)
+            .description("API requests rejected with 429 by the rate limiter")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.ratelimit.overflowed", overflowed, AtomicLong::get)
+            .description("API requests metered by a shared overflow bucket because the bucket table was full")
+            .register(registry);
+    }
+}
@@ -0,0 +1,118 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit that adapts to observed latency by additive increase,
+ * multiplicative decrease.
+ *
+ * A request is admitted only while fewer than the limit are in flight. Each
+ * request that completes within the slow threshold while the limit is at least
+ * half used raises the limit by 1/limit, so about one per limit's worth of
+ * requests. A request that is slow or fails cuts the limit by the backoff
+ * ratio, but only if it started after the previous cut: the requests already
+ * in flight saw the same slowdown, and counting each of them would collapse
+ * the limit to its minimum after one slow burst.
+ *
+ * When the database slows down the limit shrinks towards what it can still
+ * serve promptly, and the excess is rejected at once instead of queueing for
+ * threads and connections.
+ */
+public class AimdLimiter {
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long slowNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile double limit;
+    private long lastDecrease = System.nanoTime();
+
+    /**
+     * Constructs the limiter.
+     *
+     * @param name the group name, used as the metrics tag
+     * @param initialLimit the limit before any request completes
+     * @param minLimit the lowest the limit is cut to
+     * @param maxLimit the highest the limit is raised to
+     * @param slowMs the latency above which a request counts as slow
+     * @param backoffRatio the share of the limit kept after a slow or failed request
+     */
+    public AimdLimiter(String name, int initialLimit, int minLimit, int maxLimit, long slowMs, double backoffRatio) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMs);
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+
+    /**
+     * Admits a request if fewer than the limit are in flight.
+     *
+     * @return true if admitted, in which case release must be called once it completes
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Completes an admitted request and adapts the limit to how it went.
+     *
+     * @param startNanos the System.nanoTime() at which the request was admitted
+     * @param failed true if the request failed in a way that signals overload, e.g. a timeout
+     */
+    public void release(long startNanos, boolean failed) {
+        long now = System.nanoTime();
+        int inFlightBefore = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (failed || now - startNanos > slowNanos) {
+                if (startNanos - lastDecrease > 0) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecrease = now;
+                }
+            } else if (inFlightBefore * 2 >= limit) {
+                // Only grow while the limit is being used, so an idle group does not drift to the maximum.
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the current limit, rounded down to whole requests.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns the number of requests currently admitted.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns how many requests have been rejected.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,26 @@
+package com.shadsluiter.eventsapp.service;
+
+/**
+ * Thrown when a call is shed because its concurrency limit is reached.
+ *
+ * Mapped to 503 Service Unavailable with a Retry-After header by GlobalExceptionHandler.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Creates the exception with a hint for how long the client should wait.
+     *
+     * @param message the detail message
+     * @param retryAfterSeconds suggested value for the Retry-After header
+     */
+    public ConcurrencyLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,99 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import com.shadsluiter.eventsapp.config.ConcurrencyLimitProperties;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * The adaptive concurrency limits: one AimdLimiter per API endpoint group, one
+ * for unmatched API requests, and one for EventService's repository calls.
+ *
+ * Each limiter's current limit, requests in flight and rejections are exported
+ * as metrics tagged with its group name.
+ */
+@Component
+public class ConcurrencyLimiters implements MeterBinder {
+
+    private final boolean enabled;
+    private final List<String> patterns = new ArrayList<>();
+    private final List<AimdLimiter> groups = new ArrayList<>();
+    private final AimdLimiter defaults;
+    private final AimdLimiter db;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * Constructs the limiters.
+     *
+     * @param properties the concurrency limit configuration
+     */
+    public ConcurrencyLimiters(ConcurrencyLimitProperties properties) {
+        this.enabled = properties.isEnabled();
+        for (ConcurrencyLimitProperties.Group group : properties.getGroups()) {
+            patterns.add(group.getPattern());
+            groups.add(limiter(group, properties.getBackoffRatio()));
+        }
+        this.defaults = limiter(properties.getDefaults(), properties.getBackoffRatio());
+        this.db = limiter(properties.getDb(), properties.getBackoffRatio());
+    }
+
+    private static AimdLimiter limiter(ConcurrencyLimitProperties.Group group, double backoffRatio) {
+        return new AimdLimiter(group.getName(), group.getInitialLimit(), group.getMinLimit(), group.getMaxLimit(),
+            group.getSlowMs(), backoffRatio);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the limiter of the first group whose pattern matches the path, or the default one.
+     *
+     * @param path the request URI
+     * @return the limiter for the path's endpoint group
+     */
+    public AimdLimiter forPath(String path) {
+        for (int i = 0; i < patterns.size(); i++) {
+            if (pathMatcher.match(patterns.get(i), path)) {
+                return groups.get(i);
+            }
+        }
+        return defaults;
+    }
+
+    /**
+     * Returns the limiter for repository calls, or null when limits are disabled.
+     */
+    public AimdLimiter db() {
+        return enabled ? db : null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        List<AimdLimiter> all = new ArrayList<>(groups);
+        all.add(defaults);
+        all.add(db);
+        for (AimdLimiter limiter : all) {
+            Gauge.builder("eventsapp.concurrency.limit", limiter, AimdLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("group", limiter.getName())
+                .register(registry);
+            Gauge.builder("eventsapp.concurrency.inflight", limiter, AimdLimiter::getInFlight)
+                .description("Requests currently admitted by the concurrency limiter")
+                .tag("group", limiter.getName())
+                .register(registry);
+            FunctionCounter.builder("eventsapp.concurrency.rejected", limiter, AimdLimiter::getRejected)
+                .description("Requests rejected with 503 because the concurrency limit was reached")
+                .tag("group", limiter.getName())
+                .register(registry);
+        }
+    }
+}
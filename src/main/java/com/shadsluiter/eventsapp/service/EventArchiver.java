@@ -0,0 +1,86 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.time.LocalDate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.shadsluiter.eventsapp.data.EventRepositoryInterface;
+
+/**
+ * Scheduled job that moves past events into the events_archive table.
+ * 
+ * Runs only when app.archive.enabled=true. Each run moves events older than
+ * app.archive.horizonDays in small batches, one transaction per batch, so row
+ * locks are held briefly and normal traffic is not blocked behind the job.
+ */
+@Component
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class EventArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventArchiver.class);
+
+    private final EventRepositoryInterface eventRepository;
+    private final int horizonDays;
+    private final int batchSize;
+    private final long pauseMs;
+
+    /**
+     * Constructs the archiver.
+     * 
+     * @param eventRepository the repository that moves the rows
+     * @param horizonDays events older than this many days are archived
+     * @param batchSize the number of events moved per transaction
+     * @param pauseMs the pause between batches, to leave room for other queries
+     */
+    public EventArchiver(EventRepositoryInterface eventRepository,
+                         @Value("${app.archive.horizonDays:365}") int horizonDays,
+                         @Value("${app.archive.batchSize:500}") int batchSize,
+                         @Value("${app.archive.pauseMs:50}") long pauseMs) {
+        this.eventRepository = eventRepository;
+        this.horizonDays = horizonDays;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    /**
+     * Archives every event dated before the horizon.
+     * 
+     * @return the number of events moved
+     */
+    @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+    public int archivePastEvents() {
+        LocalDate horizon = LocalDate.now().minusDays(horizonDays);
+        int total = 0;
+        int moved;
+        do {
+            moved = eventRepository.archiveOlderThan(horizon, batchSize);
+            total += moved;
+            if (moved == batchSize && !pause()) {
+                break;
+            }
+        } while (moved == batchSize);
+
+        logger.info("Archived {} events dated before {}", total, horizon);
+        return total;
+    }
+
+    /**
+     * Sleeps between batches.
+     * 
+     * @return false if the thread was interrupted and the run should stop
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,865 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepositoryInterface;
+import com.shadsluiter.eventsapp.models.EventEntity;
+import com.shadsluiter.eventsapp.models.EventFacets;
+import com.shadsluiter.eventsapp.models.EventSearch;
+import com.shadsluiter.eventsapp.models.EventView;
+import com.shadsluiter.eventsapp.models.RecurrenceRule;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Optional read-optimized copy of the events table, held in memory as columns.
+ *
+ * With app.catalog.enabled=true, the catalog loads every current event on its
+ * first refresh and from then on answers EventService's list, organizer and date
+ * range queries, and search facet counts, without a database round trip.
+ *
+ * Each event is one row across primitive arrays: long IDs, organizer IDs and
+ * versions, int epoch-day dates and capacities, and an int code into a dictionary
+ * of distinct locations. Names, descriptions and recurrence rules are stored as
+ * UTF-8 in one shared off-heap arena, so a large catalog adds a few dozen arrays
+ * to the heap rather than millions of objects for the garbage collector to trace.
+ *
+ * Writes made through EventService are applied immediately. Writes on other
+ * instances, and archiving, arrive through the InvalidationBus; the changed rows
+ * are re-read in one batch on the next refresh. Rows only move forward in
+ * version and deleted IDs are never revived, so a late re-read cannot undo a
+ * newer write. The catalog is rebuilt from scratch every reloadMs, which also
+ * reclaims arena space left behind by updates.
+ *
+ * With app.catalog.fuzzySearch=true, the catalog also keeps a TrigramIndex over
+ * names, locations and descriptions, so free-text searches tolerate typos and
+ * are ranked by relevance.
+ *
+ * Archived events are not in the catalog, so queries that need them still go
+ * to the database. With EventWriteBehind enabled, an event still queued when a
+ * reload starts is missing from the catalog until the following reload.
+ */
+@Component
+public class EventCatalog implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventCatalog.class);
+
+    private final EventRepositoryInterface eventRepository;
+    private final boolean enabled;
+    private final boolean fuzzySearch;
+    private final long reloadMs;
+    private final int archiveHorizonDays;
+
+    /** Guards columns; writers also hold it while applying changes */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Columns columns;
+    private volatile boolean loaded;
+    private volatile long loadedAt;
+
+    /** IDs changed elsewhere and not yet re-read; also guards the fields below */
+    private final Set<Long> stale = new HashSet<>();
+    private boolean reloadRequested;
+    /** Local writes made while a reload is reading the table, replayed onto the new columns */
+    private List<EventView> writesDuringReload;
+    private List<Long> deletesDuringReload;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong reread = new AtomicLong();
+
+    /**
+     * Constructs the catalog. Nothing is loaded until the first refresh.
+     *
+     * @param eventRepository the repository the catalog is loaded from
+     * @param invalidationBus delivers changes made on other app instances
+     * @param enabled true to keep the catalog and serve queries from it
+     * @param fuzzySearch true to also keep a typo-tolerant text index
+     * @param reloadMs how often the catalog is rebuilt from the table
+     * @param archiveHorizonDays events older than this many days may be archived, so are not served
+     */
+    @Autowired
+    public EventCatalog(EventRepositoryInterface eventRepository, InvalidationBus invalidationBus,
+                        @Value("${app.catalog.enabled:false}") boolean enabled,
+                        @Value("${app.catalog.fuzzySearch:false}") boolean fuzzySearch,
+                        @Value("${app.catalog.reloadMs:3600000}") long reloadMs,
+                        @Value("${app.archive.horizonDays:365}") int archiveHorizonDays) {
+        this.eventRepository = eventRepository;
+        this.enabled = enabled;
+        this.fuzzySearch = fuzzySearch;
+        this.reloadMs = reloadMs;
+        this.archiveHorizonDays = archiveHorizonDays;
+
+        if (enabled) {
+            invalidationBus.register(ChangeLogRepository.EVENT, this::markStale);
+        }
+    }
+
+    /**
+     * Constructs the catalog without the text index.
+     */
+    public EventCatalog(EventRepositoryInterface eventRepository, InvalidationBus invalidationBus,
+                        boolean enabled, long reloadMs, int archiveHorizonDays) {
+        this(eventRepository, invalidationBus, enabled, false, reloadMs, archiveHorizonDays);
+    }
+
+    /**
+     * Returns true if the catalog is enabled and loaded, so queries can be served from it.
+     */
+    public boolean isReady() {
+        return loaded;
+    }
+
+    /**
+     * Returns true if the catalog is ready and keeps its text index, so fuzzySearch can be used.
+     */
+    public boolean supportsFuzzySearch() {
+        return loaded && fuzzySearch;
+    }
+
+    /**
+     * Returns true if a date range query can be served from the catalog, i.e.
+     * it is ready and the range cannot include archived events.
+     *
+     * @param from the first date, or null for no lower bound
+     * @param includeArchived true if archived events were requested
+     */
+    public boolean covers(LocalDate from, boolean includeArchived) {
+        return loaded && !includeArchived && from != null
+            && !from.isBefore(LocalDate.now().minusDays(archiveHorizonDays));
+    }
+
+    /**
+     * Retrieves every event in the catalog, in no particular order.
+     *
+     * @return new EventView objects
+     */
+    public List<EventView> findAll() {
+        queries.incrementAndGet();
+        lock.readLock().lock();
+        try {
+            Columns c = columns;
+            List<EventView> events = new ArrayList<>(c.live);
+            for (int row = 0; row < c.rows; row++) {
+                if (c.isLive(row)) {
+                    events.add(c.toView(row));
+                }
+            }
+            return events;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the events of one organizer, in no particular order.
+     *
+     * @param organizerid the organizer's user ID
+     * @return new EventView objects
+     */
+    public List<EventView> findByOrganizerid(long organizerid) {
+        queries.incrementAndGet();
+        lock.readLock().lock();
+        try {
+            Columns c = columns;
+            List<EventView> events = new ArrayList<>();
+            for (int row = 0; row < c.rows; row++) {
+                if (c.organizers[row] == organizerid && c.isLive(row)) {
+                    events.add(c.toView(row));
+                }
+            }
+            return events;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves one-off events dated within the range and recurring series that
+     * overlap it, ordered by date and ID, as EventRepository.findByDateRange does.
+     *
+     * @param from the first date
+     * @param to the last date, or null for no upper bound
+     * @return new EventView objects
+     */
+    public List<EventView> findByDateRange(LocalDate from, LocalDate to) {
+        queries.incrementAndGet();
+        int lower = (int) from.toEpochDay();
+        int upper = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+
+        lock.readLock().lock();
+        try {
+            Columns c = columns;
+            long[] keys = new long[16];
+            int matches = 0;
+            for (int row = 0; row < c.rows; row++) {
+                int day = c.days[row];
+                // Rows of one-off events end on their own day; deleted rows end before every day.
+                if (day <= upper && c.ends[row] >= lower && (c.recurrences[row] != Columns.NO_TEXT || day >= lower)) {
+                    if (matches == keys.length) {
+                        keys = Arrays.copyOf(keys, matches * 2);
+                    }
+                    keys[matches++] = ((long) day << 32) | row;
+                }
+            }
+
+            Arrays.sort(keys, 0, matches);
+            c.sortSameDayById(keys, matches);
+            List<EventView> events = new ArrayList<>(matches);
+            for (int i = 0; i < matches; i++) {
+                events.add(c.toView((int) keys[i]));
+            }
+            return events;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the events matching a search per location, month and organizer, as
+     * EventRepository.facets does, in one pass over the columns. Cheap criteria
+     * are checked first; names and descriptions are only decoded for rows that
+     * pass them. Text compares case-insensitively, like MySQL's default collation.
+     *
+     * @param search the criteria; the limit does not apply
+     * @return the facet counts, not yet cut to the most common values
+     */
+    public EventFacets facets(EventSearch search) {
+        queries.incrementAndGet();
+        String text = lowerCaseOrNull(search.getSearchString());
+        String name = lowerCaseOrNull(search.getName());
+        String location = lowerCaseOrNull(search.getLocation());
+        Long organizerid = search.getOrganizerid();
+        boolean dates = search.getFrom() != null || search.getTo() != null;
+        int lower = search.getFrom() != null ? (int) search.getFrom().toEpochDay() : Integer.MIN_VALUE;
+        int upper = search.getTo() != null ? (int) search.getTo().toEpochDay() : Integer.MAX_VALUE;
+
+        lock.readLock().lock();
+        try {
+            Columns c = columns;
+            int codes = c.locationValues.size();
+            boolean[] locationMatches = new boolean[codes];
+            for (int code = 0; code < codes; code++) {
+                locationMatches[code] = location == null || c.locationValues.get(code).toLowerCase(Locale.ROOT).startsWith(location);
+            }
+
+            long total = 0;
+            long[] perLocation = new long[codes];
+            MonthCounts perMonth = new MonthCounts();
+            LongIntMap organizerSlots = new LongIntMap(16);
+            long[] perOrganizer = new long[16];
+            List<Long> organizerIds = new ArrayList<>();
+
+            for (int row = 0; row < c.rows; row++) {
+                int day = c.days[row];
+                if (!c.isLive(row)
+                        || (organizerid != null && c.organizers[row] != organizerid)
+                        || (location != null && (c.locations[row] == Columns.NO_VALUE || !locationMatches[c.locations[row]]))
+                        || (dates && !(day <= upper && c.ends[row] >= lower && (c.recurrences[row] != Columns.NO_TEXT || day >= lower)))) {
+                    continue;
+                }
+                if (name != null || text != null) {
+                    String rowName = lowerCaseOrEmpty(c.read(c.names[row]));
+                    if (name != null && !rowName.startsWith(name)) {
+                        continue;
+                    }
+                    if (text != null && !rowName.contains(text) && !lowerCaseOrEmpty(c.read(c.descriptions[row])).contains(text)) {
+                        continue;
+                    }
+                }
+
+                total++;
+                if (c.locations[row] != Columns.NO_VALUE) {
+                    perLocation[c.locations[row]]++;
+                }
+                // A recurring series that started earlier counts in the range's first month.
+                perMonth.add(Math.max(day, lower));
+                long organizer = c.organizers[row];
+                if (organizer != Columns.NO_ORGANIZER) {
+                    int slot = organizerSlots.get(organizer);
+                    if (slot == Columns.NO_VALUE) {
+                        slot = organizerIds.size();
+                        organizerIds.add(organizer);
+                        organizerSlots.put(organizer, slot);
+                        if (slot == perOrganizer.length) {
+                            perOrganizer = Arrays.copyOf(perOrganizer, slot * 2);
+                        }
+                    }
+                    perOrganizer[slot]++;
+                }
+            }
+
+            EventFacets facets = new EventFacets();
+            facets.setTotal(total);
+            for (int code = 0; code < codes; code++) {
+                if (perLocation[code] > 0) {
+                    facets.getLocations().merge(c.locationValues.get(code), perLocation[code], Long::sum);
+                }
+            }
+            perMonth.copyTo(facets.getMonths());
+            for (int slot = 0; slot < organizerIds.size(); slot++) {
+                facets.getOrganizers().put(organizerIds.get(slot), perOrganizer[slot]);
+            }
+            return facets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the events best matching free text, tolerating typos, as ranked by
+     * the TrigramIndex.
+     *
+     * @param text the search text
+     * @param limit the most events returned
+     * @return new EventView objects, best match first
+     */
+    public List<EventView> fuzzySearch(String text, int limit) {
+        queries.incrementAndGet();
+        lock.readLock().lock();
+        try {
+            Columns c = columns;
+            long[] ids = c.textIndex.search(text, limit);
+            List<EventView> events = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                int row = c.rowsById.get(id);
+                if (row != Columns.NO_VALUE && c.isLive(row)) {
+                    events.add(c.toView(row));
+                }
+            }
+            return events;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a local insert or update.
+     *
+     * @param event the saved event, with its ID and version
+     */
+    public void put(EventEntity event) {
+        if (!enabled) {
+            return;
+        }
+        EventView view = EventView.of(event);
+        lock.writeLock().lock();
+        try {
+            synchronized (stale) {
+                if (writesDuringReload != null) {
+                    writesDuringReload.add(view);
+                }
+            }
+            if (columns != null) {
+                columns.put(view);
+                requestReloadIfFragmented();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies a local delete.
+     *
+     * @param id the deleted event's ID
+     */
+    public void remove(long id) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            synchronized (stale) {
+                if (deletesDuringReload != null) {
+                    deletesDuringReload.add(id);
+                }
+            }
+            if (columns != null) {
+                columns.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the catalog on first use, rebuilds it when due, and otherwise
+     * re-reads the rows changed on other instances.
+     */
+    @Scheduled(fixedDelayString = "${app.catalog.refreshMs:1000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        boolean reload;
+        synchronized (stale) {
+            reload = !loaded || reloadRequested || System.currentTimeMillis() - loadedAt >= reloadMs;
+        }
+        if (reload) {
+            reload();
+        } else {
+            rereadStale();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("eventsapp.catalog.events", this, catalog -> catalog.footprint()[0])
+            .description("Events held in the in-memory catalog")
+            .register(registry);
+        Gauge.builder("eventsapp.catalog.heap.bytes", this, catalog -> catalog.footprint()[1])
+            .description("Heap used by the catalog's columns, ID and text indexes and location dictionary")
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("eventsapp.catalog.offheap.bytes", this, catalog -> catalog.footprint()[2])
+            .description("Off-heap arena reserved for the catalog's text")
+            .baseUnit("bytes")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.catalog.queries", queries, AtomicLong::get)
+            .description("Event queries answered from the catalog")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.catalog.reread", reread, AtomicLong::get)
+            .description("Events re-read after changes on other instances")
+            .register(registry);
+    }
+
+    /**
+     * Returns the number of events, heap bytes and off-heap bytes held by the catalog.
+     */
+    long[] footprint() {
+        lock.readLock().lock();
+        try {
+            Columns c = columns;
+            return c == null ? new long[3] : new long[]{c.live, c.heapBytes(), c.arena.capacity()};
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void markStale(String key) {
+        synchronized (stale) {
+            if (key == null) {
+                reloadRequested = true;
+            } else {
+                stale.add(Long.valueOf(key));
+            }
+        }
+    }
+
+    /**
+     * Reads the whole table into new columns and swaps them in. Local writes made
+     * meanwhile are replayed onto the new columns, since the read may predate them.
+     */
+    private void reload() {
+        synchronized (stale) {
+            writesDuringReload = new ArrayList<>();
+            deletesDuringReload = new ArrayList<>();
+            reloadRequested = false;
+            stale.clear();
+        }
+
+        Columns fresh;
+        try {
+            List<EventView> events = eventRepository.findAll();
+            fresh = new Columns(events.size(), fuzzySearch);
+            for (EventView event : events) {
+                fresh.put(event);
+            }
+            fresh.trimArena();
+            if (fresh.textIndex != null) {
+                fresh.textIndex.trim();
+            }
+        } catch (RuntimeException e) {
+            synchronized (stale) {
+                writesDuringReload = null;
+                deletesDuringReload = null;
+                reloadRequested = true;
+            }
+            logger.warn("Loading the event catalog failed; queries use the database until it succeeds", e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            synchronized (stale) {
+                for (EventView event : writesDuringReload) {
+                    fresh.put(event);
+                }
+                for (Long id : deletesDuringReload) {
+                    fresh.remove(id);
+                }
+                writesDuringReload = null;
+                deletesDuringReload = null;
+                loadedAt = System.currentTimeMillis();
+            }
+            columns = fresh;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long heapBytes = fresh.heapBytes();
+        long offHeapBytes = fresh.arena.capacity();
+        logger.info("Loaded {} events into the catalog: {} KB heap, {} KB off-heap, {} bytes per event",
+            fresh.live, heapBytes / 1024, offHeapBytes / 1024, fresh.live == 0 ? 0 : (heapBytes + offHeapBytes) / fresh.live);
+    }
+
+    /**
+     * Re-reads the rows changed on other instances in one query; IDs no longer in
+     * the table were deleted or archived.
+     */
+    private void rereadStale() {
+        List<Long> ids;
+        synchronized (stale) {
+            if (stale.isEmpty()) {
+                return;
+            }
+            ids = new ArrayList<>(stale);
+            stale.clear();
+        }
+
+        List<EventView> events;
+        try {
+            events = eventRepository.findAllById(ids);
+        } catch (RuntimeException e) {
+            synchronized (stale) {
+                stale.addAll(ids);
+            }
+            throw e;
+        }
+
+        Set<Long> missing = new HashSet<>(ids);
+        lock.writeLock().lock();
+        try {
+            for (EventView event : events) {
+                columns.put(event);
+                missing.remove(event.getId());
+            }
+            for (Long id : missing) {
+                columns.remove(id);
+            }
+            requestReloadIfFragmented();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        reread.addAndGet(ids.size());
+    }
+
+    private void requestReloadIfFragmented() {
+        if (columns.arenaGarbage > columns.arena.position() / 2) {
+            synchronized (stale) {
+                reloadRequested = true;
+            }
+        }
+    }
+
+    private static String lowerCaseOrNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String lowerCaseOrEmpty(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Event counts per month, in an array indexed by months since the first
+     * month counted, grown in either direction as needed.
+     */
+    private static final class MonthCounts {
+
+        private long[] counts = new long[0];
+        private int firstMonth;
+
+        void add(int epochDay) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            int month = date.getYear() * 12 + date.getMonthValue() - 1;
+            if (counts.length == 0) {
+                counts = new long[12];
+                firstMonth = month;
+            } else if (month < firstMonth) {
+                int shift = Math.max(firstMonth - month, 12);
+                long[] grown = new long[counts.length + shift];
+                System.arraycopy(counts, 0, grown, shift, counts.length);
+                counts = grown;
+                firstMonth -= shift;
+            } else if (month - firstMonth >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(month - firstMonth + 1, counts.length * 2));
+            }
+            counts[month - firstMonth]++;
+        }
+
+        void copyTo(Map<String, Long> months) {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    int month = firstMonth + i;
+                    months.put(String.format("%04d-%02d", month / 12, month % 12 + 1), counts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The catalog's rows, one primitive array per column.
+     *
+     * Deleted rows stay in place as tombstones until the next reload, so that a
+     * late re-read of a deleted event cannot bring it back.
+     */
+    private static final class Columns {
+
+        static final long NO_TEXT = -1L;
+        static final long NO_ORGANIZER = Long.MIN_VALUE;
+        static final int NO_VALUE = -1;
+        static final long DELETED = Long.MAX_VALUE;
+
+        /** Heap bytes per row: six long columns and four int columns */
+        static final int ROW_BYTES = 6 * Long.BYTES + 4 * Integer.BYTES;
+
+        int rows;
+        int live;
+        long[] ids;
+        long[] organizers;
+        long[] versions;
+        long[] names;
+        long[] descriptions;
+        long[] recurrences;
+        int[] days;
+        /** Last day the event can occur: its own day, the series end, or MAX_VALUE */
+        int[] ends;
+        int[] locations;
+        int[] capacities;
+
+        final LongIntMap rowsById;
+        final Map<String, Integer> locationCodes = new HashMap<>();
+        final List<String> locationValues = new ArrayList<>();
+        long locationBytes;
+
+        ByteBuffer arena;
+        int arenaGarbage;
+
+        /** Null unless fuzzy search is enabled */
+        final TrigramIndex textIndex;
+
+        Columns(int expectedRows, boolean fuzzySearch) {
+            int capacity = Math.max(16, expectedRows + expectedRows / 8);
+            ids = new long[capacity];
+            organizers = new long[capacity];
+            versions = new long[capacity];
+            names = new long[capacity];
+            descriptions = new long[capacity];
+            recurrences = new long[capacity];
+            days = new int[capacity];
+            ends = new int[capacity];
+            locations = new int[capacity];
+            capacities = new int[capacity];
+            rowsById = new LongIntMap(capacity);
+            arena = ByteBuffer.allocateDirect(Math.max(4096, expectedRows * 64));
+            textIndex = fuzzySearch ? new TrigramIndex(expectedRows) : null;
+        }
+
+        boolean isLive(int row) {
+            return versions[row] != DELETED;
+        }
+
+        /**
+         * Inserts or updates an event, unless the catalog already holds the same or a newer version.
+         */
+        void put(EventView event) {
+            long id = event.getId();
+            int row = rowsById.get(id);
+            if (row == NO_VALUE) {
+                row = addRow(id);
+            } else if (versions[row] >= event.getVersion()) {
+                return;
+            } else {
+                releaseText(row);
+            }
+
+            int day = (int) event.getDate().toEpochDay();
+            organizers[row] = event.getOrganizerid() != null ? event.getOrganizerid() : NO_ORGANIZER;
+            versions[row] = event.getVersion();
+            days[row] = day;
+            ends[row] = day;
+            if (event.getRecurrence() != null) {
+                LocalDate end = RecurrenceRule.parse(event.getRecurrence()).lastOccurrence(event.getDate());
+                ends[row] = end != null ? (int) end.toEpochDay() : Integer.MAX_VALUE;
+            }
+            locations[row] = locationCode(event.getLocation());
+            capacities[row] = event.getCapacity() != null ? event.getCapacity() : NO_VALUE;
+            names[row] = store(event.getName());
+            descriptions[row] = store(event.getDescription());
+            recurrences[row] = store(event.getRecurrence());
+            if (textIndex != null) {
+                textIndex.put(id, event.getName(), event.getLocation(), event.getDescription());
+            }
+        }
+
+        void remove(long id) {
+            int row = rowsById.get(id);
+            if (row == NO_VALUE) {
+                row = addRow(id);
+                live--;
+            } else if (!isLive(row)) {
+                return;
+            } else {
+                releaseText(row);
+                live--;
+            }
+            versions[row] = DELETED;
+            organizers[row] = NO_ORGANIZER;
+            days[row] = Integer.MIN_VALUE;
+            ends[row] = Integer.MIN_VALUE;
+            names[row] = NO_TEXT;
+            descriptions[row] = NO_TEXT;
+            recurrences[row] = NO_TEXT;
+            if (textIndex != null) {
+                textIndex.remove(id);
+            }
+        }
+
+        EventView toView(int row) {
+            return new EventView(
+                ids[row],
+                read(names[row]),
+                LocalDate.ofEpochDay(days[row]),
+                locations[row] == NO_VALUE ? null : locationValues.get(locations[row]),
+                organizers[row] == NO_ORGANIZER ? null : organizers[row],
+                read(descriptions[row]),
+                read(recurrences[row]),
+                capacities[row] == NO_VALUE ? null : capacities[row],
+                versions[row]
+            );
+        }
+
+        /**
+         * Orders rows that share a date by ID. Keys are (day << 32 | row) sorted
+         * by day; rows are mostly in ID order already, so insertion sort is cheap.
+         */
+        void sortSameDayById(long[] keys, int count) {
+            for (int i = 1; i < count; i++) {
+                long key = keys[i];
+                int day = (int) (key >>> 32);
+                long id = ids[(int) key];
+                int j = i - 1;
+                while (j >= 0 && (int) (keys[j] >>> 32) == day && ids[(int) keys[j]] > id) {
+                    keys[j + 1] = keys[j];
+                    j--;
+                }
+                keys[j + 1] = key;
+            }
+        }
+
+        long heapBytes() {
+            return (long) ids.length * ROW_BYTES + rowsById.bytes() + locationBytes
+                + (textIndex != null ? textIndex.bytes() : 0);
+        }
+
+        private int addRow(long id) {
+            if (rows == ids.length) {
+                int capacity = rows + (rows >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                organizers = Arrays.copyOf(organizers, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                names = Arrays.copyOf(names, capacity);
+                descriptions = Arrays.copyOf(descriptions, capacity);
+                recurrences = Arrays.copyOf(recurrences, capacity);
+                days = Arrays.copyOf(days, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                locations = Arrays.copyOf(locations, capacity);
+                capacities = Arrays.copyOf(capacities, capacity);
+            }
+            int row = rows++;
+            ids[row] = id;
+            rowsById.put(id, row);
+            live++;
+            return row;
+        }
+
+        private int locationCode(String location) {
+            if (location == null) {
+                return NO_VALUE;
+            }
+            Integer code = locationCodes.get(location);
+            if (code == null) {
+                code = locationValues.size();
+                locationValues.add(location);
+                locationCodes.put(location, code);
+                // The string, its map entry and list slot, roughly.
+                locationBytes += 40 + 2L * location.length() + 48 + 8;
+            }
+            return code;
+        }
+
+        private long store(String text) {
+            if (text == null) {
+                return NO_TEXT;
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            if (arena.remaining() < bytes.length) {
+                long needed = (long) arena.position() + bytes.length;
+                long capacity = Math.max(needed, Math.min((long) arena.capacity() * 2, Integer.MAX_VALUE - 8));
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Event catalog text arena is full");
+                }
+                ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+                arena.flip();
+                grown.put(arena);
+                arena = grown;
+            }
+            int offset = arena.position();
+            arena.put(bytes);
+            return ((long) offset << 32) | bytes.length;
+        }
+
+        /**
+         * Shrinks the arena to what is used plus an eighth for later writes.
+         */
+        void trimArena() {
+            int capacity = Math.max(4096, arena.position() + arena.position() / 8);
+            if (capacity < arena.capacity()) {
+                ByteBuffer trimmed = ByteBuffer.allocateDirect(capacity);
+                arena.flip();
+                trimmed.put(arena);
+                arena = trimmed;
+            }
+        }
+
+        private String read(long ref) {
+            if (ref == NO_TEXT) {
+                return null;
+            }
+            byte[] bytes = new byte[(int) ref];
+            arena.get((int) (ref >>> 32), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void releaseText(int row) {
+            arenaGarbage += textLength(names[row]) + textLength(descriptions[row]) + textLength(recurrences[row]);
+        }
+
+        private static int textLength(long ref) {
+            return ref == NO_TEXT ? 0 : (int) ref;
+        }
+    }
+}
@@ -1,65 +1,350 @@
 package com.shadsluiter.eventsapp.service;
 
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
 import com.shadsluiter.eventsapp.data.EventRepositoryInterface;
+import com.shadsluiter.eventsapp.data.RsvpRepository;
+import com.shadsluiter.eventsapp.models.EventBatch;
 import com.shadsluiter.eventsapp.models.EventEntity;
+import com.shadsluiter.eventsapp.models.EventFacets;
 import com.shadsluiter.eventsapp.models.EventModel;
+import com.shadsluiter.eventsapp.models.EventSearch;
+import com.shadsluiter.eventsapp.models.EventView;
+import com.shadsluiter.eventsapp.models.RecurrenceRule;
+import com.shadsluiter.eventsapp.monitoring.AuditTrail;
+import com.shadsluiter.eventsapp.monitoring.RequestTiming;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.sql.Date;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Service class for managing event-related operations.
  * 
  * Handles business logic and model/entity conversions for Event data.
+ * 
+ * Reads return immutable EventViews mapped straight from the rows, so list
+ * queries hand out the repository's or cache's list without copying it; the
+ * lists are unmodifiable. Lookups by ID and writes return EventModels, which
+ * forms and request bodies bind to.
+ * 
+ * Identical list queries that arrive concurrently are coalesced: they share one
+ * in-flight repository call and its list of views.
+ * 
+ * Recurring events are stored once with a recurrence rule. Listings return the
+ * series itself, while date range queries expand it into one EventView per
+ * occurrence in the range, carrying the series ID and the occurrence date.
+ * Occurrences are never stored.
+ * 
+ * Single events are cached by ID. Writes through this service evict the entry
+ * immediately; writes on other app instances evict it through the InvalidationBus.
+ * 
+ * New events go through EventWriteBehind when it is enabled, so their IDs are
+ * returned before the rows are inserted. saveAll is the exception: it inserts
+ * its events within its own transaction.
+ * 
+ * When the EventCatalog is enabled and loaded, listings, organizer queries and
+ * date ranges that cannot reach archived events are answered from it, and every
+ * write through this service is applied to it.
+ * 
+ * Search results and facet counts are cached by their normalized criteria in
+ * TinyLfuCaches, so the popular searches stay cached however many one-off
+ * searches arrive. Any event write on any instance clears them.
+ * 
+ * Repository calls run within the database group's adaptive concurrency limit.
+ * When the database slows down, calls beyond the limit fail at once with
+ * ConcurrencyLimitExceededException rather than queueing for a connection.
+ * Coalesced list queries take one slot between them.
+ * 
+ * Expanding recurring events into occurrences counts as the convert phase of a sampled RequestTiming.
+ * 
+ * Every create, update and delete is recorded in the AuditTrail once it has succeeded.
+ * 
+ * Each saved event's capacity is stored on its RSVP attendance row, which is
+ * what RsvpService checks RSVPs against, and deleting an event deletes its RSVPs.
  */
 @Service
 public class EventService {
 
     private final EventRepositoryInterface eventRepository;
+    private final InvalidationBus invalidationBus;
+    private final EventWriteBehind writeBehind;
+    private final EventCatalog catalog;
+    private final SingleFlight<String, List<EventView>> listQueries = new SingleFlight<>();
+    private final LocalCache<Long, EventView> eventsById;
+    private final TinyLfuCache<String, List<EventView>> searchResults;
+    private final TinyLfuCache<String, EventFacets> searchFacets;
+    private final AimdLimiter dbLimiter;
+    private final AuditTrail auditTrail;
+    private final RsvpRepository rsvpRepository;
+    private final int maxOccurrences;
 
     /**
-     * Constructs the EventService with a repository implementation.
+     * Constructs the EventService.
+     * 
+     * The write-behind path, catalog, concurrency limiters, audit trail and RSVP
+     * repository are optional: pass null for any of them to run without it.
      * 
      * @param eventRepository the repository interface for Event persistence
+     * @param invalidationBus delivers evictions for writes made on any app instance
+     * @param writeBehind the write-behind path for new events, or null to always insert synchronously
+     * @param catalog the in-memory catalog serving list queries, or null to always query the repository
+     * @param concurrencyLimiters supplies the database concurrency limit, or null for no limit
+     * @param auditTrail records every change, or null to record nothing
+     * @param rsvpRepository stores each event's capacity for RSVPs, or null to store none
+     * @param meterRegistry the registry for query coalescing and cache metrics
+     * @param cacheSize the most events cached by ID
+     * @param cacheTtlMs how long a cached event is served before it is reloaded
+     * @param searchCacheSize the most searches, and separately facet counts, cached; 0 disables the search cache
+     * @param searchCacheTtlMs how long a cached search is served before it is rerun
+     * @param maxOccurrences the most occurrences of one recurring event returned per query
      */
     @Autowired
-    public EventService(EventRepositoryInterface eventRepository) {
+    public EventService(EventRepositoryInterface eventRepository, InvalidationBus invalidationBus,
+                        EventWriteBehind writeBehind, EventCatalog catalog, ConcurrencyLimiters concurrencyLimiters,
+                        AuditTrail auditTrail, RsvpRepository rsvpRepository, MeterRegistry meterRegistry,
+                        @Value("${app.cache.events.size:10000}") int cacheSize,
+                        @Value("${app.cache.events.ttlMs:60000}") long cacheTtlMs,
+                        @Value("${app.cache.search.size:1000}") int searchCacheSize,
+                        @Value("${app.cache.search.ttlMs:30000}") long searchCacheTtlMs,
+                        @Value("${app.recurrence.maxOccurrences:1000}") int maxOccurrences) {
         this.eventRepository = eventRepository;
+        this.auditTrail = auditTrail;
+        this.rsvpRepository = rsvpRepository;
+        this.writeBehind = writeBehind;
+        this.catalog = catalog;
+        this.dbLimiter = concurrencyLimiters != null ? concurrencyLimiters.db() : null;
+        this.maxOccurrences = maxOccurrences;
+        this.invalidationBus = invalidationBus;
+        this.eventsById = new LocalCache<>(cacheSize, cacheTtlMs);
+        this.searchResults = new TinyLfuCache<>(searchCacheSize, searchCacheTtlMs);
+        this.searchFacets = new TinyLfuCache<>(searchCacheSize, searchCacheTtlMs);
+
+        invalidationBus.register(ChangeLogRepository.EVENT, key -> {
+            if (key == null) {
+                eventsById.invalidateAll();
+            } else {
+                eventsById.invalidate(Long.valueOf(key));
+            }
+            // Any write can change any search.
+            invalidateSearches();
+        });
+
+        FunctionCounter.builder("eventsapp.events.queries.executed", listQueries, SingleFlight::getExecutions)
+            .description("Event list queries sent to the repository")
+            .register(meterRegistry);
+        FunctionCounter.builder("eventsapp.events.queries.coalesced", listQueries, SingleFlight::getCoalesced)
+            .description("Event list queries served by joining an identical in-flight query")
+            .register(meterRegistry);
+        Gauge.builder("eventsapp.events.queries.inflight", listQueries, SingleFlight::getInFlight)
+            .description("Distinct event list queries currently in flight")
+            .register(meterRegistry);
+        FunctionCounter.builder("eventsapp.events.cache.hits", eventsById, LocalCache::getHits)
+            .description("Event lookups by ID served from the local cache")
+            .register(meterRegistry);
+        FunctionCounter.builder("eventsapp.events.cache.misses", eventsById, LocalCache::getMisses)
+            .description("Event lookups by ID sent to the repository")
+            .register(meterRegistry);
+        FunctionCounter.builder("eventsapp.search.cache.hits", searchResults, TinyLfuCache::getHits)
+            .description("Event searches served from the search cache")
+            .register(meterRegistry);
+        FunctionCounter.builder("eventsapp.search.cache.misses", searchResults, TinyLfuCache::getMisses)
+            .description("Event searches run against the repository or catalog")
+            .register(meterRegistry);
+        FunctionCounter.builder("eventsapp.search.cache.rejections", searchResults, TinyLfuCache::getRejections)
+            .description("Search results not cached because their search is rarer than the one they would evict")
+            .register(meterRegistry);
+        Gauge.builder("eventsapp.search.cache.hit.ratio", searchResults, TinyLfuCache::getHitRatio)
+            .description("Share of event searches served from the search cache")
+            .register(meterRegistry);
+        Gauge.builder("eventsapp.search.cache.size", searchResults, TinyLfuCache::size)
+            .description("Event searches currently cached")
+            .register(meterRegistry);
     }
 
     /**
      * Retrieves all events from the database.
      * 
-     * @return a list of EventModel objects
+     * @return an unmodifiable list of EventView objects
+     */
+    public List<EventView> findAll() {
+        if (catalog != null && catalog.isReady()) {
+            return Collections.unmodifiableList(catalog.findAll());
+        }
+        return Collections.unmodifiableList(listQueries.execute("all", () -> limited(eventRepository::findAll)));
+    }
+
+    /**
+     * Retrieves all events, optionally including archived past events.
+     * 
+     * @param includeArchived true to include events moved to the archive
+     * @return an unmodifiable list of EventView objects
+     */
+    public List<EventView> findAll(boolean includeArchived) {
+        if (!includeArchived) {
+            return findAll();
+        }
+        return Collections.unmodifiableList(listQueries.execute("all+archive", () -> limited(() -> eventRepository.findAll(true))));
+    }
+
+    /**
+     * Retrieves events dated within the given range, inclusive.
+     * 
+     * Archived events are included when the range reaches past the archive
+     * horizon or when explicitly requested. Recurring events are expanded into
+     * their occurrences within the range, at most maxOccurrences per series.
+     * 
+     * @param from the first date, or null for no lower bound
+     * @param to the last date, or null for no upper bound
+     * @param includeArchived true to always include archived events
+     * @return an unmodifiable list of EventView objects ordered by date
+     */
+    public List<EventView> findByDateRange(LocalDate from, LocalDate to, boolean includeArchived) {
+        if (catalog != null && catalog.covers(from, includeArchived)) {
+            return expandOccurrences(catalog.findByDateRange(from, to), from, to);
+        }
+        String key = "dates:" + from + ":" + to + ":" + includeArchived;
+        List<EventView> events = listQueries.execute(key, () -> limited(() -> eventRepository.findByDateRange(from, to, includeArchived)));
+        return expandOccurrences(events, from, to);
+    }
+
+    /**
+     * Replaces each recurring event with its occurrences in the given range.
+     * 
+     * @param events one-off events within the range and recurring series overlapping it
+     * @param from the first date, or null for no lower bound
+     * @param to the last date, or null for no upper bound
+     * @return an unmodifiable list of EventView objects ordered by date
      */
-    public List<EventModel> findAll() {
-        List<EventEntity> eventEntities = eventRepository.findAll();
-        return convertToModels(eventEntities);
+    private List<EventView> expandOccurrences(List<EventView> events, LocalDate from, LocalDate to) {
+        long start = RequestTiming.start();
+        List<EventView> expanded = null;
+        for (int i = 0; i < events.size(); i++) {
+            EventView event = events.get(i);
+            if (event.getRecurrence() == null) {
+                if (expanded != null) {
+                    expanded.add(event);
+                }
+                continue;
+            }
+
+            if (expanded == null) {
+                expanded = new ArrayList<>(events.size());
+                expanded.addAll(events.subList(0, i));
+            }
+            RecurrenceRule rule = RecurrenceRule.parse(event.getRecurrence());
+            Iterator<LocalDate> occurrences = rule.occurrences(event.getDate(), from, to, maxOccurrences);
+            while (occurrences.hasNext()) {
+                expanded.add(event.withDate(occurrences.next()));
+            }
+        }
+
+        if (expanded == null) {
+            RequestTiming.record(RequestTiming.CONVERT, start);
+            return Collections.unmodifiableList(events);
+        }
+        // Stable sort: one-off events keep the repository's date, id order.
+        expanded.sort(Comparator.comparing(EventView::getDate));
+        RequestTiming.record(RequestTiming.CONVERT, start);
+        return Collections.unmodifiableList(expanded);
     }
 
     /**
      * Retrieves events for a specific organizer.
      * 
      * @param organizerid the ID of the organizer
-     * @return a list of EventModel objects for the given organizer
+     * @return an unmodifiable list of EventView objects for the given organizer
      */
-    public List<EventModel> findByOrganizerid(String organizerid) {
-        List<EventEntity> eventEntities = eventRepository.findByOrganizerid(Long.valueOf(organizerid));
-        return convertToModels(eventEntities);
+    public List<EventView> findByOrganizerid(long organizerid) {
+        if (catalog != null && catalog.isReady()) {
+            return Collections.unmodifiableList(catalog.findByOrganizerid(organizerid));
+        }
+        return Collections.unmodifiableList(listQueries.execute("organizer:" + organizerid,
+            () -> limited(() -> eventRepository.findByOrganizerid(organizerid))));
     }
 
     /**
      * Saves a new or existing event to the database.
      * 
+     * A recurrence rule, if present, is validated and stored in canonical form.
+     * An event with an ID is updated in place, as by updateEvent.
+     * 
      * @param event the event to be saved
      * @return the saved EventModel
+     * @throws WriteBehindQueueFullException if write-behind is enabled and its queue is full
      */
     public EventModel save(EventModel event) {
+        if (event.getId() != null) {
+            return updateEvent(event.getId(), event);
+        }
+        return insert(event, true);
+    }
+
+    /**
+     * Saves many events in one transaction.
+     * 
+     * New events are inserted directly rather than queued in EventWriteBehind,
+     * so they commit or roll back with the rest of the batch. With write-behind
+     * enabled they still take their IDs from its reserved blocks.
+     * 
+     * @param events the events to be saved
+     * @return the saved EventModels in the same order
+     */
+    @Transactional
+    public List<EventModel> saveAll(List<EventModel> events) {
+        List<EventModel> savedEvents = new ArrayList<>(events.size());
+        for (EventModel event : events) {
+            savedEvents.add(event.getId() != null ? updateEvent(event.getId(), event) : insert(event, false));
+        }
+        return savedEvents;
+    }
+
+    /**
+     * Inserts a new event.
+     * 
+     * @param event the event to be inserted
+     * @param queue true to go through EventWriteBehind, when enabled, false to insert at once
+     * @return the saved EventModel
+     */
+    private EventModel insert(EventModel event, boolean queue) {
         EventEntity eventEntity = convertToEntity(event);
-        EventEntity savedEvent = eventRepository.save(eventEntity);
+        if (eventEntity.getRecurrence() != null) {
+            eventEntity.setRecurrence(RecurrenceRule.parse(eventEntity.getRecurrence()).toString());
+        }
+        boolean writingBehind = writeBehind != null && writeBehind.isEnabled();
+        EventEntity savedEvent;
+        if (writingBehind && queue) {
+            savedEvent = writeBehind.submit(eventEntity);
+            invalidateSearches();
+        } else {
+            savedEvent = limited(() -> writingBehind ? writeBehind.insertNow(eventEntity) : eventRepository.save(eventEntity));
+            invalidationBus.evictLocal(ChangeLogRepository.EVENT, savedEvent.getId().toString());
+        }
+        storeCapacity(savedEvent);
+        if (catalog != null) {
+            catalog.put(savedEvent);
+        }
+        audit("event.create", savedEvent.getId());
         return convertToModel(savedEvent);
     }
 
@@ -68,56 +353,262 @@ public class EventService {
      * 
      * @param id the ID of the event to delete
      */
-    public void delete(String id) {
-        eventRepository.deleteById(Long.valueOf(id));
+    public void delete(long id) {
+        limited(() -> {
+            eventRepository.deleteById(id);
+            return null;
+        });
+        if (rsvpRepository != null) {
+            rsvpRepository.deleteAttendance(id);
+        }
+        invalidationBus.evictLocal(ChangeLogRepository.EVENT, Long.toString(id));
+        if (catalog != null) {
+            catalog.remove(id);
+        }
+        audit("event.delete", id);
     }
 
     /**
      * Updates an existing event based on its ID.
      * 
+     * The event's version, if set, must match the stored one. An event without
+     * an organizer keeps its stored organizer.
+     * 
+     * @param id the ID of the event to update
+     * @param event the new event data
+     * @return the updated EventModel with its new version
+     * @throws org.springframework.dao.EmptyResultDataAccessException if no event has the ID
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the event was updated since the caller read it
+     */
+    public EventModel updateEvent(long id, EventModel event) {
+        return updateEvent(id, event, event.getVersion());
+    }
+
+    /**
+     * Updates an existing event in place, optionally only if it is still at the given version.
+     * 
+     * An event without an organizer keeps its stored organizer; an update
+     * cannot remove it.
+     * 
      * @param id the ID of the event to update
      * @param event the new event data
-     * @return the updated EventModel
+     * @param expectedVersion the version the caller last read, or null to update unconditionally
+     * @return the updated EventModel with its new version
+     * @throws org.springframework.dao.EmptyResultDataAccessException if no event has the ID
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the event is not at expectedVersion
      */
-    public EventModel updateEvent(String id, EventModel event) {
+    public EventModel updateEvent(long id, EventModel event, Long expectedVersion) {
         event.setId(id);
-        return save(event);
+        if (event.getOrganizerid() == null) {
+            event.setOrganizerid(limited(() -> eventRepository.findById(id)).getOrganizerid());
+        }
+        EventEntity eventEntity = convertToEntity(event);
+        if (eventEntity.getRecurrence() != null) {
+            eventEntity.setRecurrence(RecurrenceRule.parse(eventEntity.getRecurrence()).toString());
+        }
+        EventEntity updatedEvent = limited(() -> eventRepository.update(eventEntity, expectedVersion));
+        storeCapacity(updatedEvent);
+        invalidationBus.evictLocal(ChangeLogRepository.EVENT, Long.toString(id));
+        if (catalog != null) {
+            catalog.put(updatedEvent);
+        }
+        audit("event.update", id);
+        return convertToModel(updatedEvent);
     }
 
     /**
      * Finds an event by its ID.
      * 
      * @param id the ID of the event
-     * @return the corresponding EventModel
+     * @return a new EventModel for the cached event, so the caller may bind to it
      */
-    public EventModel findById(String id) {
-        EventEntity eventEntity = eventRepository.findById(Long.valueOf(id));
-        return convertToModel(eventEntity);
+    public EventModel findById(long id) {
+        EventView event = eventsById.get(id, key -> limited(() -> eventRepository.findById(key)));
+        return convertToModel(event);
+    }
+
+    /**
+     * Finds many events by ID in one batch.
+     * 
+     * Duplicate IDs are looked up once. The returned events follow the order of
+     * the requested IDs, and IDs with no matching event are listed as missing.
+     * 
+     * @param ids the IDs of the events
+     * @return the found events in request order and the missing IDs
+     */
+    public EventBatch findAllById(Collection<Long> ids) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        List<EventView> found = limited(() -> eventRepository.findAllById(uniqueIds));
+
+        Map<Long, EventView> byId = new HashMap<>(found.size() * 2);
+        for (EventView event : found) {
+            byId.put(event.getId(), event);
+        }
+
+        List<EventView> events = new ArrayList<>(byId.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : uniqueIds) {
+            EventView event = byId.get(id);
+            if (event != null) {
+                events.add(event);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new EventBatch(events, missing);
     }
 
     /**
      * Searches for events whose descriptions match the given search string.
      * 
      * @param searchString the string to search for in descriptions
-     * @return a list of matching EventModel objects
+     * @return an unmodifiable list of matching EventView objects
+     */
+    public List<EventView> findByDescription(String searchString) {
+        return Collections.unmodifiableList(listQueries.execute("description:" + searchString,
+            () -> limited(() -> eventRepository.findByDescription(searchString))));
+    }
+
+    /**
+     * Searches for events matching every criterion that is set.
+     * 
+     * With a date range, recurring events are expanded into their occurrences
+     * within it, as in findByDateRange. Archived events are not searched.
+     * 
+     * A search by free text alone uses the catalog's typo-tolerant text index
+     * when it is enabled, and its results are then ordered by relevance.
+     * 
+     * @param search the criteria
+     * @return an unmodifiable list of at most the search's limit of EventView objects, ordered by date or relevance
+     */
+    public List<EventView> search(EventSearch search) {
+        if (catalog != null && catalog.supportsFuzzySearch() && isTextOnly(search)) {
+            int limit = search.getLimit() != null ? search.getLimit() : EventSearch.DEFAULT_LIMIT;
+            String key = "fuzzy:" + searchKey(search);
+            return Collections.unmodifiableList(searchResults.get(key, k -> catalog.fuzzySearch(search.getSearchString(), limit)));
+        }
+        String key = "search:" + searchKey(search);
+        List<EventView> events = searchResults.get(key, k -> listQueries.execute(k, () -> limited(() -> eventRepository.search(search))));
+        if (search.getFrom() == null && search.getTo() == null) {
+            return Collections.unmodifiableList(events);
+        }
+        List<EventView> expanded = expandOccurrences(events, search.getFrom(), search.getTo());
+        int limit = search.getLimit() != null ? search.getLimit() : EventSearch.DEFAULT_LIMIT;
+        return expanded.size() > limit ? expanded.subList(0, limit) : expanded;
+    }
+
+    /**
+     * Returns a search's criteria as a cache key: text trimmed, as
+     * EventQueryCompiler trims it, and lower-cased, as MySQL's default collation
+     * and the fuzzy index compare it anyway. Inner whitespace is kept, since the
+     * query matches it literally.
+     */
+    private static String searchKey(EventSearch search) {
+        return normalize(search.getSearchString()) + "|" + normalize(search.getName()) + "|" + normalize(search.getLocation())
+            + "|" + search.getOrganizerid() + "|" + search.getFrom() + "|" + search.getTo() + "|" + search.getLimit();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void invalidateSearches() {
+        searchResults.invalidateAll();
+        searchFacets.invalidateAll();
+    }
+
+    private static boolean isTextOnly(EventSearch search) {
+        return search.getSearchString() != null && !search.getSearchString().isBlank()
+            && (search.getName() == null || search.getName().isBlank())
+            && (search.getLocation() == null || search.getLocation().isBlank())
+            && search.getOrganizerid() == null && search.getFrom() == null && search.getTo() == null;
+    }
+
+    /**
+     * Counts every event matching a search per location, month and organizer.
+     * 
+     * The counts come from the catalog when it is ready, and otherwise from one
+     * grouped query over the matching rows. Either way each match is read once.
+     * A fuzzy search has no exact match set, so its counts cover its best
+     * EventSearch.MAX_LIMIT matches.
+     * 
+     * @param search the criteria; the limit does not apply
+     * @return the facet counts, each facet cut to its EventFacets.MAX_VALUES most common values
+     */
+    public EventFacets facets(EventSearch search) {
+        boolean fuzzy = catalog != null && catalog.supportsFuzzySearch() && isTextOnly(search);
+        String key = (fuzzy ? "fuzzy:" : "search:") + searchKey(search);
+        return searchFacets.get(key, k -> loadFacets(search, fuzzy));
+    }
+
+    private EventFacets loadFacets(EventSearch search, boolean fuzzy) {
+        EventFacets facets;
+        if (fuzzy) {
+            facets = new EventFacets();
+            for (EventView event : catalog.fuzzySearch(search.getSearchString(), EventSearch.MAX_LIMIT)) {
+                facets.add(event.getLocation(), YearMonth.from(event.getDate()).toString(), event.getOrganizerid(), 1);
+            }
+        } else if (catalog != null && catalog.isReady()) {
+            facets = catalog.facets(search);
+        } else {
+            facets = limited(() -> eventRepository.facets(search));
+        }
+        return facets.top(EventFacets.MAX_VALUES);
+    }
+
+    /**
+     * Returns the database's query plan for a search.
+     * 
+     * @param search the criteria
+     * @return the plan rows reported by EXPLAIN
+     */
+    public List<Map<String, Object>> explain(EventSearch search) {
+        return limited(() -> eventRepository.explain(search));
+    }
+
+    /**
+     * Stores an event's capacity where RsvpService enforces it.
      */
-    public List<EventModel> findByDescription(String searchString) {
-        List<EventEntity> eventEntities = eventRepository.findByDescription(searchString);
-        return convertToModels(eventEntities);  
+    private void storeCapacity(EventEntity event) {
+        if (rsvpRepository != null) {
+            Integer capacity = event.getCapacity();
+            rsvpRepository.storeCapacity(event.getId(), capacity != null ? Math.max(0, capacity) : null);
+        }
+    }
+
+    private void audit(String action, Long id) {
+        if (auditTrail != null) {
+            auditTrail.record(action, id);
+        }
     }
 
     /**
-     * Converts a list of EventEntity objects into a list of EventModel objects.
+     * Runs a repository call within the database concurrency limit.
+     * 
+     * Timeouts and connection failures count against the limit, like slow calls;
+     * other exceptions are the call's own and do not.
      * 
-     * @param eventEntities the list of EventEntity objects
-     * @return a list of EventModel objects
+     * @param call the repository call
+     * @return the call's result
+     * @throws ConcurrencyLimitExceededException if the limit is reached
      */
-    private List<EventModel> convertToModels(List<EventEntity> eventEntities) {
-        List<EventModel> eventModels = new ArrayList<>();
-        for (EventEntity eventEntity : eventEntities) {
-            eventModels.add(convertToModel(eventEntity));
+    private <T> T limited(Supplier<T> call) {
+        if (dbLimiter == null) {
+            return call.get();
+        }
+        if (!dbLimiter.tryAcquire()) {
+            throw new ConcurrencyLimitExceededException("The database is busy, please retry shortly", 1);
+        }
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return call.get();
+        } catch (TransientDataAccessException | DataAccessResourceFailureException e) {
+            failed = true;
+            throw e;
+        } finally {
+            dbLimiter.release(start, failed);
         }
-        return eventModels;
     }
 
     /**
@@ -127,14 +618,28 @@ public class EventService {
      * @return the resulting EventModel
      */
     private EventModel convertToModel(EventEntity eventEntity) {
-        return new EventModel(
-            eventEntity.getId().toString(),
-            eventEntity.getName(),
-            eventEntity.getDate(),
-            eventEntity.getLocation(),
-            eventEntity.getOrganizerid(),
-            eventEntity.getDescription()
+        return convertToModel(EventView.of(eventEntity));
+    }
+
+    /**
+     * Converts an EventView object to a new EventModel.
+     * 
+     * @param event the EventView to convert
+     * @return the resulting EventModel
+     */
+    private EventModel convertToModel(EventView event) {
+        EventModel eventModel = new EventModel(
+            event.getId(),
+            event.getName(),
+            event.getDate(),
+            event.getLocation(),
+            event.getOrganizerid(),
+            event.getDescription()
         );
+        eventModel.setRecurrence(event.getRecurrence());
+        eventModel.setCapacity(event.getCapacity());
+        eventModel.setVersion(event.getVersion());
+        return eventModel;
     }
 
     /**
@@ -145,16 +650,16 @@ public class EventService {
      */
     private EventEntity convertToEntity(EventModel eventModel) {
         EventEntity eventEntity = new EventEntity();
-
-        if (eventModel.getId() != null) {
-            eventEntity.setId(Long.parseLong(eventModel.getId()));
-        }
-
+        eventEntity.setId(eventModel.getId());
         eventEntity.setName(eventModel.getName());
-        eventEntity.setDate(new Date(eventModel.getDate().getTime()));
+        eventEntity.setDate(eventModel.getDate());
         eventEntity.setLocation(eventModel.getLocation());
         eventEntity.setOrganizerid(eventModel.getOrganizerid());
         eventEntity.setDescription(eventModel.getDescription());
+        if (eventModel.getRecurrence() != null && !eventModel.getRecurrence().isBlank()) {
+            eventEntity.setRecurrence(eventModel.getRecurrence());
+        }
+        eventEntity.setCapacity(eventModel.getCapacity());
 
         return eventEntity;
     }
@@ -0,0 +1,361 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import com.shadsluiter.eventsapp.data.EventRepository;
+import com.shadsluiter.eventsapp.data.EventRepositoryInterface;
+import com.shadsluiter.eventsapp.models.EventEntity;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Optional write-behind path for creating events under burst load.
+ *
+ * When app.events.writeBehind.enabled=true, a new event is given an ID from a
+ * block reserved in advance, queued in memory and acknowledged. A background
+ * writer inserts queued events in JDBC batches of up to batchSize, or whatever
+ * has arrived after flushMs, so a launch spike costs one round trip per batch
+ * instead of an INSERT and a LAST_INSERT_ID() per request.
+ *
+ * By default the ID is returned as soon as the event is queued, so an event
+ * may not be readable yet and is lost if the instance dies before the flush.
+ * With waitForFlush=true, callers wait until their batch is committed: they
+ * still share batches, but keep the durability of a synchronous insert.
+ *
+ * The queue is bounded. When it is full, creation fails fast with
+ * WriteBehindQueueFullException, which is served as 503 with Retry-After.
+ *
+ * Events that must be written within a caller's transaction, like a bulk
+ * creation, are inserted at once with insertNow, still taking reserved IDs.
+ *
+ * Requires the single-database EventRepository, and must be enabled on every
+ * instance at once, since AUTO_INCREMENT inserts could take reserved IDs.
+ * Enabling it together with app.sharding.enabled fails at startup: sharded IDs
+ * encode their shard and can only come from each shard's AUTO_INCREMENT.
+ */
+@Component
+public class EventWriteBehind implements MeterBinder, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventWriteBehind.class);
+
+    private final EventRepository eventRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushMs;
+    private final int idBlockSize;
+    private final boolean waitForFlush;
+    private final long ackTimeoutMs;
+
+    private final BlockingQueue<PendingEvent> queue;
+    private final Thread writer;
+    private volatile boolean running;
+
+    private long nextId;
+    private long blockEnd;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Constructs the write-behind path and starts its writer thread if enabled.
+     *
+     * @param eventRepository the repository that reserves IDs and inserts batches,
+     *        which must be the single-database EventRepository if enabled
+     * @param enabled true to create events through the queue
+     * @param queueCapacity the most accepted events waiting to be written
+     * @param batchSize the most events inserted per batch
+     * @param flushMs the longest an event waits for its batch to fill
+     * @param idBlockSize the number of IDs reserved per database round trip
+     * @param waitForFlush true to acknowledge events only once they are committed
+     * @param ackTimeoutMs the longest a caller waits for its batch when waitForFlush is set
+     * @throws IllegalStateException if enabled over a sharded event store
+     */
+    @Autowired
+    public EventWriteBehind(EventRepositoryInterface eventRepository,
+                            @Value("${app.events.writeBehind.enabled:false}") boolean enabled,
+                            @Value("${app.events.writeBehind.queueCapacity:10000}") int queueCapacity,
+                            @Value("${app.events.writeBehind.batchSize:500}") int batchSize,
+                            @Value("${app.events.writeBehind.flushMs:50}") long flushMs,
+                            @Value("${app.events.writeBehind.idBlockSize:1000}") int idBlockSize,
+                            @Value("${app.events.writeBehind.waitForFlush:false}") boolean waitForFlush,
+                            @Value("${app.events.writeBehind.ackTimeoutMs:5000}") long ackTimeoutMs) {
+        if (enabled && !(eventRepository instanceof EventRepository)) {
+            throw new IllegalStateException(
+                "app.events.writeBehind.enabled=true requires app.sharding.enabled=false, but events are stored in "
+                + eventRepository.getClass().getSimpleName());
+        }
+        this.eventRepository = eventRepository instanceof EventRepository repository ? repository : null;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushMs = flushMs;
+        this.idBlockSize = idBlockSize;
+        this.waitForFlush = waitForFlush;
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.writer = new Thread(this::runWriter, "event-write-behind");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            running = true;
+            writer.start();
+        }
+    }
+
+    /**
+     * Returns true if new events should be created through this queue.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Assigns the event an ID and queues it for insertion.
+     *
+     * @param event the new event, without an ID
+     * @return the same event with its ID set
+     * @throws WriteBehindQueueFullException if the queue is full
+     * @throws QueryTimeoutException if waitForFlush is set and the batch was not committed in time
+     */
+    public EventEntity submit(EventEntity event) {
+        if (!running) {
+            throw new IllegalStateException("Event write-behind is not running");
+        }
+
+        event.setId(nextId());
+        PendingEvent pending = new PendingEvent(event);
+        if (!queue.offer(pending)) {
+            rejected.incrementAndGet();
+            throw new WriteBehindQueueFullException("Too many events being created, try again shortly", 1);
+        }
+        if (!waitForFlush) {
+            return event;
+        }
+
+        try {
+            pending.written.get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+            return event;
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Event " + event.getId() + " was queued but not written within " + ackTimeoutMs + " ms");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for event " + event.getId() + " to be written", e);
+        }
+    }
+
+    /**
+     * Assigns the event an ID from the reserved blocks and inserts it at once,
+     * bypassing the queue, in the caller's transaction if there is one.
+     *
+     * @param event the new event, without an ID
+     * @return the same event with its ID set
+     */
+    public EventEntity insertNow(EventEntity event) {
+        if (!running) {
+            throw new IllegalStateException("Event write-behind is not running");
+        }
+        event.setId(nextId());
+        eventRepository.insertAll(List.of(event));
+        return event;
+    }
+
+    /**
+     * Returns the number of events waiting to be written.
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the writer and writes whatever is still queued.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join();
+
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeWithRetry(batch);
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("eventsapp.events.writeBehind.queued", queue, BlockingQueue::size)
+            .description("Accepted events waiting to be written")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.events.writeBehind.written", written, AtomicLong::get)
+            .description("Events inserted by the write-behind writer")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.events.writeBehind.batches", batches, AtomicLong::get)
+            .description("Batches inserted by the write-behind writer")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.events.writeBehind.rejected", rejected, AtomicLong::get)
+            .description("Event creations refused because the write-behind queue was full")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.events.writeBehind.failed", failed, AtomicLong::get)
+            .description("Accepted events that could not be written")
+            .register(registry);
+    }
+
+    /**
+     * Hands out the next reserved ID, reserving a new block when this one runs out.
+     */
+    private synchronized long nextId() {
+        if (nextId >= blockEnd) {
+            nextId = eventRepository.allocateIds(idBlockSize);
+            blockEnd = nextId + idBlockSize;
+        }
+        return nextId++;
+    }
+
+    /**
+     * Collects batches until batchSize events arrive or flushMs passes since the
+     * first one, then writes them.
+     */
+    private void runWriter() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingEvent first = queue.poll(flushMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutting down; write what was collected and let destroy() drain the rest.
+            }
+            if (!batch.isEmpty()) {
+                writeWithRetry(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch, retrying while the database is unavailable.
+     *
+     * Retrying holds up the queue, so a long outage turns into 503s for new
+     * events rather than unbounded memory use.
+     */
+    private void writeWithRetry(List<PendingEvent> batch) {
+        long backoffMs = flushMs;
+        while (true) {
+            try {
+                write(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    fail(batch, e);
+                    return;
+                }
+                logger.warn("Writing {} queued events failed, retrying in {} ms", batch.size(), backoffMs, e);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    // Shutting down; one last attempt on the next iteration.
+                }
+                backoffMs = Math.min(backoffMs * 2, 5000);
+            }
+        }
+    }
+
+    /**
+     * Inserts a batch in one transaction and completes its callers.
+     *
+     * If a row violates a constraint, the batch is retried one event at a time
+     * so only the offending events fail.
+     */
+    private void write(List<PendingEvent> batch) {
+        List<EventEntity> events = new ArrayList<>(batch.size());
+        for (PendingEvent pending : batch) {
+            events.add(pending.event);
+        }
+
+        try {
+            eventRepository.insertAll(events);
+        } catch (DataIntegrityViolationException e) {
+            for (PendingEvent pending : batch) {
+                try {
+                    eventRepository.insertAll(List.of(pending.event));
+                    written.incrementAndGet();
+                    pending.written.complete(pending.event);
+                } catch (DataIntegrityViolationException rowFailure) {
+                    logger.error("Dropping queued event {}", pending.event.getId(), rowFailure);
+                    failed.incrementAndGet();
+                    pending.written.completeExceptionally(rowFailure);
+                }
+            }
+            batches.incrementAndGet();
+            return;
+        }
+
+        written.addAndGet(batch.size());
+        batches.incrementAndGet();
+        for (PendingEvent pending : batch) {
+            pending.written.complete(pending.event);
+        }
+    }
+
+    private void fail(List<PendingEvent> batch, RuntimeException cause) {
+        logger.error("Dropping {} queued events on shutdown", batch.size(), cause);
+        failed.addAndGet(batch.size());
+        for (PendingEvent pending : batch) {
+            pending.written.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * An accepted event and the callers waiting for it to be written.
+     */
+    private static final class PendingEvent {
+        final EventEntity event;
+        final CompletableFuture<EventEntity> written = new CompletableFuture<>();
+
+        PendingEvent(EventEntity event) {
+            this.event = event;
+        }
+    }
+}
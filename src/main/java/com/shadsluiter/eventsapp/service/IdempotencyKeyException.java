@@ -0,0 +1,30 @@
+package com.shadsluiter.eventsapp.service;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a request's Idempotency-Key cannot be honoured: the key is malformed,
+ * was already used with a different request body, or its first request is still
+ * running, on another app instance or for longer than a duplicate waits.
+ *
+ * Mapped to the carried status by GlobalExceptionHandler.
+ */
+public class IdempotencyKeyException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    /**
+     * Creates the exception with the status to respond with.
+     *
+     * @param status 400, 409 or 422
+     * @param message the detail message
+     */
+    public IdempotencyKeyException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
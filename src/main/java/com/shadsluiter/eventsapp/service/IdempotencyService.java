@@ -0,0 +1,353 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shadsluiter.eventsapp.data.IdempotencyRepository;
+import com.shadsluiter.eventsapp.models.IdempotencyRecord;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Makes create requests safe to retry with an Idempotency-Key header.
+ *
+ * The first request with a key runs and its response is kept for app.idempotency.ttlMs.
+ * A retry with the same key and body gets that response back, marked with an
+ * Idempotent-Replayed header, without running the write again. A duplicate that
+ * arrives while the first is still running waits for it, up to app.idempotency.waitMs,
+ * and shares its response; if the first is still running after that, it gets 409.
+ * Reusing a key with a different body is refused with 422.
+ *
+ * Keys are scoped by the caller, e.g. user and endpoint, so clients cannot collide.
+ * Responses are kept in a bounded in-memory store. With app.idempotency.db.enabled
+ * they are also claimed and stored in the idempotency_keys table, so a retry that
+ * lands on another instance is answered the same way, or with 409 while the first
+ * request is still running there.
+ *
+ * Responses with a 5xx status, and requests that throw, are not kept, so the
+ * client's retry runs the request again.
+ */
+@Service
+public class IdempotencyService implements MeterBinder {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int MAX_CLAIM_ATTEMPTS = 3;
+
+    private final IdempotencyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final boolean dbEnabled;
+    private final int maxEntries;
+    private final long ttlMs;
+    private final long claimTimeoutMs;
+    private final long waitMs;
+
+    /** Kept responses by key hash, oldest first; guarded by this */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+
+    /**
+     * Constructs the IdempotencyService.
+     *
+     * @param repository the shared store used when dbEnabled is set
+     * @param objectMapper serializes request bodies for fingerprints and responses for the shared store
+     * @param dbEnabled true to share keys between app instances through the database
+     * @param maxEntries the most responses kept in memory
+     * @param ttlMs how long a key is honoured after its first request
+     * @param claimTimeoutMs after how long an unfinished claim in the database is presumed dead
+     * @param waitMs how long a duplicate waits for the first request with its key to finish
+     */
+    @Autowired
+    public IdempotencyService(IdempotencyRepository repository, ObjectMapper objectMapper,
+                              @Value("${app.idempotency.db.enabled:false}") boolean dbEnabled,
+                              @Value("${app.idempotency.maxEntries:10000}") int maxEntries,
+                              @Value("${app.idempotency.ttlMs:86400000}") long ttlMs,
+                              @Value("${app.idempotency.claimTimeoutMs:60000}") long claimTimeoutMs,
+                              @Value("${app.idempotency.waitMs:10000}") long waitMs) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.dbEnabled = dbEnabled;
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.claimTimeoutMs = claimTimeoutMs;
+        this.waitMs = waitMs;
+    }
+
+    /**
+     * Runs a request once per key, or replays the response of an earlier run.
+     *
+     * @param scope who is calling which endpoint, e.g. "alice POST /api/events"
+     * @param key the client's Idempotency-Key header
+     * @param request the request body, fingerprinted before the action can change it
+     * @param responseType the response body type, for responses read back from the database
+     * @param action runs the request
+     * @return the response of the first request with this key
+     * @throws IdempotencyKeyException if the key is malformed, reused with another body, or still in progress
+     */
+    public <T> ResponseEntity<T> execute(String scope, String key, Object request, TypeReference<T> responseType,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyException(HttpStatus.BAD_REQUEST, "Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String keyHash = sha256((scope + "\n" + key).getBytes(StandardCharsets.UTF_8));
+        String fingerprint = fingerprint(request);
+
+        Entry entry;
+        boolean leader = false;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            evictExpired(now);
+            entry = entries.get(keyHash);
+            if (entry == null) {
+                entry = new Entry(fingerprint, now + ttlMs);
+                entries.put(keyHash, entry);
+                leader = true;
+                evictOverflow();
+            }
+        }
+
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw reused();
+        }
+        if (!leader) {
+            replayed.incrementAndGet();
+            return replay(await(entry));
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = dbEnabled ? runClaimed(keyHash, fingerprint, responseType, action) : run(action);
+        } catch (RuntimeException | Error e) {
+            forget(keyHash, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            forget(keyHash, entry);
+        }
+        entry.response.complete(response);
+        return response;
+    }
+
+    /**
+     * Deletes expired keys from the database.
+     */
+    @Scheduled(initialDelayString = "${app.idempotency.pruneMs:600000}", fixedDelayString = "${app.idempotency.pruneMs:600000}")
+    public void prune() {
+        if (dbEnabled) {
+            repository.deleteOlderThan(new Timestamp(System.currentTimeMillis() - ttlMs));
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("eventsapp.idempotency.entries", this, service -> service.size())
+            .description("Idempotency keys whose responses are kept in memory")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.idempotency.executed", executed, AtomicLong::get)
+            .description("Requests with an Idempotency-Key that ran")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.idempotency.replayed", replayed, AtomicLong::get)
+            .description("Requests with an Idempotency-Key answered with an earlier response")
+            .register(registry);
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private <T> ResponseEntity<T> run(Supplier<ResponseEntity<T>> action) {
+        executed.incrementAndGet();
+        return action.get();
+    }
+
+    /**
+     * Claims the key in the database before running, so that no other instance runs it too.
+     */
+    private <T> ResponseEntity<T> runClaimed(String keyHash, String fingerprint, TypeReference<T> responseType,
+                                             Supplier<ResponseEntity<T>> action) {
+        ResponseEntity<T> earlier = claim(keyHash, fingerprint, responseType);
+        if (earlier != null) {
+            return earlier;
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = run(action);
+        } catch (RuntimeException | Error e) {
+            repository.release(keyHash);
+            throw e;
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            repository.release(keyHash);
+        } else {
+            repository.complete(keyHash, response.getStatusCode().value(), writeBody(response.getBody()));
+        }
+        return response;
+    }
+
+    /**
+     * Claims the key in the database, or returns the replayed response of an
+     * earlier request that completed with it.
+     *
+     * A key released by a failed request between our insert and our lookup is
+     * claimed afresh; if other instances keep claiming and releasing it, the
+     * request is refused as in progress rather than retried forever.
+     */
+    private <T> ResponseEntity<T> claim(String keyHash, String fingerprint, TypeReference<T> responseType) {
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            try {
+                repository.claim(keyHash, fingerprint);
+                return null;
+            } catch (DuplicateKeyException e) {
+                IdempotencyRecord existing = repository.findByKeyHash(keyHash);
+                if (existing == null) {
+                    continue;
+                }
+                if (!existing.getFingerprint().equals(fingerprint)) {
+                    throw reused();
+                }
+                if (existing.isComplete()) {
+                    replayed.incrementAndGet();
+                    return replay(ResponseEntity.status(existing.getStatus()).body(readBody(existing.getBody(), responseType)));
+                }
+                if (repository.takeOver(keyHash, new Timestamp(System.currentTimeMillis() - claimTimeoutMs))) {
+                    return null;
+                }
+                throw inProgress();
+            }
+        }
+        throw inProgress();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> await(Entry entry) {
+        try {
+            return (ResponseEntity<T>) entry.response.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a request with the same Idempotency-Key", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static <T> ResponseEntity<T> replay(ResponseEntity<T> original) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(original.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(original.getBody(), headers, original.getStatusCode());
+    }
+
+    private synchronized void forget(String keyHash, Entry entry) {
+        entries.remove(keyHash, entry);
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext() && it.next().expiresAt <= now) {
+            it.remove();
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static IdempotencyKeyException reused() {
+        return new IdempotencyKeyException(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key was already used with a different request");
+    }
+
+    private static IdempotencyKeyException inProgress() {
+        return new IdempotencyKeyException(HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress");
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            return sha256(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request body cannot be serialized", e);
+        }
+    }
+
+    private String writeBody(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response body cannot be serialized", e);
+        }
+    }
+
+    private <T> T readBody(String body, TypeReference<T> responseType) {
+        try {
+            return body == null ? null : objectMapper.readValue(body, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response cannot be read", e);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The response to one key, completed when its first request finishes.
+     */
+    private static final class Entry {
+        final String fingerprint;
+        final long expiresAt;
+        final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.models.ChangeLogEntry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Delivers cache invalidations between app instances through the change_log table.
+ *
+ * Services register an evictor per entity type. Writes on this node evict locally
+ * right away through evictLocal; writes on any node are recorded in change_log by
+ * the repositories, and every node polls the log by sequence number and runs the
+ * evictors for each change it has not seen yet. Staleness across nodes is therefore
+ * bounded by the poll interval, with no broker involved.
+ *
+ * Sequence numbers can become visible out of order when transactions commit out of
+ * order. Skipped numbers are remembered for app.invalidation.gapTimeoutMs and
+ * re-read on later polls, so a late commit is still delivered.
+ */
+@Component
+public class InvalidationBus implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidationBus.class);
+
+    /** Upper bound on remembered sequence gaps, in case of a large jump in sequence numbers */
+    private static final int MAX_TRACKED_GAPS = 1000;
+
+    private final ChangeLogRepository changeLogRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long gapTimeoutMs;
+    private final long retentionMs;
+
+    private final Map<String, List<Consumer<String>>> evictors = new ConcurrentHashMap<>();
+    private final TreeMap<Long, Long> pendingGaps = new TreeMap<>();
+    private final AtomicLong delivered = new AtomicLong();
+    private volatile long lastSeq = -1;
+    private volatile long latestSeen;
+
+    /**
+     * Constructs the bus.
+     *
+     * @param changeLogRepository the change log table
+     * @param enabled true to poll the change log; otherwise only the cache TTL bounds staleness
+     * @param batchSize the most changes read per query
+     * @param gapTimeoutMs how long a skipped sequence number is waited for
+     * @param retentionMs how long change log rows are kept before pruning
+     */
+    public InvalidationBus(ChangeLogRepository changeLogRepository,
+                           @Value("${app.invalidation.enabled:false}") boolean enabled,
+                           @Value("${app.invalidation.batchSize:500}") int batchSize,
+                           @Value("${app.invalidation.gapTimeoutMs:10000}") long gapTimeoutMs,
+                           @Value("${app.invalidation.retentionMs:3600000}") long retentionMs) {
+        this.changeLogRepository = changeLogRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.gapTimeoutMs = gapTimeoutMs;
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Registers an evictor for an entity type.
+     *
+     * @param entity the entity type, e.g. ChangeLogRepository.EVENT
+     * @param evictor receives the changed key, or null to evict every entry of the type
+     */
+    public void register(String entity, Consumer<String> evictor) {
+        evictors.computeIfAbsent(entity, e -> new CopyOnWriteArrayList<>()).add(evictor);
+    }
+
+    /**
+     * Evicts a key on this node only, for writes made by this node.
+     *
+     * Other nodes learn about the write from the change log.
+     *
+     * @param entity the entity type
+     * @param key the changed key, or null for every entry of the type
+     */
+    public void evictLocal(String entity, String key) {
+        for (Consumer<String> evictor : evictors.getOrDefault(entity, List.of())) {
+            try {
+                evictor.accept(key);
+            } catch (RuntimeException e) {
+                logger.warn("Cache evictor for {} failed", entity, e);
+            }
+        }
+    }
+
+    /**
+     * Reads new changes from the log and evicts the affected keys.
+     */
+    @Scheduled(fixedDelayString = "${app.invalidation.pollMs:1000}")
+    public void poll() {
+        if (enabled) {
+            pollNow();
+        }
+    }
+
+    /**
+     * Reads new changes from the log and evicts the affected keys, regardless of
+     * whether scheduled polling is enabled.
+     *
+     * @return the number of changes delivered
+     */
+    public synchronized int pollNow() {
+        if (lastSeq < 0) {
+            // Caches start empty, so history before startup is irrelevant.
+            lastSeq = changeLogRepository.latestSequence();
+            latestSeen = lastSeq;
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        pendingGaps.values().removeIf(since -> now - since > gapTimeoutMs);
+
+        int count = 0;
+        long cursor = pendingGaps.isEmpty() ? lastSeq : Math.min(lastSeq, pendingGaps.firstKey() - 1);
+        List<ChangeLogEntry> entries;
+        do {
+            entries = changeLogRepository.findAfter(cursor, batchSize);
+            for (ChangeLogEntry entry : entries) {
+                long seq = entry.getSeq();
+                cursor = seq;
+                if (seq <= lastSeq && pendingGaps.remove(seq) == null) {
+                    continue;
+                }
+                for (long missing = lastSeq + 1; missing < seq && pendingGaps.size() < MAX_TRACKED_GAPS; missing++) {
+                    pendingGaps.put(missing, now);
+                }
+                lastSeq = Math.max(lastSeq, seq);
+                evictLocal(entry.getEntity(), entry.getKey());
+                count++;
+            }
+            latestSeen = lastSeq;
+        } while (entries.size() == batchSize);
+
+        delivered.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * Removes change log rows older than the retention period.
+     *
+     * Runs even when polling is disabled, since the repositories record every write.
+     */
+    @Scheduled(initialDelayString = "${app.invalidation.pruneIntervalMs:600000}",
+               fixedDelayString = "${app.invalidation.pruneIntervalMs:600000}")
+    public void prune() {
+        changeLogRepository.deleteOlderThan(new Timestamp(System.currentTimeMillis() - retentionMs));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("eventsapp.invalidation.delivered", delivered, AtomicLong::get)
+            .description("Change log entries delivered to local cache evictors")
+            .register(registry);
+        Gauge.builder("eventsapp.invalidation.sequence", this, bus -> bus.latestSeen)
+            .description("Highest change log sequence number processed by this node")
+            .register(registry);
+        Gauge.builder("eventsapp.invalidation.gaps", this, bus -> bus.pendingGapCount())
+            .description("Skipped change log sequence numbers still being waited for")
+            .register(registry);
+    }
+
+    private synchronized int pendingGapCount() {
+        return pendingGaps.size();
+    }
+}
@@ -0,0 +1,129 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Small in-process cache with a time-to-live and a size bound.
+ *
+ * Entries expire after the TTL even if no invalidation arrives, which bounds
+ * staleness when the InvalidationBus is not polling. When the cache is full,
+ * expired entries are swept and, if that is not enough, the cache is cleared.
+ *
+ * A load that overlaps an invalidation is returned to its caller but not stored,
+ * so a value read before a write can never be cached after that write's eviction.
+ * Null results are never cached.
+ *
+ * @param <K> the key type
+ * @param <V> the value type; values are shared, so callers must not mutate them
+ */
+public class LocalCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlNanos;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs the cache.
+     *
+     * @param maxSize the most entries held at once; 0 disables caching
+     * @param ttlMs how long an entry is served before it is reloaded
+     */
+    public LocalCache(int maxSize, long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    }
+
+    /**
+     * Returns the cached value for the key, loading and caching it if absent or expired.
+     *
+     * @param key the cache key
+     * @param loader loads the value on a miss
+     * @return the value, or null if the loader returned null
+     */
+    public V get(K key, Function<K, V> loader) {
+        long now = System.nanoTime();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expiresAt - now > 0) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+
+        misses.incrementAndGet();
+        long generation = invalidations.get();
+        V value = loader.apply(key);
+        if (value == null || maxSize <= 0) {
+            return value;
+        }
+
+        if (entries.size() >= maxSize) {
+            entries.values().removeIf(e -> e.expiresAt - now <= 0);
+            if (entries.size() >= maxSize) {
+                entries.clear();
+            }
+        }
+        entries.put(key, new Entry<>(value, now + ttlNanos));
+        if (invalidations.get() != generation) {
+            // An eviction ran while loading; the value may predate it.
+            entries.remove(key);
+        }
+        return value;
+    }
+
+    /**
+     * Removes one key.
+     *
+     * @param key the key to evict
+     */
+    public void invalidate(K key) {
+        invalidations.incrementAndGet();
+        entries.remove(key);
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Returns how many lookups were served from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns how many lookups went to the loader.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries currently held.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * A cached value and the System.nanoTime() at which it expires.
+     */
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
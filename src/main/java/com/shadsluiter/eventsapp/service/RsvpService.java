@@ -0,0 +1,701 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.RsvpRepository;
+import com.shadsluiter.eventsapp.models.AttendanceModel;
+import com.shadsluiter.eventsapp.models.RsvpEntity;
+import com.shadsluiter.eventsapp.models.RsvpStatus;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Service class for RSVPs, event capacity and waitlists.
+ *
+ * Each app instance leases seats from an event's capacity in blocks of leaseSize
+ * and holds them in a per-event counter. An RSVP takes a seat with a
+ * compare-and-set on that counter, so concurrent RSVPs neither lock nor wait for
+ * each other; only the RSVP that finds the counter empty leases the next block,
+ * in one short transaction on the event's event_attendance row. The database
+ * grants a lease only from seats that are neither attending nor leased to any
+ * instance, so the event cannot be overbooked however many instances serve it.
+ * When no seats are left, or the event has a waitlist, RSVPs join the waitlist.
+ *
+ * Changes are acknowledged from memory and persisted write-behind: a scheduled
+ * flush drains the queue every app.rsvp.flushMs and writes each event's share of
+ * a batch in one transaction, together with the resulting counts. The same
+ * transaction promotes waitlisted users, in FIFO order across all instances,
+ * into seats released by cancellations. When the queue is full, RSVPs are
+ * refused with WriteBehindQueueFullException rather than growing the heap.
+ *
+ * Each flush renews this instance's leases. Unused seats go back to the event
+ * once it is full or has a waitlist, when the event is edited, or after idleMs
+ * without an RSVP, and event state idle that long is dropped from memory. The
+ * seats of an instance that stops without returning them come back when its
+ * leases expire after leaseTtlMs. If an instance's lease has expired by the time
+ * its batch is written, its ATTENDING RSVPs are stored as WAITLISTED instead.
+ *
+ * Capacity is read from the event's attendance row, where EventService stores it
+ * on every save. RSVPs apply to a recurring event as a whole, not to single occurrences.
+ */
+@Service
+public class RsvpService implements MeterBinder, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RsvpService.class);
+
+    private final RsvpRepository rsvpRepository;
+    private final EventService eventService;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final int queueCapacity;
+    private final int batchSize;
+    private final int leaseSize;
+    private final long leaseTtlMs;
+    private final long idleMs;
+
+    private final ConcurrentHashMap<Long, Attendance> events = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Change> pending = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<Change> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong leases = new AtomicLong();
+
+    /**
+     * Constructs the RsvpService.
+     *
+     * @param rsvpRepository the store of RSVPs, counts and seat leases
+     * @param eventService the source of capacities for events without an attendance row
+     * @param invalidationBus reports event edits, which may change capacity
+     * @param queueCapacity the most unflushed changes held in memory
+     * @param batchSize the most changes written per flush round
+     * @param leaseSize the most seats leased per transaction
+     * @param leaseTtlMs how long leased seats stay reserved for this instance unless renewed
+     * @param idleMs how long an event goes without RSVPs before its unused seats are returned
+     */
+    @Autowired
+    public RsvpService(RsvpRepository rsvpRepository, EventService eventService, InvalidationBus invalidationBus,
+                       @Value("${app.rsvp.queueCapacity:100000}") int queueCapacity,
+                       @Value("${app.rsvp.batchSize:1000}") int batchSize,
+                       @Value("${app.rsvp.leaseSize:20}") int leaseSize,
+                       @Value("${app.rsvp.leaseTtlMs:30000}") long leaseTtlMs,
+                       @Value("${app.rsvp.idleMs:5000}") long idleMs) {
+        this.rsvpRepository = rsvpRepository;
+        this.eventService = eventService;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.leaseSize = leaseSize;
+        this.leaseTtlMs = leaseTtlMs;
+        this.idleMs = idleMs;
+
+        invalidationBus.register(ChangeLogRepository.EVENT, key -> {
+            if (key == null) {
+                events.values().forEach(Attendance::edited);
+            } else {
+                Attendance attendance = events.get(Long.valueOf(key));
+                if (attendance != null) {
+                    attendance.edited();
+                }
+            }
+        });
+    }
+
+    /**
+     * RSVPs a user to an event, taking a seat if one is free and joining the waitlist otherwise.
+     *
+     * Repeating an RSVP returns the user's current status without changing it.
+     *
+     * @param eventId the event ID
+     * @param userId the user ID
+     * @return the event's attendance and the user's status
+     * @throws org.springframework.dao.EmptyResultDataAccessException if the event does not exist
+     * @throws WriteBehindQueueFullException if the write-behind queue is full
+     */
+    public AttendanceModel rsvp(long eventId, long userId) {
+        String key = key(eventId, userId);
+        while (true) {
+            Attendance attendance = enter(eventId);
+            try {
+                Change current = pending.get(key);
+                if (current != null && current.insert) {
+                    return attendance.toModel(current.status);
+                }
+                RsvpStatus stored = current == null ? rsvpRepository.findStatus(eventId, userId) : null;
+                if (stored != null) {
+                    return attendance.toModel(stored);
+                }
+
+                reserve();
+                RsvpStatus status;
+                try {
+                    status = attendance.takeSeat() ? RsvpStatus.ATTENDING : RsvpStatus.WAITLISTED;
+                } catch (RuntimeException e) {
+                    unreserve();
+                    throw e;
+                }
+                Change change = new Change(attendance, key, userId, true, status);
+                // A pending cancellation is replaced, so the new RSVP is written after it.
+                if (!enqueue(change, current)) {
+                    // A concurrent change by the same user won; give the seat back and look again.
+                    if (status == RsvpStatus.ATTENDING) {
+                        attendance.free.incrementAndGet();
+                    }
+                    continue;
+                }
+                return attendance.toModel(status);
+            } finally {
+                attendance.exit();
+            }
+        }
+    }
+
+    /**
+     * Cancels a user's RSVP.
+     *
+     * A cancelled seat is handed to the first waitlisted user when the
+     * cancellation is written, or straight back to the next RSVP if the seat was
+     * taken by an RSVP that has not been written yet.
+     *
+     * @param eventId the event ID
+     * @param userId the user ID
+     * @return the event's attendance, or null if the user had no RSVP
+     * @throws org.springframework.dao.EmptyResultDataAccessException if the event does not exist
+     * @throws WriteBehindQueueFullException if the write-behind queue is full
+     */
+    public AttendanceModel cancel(long eventId, long userId) {
+        String key = key(eventId, userId);
+        while (true) {
+            Attendance attendance = enter(eventId);
+            try {
+                Change current = pending.get(key);
+                if (current != null && !current.insert) {
+                    return null;
+                }
+                if (current != null && current.cancel()) {
+                    pending.remove(key, current);
+                    unreserve();
+                    return attendance.toModel(null);
+                }
+                RsvpStatus stored = current != null ? current.status : rsvpRepository.findStatus(eventId, userId);
+                if (stored == null) {
+                    return null;
+                }
+
+                reserve();
+                if (!enqueue(new Change(attendance, key, userId, false, stored), current)) {
+                    continue;
+                }
+                return attendance.toModel(null);
+            } finally {
+                attendance.exit();
+            }
+        }
+    }
+
+    /**
+     * Returns an event's attendance and the user's status, including changes
+     * accepted by this instance that are not written yet.
+     *
+     * @param eventId the event ID
+     * @param userId the user ID
+     * @return the event's attendance
+     * @throws org.springframework.dao.EmptyResultDataAccessException if the event does not exist
+     */
+    public AttendanceModel getAttendance(long eventId, long userId) {
+        Attendance attendance = enter(eventId);
+        try {
+            Change current = pending.get(key(eventId, userId));
+            RsvpStatus status = current == null ? rsvpRepository.findStatus(eventId, userId)
+                : current.insert ? current.status : null;
+            return attendance.refresh(status);
+        } finally {
+            attendance.exit();
+        }
+    }
+
+    /**
+     * Writes queued changes in batches, then renews this instance's leases and
+     * returns the seats it no longer needs.
+     *
+     * If a write fails, its changes go back to the front of the queue for the next flush.
+     */
+    @Scheduled(fixedDelayString = "${app.rsvp.flushMs:200}")
+    public synchronized void flush() {
+        List<Change> batch;
+        do {
+            batch = drain();
+            Map<Attendance, List<Change>> byEvent = new LinkedHashMap<>();
+            for (Change change : batch) {
+                byEvent.computeIfAbsent(change.attendance, a -> new ArrayList<>()).add(change);
+            }
+            List<List<Change>> groups = new ArrayList<>(byEvent.values());
+            for (int i = 0; i < groups.size(); i++) {
+                try {
+                    write(groups.get(i).get(0).attendance, groups.get(i));
+                } catch (RuntimeException e) {
+                    List<Change> unwritten = new ArrayList<>();
+                    for (List<Change> group : groups.subList(i, groups.size())) {
+                        unwritten.addAll(group);
+                    }
+                    logger.warn("Writing {} RSVP changes failed, retrying on the next flush", unwritten.size(), e);
+                    for (int j = unwritten.size() - 1; j >= 0; j--) {
+                        queue.offerFirst(unwritten.get(j));
+                    }
+                    return;
+                }
+            }
+        } while (batch.size() >= batchSize);
+        returnUnusedSeats();
+    }
+
+    /**
+     * Returns the number of accepted changes waiting to be written.
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Returns the seats this instance has leased and not handed out, across all events.
+     */
+    public int getFreeSeats() {
+        int free = 0;
+        for (Attendance attendance : events.values()) {
+            free += attendance.free.get();
+        }
+        return free;
+    }
+
+    /**
+     * Writes whatever is still queued and returns every unused seat.
+     */
+    @Override
+    public void destroy() {
+        flush();
+        for (Attendance attendance : events.values()) {
+            attendance.returnSeats();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("eventsapp.rsvp.queued", queued, AtomicInteger::get)
+            .description("RSVP changes accepted and not yet written")
+            .register(registry);
+        Gauge.builder("eventsapp.rsvp.events", events, Map::size)
+            .description("Events whose attendance is held in memory")
+            .register(registry);
+        Gauge.builder("eventsapp.rsvp.seats.free", this, RsvpService::getFreeSeats)
+            .description("Seats leased by this instance and not yet handed out")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.rsvp.flushed", flushed, AtomicLong::get)
+            .description("RSVP changes written to the database")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.rsvp.rejected", rejected, AtomicLong::get)
+            .description("RSVP changes refused because the write-behind queue was full")
+            .register(registry);
+        FunctionCounter.builder("eventsapp.rsvp.leases", leases, AtomicLong::get)
+            .description("Seat lease transactions run by this instance")
+            .register(registry);
+    }
+
+    /**
+     * Returns an event's in-memory attendance, loading it if needed, and marks it
+     * in use until exit so it is not dropped meanwhile.
+     */
+    private Attendance enter(long eventId) {
+        while (true) {
+            Attendance attendance = events.computeIfAbsent(eventId, Attendance::new);
+            attendance.active.incrementAndGet();
+            if (!attendance.retired) {
+                attendance.lastUsed = System.currentTimeMillis();
+                try {
+                    attendance.load();
+                } catch (RuntimeException e) {
+                    attendance.exit();
+                    attendance.retireIfUnused();
+                    throw e;
+                }
+                return attendance;
+            }
+            attendance.active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes the next drained batch, with at most one change per user and event so
+     * a user's changes are written in order.
+     */
+    private List<Change> drain() {
+        List<Change> batch = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        Change change;
+        while (batch.size() < batchSize && (change = queue.pollFirst()) != null) {
+            if (!keys.add(change.key)) {
+                queue.offerFirst(change);
+                break;
+            }
+            batch.add(change);
+        }
+        return batch;
+    }
+
+    /**
+     * Writes one event's share of a batch and moves its pending counts into the stored ones.
+     */
+    private void write(Attendance attendance, List<Change> changes) {
+        List<RsvpEntity> inserts = new ArrayList<>();
+        List<Long> deletes = new ArrayList<>();
+        List<Change> writing = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            if (!change.state.compareAndSet(Change.QUEUED, Change.WRITING)) {
+                // Cancelled before it was written.
+                continue;
+            }
+            writing.add(change);
+            if (change.insert) {
+                inserts.add(new RsvpEntity(attendance.eventId, change.userId, change.status, change.createdAt));
+            } else {
+                deletes.add(change.userId);
+            }
+        }
+        if (writing.isEmpty()) {
+            return;
+        }
+
+        RsvpRepository.FlushResult result;
+        attendance.counts.writeLock().lock();
+        try {
+            result = rsvpRepository.flush(attendance.eventId, instanceId, inserts, deletes, leaseTtlMs);
+            if (result != null) {
+                attendance.stored = result.getAttendance();
+            }
+            for (Change change : writing) {
+                attendance.removePending(change);
+                pending.remove(change.key, change);
+            }
+        } catch (RuntimeException e) {
+            for (Change change : writing) {
+                change.state.set(Change.QUEUED);
+            }
+            throw e;
+        } finally {
+            attendance.counts.writeLock().unlock();
+        }
+        queued.addAndGet(-writing.size());
+        flushed.addAndGet(writing.size());
+
+        if (result == null) {
+            logger.warn("Dropped {} RSVP changes for deleted event {}", writing.size(), attendance.eventId);
+            return;
+        }
+        attendance.free.addAndGet(result.getUnusedSeats());
+        if (result.isLeaseLost()) {
+            logger.warn("Lease on event {} expired before its RSVPs were written", attendance.eventId);
+            attendance.returnSeats();
+        }
+        if (result.hasRoom()) {
+            attendance.full = false;
+        }
+    }
+
+    /**
+     * Renews this instance's leases, returns seats to events that have a waitlist,
+     * were edited or have been idle, and drops idle events from memory.
+     */
+    private void returnUnusedSeats() {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Long eventId : rsvpRepository.renewLeases(instanceId, leaseTtlMs)) {
+            Attendance attendance = events.get(eventId);
+            if (attendance != null) {
+                attendance.returnSeats();
+            }
+        }
+        long idleSince = System.currentTimeMillis() - idleMs;
+        for (Attendance attendance : events.values()) {
+            boolean idle = attendance.lastUsed < idleSince;
+            if (idle || attendance.edited || attendance.full) {
+                attendance.edited = false;
+                attendance.returnSeats();
+            }
+            if (idle) {
+                attendance.retireIfUnused();
+            }
+        }
+    }
+
+    private void reserve() {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new WriteBehindQueueFullException("Too many RSVPs being recorded, try again shortly", 1);
+        }
+    }
+
+    private void unreserve() {
+        queued.decrementAndGet();
+    }
+
+    /**
+     * Makes a reserved change the user's pending change and queues it.
+     *
+     * @param change the new change
+     * @param current the pending change it replaces, or null if there is none
+     * @return false, with the reservation released, if another change for the user came first
+     */
+    private boolean enqueue(Change change, Change current) {
+        // Counted before it can be seen, so a cancellation never uncounts it first.
+        change.attendance.addPending(change);
+        if (current == null ? pending.putIfAbsent(change.key, change) != null : !pending.replace(change.key, current, change)) {
+            change.attendance.removePending(change);
+            unreserve();
+            return false;
+        }
+        queue.offerLast(change);
+        return true;
+    }
+
+    private static String key(long eventId, long userId) {
+        return eventId + ":" + userId;
+    }
+
+    /**
+     * One event's leased seats, its last stored counts and the changes accepted
+     * by this instance that are not written yet.
+     */
+    private final class Attendance {
+
+        final long eventId;
+        /** Leased seats not yet handed out */
+        final AtomicInteger free = new AtomicInteger();
+        final AtomicInteger pendingAttending = new AtomicInteger();
+        final AtomicInteger pendingWaitlisted = new AtomicInteger();
+        final AtomicInteger pendingChanges = new AtomicInteger();
+        /** Callers between enter and exit */
+        final AtomicInteger active = new AtomicInteger();
+        /** Excludes reads of the stored counts while a flush moves pending counts into them */
+        final ReadWriteLock counts = new ReentrantReadWriteLock();
+        volatile AttendanceModel stored;
+        /** True once a lease was refused, until a flush finds seats to lease again */
+        volatile boolean full;
+        volatile boolean edited;
+        volatile boolean retired;
+        volatile long lastUsed;
+
+        Attendance(long eventId) {
+            this.eventId = eventId;
+        }
+
+        /**
+         * Reads the stored counts on first use, creating the attendance row for
+         * events saved before capacities were stored on it.
+         */
+        void load() {
+            if (stored != null) {
+                return;
+            }
+            synchronized (this) {
+                if (stored == null) {
+                    AttendanceModel attendance = rsvpRepository.findAttendance(eventId);
+                    if (attendance == null) {
+                        Integer capacity = eventService.findById(eventId).getCapacity();
+                        rsvpRepository.createAttendance(eventId, capacity != null ? Math.max(0, capacity) : null);
+                        attendance = rsvpRepository.findAttendance(eventId);
+                    }
+                    stored = attendance;
+                }
+            }
+        }
+
+        /**
+         * Takes a leased seat, leasing another block if none is left.
+         *
+         * Once the event is full, seats given back by cancellations are kept for
+         * the next flush to return, so they go to the waitlist rather than to
+         * whoever RSVPs next.
+         *
+         * @return false if the event is full
+         */
+        boolean takeSeat() {
+            while (true) {
+                if (full) {
+                    return false;
+                }
+                int seats = free.get();
+                if (seats > 0) {
+                    if (free.compareAndSet(seats, seats - 1)) {
+                        return true;
+                    }
+                    continue;
+                }
+                synchronized (this) {
+                    if (free.get() > 0) {
+                        continue;
+                    }
+                    if (full) {
+                        return false;
+                    }
+                    leases.incrementAndGet();
+                    int granted = rsvpRepository.lease(eventId, instanceId, leaseSize, leaseTtlMs);
+                    if (granted == 0) {
+                        full = true;
+                        return false;
+                    }
+                    free.addAndGet(granted);
+                }
+            }
+        }
+
+        /**
+         * Gives every unused seat back to the event.
+         */
+        void returnSeats() {
+            int seats = free.getAndSet(0);
+            if (seats > 0) {
+                try {
+                    rsvpRepository.returnSeats(eventId, instanceId, seats);
+                } catch (RuntimeException e) {
+                    // Still leased in the database; keep them rather than lose track of them.
+                    free.addAndGet(seats);
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Drops this event from memory if nothing uses it. Callers that entered
+         * meanwhile see it retired and load a fresh copy.
+         */
+        synchronized void retireIfUnused() {
+            retired = true;
+            if (active.get() > 0 || pendingChanges.get() > 0 || free.get() > 0) {
+                retired = false;
+                return;
+            }
+            events.remove(eventId, this);
+        }
+
+        void exit() {
+            active.decrementAndGet();
+        }
+
+        void edited() {
+            edited = true;
+            full = false;
+        }
+
+        void addPending(Change change) {
+            pendingChanges.incrementAndGet();
+            count(change, 1);
+        }
+
+        void removePending(Change change) {
+            count(change, -1);
+            pendingChanges.decrementAndGet();
+        }
+
+        private void count(Change change, int sign) {
+            int delta = change.insert ? sign : -sign;
+            if (change.status == RsvpStatus.ATTENDING) {
+                pendingAttending.addAndGet(delta);
+            } else {
+                pendingWaitlisted.addAndGet(delta);
+            }
+        }
+
+        /**
+         * Returns the last stored counts plus pending changes, without locking.
+         */
+        AttendanceModel toModel(RsvpStatus status) {
+            AttendanceModel base = stored;
+            return new AttendanceModel(eventId, base.getCapacity(), base.getAttending() + pendingAttending.get(),
+                base.getWaitlisted() + pendingWaitlisted.get(), status);
+        }
+
+        /**
+         * Rereads the stored counts and adds pending changes, excluding flushes so
+         * no change is counted twice or missed.
+         */
+        AttendanceModel refresh(RsvpStatus status) {
+            counts.readLock().lock();
+            try {
+                AttendanceModel latest = rsvpRepository.findAttendance(eventId);
+                if (latest != null) {
+                    stored = latest;
+                }
+                return toModel(status);
+            } finally {
+                counts.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * An accepted RSVP or cancellation waiting to be written.
+     */
+    private static final class Change {
+
+        static final int QUEUED = 0;
+        static final int WRITING = 1;
+        static final int CANCELLED = 2;
+
+        final Attendance attendance;
+        final String key;
+        final long userId;
+        final boolean insert;
+        final RsvpStatus status;
+        final Timestamp createdAt = new Timestamp(System.currentTimeMillis());
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        Change(Attendance attendance, String key, long userId, boolean insert, RsvpStatus status) {
+            this.attendance = attendance;
+            this.key = key;
+            this.userId = userId;
+            this.insert = insert;
+            this.status = status;
+        }
+
+        /**
+         * Withdraws an RSVP that has not started being written, giving its seat
+         * straight back.
+         *
+         * @return false if the RSVP is already being written
+         */
+        boolean cancel() {
+            if (!state.compareAndSet(QUEUED, CANCELLED)) {
+                return false;
+            }
+            attendance.removePending(this);
+            if (status == RsvpStatus.ATTENDING) {
+                attendance.free.incrementAndGet();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls that share a key into a single execution.
+ *
+ * The first caller for a key (the leader) runs the loader on its own thread; callers
+ * that arrive while it is running wait for and share its result instead of running
+ * the loader again. Nothing is cached: once the leader finishes, the next call for
+ * the same key runs the loader afresh.
+ *
+ * If the loader throws, every waiting caller receives the same exception. If the
+ * leader is interrupted mid-call, waiting callers are not failed on its behalf; they
+ * retry and one of them becomes the new leader. A waiting caller that is itself
+ * interrupted stops waiting without affecting the leader.
+ *
+ * @param <K> the key type, which must implement equals and hashCode
+ * @param <V> the result type; results are shared, so callers must not mutate them
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Runs the loader for the key, or joins a run already in progress.
+     *
+     * @param key identifies calls that may share a result
+     * @param loader the call to execute when no run is in progress
+     * @return the loader result
+     */
+    public V execute(K key, Supplier<V> loader) {
+        while (true) {
+            CompletableFuture<V> call = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+            if (existing == null) {
+                return lead(key, call, loader);
+            }
+
+            waiting.incrementAndGet();
+            try {
+                V value = existing.get();
+                coalesced.incrementAndGet();
+                return value;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a shared query", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof LeaderCancelledException) {
+                    continue;
+                }
+                coalesced.incrementAndGet();
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException(cause);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Executes the loader as leader and publishes the outcome to waiting callers.
+     */
+    private V lead(K key, CompletableFuture<V> call, Supplier<V> loader) {
+        executions.incrementAndGet();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(Thread.currentThread().isInterrupted() ? new LeaderCancelledException() : e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Returns how many times a loader actually ran.
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * Returns how many calls were served by joining another caller's run, with
+     * its result or its exception. A call that retries after the leader was
+     * cancelled counts once, for the run that finally serves it.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Returns how many callers are currently waiting for another caller's run.
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * Returns how many distinct keys are currently being loaded.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Signals waiting callers that the leader was cancelled and they should retry.
+     */
+    private static class LeaderCancelledException extends RuntimeException {
+        LeaderCancelledException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache with a time-to-live and frequency-based admission.
+ *
+ * Entries are kept in least-recently-used order. When the cache is full, a
+ * newly loaded value only replaces the least recently used entry if its key
+ * has been requested more often, as estimated by a TinyLFU frequency sketch:
+ * a count-min sketch of 4-bit counters over every lookup, hits and misses
+ * alike, that halves all counters after ten lookups per entry so old
+ * popularity fades. A burst of one-off keys therefore cannot flush the keys
+ * that are asked for again and again.
+ *
+ * Like LocalCache, entries expire after the TTL, a load that overlaps an
+ * invalidation is returned but not stored, and null results are never cached.
+ *
+ * @param <K> the key type
+ * @param <V> the value type; values are shared, so callers must not mutate them
+ */
+public class TinyLfuCache<K, V> {
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final FrequencySketch sketch;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * Constructs the cache.
+     *
+     * @param maxSize the most entries held at once; 0 disables caching
+     * @param ttlMs how long an entry is served before it is reloaded
+     */
+    public TinyLfuCache(int maxSize, long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(Math.max(1, maxSize));
+    }
+
+    /**
+     * Returns the cached value for the key, loading it if absent or expired and
+     * caching it if there is room or it is requested more often than the entry
+     * it would evict.
+     *
+     * @param key the cache key
+     * @param loader loads the value on a miss
+     * @return the value, or null if the loader returned null
+     */
+    public V get(K key, Function<K, V> loader) {
+        if (maxSize <= 0) {
+            misses.incrementAndGet();
+            return loader.apply(key);
+        }
+
+        long now = System.nanoTime();
+        synchronized (this) {
+            sketch.increment(key.hashCode());
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt - now > 0) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+        }
+
+        misses.incrementAndGet();
+        long generation = invalidations.get();
+        V value = loader.apply(key);
+        if (value == null) {
+            return value;
+        }
+
+        synchronized (this) {
+            if (invalidations.get() != generation) {
+                // An invalidation ran while loading; the value may predate it.
+                return value;
+            }
+            if (!entries.containsKey(key) && entries.size() >= maxSize && !makeRoomFor(key, now)) {
+                rejections.incrementAndGet();
+                return value;
+            }
+            entries.put(key, new Entry<>(value, now + ttlNanos));
+        }
+        return value;
+    }
+
+    /**
+     * Removes every entry. Frequencies are kept, since popularity outlives a write.
+     */
+    public synchronized void invalidateAll() {
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Returns how many lookups were served from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns how many lookups went to the loader.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns how many loaded values were not cached because their key was
+     * requested less often than the entry they would have evicted.
+     */
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * Returns the share of lookups served from the cache, or 0 before the first lookup.
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Returns the number of entries currently held.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evicts an expired entry if there is one, and otherwise the least recently
+     * used entry if the candidate is more popular than it.
+     *
+     * @return true if an entry was evicted
+     */
+    private boolean makeRoomFor(K candidate, long now) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        Map.Entry<K, Entry<V>> victim = iterator.next();
+        if (victim.getValue().expiresAt - now > 0
+                && sketch.frequency(candidate.hashCode()) <= sketch.frequency(victim.getKey().hashCode())) {
+            return false;
+        }
+        iterator.remove();
+        return true;
+    }
+
+    /**
+     * A cached value and the System.nanoTime() at which it expires.
+     */
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, sixteen to a long, four rows deep.
+     * Estimates are the minimum over the rows, so collisions can only inflate them.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+        private static final long ODD_NIBBLES = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxSize) {
+            // Sixteen counters per long and four rows: about four counters per entry per row.
+            int longs = Integer.highestOneBit(Math.max(16, maxSize) - 1) << 1;
+            table = new long[longs];
+            sampleSize = 10 * Math.max(16, maxSize);
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = index(hash, row);
+                int shift = shift(hash, row);
+                if (((table[index] >>> shift) & 0xF) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                // Halve every counter so that past popularity fades.
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & ODD_NIBBLES;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int row = 0; row < SEEDS.length; row++) {
+                min = Math.min(min, (int) ((table[index(hash, row)] >>> shift(hash, row)) & 0xF));
+            }
+            return min;
+        }
+
+        private int index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h >>> 40) & (table.length - 1);
+        }
+
+        private static int shift(int hash, int row) {
+            // Each row uses a different counter within the long.
+            return (((hash >>> (row * 8)) & 3) + row * 4) << 2;
+        }
+    }
+}
@@ -0,0 +1,595 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Typo-tolerant text index over event names, locations and descriptions.
+ *
+ * Text is split into lower-case words. Each distinct word is a term with a
+ * posting list of the documents containing it, and each term is listed under
+ * its trigrams: "$party$" gives "$pa", "par", "art", "rty" and "ty$". A query
+ * word finds its candidate terms through its own trigrams. A term within k
+ * edits shares all but at most 3k of them, or 4k when a swap of adjacent
+ * letters counts as one edit, so only terms reaching that count, and within k
+ * characters in length, are compared by edit distance. Words of
+ * up to three characters must match exactly, words of four to seven may be one
+ * edit away, longer words two.
+ *
+ * A document scores, per query word, its best matching term, weighted by the
+ * term's similarity (1 - edits / length), its rarity and the field it is in:
+ * name over location over description. Documents matching more of the query
+ * words rank first. Words in more than one document in twenty, like "the" or
+ * a location every event shares, are treated as stop words: they only count
+ * when nothing rarer matches, which keeps a query from visiting most of the
+ * index.
+ *
+ * Query words are scored rarest first. Once limit documents are ahead of the
+ * most any unseen document could score from the words left, those words only
+ * add to documents already found: their posting lists, which are in slot
+ * order, are then probed per document instead of read in full.
+ *
+ * Updating a document adds it again under a new slot and marks the old slot
+ * dead; dead slots stay in the posting lists until the index is rebuilt. Not
+ * thread-safe for writes: EventCatalog guards it with its lock.
+ */
+final class TrigramIndex {
+
+    static final int NAME = 0;
+    static final int LOCATION = 1;
+    static final int DESCRIPTION = 2;
+
+    private static final float[] FIELD_WEIGHTS = {3f, 2f, 1f};
+    private static final int MIN_WORD_LENGTH = 2;
+    private static final int MAX_WORD_LENGTH = 32;
+    private static final int MAX_QUERY_WORDS = 8;
+    private static final int COMMON_FRACTION = 20;
+    private static final int MIN_COMMON_DOCUMENTS = 10_000;
+    /** Roughly the postings read to probe one document, a binary search */
+    private static final int PROBE_COST = 20;
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    /** Per term, the documents containing it as (slot << 2 | field) */
+    private final List<IntList> termPostings = new ArrayList<>();
+    private final Map<Long, IntList> trigramTerms = new HashMap<>();
+
+    private final LongIntMap slotsById;
+    private long[] slotIds;
+    private final BitSet deadSlots = new BitSet();
+    private int slots;
+    private int live;
+
+    /**
+     * @param expectedDocuments the number of documents the index is sized for
+     */
+    TrigramIndex(int expectedDocuments) {
+        slotsById = new LongIntMap(expectedDocuments);
+        slotIds = new long[Math.max(16, expectedDocuments)];
+    }
+
+    /**
+     * Indexes a document, replacing any earlier version of it.
+     *
+     * @param id the event ID
+     * @param name the name, or null
+     * @param location the location, or null
+     * @param description the description, or null
+     */
+    void put(long id, String name, String location, String description) {
+        remove(id);
+        if (slots == slotIds.length) {
+            slotIds = Arrays.copyOf(slotIds, slots + (slots >> 1));
+        }
+        int slot = slots++;
+        slotIds[slot] = id;
+        slotsById.put(id, slot);
+        live++;
+
+        index(slot, NAME, name);
+        index(slot, LOCATION, location);
+        index(slot, DESCRIPTION, description);
+    }
+
+    /**
+     * Removes a document, if indexed.
+     */
+    void remove(long id) {
+        int slot = slotsById.get(id);
+        if (slot != LongIntMap.MISSING && !deadSlots.get(slot)) {
+            deadSlots.set(slot);
+            live--;
+        }
+    }
+
+    /**
+     * Returns the IDs of the best matching documents, best first.
+     *
+     * @param text the query; words of one character are ignored
+     * @param limit the most IDs returned
+     */
+    long[] search(String text, int limit) {
+        List<String> words = new ArrayList<>(words(text));
+        if (words.size() > MAX_QUERY_WORDS) {
+            words = words.subList(0, MAX_QUERY_WORDS);
+        }
+        if (words.isEmpty() || live == 0 || limit < 1) {
+            return new long[0];
+        }
+
+        // Find each word's matching terms first; scoring then visits their postings.
+        IntList matchTerms = new IntList();
+        IntList matchWords = new IntList();
+        List<Float> similarities = new ArrayList<>();
+        int[] hits = new int[terms.size()];
+        IntList touched = new IntList();
+        for (int w = 0; w < words.size(); w++) {
+            String word = words.get(w);
+            int maxEdits = word.length() <= 3 ? 0 : word.length() <= 7 ? 1 : 2;
+
+            if (maxEdits == 0) {
+                Integer exact = termIds.get(word);
+                if (exact != null) {
+                    matchTerms.add(exact);
+                    matchWords.add(w);
+                    similarities.add(1f);
+                }
+                continue;
+            }
+
+            long[] grams = trigrams(word);
+            for (long gram : grams) {
+                IntList candidates = trigramTerms.get(gram);
+                if (candidates == null) {
+                    continue;
+                }
+                for (int i = 0; i < candidates.size; i++) {
+                    int term = candidates.items[i];
+                    if (hits[term]++ == 0) {
+                        touched.add(term);
+                    }
+                }
+            }
+
+            int needed = Math.max(1, grams.length - 4 * maxEdits);
+            for (int i = 0; i < touched.size; i++) {
+                int term = touched.items[i];
+                String candidate = terms.get(term);
+                if (hits[term] >= needed && Math.abs(candidate.length() - word.length()) <= maxEdits) {
+                    int edits = distance(word, candidate, maxEdits);
+                    if (edits <= maxEdits) {
+                        matchTerms.add(term);
+                        matchWords.add(w);
+                        similarities.add(1f - (float) edits / Math.max(word.length(), candidate.length()));
+                    }
+                }
+                hits[term] = 0;
+            }
+            touched.size = 0;
+        }
+
+        // Terms in more than one document in COMMON_FRACTION are scored only when
+        // nothing rarer matched, and then only over their first postings.
+        int common = Math.max(MIN_COMMON_DOCUMENTS, live / COMMON_FRACTION);
+        SlotScores scores = scoreRarestFirst(words.size(), matchTerms, matchWords, similarities, common, limit);
+        if (scores.size == 0) {
+            for (int i = 0; i < matchTerms.size; i++) {
+                score(matchTerms.items[i], similarities.get(i), matchWords.items[i], scores, common);
+            }
+        }
+
+        int[] best = scores.top(limit);
+        long[] ids = new long[best.length];
+        for (int i = 0; i < best.length; i++) {
+            ids[i] = slotIds[best[i]];
+        }
+        return ids;
+    }
+
+    /**
+     * Releases the spare capacity of the posting lists, e.g. after a bulk load.
+     */
+    void trim() {
+        for (IntList postings : termPostings) {
+            postings.trim();
+        }
+        for (IntList candidates : trigramTerms.values()) {
+            candidates.trim();
+        }
+    }
+
+    int getTerms() {
+        return terms.size();
+    }
+
+    /**
+     * Returns the approximate heap used by the index.
+     */
+    long bytes() {
+        long bytes = (long) slotIds.length * Long.BYTES + slotsById.bytes() + deadSlots.size() / 8;
+        for (int term = 0; term < terms.size(); term++) {
+            // The term string, its map entry and its posting list.
+            bytes += 40 + 2L * terms.get(term).length() + 48 + IntList.OVERHEAD + 4L * termPostings.get(term).items.length;
+        }
+        for (IntList candidates : trigramTerms.values()) {
+            // The boxed trigram, its map entry and its term list.
+            bytes += 16 + 48 + IntList.OVERHEAD + 4L * candidates.items.length;
+        }
+        return bytes;
+    }
+
+    private void index(int slot, int field, String text) {
+        if (text == null) {
+            return;
+        }
+        for (String word : words(text)) {
+            termPostings.get(termId(word)).add(slot << 2 | field);
+        }
+    }
+
+    /**
+     * Scores the matched terms of at most maxPostings documents, a word at a time
+     * from the word with the fewest postings. Once limit documents outrank what an
+     * unseen document could still score, the remaining words only add to them.
+     */
+    private SlotScores scoreRarestFirst(int wordCount, IntList matchTerms, IntList matchWords, List<Float> similarities,
+                                        int maxPostings, int limit) {
+        long[] postingsPerWord = new long[wordCount];
+        float[] bounds = new float[wordCount];
+        for (int i = 0; i < matchTerms.size; i++) {
+            IntList postings = termPostings.get(matchTerms.items[i]);
+            if (postings.size <= maxPostings) {
+                int word = matchWords.items[i];
+                postingsPerWord[word] += postings.size;
+                bounds[word] = Math.max(bounds[word], similarities.get(i) * rarity(postings) * FIELD_WEIGHTS[NAME]);
+            }
+        }
+
+        List<Integer> order = new ArrayList<>(wordCount);
+        for (int w = 0; w < wordCount; w++) {
+            if (postingsPerWord[w] > 0) {
+                order.add(w);
+            }
+        }
+        order.sort((a, b) -> Long.compare(postingsPerWord[a], postingsPerWord[b]));
+        float[] boundsLeft = new float[order.size() + 1];
+        for (int j = order.size() - 1; j >= 0; j--) {
+            boundsLeft[j] = boundsLeft[j + 1] + bounds[order.get(j)];
+        }
+
+        // Sized for the rarest word's documents, which are always scored.
+        SlotScores scores = new SlotScores(order.isEmpty() ? 0 : postingsPerWord[order.get(0)]);
+        for (int j = 0; j < order.size(); j++) {
+            int word = order.get(j);
+            // Margin for float rounding: an unseen document adds the same weights in another order.
+            boolean foundOnly = scores.size >= limit && scores.countAhead(order.size() - j, boundsLeft[j] * 1.0001f) >= limit;
+            for (int i = 0; i < matchTerms.size; i++) {
+                if (matchWords.items[i] != word || termPostings.get(matchTerms.items[i]).size > maxPostings) {
+                    continue;
+                }
+                if (foundOnly) {
+                    scoreFound(matchTerms.items[i], similarities.get(i), word, scores);
+                } else {
+                    score(matchTerms.items[i], similarities.get(i), word, scores, maxPostings);
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Adds a term's score to the documents already scored, probing its posting
+     * list per document when that reads less of it than a full pass.
+     */
+    private void scoreFound(int term, float similarity, int word, SlotScores scores) {
+        IntList postings = termPostings.get(term);
+        float weight = similarity * rarity(postings);
+        if ((long) scores.size * PROBE_COST >= postings.size) {
+            for (int i = 0; i < postings.size; i++) {
+                int entry = postings.items[i];
+                scores.addIfPresent(entry >>> 2, word, weight * FIELD_WEIGHTS[entry & 3]);
+            }
+            return;
+        }
+        for (int k = 0; k < scores.keys.length; k++) {
+            if (scores.keys[k] == 0) {
+                continue;
+            }
+            int slot = scores.keys[k] - 1;
+            // A slot's entries are adjacent, one per field it appears in.
+            int i = Arrays.binarySearch(postings.items, 0, postings.size, slot << 2);
+            for (i = i < 0 ? -i - 1 : i; i < postings.size && postings.items[i] >>> 2 == slot; i++) {
+                scores.addIfPresent(slot, word, weight * FIELD_WEIGHTS[postings.items[i] & 3]);
+            }
+        }
+    }
+
+    private float rarity(IntList postings) {
+        return (float) Math.log(1 + (double) live / (1 + postings.size));
+    }
+
+    private void score(int term, float similarity, int word, SlotScores scores, int maxPostings) {
+        IntList postings = termPostings.get(term);
+        float weight = similarity * rarity(postings);
+        for (int i = 0; i < Math.min(postings.size, maxPostings); i++) {
+            int entry = postings.items[i];
+            int slot = entry >>> 2;
+            if (!deadSlots.get(slot)) {
+                scores.add(slot, word, weight * FIELD_WEIGHTS[entry & 3]);
+            }
+        }
+    }
+
+    private int termId(String word) {
+        Integer id = termIds.get(word);
+        if (id == null) {
+            id = terms.size();
+            terms.add(word);
+            termPostings.add(new IntList());
+            termIds.put(word, id);
+            for (long gram : trigrams(word)) {
+                trigramTerms.computeIfAbsent(gram, key -> new IntList()).add(id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Splits text into its distinct lower-case words of letters and digits.
+     */
+    static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start >= MIN_WORD_LENGTH) {
+                    words.add(lower.substring(start, Math.min(i, start + MAX_WORD_LENGTH)));
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns the distinct trigrams of "$word$", each packed into a long.
+     */
+    private static long[] trigrams(String word) {
+        String padded = "$" + word + "$";
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add((long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2));
+        }
+        long[] packed = new long[grams.size()];
+        int i = 0;
+        for (Long gram : grams) {
+            packed[i++] = gram;
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the edit distance between two words, counting an adjacent swap as
+     * one edit, or max + 1 once it must exceed max.
+     */
+    static int distance(String a, String b, int max) {
+        int[] before = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, before[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = before;
+            before = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    private static final class IntList {
+
+        /** Object headers and fields of the list and its array, roughly */
+        static final int OVERHEAD = 40;
+
+        int[] items = new int[2];
+        int size;
+
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, Math.max(2, size * 2));
+            }
+            items[size++] = value;
+        }
+
+        void trim() {
+            if (size < items.length) {
+                items = Arrays.copyOf(items, size);
+            }
+        }
+    }
+
+    /**
+     * Scores per slot in open-addressing arrays. For each slot it keeps the total,
+     * the number of query words matched, and the best score of the current word,
+     * so a word's second matching term in a document only counts if it is better.
+     */
+    private static final class SlotScores {
+
+        private int[] keys;
+        private int[] words;
+        private int[] matched;
+        private float[] best;
+        private float[] totals;
+        private int size;
+
+        /**
+         * @param expected the number of slots expected, so the arrays need not grow
+         */
+        SlotScores(long expected) {
+            int capacity = 256;
+            while (capacity < 1 << 30 && capacity * 3L < expected * 4) {
+                capacity <<= 1;
+            }
+            keys = new int[capacity];
+            words = new int[capacity];
+            matched = new int[capacity];
+            best = new float[capacity];
+            totals = new float[capacity];
+        }
+
+        void add(int slot, int word, float score) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int i = find(slot);
+            if (keys[i] == 0) {
+                keys[i] = slot + 1;
+                words[i] = word;
+                matched[i] = 1;
+                best[i] = score;
+                totals[i] = score;
+                size++;
+            } else {
+                update(i, word, score);
+            }
+        }
+
+        /**
+         * Adds a score to a slot that is already scored, and ignores other slots.
+         */
+        void addIfPresent(int slot, int word, float score) {
+            int i = find(slot);
+            if (keys[i] != 0) {
+                update(i, word, score);
+            }
+        }
+
+        /**
+         * Counts the slots that rank above any slot matching at most the given
+         * number of words for at most the given total.
+         */
+        int countAhead(int maxMatched, float maxTotal) {
+            int ahead = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0 && (matched[i] > maxMatched || matched[i] == maxMatched && totals[i] > maxTotal)) {
+                    ahead++;
+                }
+            }
+            return ahead;
+        }
+
+        private void update(int i, int word, float score) {
+            if (words[i] != word) {
+                words[i] = word;
+                matched[i]++;
+                best[i] = score;
+                totals[i] += score;
+            } else if (score > best[i]) {
+                totals[i] += score - best[i];
+                best[i] = score;
+            }
+        }
+
+        /**
+         * Returns the best slots, most words matched first, then highest total.
+         */
+        int[] top(int limit) {
+            PriorityQueue<Integer> worstFirst = new PriorityQueue<>(limit + 1, (x, y) -> compare(y, x));
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    worstFirst.add(i);
+                    if (worstFirst.size() > limit) {
+                        worstFirst.poll();
+                    }
+                }
+            }
+            int[] slots = new int[worstFirst.size()];
+            for (int i = slots.length - 1; i >= 0; i--) {
+                slots[i] = keys[worstFirst.poll()] - 1;
+            }
+            return slots;
+        }
+
+        /**
+         * Orders entries best first.
+         */
+        private int compare(int x, int y) {
+            if (matched[x] != matched[y]) {
+                return Integer.compare(matched[y], matched[x]);
+            }
+            if (totals[x] != totals[y]) {
+                return Float.compare(totals[y], totals[x]);
+            }
+            return Integer.compare(keys[x], keys[y]);
+        }
+
+        private int find(int slot) {
+            int mask = keys.length - 1;
+            int hash = slot * 0x9E3779B9;
+            int i = (hash ^ (hash >>> 16)) & mask;
+            while (keys[i] != 0 && keys[i] != slot + 1) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldWords = words;
+            int[] oldMatched = matched;
+            float[] oldBest = best;
+            float[] oldTotals = totals;
+            int capacity = oldKeys.length * 2;
+            keys = new int[capacity];
+            words = new int[capacity];
+            matched = new int[capacity];
+            best = new float[capacity];
+            totals = new float[capacity];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = find(oldKeys[j] - 1);
+                    keys[i] = oldKeys[j];
+                    words[i] = oldWords[j];
+                    matched[i] = oldMatched[j];
+                    best[i] = oldBest[j];
+                    totals[i] = oldTotals[j];
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.shadsluiter.eventsapp.service;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -12,9 +15,14 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
 import com.shadsluiter.eventsapp.data.UserRepository;
 import com.shadsluiter.eventsapp.models.UserEntity;
 import com.shadsluiter.eventsapp.models.UserModel;
+import com.shadsluiter.eventsapp.models.UserPage;
+import com.shadsluiter.eventsapp.models.UserSummary;
+import com.shadsluiter.eventsapp.monitoring.AuditTrail;
+import com.shadsluiter.eventsapp.monitoring.UserLookupEvent;
 import com.shadsluiter.eventsapp.security.InputSanitizer;
 
 /**
@@ -22,23 +30,64 @@ import com.shadsluiter.eventsapp.security.InputSanitizer;
  * 
  * Implements Spring Security's UserDetailsService for loading users by username.
  * Handles user persistence, transformation between entity/model, and password encryption.
+ * 
+ * Users are cached by login name, since the JWT filter loads the user on every API
+ * request. Writes through this service evict the cache immediately; writes on other
+ * app instances evict it through the InvalidationBus.
+ * 
+ * Every save and delete is recorded in the AuditTrail once it has succeeded.
  */
 @Service
 public class UserService implements UserDetailsService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final InvalidationBus invalidationBus;
+    private final LocalCache<String, UserEntity> usersByLoginName;
+    private final AuditTrail auditTrail;
 
     /**
      * Constructs a UserService with dependencies on user repository and password encoder.
      * 
      * @param userRepository the data layer for user persistence
      * @param passwordEncoder the encoder used to hash user passwords
+     * @param invalidationBus delivers evictions for writes made on any app instance
+     * @param cacheSize the most users cached by login name
+     * @param cacheTtlMs how long a cached user is served before it is reloaded
+     */
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, InvalidationBus invalidationBus,
+                       int cacheSize, long cacheTtlMs) {
+        this(userRepository, passwordEncoder, invalidationBus, null, cacheSize, cacheTtlMs);
+    }
+
+    /**
+     * Constructs a UserService that records every change in the audit trail.
+     * 
+     * @param userRepository the data layer for user persistence
+     * @param passwordEncoder the encoder used to hash user passwords
+     * @param invalidationBus delivers evictions for writes made on any app instance
+     * @param auditTrail records every change, or null to record nothing
+     * @param cacheSize the most users cached by login name
+     * @param cacheTtlMs how long a cached user is served before it is reloaded
      */
     @Autowired
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, InvalidationBus invalidationBus,
+                       AuditTrail auditTrail,
+                       @Value("${app.cache.users.size:10000}") int cacheSize,
+                       @Value("${app.cache.users.ttlMs:60000}") long cacheTtlMs) {
+        this.auditTrail = auditTrail;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.invalidationBus = invalidationBus;
+        this.usersByLoginName = new LocalCache<>(cacheSize, cacheTtlMs);
+
+        invalidationBus.register(ChangeLogRepository.USER, key -> {
+            if (key == null) {
+                usersByLoginName.invalidateAll();
+            } else {
+                usersByLoginName.invalidate(key);
+            }
+        });
     }
 
     /**
@@ -50,14 +99,18 @@ public class UserService implements UserDetailsService {
     public UserModel save(UserModel userModel) {
         UserEntity userEntity = convertToEntity(userModel);
         userEntity.setPassword(passwordEncoder.encode(userModel.getPassword()));
+        boolean isNew = userEntity.getId() == null;
         UserEntity savedUser = userRepository.save(userEntity);
+        invalidationBus.evictLocal(ChangeLogRepository.USER, isNew ? savedUser.getUserName() : null);
+        audit(isNew ? "user.create" : "user.update", savedUser.getId());
         return convertToModel(savedUser);
     }
 
     /**
      * Loads a user by username for authentication purposes.
      * 
-     * Converts roles into Spring Security authorities.
+     * Converts roles into Spring Security authorities. Each lookup is recorded
+     * as a UserLookupEvent when JFR is recording it.
      * 
      * @param username the login name
      * @return UserDetails for Spring Security
@@ -65,8 +118,19 @@ public class UserService implements UserDetailsService {
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserLookupEvent event = new UserLookupEvent();
+        event.begin();
+        event.cached = true;
         username = InputSanitizer.sanitizeUsername(username);
-        UserEntity userEntity = userRepository.findByLoginName(username);
+        UserEntity userEntity = usersByLoginName.get(username, loginName -> {
+            event.cached = false;
+            return userRepository.findByLoginName(loginName);
+        });
+        event.end();
+        if (event.shouldCommit()) {
+            event.found = userEntity != null;
+            event.commit();
+        }
         if (userEntity == null) {
             throw new UsernameNotFoundException("User not found");
         }
@@ -87,7 +151,7 @@ public class UserService implements UserDetailsService {
      */
     public UserModel findByLoginName(String loginName) {
         loginName = InputSanitizer.sanitizeUsername(loginName);
-        UserEntity userEntity = userRepository.findByLoginName(loginName);
+        UserEntity userEntity = usersByLoginName.get(loginName, userRepository::findByLoginName);
         if (userEntity == null) {
             return null;
         }
@@ -116,11 +180,11 @@ public class UserService implements UserDetailsService {
     /**
      * Finds a user by their numeric ID.
      * 
-     * @param id the string ID to search
+     * @param id the ID to search
      * @return the user model if found
      */
-    public UserModel findById(String id) {
-        UserEntity userEntity = userRepository.findById(Long.parseLong(id));
+    public UserModel findById(long id) {
+        UserEntity userEntity = userRepository.findById(id);
         return convertToModel(userEntity);
     }
 
@@ -129,8 +193,16 @@ public class UserService implements UserDetailsService {
      * 
      * @param id the user ID to delete
      */
-    public void delete(String id) {
-        userRepository.deleteById(Long.parseLong(id));
+    public void delete(long id) {
+        userRepository.deleteById(id);
+        invalidationBus.evictLocal(ChangeLogRepository.USER, null);
+        audit("user.delete", id);
+    }
+
+    private void audit(String action, Long id) {
+        if (auditTrail != null) {
+            auditTrail.record(action, id);
+        }
     }
 
     /**
@@ -143,6 +215,84 @@ public class UserService implements UserDetailsService {
         return convertToModels(userEntities);
     }
 
+    /**
+     * Retrieves one page of users without password hashes.
+     * 
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the page size
+     * @return the page of users and the cursor for the next page
+     * @throws IllegalArgumentException if the cursor is not one this service returned
+     */
+    public UserPage findPage(String after, int limit) {
+        long afterId = parseCursor(after);
+        List<UserEntity> userEntities = userRepository.findPageAfter(afterId, limit);
+
+        List<UserSummary> users = new ArrayList<>(userEntities.size());
+        for (UserEntity userEntity : userEntities) {
+            users.add(convertToSummary(userEntity));
+        }
+
+        String nextCursor = users.size() < limit ? null : String.valueOf(users.get(users.size() - 1).getId());
+        return new UserPage(users, nextCursor);
+    }
+
+    /**
+     * Parses a page cursor, which is the last user ID of the previous page.
+     */
+    private static long parseCursor(String after) {
+        if (after == null || after.isEmpty()) {
+            return 0;
+        }
+        for (int i = 0; i < after.length(); i++) {
+            if (after.charAt(i) < '0' || after.charAt(i) > '9') {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+        }
+        try {
+            return Long.parseLong(after);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + after, e);
+        }
+    }
+
+    /**
+     * Streams every user to the given consumer one page at a time.
+     * 
+     * Only a single page is held in memory at once, so heap use stays bounded
+     * by the page size no matter how many users exist.
+     * 
+     * @param pageSize the number of users fetched per query
+     * @param pageConsumer receives each page in ID order
+     */
+    public void exportAll(int pageSize, Consumer<List<UserSummary>> pageConsumer) {
+        String cursor = null;
+        do {
+            UserPage page = findPage(cursor, pageSize);
+            if (!page.getUsers().isEmpty()) {
+                pageConsumer.accept(page.getUsers());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+
+    /**
+     * Converts a UserEntity to a UserSummary, leaving out the password.
+     * 
+     * @param userEntity the entity to convert
+     * @return the corresponding summary
+     */
+    private UserSummary convertToSummary(UserEntity userEntity) {
+        return new UserSummary(
+            userEntity.getId(),
+            userEntity.getUserName(),
+            userEntity.isEnabled(),
+            userEntity.isAccountNonExpired(),
+            userEntity.isCredentialsNonExpired(),
+            userEntity.isAccountNonLocked(),
+            userEntity.getRoles()
+        );
+    }
+
     /**
      * Converts a list of UserEntity objects to UserModel objects.
      * 
@@ -165,14 +315,15 @@ public class UserService implements UserDetailsService {
      */
     private UserModel convertToModel(UserEntity userEntity) {
         UserModel userModel = new UserModel();
-        userModel.setId(userEntity.getId().toString());
+        userModel.setId(userEntity.getId());
         userModel.setUserName(userEntity.getUserName());
         userModel.setPassword(userEntity.getPassword());
         userModel.setEnabled(userEntity.isEnabled());
         userModel.setAccountNonExpired(userEntity.isAccountNonExpired());
         userModel.setCredentialsNonExpired(userEntity.isCredentialsNonExpired());
         userModel.setAccountNonLocked(userEntity.isAccountNonLocked());
-        userModel.setRoles(userEntity.getRoles());
+        // Copied because the entity may be shared through the cache.
+        userModel.setRoles(userEntity.getRoles() != null ? new HashSet<>(userEntity.getRoles()) : null);
         return userModel;
     }
 
@@ -185,10 +336,7 @@ public class UserService implements UserDetailsService {
     private UserEntity convertToEntity(UserModel userModel) {
         UserEntity userEntity = new UserEntity();
 
-        if (userModel.getId() != null) {
-            userEntity.setId(Long.parseLong(userModel.getId()));
-        }
-
+        userEntity.setId(userModel.getId());
         userEntity.setUserName(userModel.getUserName());
         userEntity.setPassword(userModel.getPassword());
         userEntity.setEnabled(userModel.isEnabled());
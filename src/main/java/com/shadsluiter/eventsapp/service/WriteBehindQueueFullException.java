@@ -0,0 +1,26 @@
+package com.shadsluiter.eventsapp.service;
+
+/**
+ * Thrown when a write-behind queue is full and cannot accept more writes.
+ *
+ * Mapped to 503 Service Unavailable with a Retry-After header by GlobalExceptionHandler.
+ */
+public class WriteBehindQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Creates the exception with a hint for how long the client should wait.
+     *
+     * @param message the detail message
+     * @param retryAfterSeconds suggested value for the Retry-After header
+     */
+    public WriteBehindQueueFullException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,93 @@
+package com.shadsluiter.eventsapp.config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+/**
+ * Serves the static assets through StaticAssetConfig and checks their
+ * fingerprinted URLs, gzip encoding and caching headers.
+ */
+class StaticAssetConfigTests {
+
+    private AnnotationConfigWebApplicationContext context;
+    private MockMvc mvc;
+    private String stylesUrl;
+
+    @EnableWebMvc
+    static class WebConfig {
+    }
+
+    @BeforeEach
+    void startContext() {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.register(WebConfig.class, StaticAssetConfig.class);
+        context.refresh();
+        mvc = MockMvcBuilders.webAppContextSetup(context).build();
+        stylesUrl = context.getBean(ResourceUrlProvider.class).getForLookupPath("/css/styles.css");
+    }
+
+    @AfterEach
+    void closeContext() {
+        context.close();
+    }
+
+    @Test
+    void fingerprintsAssetUrlsByContent() {
+        assertTrue(stylesUrl.matches("/css/styles-[0-9a-f]{32}\\.css"), stylesUrl);
+    }
+
+    @Test
+    void servesFingerprintedAssetsGzippedAndImmutable() throws Exception {
+        MockHttpServletResponse response = mvc.perform(get(stylesUrl).header("Accept-Encoding", "gzip, deflate, br"))
+            .andReturn().getResponse();
+
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals("max-age=31536000, public, immutable", response.getHeader("Cache-Control"));
+        assertTrue(response.getContentType().startsWith("text/css"), response.getContentType());
+        byte[] body = response.getContentAsByteArray();
+        assertEquals(body.length, response.getContentLength());
+        assertTrue(body.length < styles().length);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertArrayEquals(styles(), StreamUtils.copyToByteArray(in));
+        }
+    }
+
+    @Test
+    void servesPlainUrlsUncompressedToClientsWithoutGzipAndRevalidates() throws Exception {
+        MockHttpServletResponse response = mvc.perform(get("/css/styles.css")).andReturn().getResponse();
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals("no-cache", response.getHeader("Cache-Control"));
+        assertArrayEquals(styles(), response.getContentAsByteArray());
+    }
+
+    private static byte[] styles() throws IOException {
+        return new ClassPathResource("static/css/styles.css").getContentAsByteArray();
+    }
+}
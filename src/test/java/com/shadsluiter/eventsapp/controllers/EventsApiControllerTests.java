@@ -0,0 +1,136 @@
+package com.shadsluiter.eventsapp.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepository;
+import com.shadsluiter.eventsapp.service.EventService;
+import com.shadsluiter.eventsapp.service.InvalidationBus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Calls the events API through MockMvc against an embedded H2 database and
+ * checks how it validates IDs and batch lookups and how updates detect
+ * concurrent writers.
+ */
+class EventsApiControllerTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void createDatabase() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:events_api_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ChangeLogRepository changeLog = new ChangeLogRepository(jdbcTemplate);
+        InvalidationBus bus = new InvalidationBus(changeLog, false, 500, 10000, 3600000);
+        EventService events = new EventService(new EventRepository(jdbcTemplate, changeLog, 365), bus, null, null, null, null, null,
+            new SimpleMeterRegistry(), 100, 60000, 100, 60000, 1000);
+
+        EventsApiController controller = new EventsApiController();
+        ReflectionTestUtils.setField(controller, "eventService", events);
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void idsMustBeWholeNumbers() throws Exception {
+        long id = insert("Launch", 7L);
+
+        mvc.perform(get("/api/events/batch").param("ids", " " + id + " ", "99999"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.events[0].id").value(id))
+            .andExpect(jsonPath("$.missing[0]").value(99999));
+        mvc.perform(get("/api/events/batch").param("ids", "1a2")).andExpect(status().isBadRequest());
+        mvc.perform(get("/api/events/batch").param("ids", String.valueOf(id), "")).andExpect(status().isBadRequest());
+        mvc.perform(get("/api/events/batch").param("ids", "99999999999999999999")).andExpect(status().isBadRequest());
+
+        mvc.perform(get("/api/events/7")).andExpect(status().isOk()).andExpect(jsonPath("$[0].id").value(id));
+        mvc.perform(get("/api/events/7x")).andExpect(status().isBadRequest());
+        mvc.perform(get("/api/events/99999999999999999999")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batchLookupsRejectEmptyOversizedAndNullIdLists() throws Exception {
+        long id = insert("Launch", 7L);
+
+        mvc.perform(post("/api/events/batch").contentType(MediaType.APPLICATION_JSON).content("[" + id + ", 99999, " + id + "]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.events.length()").value(1))
+            .andExpect(jsonPath("$.missing.length()").value(1));
+        mvc.perform(post("/api/events/batch").contentType(MediaType.APPLICATION_JSON).content("[]"))
+            .andExpect(status().isBadRequest());
+        mvc.perform(post("/api/events/batch").contentType(MediaType.APPLICATION_JSON).content("[" + id + ", null]"))
+            .andExpect(status().isBadRequest());
+
+        String tooMany = LongStream.rangeClosed(1, 1001).mapToObj(Long::toString).collect(Collectors.joining(","));
+        mvc.perform(post("/api/events/batch").contentType(MediaType.APPLICATION_JSON).content("[" + tooMany + "]"))
+            .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/events/batch").param("ids", tooMany)).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void updatesRejectStaleVersionsAndMissingEvents() throws Exception {
+        long id = insert("Launch", 7L);
+
+        mvc.perform(update(id, "Launch (moved)", null).header("If-Match", "\"0\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"1\""));
+        mvc.perform(update(id, "Stale", null).header("If-Match", "\"0\""))
+            .andExpect(status().isPreconditionFailed());
+        mvc.perform(update(id, "Stale", 0L))
+            .andExpect(status().isConflict());
+        mvc.perform(update(id, "Unconditional", null))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"2\""));
+        mvc.perform(update(99_999L, "Missing", null))
+            .andExpect(status().isNotFound());
+        mvc.perform(update(99_999L, "Missing", null).header("If-Match", "\"0\""))
+            .andExpect(status().isNotFound());
+
+        assertEquals("Unconditional", jdbcTemplate.queryForObject("SELECT name FROM events WHERE id = ?", String.class, id));
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT version FROM events WHERE id = ?", Long.class, id));
+    }
+
+    private MockHttpServletRequestBuilder update(long id, String name, Long version) {
+        String body = "{\"name\": \"" + name + "\", \"date\": \"2030-01-01\", \"location\": \"Phoenix\", \"organizerid\": 7, " +
+                      "\"description\": \"Party\"" + (version != null ? ", \"version\": " + version : "") + "}";
+        return put("/api/events/" + id).contentType(MediaType.APPLICATION_JSON).content(body);
+    }
+
+    private long insert(String name, Long organizer) {
+        jdbcTemplate.update("INSERT INTO events (name, date, location, organizerid, description) VALUES (?, ?, 'Phoenix', ?, 'Party')",
+            name, LocalDate.now().plusDays(10), organizer);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM events", Long.class);
+    }
+}
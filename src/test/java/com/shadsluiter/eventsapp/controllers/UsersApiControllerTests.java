@@ -0,0 +1,78 @@
+package com.shadsluiter.eventsapp.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.UserRepository;
+import com.shadsluiter.eventsapp.service.InvalidationBus;
+import com.shadsluiter.eventsapp.service.UserService;
+
+/**
+ * Streams the user export from an embedded H2 database and checks its
+ * newline-delimited JSON.
+ */
+class UsersApiControllerTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private UsersApiController controller;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void createDatabase() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:export_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql"), new ClassPathResource("db/users-h2.sql"))
+            .execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ChangeLogRepository changeLog = new ChangeLogRepository(jdbcTemplate);
+        UserService users = new UserService(new UserRepository(jdbcTemplate, changeLog), new BCryptPasswordEncoder(4),
+            new InvalidationBus(changeLog, false, 500, 10000, 3600000), 100, 60000);
+        controller = new UsersApiController(users, null, null, objectMapper);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void exportsOneJsonLinePerUserWithoutPasswords() throws Exception {
+        // More users than one internal export page.
+        int count = 1203;
+        jdbcTemplate.batchUpdate("INSERT INTO users (login_name, password) VALUES (?, 'secret-hash')",
+            IntStream.rangeClosed(1, count).mapToObj(i -> new Object[]{"user" + i}).toList());
+        jdbcTemplate.update("INSERT INTO roles (user_id, role) VALUES (1, 'ADMIN')");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.exportUsers(response);
+
+        assertEquals("application/x-ndjson;charset=UTF-8", response.getContentType());
+        String body = response.getContentAsString();
+        assertFalse(body.contains("secret-hash"));
+        List<String> lines = body.lines().toList();
+        assertEquals(count, lines.size());
+        for (int i = 0; i < count; i++) {
+            JsonNode user = objectMapper.readTree(lines.get(i));
+            assertEquals(i + 1, user.get("id").asLong(), "users in ID order");
+            assertEquals("user" + (i + 1), user.get("userName").asText());
+            assertFalse(user.has("password"));
+        }
+        assertEquals("ADMIN", objectMapper.readTree(lines.get(0)).get("roles").get(0).asText());
+    }
+}
@@ -0,0 +1,128 @@
+package com.shadsluiter.eventsapp.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.shadsluiter.eventsapp.models.EventFacets;
+import com.shadsluiter.eventsapp.models.EventSearch;
+import com.shadsluiter.eventsapp.models.EventView;
+
+/**
+ * Compiles event searches and runs them against an embedded H2 database.
+ */
+class EventQueryCompilerTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private EventRepository repository;
+
+    @BeforeEach
+    void createDatabase() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:query_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new EventRepository(jdbcTemplate, new ChangeLogRepository(jdbcTemplate), 365);
+
+        insert("Jazz night", "2030-01-10", "Phoenix Hall", 1L, null);
+        insert("Jazz brunch", "2030-01-12", "Tempe Park", 2L, null);
+        insert("Chess club", "2030-01-05", "Phoenix Library", 1L, "FREQ=WEEKLY");
+        insert("100% fun", "2030-01-11", "Phoenix Hall", 2L, null);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void combinesCriteriaWithAnd() {
+        EventSearch search = new EventSearch();
+        search.setName("Jazz");
+        search.setLocation("Phoenix");
+        assertEquals(List.of("Jazz night"), names(repository.search(search)));
+
+        search = new EventSearch();
+        search.setLocation("Phoenix");
+        search.setFrom(LocalDate.of(2030, 1, 10));
+        search.setTo(LocalDate.of(2030, 1, 11));
+        assertEquals(List.of("Chess club", "Jazz night", "100% fun"), names(repository.search(search)),
+            "the weekly series started before the range and overlaps it");
+
+        search.setOrganizerid(2L);
+        assertEquals(List.of("100% fun"), names(repository.search(search)));
+    }
+
+    @Test
+    void matchesWildcardsLiterally() {
+        assertEquals(List.of("100% fun"), names(repository.search(new EventSearch("0% f"))));
+
+        EventSearch search = new EventSearch();
+        search.setName("%");
+        assertEquals(List.of(), names(repository.search(search)));
+    }
+
+    @Test
+    void cachesOneStatementPerShape() {
+        EventQueryCompiler compiler = new EventQueryCompiler("id");
+        EventSearch jazz = new EventSearch("jazz");
+        jazz.setOrganizerid(1L);
+        EventSearch chess = new EventSearch("chess");
+        chess.setOrganizerid(2L);
+
+        EventQueryCompiler.Compiled first = compiler.compile(jazz);
+        EventQueryCompiler.Compiled second = compiler.compile(chess);
+        assertSame(first.sql, second.sql);
+        assertEquals(1, compiler.getCachedShapes());
+
+        chess.setFrom(LocalDate.of(2030, 1, 1));
+        compiler.compile(chess);
+        assertEquals(2, compiler.getCachedShapes());
+    }
+
+    @Test
+    void countsFacetsOverEveryMatch() {
+        EventSearch search = new EventSearch();
+        search.setLocation("Phoenix");
+        search.setFrom(LocalDate.of(2030, 1, 8));
+        search.setLimit(1);
+
+        EventFacets facets = repository.facets(search);
+        assertEquals(3, facets.getTotal());
+        assertEquals(Map.of("Phoenix Hall", 2L, "Phoenix Library", 1L), facets.getLocations());
+        assertEquals(Map.of("2030-01", 3L), facets.getMonths(), "the chess series counts in the range's first month");
+        assertEquals(Map.of(1L, 2L, 2L, 1L), facets.getOrganizers());
+
+        EventFacets top = facets.top(1);
+        assertEquals(Map.of("Phoenix Hall", 2L), top.getLocations());
+        assertEquals(3, top.getTotal());
+    }
+
+    @Test
+    void explainsThePlan() {
+        EventSearch search = new EventSearch();
+        search.setName("Jazz");
+        assertFalse(repository.explain(search).isEmpty());
+    }
+
+    private void insert(String name, String date, String location, Long organizerid, String recurrence) {
+        jdbcTemplate.update("INSERT INTO events (name, date, location, organizerid, description, recurrence) VALUES (?, ?, ?, ?, ?, ?)",
+            name, LocalDate.parse(date), location, organizerid, name + " description", recurrence);
+    }
+
+    private static List<String> names(List<EventView> events) {
+        return events.stream().map(EventView::getName).toList();
+    }
+}
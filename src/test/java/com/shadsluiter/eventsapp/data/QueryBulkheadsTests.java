@@ -0,0 +1,166 @@
+package com.shadsluiter.eventsapp.data;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shadsluiter.eventsapp.config.QueryBulkheadProperties;
+import com.shadsluiter.eventsapp.models.EventEntity;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs a slow scan in the search bulkhead of an embedded H2 database and checks
+ * that it is cut off by its timeout, that further searches are rejected while it
+ * runs, and that logins and event lookups are not held up by it. Also checks
+ * that a transaction holds a single slot until it completes, and that budgets
+ * larger than the connection pool fail at startup.
+ */
+class QueryBulkheadsTests {
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bulkheads_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql"), new ClassPathResource("db/users-h2.sql"))
+            .execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE ALIAS SLOW FOR \"" + Slow.class.getName() + ".sleep\"");
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void slowSearchesNeitherOverrunNorStarveOtherQueries() throws Exception {
+        QueryBulkheadProperties properties = new QueryBulkheadProperties();
+        properties.setMaxWaitMs(20);
+        properties.setSearch(new QueryBulkheadProperties.Budget(1, 1));
+        QueryBulkheads bulkheads = new QueryBulkheads(jdbcTemplate, properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        bulkheads.bindTo(registry);
+
+        ChangeLogRepository changeLog = new ChangeLogRepository(jdbcTemplate);
+        EventRepository events = new EventRepository(bulkheads, changeLog, 365);
+        UserRepository users = new UserRepository(bulkheads, changeLog);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        Long firstId = null;
+        for (int i = 0; i < 20; i++) {
+            EventEntity event = new EventEntity(null, "Event " + i, LocalDate.now().plusDays(i), "Hall", 1L, "Description " + i);
+            EventEntity saved = transaction.execute(status -> events.save(event));
+            firstId = firstId != null ? firstId : saved.getId();
+        }
+        jdbcTemplate.update("INSERT INTO users (login_name, password) VALUES ('alice', 'hash')");
+
+        // 1000 rows at 5 ms each: far longer than the search class's one second timeout.
+        // H2 checks for a timeout every so many rows, so the rows must be many and quick.
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        QueryBulkheads.Bulkhead searches = bulkheads.get(QueryBulkheads.QueryClass.SEARCH);
+        Future<?> scan = pool.submit(() -> searches.call("test.slowScan", jdbc -> jdbc.queryForObject("SELECT COUNT(*) FROM SYSTEM_RANGE(1, 1000) WHERE SLOW(5)", Long.class)));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (searches.getActive() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertThrows(BulkheadFullException.class, () -> events.findByDescription("Description"));
+        assertEquals("alice", users.findByLoginName("alice").getUserName());
+        assertEquals(firstId, events.findById(firstId).getId());
+        assertEquals(20, events.findByOrganizerid(1L).size());
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> scan.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(QueryTimeoutException.class, failure.getCause());
+        pool.shutdown();
+
+        assertEquals(20, events.findByDescription("Description").size(), "the slot is free again once the scan is cut off");
+        assertEquals(1.0, registry.get("eventsapp.db.bulkhead.rejected").tag("class", "search").functionCounter().count());
+        assertEquals(1.0, registry.get("eventsapp.db.bulkhead.timeouts").tag("class", "search").functionCounter().count());
+        assertEquals(0.0, registry.get("eventsapp.db.bulkhead.rejected").tag("class", "auth").functionCounter().count());
+    }
+
+    @Test
+    void aTransactionHoldsOneSlotUntilItCompletes() throws Exception {
+        QueryBulkheadProperties properties = new QueryBulkheadProperties();
+        properties.setMaxWaitMs(20);
+        properties.setWrites(new QueryBulkheadProperties.Budget(1, 5));
+        properties.setListing(new QueryBulkheadProperties.Budget(1, 5));
+        QueryBulkheads bulkheads = new QueryBulkheads(jdbcTemplate, properties);
+        QueryBulkheads.Bulkhead writes = bulkheads.get(QueryBulkheads.QueryClass.WRITES);
+        EventRepository events = new EventRepository(bulkheads, new ChangeLogRepository(bulkheads, true), 365);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        ExecutorService other = Executors.newSingleThreadExecutor();
+
+        transaction.executeWithoutResult(status -> {
+            // The insert, LAST_INSERT_ID, the change log row and the lookup all run in the first statement's slot.
+            EventEntity saved = events.save(new EventEntity(null, "Launch", LocalDate.now().plusDays(1), "Hall", 1L, "Held"));
+            assertEquals(saved.getId(), events.findById(saved.getId()).getId());
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> other.submit(
+                () -> writes.call("test.write", jdbc -> jdbc.queryForObject("SELECT 1", Integer.class))).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(BulkheadFullException.class, failure.getCause(), "the transaction still holds the only writes slot");
+            assertEquals(0, assertDoesNotThrow(() -> other.submit(() -> events.findByOrganizerid(2L)).get(5, TimeUnit.SECONDS)).size(),
+                "the lookup in the transaction took no listing slot");
+        });
+
+        assertEquals(1, other.submit(() -> writes.call("test.write", jdbc -> jdbc.queryForObject("SELECT 1", Integer.class)))
+            .get(5, TimeUnit.SECONDS), "the slot is released when the transaction commits");
+        assertEquals(1, writes.getRejected());
+        other.shutdown();
+    }
+
+    @Test
+    void budgetsLargerThanThePoolFailAtStartup() {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:bulkheads_pool_" + System.nanoTime() + ";MODE=MySQL");
+        pool.setMaximumPoolSize(8);
+        JdbcTemplate pooled = new JdbcTemplate(new LazyConnectionDataSourceProxy(pool));
+        try {
+            QueryBulkheadProperties properties = new QueryBulkheadProperties();
+            IllegalStateException failure = assertThrows(IllegalStateException.class, () -> new QueryBulkheads(pooled, properties));
+            assertTrue(failure.getMessage().contains("add up to 10"), failure.getMessage());
+
+            properties.setListing(new QueryBulkheadProperties.Budget(1, 5));
+            properties.setWrites(new QueryBulkheadProperties.Budget(3, 5));
+            assertDoesNotThrow(() -> new QueryBulkheads(pooled, properties));
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * A row predicate that takes its time, registered in H2 as SLOW(ms).
+     */
+    public static class Slow {
+
+        public static boolean sleep(int ms) throws InterruptedException {
+            Thread.sleep(ms);
+            return true;
+        }
+    }
+}
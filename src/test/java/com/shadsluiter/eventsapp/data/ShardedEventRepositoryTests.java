@@ -0,0 +1,295 @@
+package com.shadsluiter.eventsapp.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.shadsluiter.eventsapp.config.QueryBulkheadProperties;
+import com.shadsluiter.eventsapp.models.EventEntity;
+import com.shadsluiter.eventsapp.models.EventView;
+import com.shadsluiter.eventsapp.models.EventSearch;
+
+/**
+ * Runs the sharded repository against three embedded H2 databases acting as shards.
+ */
+class ShardedEventRepositoryTests {
+
+    private static final int SHARDS = 3;
+
+    private final List<DataSource> dataSources = new ArrayList<>();
+    private ShardedEventRepository repository;
+
+    @BeforeEach
+    void createShards() {
+        for (int i = 0; i < SHARDS; i++) {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:shard" + i + "_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+            new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+            dataSources.add(dataSource);
+        }
+        repository = new ShardedEventRepository(dataSources, 365, 0);
+    }
+
+    @AfterEach
+    void dropShards() throws Exception {
+        for (DataSource dataSource : dataSources) {
+            new JdbcTemplate(dataSource).execute("SHUTDOWN");
+        }
+        repository.destroy();
+    }
+
+    @Test
+    void savesRouteByOrganizerWithGloballyUniqueIds() {
+        Set<Long> ids = new HashSet<>();
+        for (long organizer = 1; organizer <= 6; organizer++) {
+            for (int n = 0; n < 3; n++) {
+                ids.add(repository.save(event("Event " + organizer + "-" + n, organizer, "2030-01-0" + (n + 1))).getId());
+            }
+        }
+        assertEquals(18, ids.size());
+
+        for (int shard = 0; shard < SHARDS; shard++) {
+            Integer count = new JdbcTemplate(dataSources.get(shard)).queryForObject("SELECT COUNT(*) FROM events", Integer.class);
+            assertEquals(6, count, "organizers " + shard + " and " + (shard + SHARDS) + " live on shard " + shard);
+        }
+
+        for (Long id : ids) {
+            EventView found = repository.findById(id);
+            assertEquals(id.longValue(), found.getId());
+            assertEquals(Math.floorMod(found.getOrganizerid(), SHARDS), ShardedEventRepository.shardOfId(id));
+        }
+    }
+
+    @Test
+    void organizerQueriesReadOneShard() {
+        repository.save(event("Mine", 4, "2030-02-01"));
+        repository.save(event("Theirs", 5, "2030-02-01"));
+
+        List<EventView> events = repository.findByOrganizerid(4L);
+        assertEquals(1, events.size());
+        assertEquals("Mine", events.get(0).getName());
+    }
+
+    @Test
+    void scatterGatherMergesShardsInOrder() {
+        for (long organizer = 1; organizer <= 5; organizer++) {
+            repository.save(event("Party " + organizer, organizer, "2030-03-0" + (6 - organizer)));
+        }
+        repository.save(event("Meeting", 2, "2030-03-09"));
+
+        List<EventView> all = repository.findAll();
+        assertEquals(6, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getId() < all.get(i).getId());
+        }
+
+        assertEquals(5, repository.findByDescription("Party").size());
+
+        List<EventView> byDate = repository.findByDateRange(LocalDate.of(2030, 3, 2), LocalDate.of(2030, 3, 9), false);
+        assertEquals(List.of("Party 4", "Party 3", "Party 2", "Party 1", "Meeting"), byDate.stream().map(EventView::getName).toList());
+    }
+
+    @Test
+    void scatterGatherHonoursResultCap() throws Exception {
+        repository.destroy();
+        repository = new ShardedEventRepository(dataSources, 365, 4);
+        for (long organizer = 1; organizer <= 9; organizer++) {
+            repository.save(event("Capped " + organizer, organizer, "2030-04-01"));
+        }
+
+        List<EventView> capped = repository.findAll();
+        assertEquals(4, capped.size());
+        List<Long> allIds = new ArrayList<>();
+        for (DataSource dataSource : dataSources) {
+            int shard = dataSources.indexOf(dataSource);
+            for (Long local : new JdbcTemplate(dataSource).queryForList("SELECT id FROM events", Long.class)) {
+                allIds.add(ShardedEventRepository.globalId(local, shard));
+            }
+        }
+        allIds.sort(null);
+        assertEquals(allIds.subList(0, 4), capped.stream().map(EventView::getId).toList());
+    }
+
+    @Test
+    void batchLookupAndDeleteRouteById() {
+        long first = repository.save(event("One", 1, "2030-05-01")).getId();
+        long second = repository.save(event("Two", 2, "2030-05-01")).getId();
+
+        List<EventView> found = repository.findAllById(List.of(first, second, 99_999L));
+        assertEquals(2, found.size());
+
+        repository.deleteById(first);
+        assertFalse(repository.existsById(first));
+        assertTrue(repository.existsById(second));
+    }
+
+    @Test
+    void archivesPastEventsOnEveryShard() {
+        for (long organizer = 1; organizer <= 3; organizer++) {
+            repository.save(event("Old " + organizer, organizer, "2001-01-01"));
+            repository.save(event("New " + organizer, organizer, "2030-01-01"));
+        }
+
+        assertEquals(2, repository.archiveOlderThan(LocalDate.of(2020, 1, 1), 2));
+        assertEquals(1, repository.archiveOlderThan(LocalDate.of(2020, 1, 1), 2));
+
+        assertEquals(3, repository.findAll().size());
+        assertEquals(6, repository.findAll(true).size());
+    }
+
+    @Test
+    void dateRangesIncludeRecurringSeriesThatOverlapThem() {
+        EventEntity weekly = event("Weekly", 1, "2030-01-07");
+        weekly.setRecurrence("FREQ=WEEKLY;COUNT=10");
+        repository.save(weekly);
+        EventEntity daily = event("Daily", 2, "2001-01-01");
+        daily.setRecurrence("FREQ=DAILY");
+        repository.save(daily);
+        repository.save(event("One-off", 3, "2030-02-01"));
+
+        List<String> march = repository.findByDateRange(LocalDate.of(2030, 3, 1), LocalDate.of(2030, 3, 31), false)
+            .stream().map(EventView::getName).toList();
+        assertEquals(List.of("Daily", "Weekly"), march, "the weekly series ends on 2030-03-11");
+
+        List<String> may = repository.findByDateRange(LocalDate.of(2030, 5, 1), LocalDate.of(2030, 5, 31), false)
+            .stream().map(EventView::getName).toList();
+        assertEquals(List.of("Daily"), may);
+
+        assertEquals(0, repository.archiveOlderThan(LocalDate.of(2020, 1, 1), 10), "an open-ended series is never archived");
+    }
+
+    @Test
+    void searchesCombineCriteriaAcrossShards() {
+        for (long organizer = 1; organizer <= 6; organizer++) {
+            EventEntity jazz = event("Jazz night " + organizer, organizer, "2030-07-0" + organizer);
+            jazz.setLocation(organizer % 2 == 0 ? "Tempe" : "Phoenix");
+            repository.save(jazz);
+            repository.save(event("Book club " + organizer, organizer, "2030-07-0" + organizer));
+        }
+
+        EventSearch search = new EventSearch("night");
+        search.setLocation("Tem");
+        search.setFrom(LocalDate.of(2030, 7, 3));
+        assertEquals(List.of("Jazz night 4", "Jazz night 6"), repository.search(search).stream().map(EventView::getName).toList());
+
+        search.setLimit(1);
+        assertEquals(List.of("Jazz night 4"), repository.search(search).stream().map(EventView::getName).toList());
+
+        EventSearch byOrganizer = new EventSearch();
+        byOrganizer.setOrganizerid(5L);
+        byOrganizer.setName("Book");
+        assertEquals(List.of("Book club 5"), repository.search(byOrganizer).stream().map(EventView::getName).toList());
+        assertFalse(repository.explain(byOrganizer).isEmpty());
+
+        EventSearch allJazz = new EventSearch();
+        allJazz.setName("Jazz");
+        assertEquals(6, repository.facets(allJazz).getTotal());
+        assertEquals(3L, repository.facets(allJazz).getLocations().get("Tempe"));
+    }
+
+    @Test
+    void updatesInPlaceAndRejectsStaleVersions() {
+        EventEntity saved = repository.save(event("Draft", 2, "2030-06-01"));
+        assertEquals(0, repository.findById(saved.getId()).getVersion());
+
+        EventEntity edit = event("Final", 2, "2030-06-02");
+        edit.setId(saved.getId());
+        assertEquals(1, repository.update(edit, 0L).getVersion());
+        assertEquals("Final", repository.findById(saved.getId()).getName());
+        assertEquals(1, repository.findAll().size(), "the update does not insert a row");
+
+        edit.setName("Stale");
+        assertThrows(OptimisticLockingFailureException.class, () -> repository.update(edit, 0L));
+        assertEquals("Final", repository.findById(saved.getId()).getName());
+        assertEquals(2, repository.update(edit, null).getVersion());
+
+        edit.setId(ShardedEventRepository.globalId(99_999L, 1));
+        assertThrows(EmptyResultDataAccessException.class, () -> repository.update(edit, null));
+    }
+
+    @Test
+    void rejectsOrganizerChanges() {
+        EventEntity saved = repository.save(event("Meetup", 1, "2030-06-01"));
+
+        EventEntity edit = event("Meetup", 2, "2030-06-01");
+        edit.setId(saved.getId());
+        assertThrows(OrganizerChangeException.class, () -> repository.update(edit, null));
+
+        EventView stored = repository.findById(saved.getId());
+        assertEquals(1L, stored.getOrganizerid());
+        assertEquals(0, stored.getVersion(), "nothing was written");
+        assertEquals(1, repository.findByOrganizerid(1L).size());
+        assertEquals(0, repository.findByOrganizerid(2L).size());
+    }
+
+    @Test
+    void aFullWritesBudgetOnOneShardLeavesOtherShardsAndReadsAlone() throws Exception {
+        repository.destroy();
+        QueryBulkheadProperties properties = new QueryBulkheadProperties();
+        properties.setMaxWaitMs(20);
+        properties.setWrites(new QueryBulkheadProperties.Budget(1, 5));
+        repository = new ShardedEventRepository(dataSources, properties, null, 365, 0);
+        EventEntity held = repository.save(event("Held", 1, "2030-08-01"));
+        EventEntity other = repository.save(event("Other", 2, "2030-08-01"));
+        new JdbcTemplate(dataSources.get(1)).execute("SET DEFAULT_LOCK_TIMEOUT 10000");
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try (Connection locker = dataSources.get(1).getConnection(); Statement statement = locker.createStatement()) {
+            locker.setAutoCommit(false);
+            statement.executeUpdate("UPDATE events SET name = 'Locked' WHERE id = " + ShardedEventRepository.localId(held.getId()));
+            Future<?> blocked = pool.submit(() -> repository.deleteById(held.getId()));
+
+            // Once the delete waits on the row lock, it holds shard 1's only writes slot.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            boolean rejected = false;
+            while (!rejected) {
+                assertTrue(System.nanoTime() < deadline, "the blocked delete never took the writes slot");
+                try {
+                    repository.deleteById(ShardedEventRepository.globalId(99_999L, 1));
+                    Thread.sleep(5);
+                } catch (BulkheadFullException e) {
+                    rejected = true;
+                }
+            }
+
+            assertEquals(List.of("Held"), repository.findByOrganizerid(1L).stream().map(EventView::getName).toList());
+            repository.deleteById(other.getId());
+            assertFalse(repository.existsById(other.getId()));
+
+            locker.commit();
+            blocked.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdown();
+        }
+        assertFalse(repository.existsById(held.getId()));
+    }
+
+    private static EventEntity event(String name, long organizer, String date) {
+        return new EventEntity(null, name, LocalDate.parse(date), "Phoenix", organizer, name + " description");
+    }
+}
@@ -0,0 +1,104 @@
+package com.shadsluiter.eventsapp.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks occurrence expansion, including that jumping ahead to a window gives
+ * the same dates as walking the whole series.
+ */
+class RecurrenceRuleTests {
+
+    @Test
+    void weeklyByDayStartsMidWeekAndHonoursCount() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=MO,WE,FR;COUNT=5");
+        // 2030-01-02 is a Wednesday, so the Monday of the first week is skipped.
+        assertEquals(dates("2030-01-02", "2030-01-04", "2030-01-07", "2030-01-09", "2030-01-11"),
+            list(rule.occurrences(LocalDate.parse("2030-01-02"), null, null, 100)));
+        assertEquals(LocalDate.parse("2030-01-11"), rule.lastOccurrence(LocalDate.parse("2030-01-02")));
+    }
+
+    @Test
+    void monthlySkipsMonthsWithoutTheStartDay() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=MONTHLY;UNTIL=20300601");
+        assertEquals(dates("2030-01-31", "2030-03-31", "2030-05-31"),
+            list(rule.occurrences(LocalDate.parse("2030-01-31"), null, null, 100)));
+    }
+
+    @Test
+    void openEndedSeriesIsBoundedByMaxOccurrences() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY");
+        assertNull(rule.lastOccurrence(LocalDate.parse("2030-01-01")));
+        assertEquals(50, list(rule.occurrences(LocalDate.parse("2030-01-01"), null, null, 50)).size());
+    }
+
+    @Test
+    void windowAfterTheLastCountedOccurrenceIsEmpty() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2;COUNT=3");
+        Iterator<LocalDate> it = rule.occurrences(LocalDate.parse("2030-01-01"), LocalDate.parse("2030-02-01"), null, 100);
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    void jumpingToTheWindowMatchesWalkingTheSeries() {
+        String[] rules = {
+            "FREQ=DAILY;INTERVAL=3;COUNT=200",
+            "FREQ=WEEKLY;BYDAY=TU,SA;COUNT=150",
+            "FREQ=WEEKLY;INTERVAL=3;BYDAY=MO,SU",
+            "FREQ=MONTHLY;INTERVAL=2;COUNT=40",
+            "FREQ=YEARLY;COUNT=12",
+        };
+        String[] starts = {"2028-02-29", "2030-01-31", "2030-06-15"};
+        for (String text : rules) {
+            RecurrenceRule rule = RecurrenceRule.parse(text);
+            for (String startText : starts) {
+                LocalDate start = LocalDate.parse(startText);
+                List<LocalDate> all = list(rule.occurrences(start, null, LocalDate.parse("2050-12-31"), 10000));
+                for (int offset = 0; offset < 3000; offset += 97) {
+                    LocalDate from = start.plusDays(offset);
+                    LocalDate to = from.plusDays(120);
+                    List<LocalDate> expected = new ArrayList<>();
+                    for (LocalDate date : all) {
+                        if (!date.isBefore(from) && !date.isAfter(to)) {
+                            expected.add(date);
+                        }
+                    }
+                    assertEquals(expected, list(rule.occurrences(start, from, to, 10000)), text + " from " + start + " window " + from);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parsesToCanonicalFormAndRejectsUnsupportedParts() {
+        assertEquals("FREQ=WEEKLY;BYDAY=MO,FR;UNTIL=2030-06-30",
+            RecurrenceRule.parse("rrule:freq=weekly;byday=FR,MO;until=20300630").toString());
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=HOURLY"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=MONTHLY;BYDAY=MO"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=DAILY;COUNT=0"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("COUNT=3"));
+    }
+
+    private static List<LocalDate> list(Iterator<LocalDate> it) {
+        List<LocalDate> dates = new ArrayList<>();
+        it.forEachRemaining(dates::add);
+        return dates;
+    }
+
+    private static List<LocalDate> dates(String... values) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (String value : values) {
+            dates.add(LocalDate.parse(value));
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,147 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Checks that the async log writer loses no lines from concurrent producers,
+ * rolls its file, applies its overflow policy, and that the audit trail and
+ * access log write whole key=value lines.
+ */
+class AsyncLogWriterTests {
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void writesEveryLineFromConcurrentProducersAcrossRolledFiles() throws Exception {
+        Path file = directory.resolve("test.log");
+        AsyncLogWriter writer = new AsyncLogWriter("test", file, 1 << 16, AsyncLogWriter.OverflowPolicy.DROP_NEWEST,
+            64, 5, 20_000, 100);
+        writer.start();
+
+        int producers = 8;
+        int perProducer = 2000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    assertTrue(writer.append("producer=" + producer + " seq=" + i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.close();
+
+        assertEquals(producers * perProducer, writer.getWritten());
+        assertEquals(0, writer.getDropped());
+        assertTrue(Files.exists(directory.resolve("test.log.1")), "the file was rolled over");
+
+        // Oldest file first, so each producer's lines must appear in order.
+        List<Path> files = new ArrayList<>();
+        for (int i = 100; i >= 1; i--) {
+            Path rolled = directory.resolve("test.log." + i);
+            if (Files.exists(rolled)) {
+                files.add(rolled);
+            }
+        }
+        // The last batch may have filled the file and rolled it away.
+        if (Files.exists(file)) {
+            files.add(file);
+        }
+        Map<String, Integer> next = new HashMap<>();
+        int lines = 0;
+        for (Path path : files) {
+            for (String line : Files.readAllLines(path)) {
+                String[] fields = line.split(" ");
+                int seq = Integer.parseInt(fields[1].substring("seq=".length()));
+                assertEquals(next.getOrDefault(fields[0], 0), seq, line);
+                next.put(fields[0], seq + 1);
+                lines++;
+            }
+        }
+        assertEquals(producers * perProducer, lines);
+    }
+
+    @Test
+    void appliesTheOverflowPolicyWithoutBlocking() throws IOException {
+        AsyncLogWriter dropNewest = new AsyncLogWriter("newest", directory.resolve("newest.log"), 4,
+            AsyncLogWriter.OverflowPolicy.DROP_NEWEST, 64, 5, 0, 0);
+        AsyncLogWriter dropOldest = new AsyncLogWriter("oldest", directory.resolve("oldest.log"), 4,
+            AsyncLogWriter.OverflowPolicy.DROP_OLDEST, 64, 5, 0, 0);
+
+        // Not started yet, so nothing drains the buffers.
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i < 4, dropNewest.append("line " + i));
+            assertTrue(dropOldest.append("line " + i));
+        }
+        assertEquals(6, dropNewest.getDropped());
+        assertEquals(6, dropOldest.getDropped());
+
+        dropNewest.start();
+        dropOldest.start();
+        dropNewest.close();
+        dropOldest.close();
+        assertEquals(List.of("line 0", "line 1", "line 2", "line 3"), Files.readAllLines(directory.resolve("newest.log")));
+        assertEquals(List.of("line 6", "line 7", "line 8", "line 9"), Files.readAllLines(directory.resolve("oldest.log")));
+    }
+
+    @Test
+    void writesAuditAndAccessLinesAsKeyValueFields() throws IOException {
+        AsyncLogWriter auditWriter = new AsyncLogWriter("audit", directory.resolve("audit.log"), 16,
+            AsyncLogWriter.OverflowPolicy.DROP_NEWEST, 64, 5, 0, 0);
+        AsyncLogWriter accessWriter = new AsyncLogWriter("access", directory.resolve("access.log"), 16,
+            AsyncLogWriter.OverflowPolicy.DROP_NEWEST, 64, 5, 0, 0);
+        AuditTrail audit = new AuditTrail(auditWriter);
+        AccessLog access = new AccessLog(accessWriter);
+
+        audit.record("user.create", 7L);
+        SecurityContextHolder.getContext().setAuthentication(
+            UsernamePasswordAuthenticationToken.authenticated("ann lee", null, List.of()));
+        audit.record("event.delete", 42L);
+        access.record("api", "10.0.0.7", "ann lee", "GET", "/api/events/query", 200, 4_210_000);
+
+        auditWriter.start();
+        accessWriter.start();
+        auditWriter.close();
+        accessWriter.close();
+
+        List<String> auditLines = Files.readAllLines(directory.resolve("audit.log"));
+        assertTrue(auditLines.get(0).endsWith(" action=user.create id=7 actor=-"), auditLines.get(0));
+        assertTrue(auditLines.get(1).endsWith(" action=event.delete id=42 actor=\"ann lee\""), auditLines.get(1));
+        String accessLine = Files.readAllLines(directory.resolve("access.log")).get(0);
+        assertTrue(accessLine.endsWith(" chain=api ip=10.0.0.7 user=\"ann lee\" method=GET path=/api/events/query status=200 duration_ms=4.21"),
+            accessLine);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertFalse(files.anyMatch(path -> path.getFileName().toString().endsWith(".1")), "nothing is rolled with rolling off");
+        }
+        assertEquals("\"a\\\"b\\u000a\"", AsyncLogWriter.value("a\"b\n"));
+    }
+}
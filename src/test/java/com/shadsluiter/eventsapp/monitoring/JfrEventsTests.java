@@ -0,0 +1,124 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.UserRepository;
+import com.shadsluiter.eventsapp.security.InputSanitizer;
+import com.shadsluiter.eventsapp.security.JwtTokenProvider;
+import com.shadsluiter.eventsapp.service.InvalidationBus;
+import com.shadsluiter.eventsapp.service.UserService;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Records the app's JFR events with the bundled settings, thresholds lifted,
+ * and checks what each one carries.
+ */
+class JfrEventsTests {
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:jfr_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql"), new ClassPathResource("db/users-h2.sql"))
+            .execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void recordsDomainEventsWithTheBundledSettings() throws Exception {
+        Configuration configuration;
+        try (Reader reader = new InputStreamReader(new ClassPathResource("jfr/eventsapp.jfc").getInputStream(), StandardCharsets.UTF_8)) {
+            configuration = Configuration.create(reader);
+        }
+        Map<String, String> settings = configuration.getSettings();
+        assertEquals("true", settings.get("com.shadsluiter.eventsapp.RepositoryCall#enabled"));
+        assertEquals("1 ms", settings.get("com.shadsluiter.eventsapp.RepositoryCall#threshold"));
+
+        ChangeLogRepository changeLog = new ChangeLogRepository(jdbcTemplate);
+        UserService users = new UserService(new UserRepository(jdbcTemplate, changeLog), new BCryptPasswordEncoder(4),
+            new InvalidationBus(changeLog, false, 500, 10000, 3600000), 100, 60000);
+        JwtTokenProvider tokens = new JwtTokenProvider();
+        ReflectionTestUtils.setField(tokens, "jwtSecret", "eP9GhV3K8mJm02UuwLWqzTgEhX75NFcPvaIoE4LDY8gCRkSH2ZqxnoYWKz3V7MJD");
+        jdbcTemplate.update("INSERT INTO users (login_name, password) VALUES ('alice', 'hash')");
+
+        Path file = Files.createTempFile("eventsapp", ".jfr");
+        try (Recording recording = new Recording(settings)) {
+            for (String event : List.of("RepositoryCall", "JwtValidation", "UserLookup", "Sanitization")) {
+                recording.enable("com.shadsluiter.eventsapp." + event).withoutThreshold();
+            }
+            recording.start();
+            users.loadUserByUsername("alice");
+            users.loadUserByUsername("alice");
+            assertThrows(UsernameNotFoundException.class, () -> users.loadUserByUsername("bob"));
+            assertFalse(tokens.validateToken("not.a.token"));
+            InputSanitizer.sanitizeInput(" Drop table; ");
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        List<RecordedEvent> lookups = named(events, "UserLookup");
+        assertEquals(List.of(false, true, false), lookups.stream().map(e -> e.getBoolean("cached")).toList());
+        assertEquals(List.of(true, true, false), lookups.stream().map(e -> e.getBoolean("found")).toList());
+
+        List<RecordedEvent> calls = named(events, "RepositoryCall");
+        assertEquals(2, calls.size(), "the cached lookup does not reach the repository");
+        assertEquals("UserRepository.findByLoginName", calls.get(0).getString("operation"));
+        assertEquals("AUTH", calls.get(0).getString("queryClass"));
+        assertEquals(1, calls.get(0).getLong("rows"));
+        assertEquals(0, calls.get(1).getLong("rows"));
+
+        RecordedEvent jwt = named(events, "JwtValidation").get(0);
+        assertEquals("MalformedJwtException", jwt.getString("outcome"));
+
+        List<RecordedEvent> sanitized = named(events, "Sanitization");
+        assertEquals(4, sanitized.size(), "three usernames and one text input");
+        RecordedEvent input = sanitized.get(3);
+        assertEquals("input", input.getString("kind"));
+        assertEquals(13, input.getInt("inputLength"));
+        assertEquals(7, input.getInt("removed"), "\" Drop table; \" becomes \" table\"");
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream()
+            .filter(e -> e.getEventType().getName().equals("com.shadsluiter.eventsapp." + name))
+            .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+            .toList();
+    }
+}
@@ -0,0 +1,47 @@
+package com.shadsluiter.eventsapp.monitoring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Checks the Server-Timing header written for sampled requests.
+ */
+class ServerTimingFilterTests {
+
+    @Test
+    void reportsPhasesOfSampledRequestsWhenTheResponseCommits() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String[] headerAtCommit = new String[1];
+
+        new ServerTimingFilter(1.0).doFilter(new MockHttpServletRequest("GET", "/api/events"), response, (req, res) -> {
+            long start = RequestTiming.start();
+            assertTrue(start != 0, "the request is sampled");
+            RequestTiming.record(RequestTiming.DB, start);
+            RequestTiming.record(RequestTiming.DB, RequestTiming.start());
+            RequestTiming.startRender();
+            res.getWriter().write("[]");
+            res.flushBuffer();
+            headerAtCommit[0] = ((MockHttpServletResponse) response).getHeader("Server-Timing");
+        });
+
+        String header = headerAtCommit[0];
+        assertTrue(header.startsWith("db;desc=\"2 statements\";dur="), header);
+        assertTrue(header.contains(", render;dur="), header);
+        assertTrue(header.contains(", total;dur="), header);
+        assertEquals(header, response.getHeader("Server-Timing"), "the header is set once, at commit");
+        assertEquals(0, RequestTiming.start(), "the timing ends with the request");
+    }
+
+    @Test
+    void leavesUnsampledRequestsAlone() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new ServerTimingFilter(0).doFilter(new MockHttpServletRequest("GET", "/api/events"), response,
+            (req, res) -> assertEquals(0, RequestTiming.start()));
+        assertNull(response.getHeader("Server-Timing"));
+    }
+}
@@ -0,0 +1,119 @@
+package com.shadsluiter.eventsapp.security;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Simulates a login storm against a fixed pool of request threads and checks
+ * that event reads keep a stable latency while logins are being shed.
+ *
+ * Measures wall-clock latency, so it only runs on request:
+ * mvn test -Dtest=BoundedPasswordEncoderLoadTest -Dprofile.passwordHashing=true
+ */
+@EnabledIfSystemProperty(named = "profile.passwordHashing", matches = "true")
+class BoundedPasswordEncoderLoadTest {
+
+    private static final int REQUEST_THREADS = 16;
+    private static final int LOGINS = 400;
+    private static final int READS = 200;
+    private static final long HASH_MILLIS = 50;
+    private static final long READ_MILLIS = 2;
+
+    @Test
+    void eventReadsStayFastDuringLoginStorm() throws Exception {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new SlowEncoder(), 2, 4, 2000);
+        try {
+            long unloaded = percentile(runMixedLoad(encoder, 0), 99);
+            long stormed = percentile(runMixedLoad(encoder, LOGINS), 99);
+
+            System.out.printf("read p99 without logins: %d ms, during login storm: %d ms, logins rejected: %d%n",
+                unloaded, stormed, encoder.getRejectedCount());
+
+            assertTrue(encoder.getRejectedCount() > 0, "the storm should overflow the hashing queue");
+            assertTrue(stormed < 250, "read p99 during login storm was " + stormed + " ms");
+        } finally {
+            encoder.destroy();
+        }
+    }
+
+    /**
+     * Interleaves logins and event reads on a Tomcat-sized pool and returns the read latencies.
+     *
+     * Latency is measured from submission, so it includes time spent waiting for a request thread.
+     */
+    private long[] runMixedLoad(PasswordEncoder encoder, int logins) throws Exception {
+        ExecutorService requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS);
+        List<Future<Long>> reads = new ArrayList<>();
+        try {
+            int loginsPerRead = logins / READS;
+            for (int i = 0; i < READS; i++) {
+                for (int j = 0; j < loginsPerRead; j++) {
+                    requestThreads.submit(() -> {
+                        try {
+                            encoder.matches("password", "hash");
+                        } catch (PasswordHashingRejectedException e) {
+                            // shed login, counted by the encoder
+                        }
+                    });
+                }
+                long submitted = System.nanoTime();
+                reads.add(requestThreads.submit(() -> {
+                    Thread.sleep(READ_MILLIS);
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted);
+                }));
+            }
+
+            long[] latencies = new long[reads.size()];
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = reads.get(i).get(30, TimeUnit.SECONDS);
+            }
+            return latencies;
+        } finally {
+            requestThreads.shutdown();
+            requestThreads.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long percentile(long[] values, int percentile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    /**
+     * Stand-in for BCrypt that takes a fixed amount of time per hash.
+     */
+    private static class SlowEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            sleep();
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            sleep();
+            return rawPassword.toString().equals(encodedPassword);
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(HASH_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
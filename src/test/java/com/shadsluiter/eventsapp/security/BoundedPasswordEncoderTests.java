@@ -0,0 +1,105 @@
+package com.shadsluiter.eventsapp.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Fills the hashing executor with a delegate that blocks until released and
+ * checks that requests beyond its queue are shed at once.
+ */
+class BoundedPasswordEncoderTests {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void createEncoder() {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, 30000);
+        encoder.bindTo(registry);
+    }
+
+    @AfterEach
+    void stopEncoder() {
+        release.countDown();
+        encoder.destroy();
+    }
+
+    @Test
+    void rejectsRequestsBeyondTheQueueWithoutWaiting() throws Exception {
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> encoder.matches("password", "password"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> encoder.matches("password", "other"));
+        awaitQueued(1);
+
+        PasswordHashingRejectedException e = assertThrows(PasswordHashingRejectedException.class,
+            () -> encoder.matches("password", "password"));
+        assertEquals(30, e.getRetryAfterSeconds());
+        assertEquals(1, encoder.getRejectedCount());
+        assertEquals(1.0, registry.get("eventsapp.password.hashing.rejected").functionCounter().count());
+
+        release.countDown();
+        assertTrue(running.get(10, TimeUnit.SECONDS));
+        assertEquals(false, queued.get(10, TimeUnit.SECONDS));
+        assertEquals(0, encoder.getTimedOutCount());
+    }
+
+    @Test
+    void timesOutACallerWhoseHashDoesNotFinish() throws Exception {
+        BoundedPasswordEncoder impatient = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, 1);
+        try {
+            assertThrows(PasswordHashingRejectedException.class, () -> impatient.encode("password"));
+            assertEquals(1, impatient.getTimedOutCount());
+            assertEquals(0, impatient.getRejectedCount());
+        } finally {
+            impatient.destroy();
+        }
+    }
+
+    private void awaitQueued(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (registry.get("eventsapp.password.hashing.queued").gauge().value() < expected) {
+            assertTrue(System.nanoTime() < deadline, "the request was never queued");
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Stand-in for BCrypt that holds its thread until the test releases it.
+     */
+    private class BlockingEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            block();
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            block();
+            return rawPassword.toString().equals(encodedPassword);
+        }
+
+        private void block() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
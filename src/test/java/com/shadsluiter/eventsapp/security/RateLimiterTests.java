@@ -0,0 +1,149 @@
+package com.shadsluiter.eventsapp.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.shadsluiter.eventsapp.config.RateLimitProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks the token buckets of the RateLimiter, the 429 responses of the
+ * RateLimitFilter and the validation of its rules at startup.
+ */
+class RateLimiterTests {
+
+    /** Slow enough that no bucket refills while a test runs */
+    private static final RateLimitProperties.Rule SLOW = new RateLimitProperties.Rule(null, 0.01, 3);
+
+    /** Refills a token every millisecond */
+    private static final RateLimitProperties.Rule FAST = new RateLimitProperties.Rule(null, 1000, 2);
+
+    @Test
+    void allowsABurstThenRejectsUntilATokenIsDue() {
+        RateLimiter limiter = new RateLimiter(new RateLimitProperties());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("client", SLOW));
+        }
+        long wait = limiter.tryAcquire("client", SLOW);
+        assertTrue(wait > TimeUnit.SECONDS.toNanos(99) && wait <= TimeUnit.SECONDS.toNanos(100),
+            "the next token is one interval of 100 s away, waited " + wait + " ns");
+        assertEquals(0, limiter.tryAcquire("other", SLOW), "each client has its own bucket");
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() throws Exception {
+        RateLimitProperties.Rule rule = new RateLimitProperties.Rule(null, 4, 2);
+        RateLimiter limiter = new RateLimiter(new RateLimitProperties());
+        assertEquals(0, limiter.tryAcquire("client", rule));
+        assertEquals(0, limiter.tryAcquire("client", rule));
+        long wait = limiter.tryAcquire("client", rule);
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(250), "waited " + wait + " ns for one 250 ms interval");
+
+        // Sleeping at least the returned wait always makes a token available.
+        TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(0, limiter.tryAcquire("client", rule));
+        assertTrue(limiter.tryAcquire("client", rule) > 0, "only one token was refilled");
+    }
+
+    @Test
+    void evictsOnlyBucketsThatHaveRefilled() throws Exception {
+        RateLimiter limiter = new RateLimiter(new RateLimitProperties());
+        limiter.tryAcquire("idle", FAST);
+        limiter.tryAcquire("busy", SLOW);
+        assertEquals(2, limiter.size());
+
+        TimeUnit.MILLISECONDS.sleep(5);
+        assertEquals(1, limiter.evictIdle());
+        assertEquals(1, limiter.size());
+        for (int i = 0; i < 2; i++) {
+            limiter.tryAcquire("busy", SLOW);
+        }
+        assertTrue(limiter.tryAcquire("busy", SLOW) > 0, "the busy bucket kept what it had spent");
+    }
+
+    @Test
+    void filterAnswers429WithRetryAfterPerRoute() throws Exception {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setDefaults(new RateLimitProperties.Rule(null, 0.5, 1));
+        properties.setRoutes(List.of(new RateLimitProperties.Rule("/api/users/login", 0.01, 1)));
+        RateLimitFilter filter = new RateLimitFilter(new RateLimiter(properties), properties);
+
+        assertEquals(200, send(filter, "/api/events").getStatus());
+        MockHttpServletResponse limited = send(filter, "/api/events");
+        assertEquals(429, limited.getStatus());
+        assertEquals("2", limited.getHeader("Retry-After"), "rounded up to whole seconds");
+
+        MockHttpServletResponse login = send(filter, "/api/users/login");
+        assertEquals(200, login.getStatus(), "a route rule has its own buckets");
+        assertEquals("100", send(filter, "/api/users/login").getHeader("Retry-After"));
+    }
+
+    @Test
+    void rulesWithoutARateOrABurstFailAtStartup() {
+        ApplicationContextRunner runner = new ApplicationContextRunner().withUserConfiguration(RateLimitConfig.class);
+        runner.withPropertyValues("app.rate-limit.routes[0].pattern=/api/users/login",
+                "app.rate-limit.routes[0].permits-per-second=0.5", "app.rate-limit.routes[0].burst=1")
+            .run(context -> assertNull(context.getStartupFailure()));
+
+        runner.withPropertyValues("app.rate-limit.routes[0].pattern=/api/users/login",
+                "app.rate-limit.routes[0].permits-per-second=0", "app.rate-limit.routes[0].burst=5")
+            .run(context -> assertNotNull(context.getStartupFailure(), "a zero rate would divide by zero"));
+        runner.withPropertyValues("app.rate-limit.defaults.permits-per-second=-1")
+            .run(context -> assertNotNull(context.getStartupFailure()));
+        runner.withPropertyValues("app.rate-limit.defaults.burst=0")
+            .run(context -> assertNotNull(context.getStartupFailure(), "a burst of zero admits no request"));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(RateLimitProperties.class)
+    static class RateLimitConfig {
+    }
+
+    private static MockHttpServletResponse send(RateLimitFilter filter, String path) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", path), response, chain);
+        if (response.getStatus() == 429) {
+            assertNull(chain.getRequest(), "a limited request does not reach the controllers");
+        }
+        return response;
+    }
+
+    @Test
+    void newClientsShareAnOverflowBucketWhenTheTableIsFull() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setMaxBuckets(2);
+        RateLimiter limiter = new RateLimiter(properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+
+        assertEquals(0, limiter.tryAcquire("a", SLOW));
+        assertEquals(0, limiter.tryAcquire("b", SLOW));
+        assertEquals(2, limiter.size());
+
+        // Every newcomer draws on the same burst of three.
+        for (int client = 0; client < 3; client++) {
+            assertEquals(0, limiter.tryAcquire("new-" + client, SLOW));
+        }
+        assertTrue(limiter.tryAcquire("new-3", SLOW) > 0, "the table is full, so new clients are not let through unmetered");
+        assertTrue(limiter.tryAcquire("new-0", SLOW) > 0);
+        assertEquals(2, limiter.size(), "overflow clients get no bucket of their own");
+        assertEquals(5.0, registry.get("eventsapp.ratelimit.overflowed").functionCounter().count());
+
+        assertEquals(0, limiter.tryAcquire("a", SLOW), "clients with a bucket keep their own burst");
+    }
+}
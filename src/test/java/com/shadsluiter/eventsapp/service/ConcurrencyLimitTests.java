@@ -0,0 +1,194 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.shadsluiter.eventsapp.config.ConcurrencyLimitProperties;
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepository;
+import com.shadsluiter.eventsapp.security.ConcurrencyLimitFilter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks that the adaptive concurrency limit shrinks when an embedded H2
+ * database is artificially slowed, that calls beyond it are shed at once, and
+ * that the API filter only backs off on overload.
+ */
+class ConcurrencyLimitTests {
+
+    private static final long SLOW_MS = 300;
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private volatile long delayMs;
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:limits_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        // Every statement opens a connection, so delaying connections slows every repository call.
+        jdbcTemplate = new JdbcTemplate(new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getConnection();
+            }
+        });
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+    }
+
+    @Test
+    void shedsDatabaseCallsWhenTheDatabaseSlowsDown() throws Exception {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.getDb().setInitialLimit(4);
+        properties.getDb().setMinLimit(1);
+        properties.getDb().setSlowMs(100);
+        ConcurrencyLimiters limiters = new ConcurrencyLimiters(properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiters.bindTo(registry);
+
+        ChangeLogRepository changeLog = new ChangeLogRepository(jdbcTemplate);
+        InvalidationBus bus = new InvalidationBus(changeLog, false, 500, 10000, 3600000);
+        EventRepository repository = new EventRepository(jdbcTemplate, changeLog, 365);
+        EventService events = new EventService(repository, bus, null, null, limiters, null, null, registry, 100, 60000, 0, 0, 1000);
+        // The first query loads classes and would count as slow.
+        repository.findByOrganizerid(1L);
+
+        for (long organizerid = 1; organizerid <= 5; organizerid++) {
+            events.findByOrganizerid(organizerid);
+        }
+        assertEquals(4, limiters.db().getLimit(), "fast calls one at a time leave the limit alone");
+
+        delayMs = SLOW_MS;
+        int callers = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> calls = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            long organizerid = 100 + i;
+            calls.add(pool.submit(() -> {
+                start.await();
+                long began = System.nanoTime();
+                try {
+                    events.findByOrganizerid(organizerid);
+                    return -1L;
+                } catch (ConcurrencyLimitExceededException e) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+                }
+            }));
+        }
+        start.countDown();
+
+        int rejected = 0;
+        for (Future<Long> call : calls) {
+            long rejectedAfterMs = call.get(10, TimeUnit.SECONDS);
+            if (rejectedAfterMs >= 0) {
+                rejected++;
+                assertTrue(rejectedAfterMs < SLOW_MS, "rejected in " + rejectedAfterMs + " ms, without waiting for the database");
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(callers - 4, rejected, "only the calls within the limit reach the database");
+        assertEquals(3, limiters.db().getLimit(), "one slow burst cuts the limit once");
+        assertEquals(3.0, registry.get("eventsapp.concurrency.limit").tag("group", "db").gauge().value());
+        assertEquals(rejected, registry.get("eventsapp.concurrency.rejected").tag("group", "db").functionCounter().count());
+
+        for (long organizerid = 200; organizerid < 203; organizerid++) {
+            events.findByOrganizerid(organizerid);
+        }
+        assertEquals(2, limiters.db().getLimit(), "each slow call started after the last cut cuts again");
+    }
+
+    @Test
+    void filterBacksOffOnOverloadButNotOnOtherServerErrors() throws Exception {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setBackoffRatio(0.5);
+        properties.getDefaults().setInitialLimit(8);
+        properties.getDefaults().setMinLimit(1);
+        ConcurrencyLimiters limiters = new ConcurrencyLimiters(properties);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiters);
+        AimdLimiter limiter = limiters.forPath("/api/other");
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/other"), new MockHttpServletResponse(),
+            (request, response) -> ((MockHttpServletResponse) response).setStatus(500));
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(new MockHttpServletRequest("GET", "/api/other"),
+            new MockHttpServletResponse(), (request, response) -> {
+                throw new IllegalStateException("bug");
+            }));
+        assertEquals(8, limiter.getLimit(), "a request's own errors leave the limit alone");
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/other"), new MockHttpServletResponse(),
+            (request, response) -> ((MockHttpServletResponse) response).setStatus(503));
+        assertEquals(4, limiter.getLimit(), "load shed downstream cuts the limit");
+
+        assertThrows(QueryTimeoutException.class, () -> filter.doFilter(new MockHttpServletRequest("GET", "/api/other"),
+            new MockHttpServletResponse(), (request, response) -> {
+                throw new QueryTimeoutException("slow");
+            }));
+        assertEquals(2, limiter.getLimit(), "a timeout cuts the limit");
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void growsWhileBusyAndFastAndBacksOffOncePerCut() {
+        AimdLimiter limiter = new AimdLimiter("test", 4, 1, 8, 1000, 0.5);
+
+        for (int round = 0; round < 20; round++) {
+            List<Long> admitted = new ArrayList<>();
+            while (limiter.tryAcquire()) {
+                admitted.add(System.nanoTime());
+            }
+            for (long began : admitted) {
+                limiter.release(began, false);
+            }
+        }
+        assertEquals(8, limiter.getLimit(), "a busy group that stays fast grows to its maximum");
+        assertEquals(0, limiter.getInFlight());
+
+        List<Long> admitted = new ArrayList<>();
+        while (limiter.tryAcquire()) {
+            admitted.add(System.nanoTime());
+        }
+        assertEquals(8, admitted.size());
+        assertFalse(limiter.tryAcquire());
+        for (long began : admitted) {
+            limiter.release(began, true);
+        }
+        assertEquals(4, limiter.getLimit(), "failures of requests in flight together cut the limit once");
+    }
+}
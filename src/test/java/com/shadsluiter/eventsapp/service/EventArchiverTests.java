@@ -0,0 +1,124 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepository;
+
+/**
+ * Archives events from an embedded H2 database and checks which rows move,
+ * in how many batches, and that each move is recorded in the change log.
+ */
+class EventArchiverTests {
+
+    private static final int HORIZON_DAYS = 30;
+    private static final LocalDate HORIZON = LocalDate.now().minusDays(HORIZON_DAYS);
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private final List<Integer> batches = new ArrayList<>();
+    private EventRepository repository;
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:archive_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new EventRepository(jdbcTemplate, new ChangeLogRepository(jdbcTemplate), 365) {
+            @Override
+            public int archiveOlderThan(LocalDate horizon, int batchSize) {
+                int moved = super.archiveOlderThan(horizon, batchSize);
+                batches.add(moved);
+                return moved;
+            }
+        };
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void movesPastEventsInBatchesUntilOneComesUpShort() {
+        for (int i = 0; i < 7; i++) {
+            insert("Past " + i, HORIZON.minusDays(1 + i), null, null);
+        }
+
+        assertEquals(7, archiver(3).archivePastEvents());
+
+        assertEquals(List.of(3, 3, 1), batches);
+        assertEquals(0, count("events"));
+        assertEquals(7, count("events_archive"));
+        assertEquals(jdbcTemplate.queryForList("SELECT CAST(id AS VARCHAR) FROM events_archive ORDER BY id", String.class),
+            jdbcTemplate.queryForList("SELECT entity_key FROM change_log WHERE entity = ? ORDER BY seq", String.class, ChangeLogRepository.EVENT),
+            "every archived event is recorded as changed");
+    }
+
+    @Test
+    void stopsAfterAnEmptyBatchWhenTheCountIsAMultipleOfTheBatchSize() {
+        for (int i = 0; i < 6; i++) {
+            insert("Past " + i, HORIZON.minusDays(1 + i), null, null);
+        }
+
+        assertEquals(6, archiver(3).archivePastEvents());
+
+        assertEquals(List.of(3, 3, 0), batches);
+    }
+
+    @Test
+    void keepsEventsOnOrAfterTheHorizon() {
+        insert("Before", HORIZON.minusDays(1), null, null);
+        insert("On", HORIZON, null, null);
+        insert("Upcoming", LocalDate.now().plusDays(5), null, null);
+
+        assertEquals(1, archiver(500).archivePastEvents());
+
+        assertEquals(List.of("On", "Upcoming"), names("events"));
+        assertEquals(List.of("Before"), names("events_archive"));
+    }
+
+    @Test
+    void keepsRecurringSeriesUntilTheirLastOccurrencePassesTheHorizon() {
+        LocalDate started = HORIZON.minusDays(400);
+        insert("Open-ended", started, "FREQ=WEEKLY", null);
+        insert("Still running", started, "FREQ=WEEKLY;UNTIL=20991231", LocalDate.now().plusDays(60));
+        insert("Ends on the horizon", started, "FREQ=MONTHLY;COUNT=12", HORIZON);
+        insert("Ended", started, "FREQ=MONTHLY;COUNT=3", started.plusMonths(2));
+
+        assertEquals(1, archiver(500).archivePastEvents());
+
+        assertEquals(List.of("Open-ended", "Still running", "Ends on the horizon"), names("events"));
+        assertEquals(List.of("Ended"), names("events_archive"));
+    }
+
+    private EventArchiver archiver(int batchSize) {
+        return new EventArchiver(repository, HORIZON_DAYS, batchSize, 0);
+    }
+
+    private void insert(String name, LocalDate date, String recurrence, LocalDate recurrenceEnd) {
+        jdbcTemplate.update("INSERT INTO events (name, date, location, organizerid, description, recurrence, recurrence_end) " +
+            "VALUES (?, ?, 'Phoenix', 7, 'Archived?', ?, ?)", name, date, recurrence, recurrenceEnd);
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    private List<String> names(String table) {
+        return jdbcTemplate.queryForList("SELECT name FROM " + table + " ORDER BY id", String.class);
+    }
+}
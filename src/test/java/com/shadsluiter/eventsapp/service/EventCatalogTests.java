@@ -0,0 +1,247 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepository;
+import com.shadsluiter.eventsapp.models.EventEntity;
+import com.shadsluiter.eventsapp.models.EventFacets;
+import com.shadsluiter.eventsapp.models.EventModel;
+import com.shadsluiter.eventsapp.models.EventView;
+import com.shadsluiter.eventsapp.models.EventSearch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Loads the event catalog from an embedded H2 database and checks that it
+ * answers queries as the database does and follows writes made on this and
+ * another app instance.
+ */
+class EventCatalogTests {
+
+    private static final LocalDate DAY = LocalDate.now().plusDays(10);
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ChangeLogRepository changeLog;
+    private EventRepository repository;
+    private InvalidationBus bus;
+    private EventCatalog catalog;
+    private EventService events;
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:catalog_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        changeLog = new ChangeLogRepository(jdbcTemplate);
+        repository = new EventRepository(jdbcTemplate, changeLog, 365);
+        bus = new InvalidationBus(changeLog, false, 500, 10000, 3600000);
+        catalog = new EventCatalog(repository, bus, true, 3600000, 365);
+        events = new EventService(repository, bus, null, catalog, null, null, null, new SimpleMeterRegistry(), 100, 60000, 0, 0, 1000);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void answersQueriesAsTheDatabaseDoes() {
+        for (int i = 0; i < 30; i++) {
+            EventModel event = model("Event " + i, DAY.plusDays(i % 7), 1L + i % 3);
+            event.setLocation("Hall " + i % 4);
+            if (i % 10 == 0) {
+                event.setRecurrence("FREQ=WEEKLY;COUNT=" + (i + 2));
+            }
+            if (i % 5 == 0) {
+                event.setCapacity(i);
+            }
+            inTransaction(() -> events.save(event));
+        }
+        catalog.refresh();
+        assertTrue(catalog.isReady());
+
+        assertSameEvents(repository.findAll(), catalog.findAll(), true);
+        assertSameEvents(repository.findByOrganizerid(2L), catalog.findByOrganizerid(2L), true);
+        assertSameEvents(repository.findByDateRange(DAY.plusDays(2), DAY.plusDays(20), false),
+            catalog.findByDateRange(DAY.plusDays(2), DAY.plusDays(20)), false);
+        assertSameEvents(repository.findByDateRange(DAY.plusDays(3), null, false),
+            catalog.findByDateRange(DAY.plusDays(3), null), false);
+
+        EventSearch search = new EventSearch("Event 1");
+        search.setLocation("Hall 1");
+        assertSameFacets(repository.facets(search), catalog.facets(search));
+        search = new EventSearch();
+        search.setOrganizerid(2L);
+        search.setFrom(DAY.plusDays(3));
+        search.setTo(DAY.plusDays(40));
+        assertSameFacets(repository.facets(search), catalog.facets(search));
+
+        assertFalse(catalog.covers(LocalDate.now().minusYears(2), false), "ranges reaching the archive use the database");
+        assertFalse(catalog.covers(DAY, true));
+    }
+
+    @Test
+    void followsLocalWritesImmediatelyAndRemoteWritesOnRefresh() {
+        catalog.refresh();
+        bus.pollNow();
+
+        EventModel created = inTransaction(() -> events.save(model("Launch", DAY, 1L)));
+        assertEquals(List.of("Launch"), names(events.findAll()));
+
+        created.setName("Relaunch");
+        events.updateEvent(created.getId(), created);
+        assertEquals(List.of("Relaunch"), names(events.findByOrganizerid(1L)));
+
+        // Another instance renames the event and creates one.
+        EventRepository otherNode = new EventRepository(jdbcTemplate, changeLog, 365);
+        EventView stored = otherNode.findById(created.getId());
+        EventEntity renamed = entity("Encore", stored.getDate(), stored.getOrganizerid());
+        renamed.setId(stored.getId());
+        otherNode.update(renamed, stored.getVersion());
+        inTransaction(() -> otherNode.save(entity("Afterparty", DAY.plusDays(1), 2L)));
+        assertEquals(List.of("Relaunch"), names(events.findByDateRange(DAY, DAY.plusDays(1), false)), "served from the catalog until the change is read");
+
+        bus.pollNow();
+        catalog.refresh();
+        assertEquals(List.of("Encore", "Afterparty"), names(events.findByDateRange(DAY, DAY.plusDays(1), false)));
+
+        events.delete(created.getId());
+        assertEquals(List.of("Afterparty"), names(events.findAll()));
+
+        // A late re-read of the deleted event must not bring it back.
+        bus.evictLocal(ChangeLogRepository.EVENT, created.getId().toString());
+        catalog.put(renamed);
+        catalog.refresh();
+        assertEquals(List.of("Afterparty"), names(events.findAll()));
+    }
+
+    @Test
+    void searchesTextWithTyposWhenFuzzySearchIsEnabled() {
+        EventCatalog fuzzy = new EventCatalog(repository, bus, true, true, 3600000, 365);
+        EventService fuzzyEvents = new EventService(repository, bus, null, fuzzy, null, null, null, new SimpleMeterRegistry(), 100, 60000, 0, 0, 1000);
+        inTransaction(() -> fuzzyEvents.save(model("Birthday party", DAY, 1L)));
+        inTransaction(() -> fuzzyEvents.save(model("Book club", DAY, 2L)));
+
+        assertEquals(List.of(), names(fuzzyEvents.search(new EventSearch("birtday"))), "the database only matches exactly");
+        fuzzy.refresh();
+        assertEquals(List.of("Birthday party"), names(fuzzyEvents.search(new EventSearch("birtday"))));
+        assertEquals(1, fuzzyEvents.facets(new EventSearch("birtday")).getTotal());
+
+        inTransaction(() -> fuzzyEvents.save(model("Birthday brunch", DAY, 2L)));
+        assertEquals(2, fuzzyEvents.search(new EventSearch("birtday")).size(), "local writes are indexed immediately");
+    }
+
+    /**
+     * Reports the catalog's memory footprint for a million events.
+     *
+     * Run with: mvn test -Dtest=EventCatalogTests -Dprofile.catalog=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "profile.catalog", matches = "true")
+    void profileFootprintPerMillionEvents() {
+        int count = 1_000_000;
+        List<EventView> generated = new AbstractList<EventView>() {
+            @Override
+            public EventView get(int i) {
+                return new EventView(i + 1L, "Event " + i, DAY.plusDays(i % 365), "Hall " + i % 200, 1L + i % 5000,
+                    "Description of event " + i + " for the catalog footprint profile", null, null, 0);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+        EventCatalog large = new EventCatalog(new EventRepository(jdbcTemplate, changeLog, 365) {
+            @Override
+            public List<EventView> findAll() {
+                return generated;
+            }
+        }, bus, true, 3600000, 365);
+
+        large.refresh();
+        long[] footprint = large.footprint();
+        assertEquals(count, footprint[0]);
+        System.out.printf("Catalog of %d events: %d MB heap, %d MB off-heap, %d bytes per event%n",
+            count, footprint[1] >> 20, footprint[2] >> 20, (footprint[1] + footprint[2]) / count);
+
+        for (int i = 0; i < 20; i++) {
+            large.findByDateRange(DAY.plusDays(30), DAY.plusDays(36));
+        }
+        long start = System.nanoTime();
+        int found = large.findByDateRange(DAY.plusDays(30), DAY.plusDays(36)).size();
+        System.out.printf("Week range query after warmup: %d events in %d ms%n", found, (System.nanoTime() - start) / 1_000_000);
+
+        EventSearch search = new EventSearch();
+        search.setFrom(DAY.plusDays(30));
+        search.setTo(DAY.plusDays(120));
+        for (int i = 0; i < 20; i++) {
+            large.facets(search);
+        }
+        start = System.nanoTime();
+        long faceted = large.facets(search).getTotal();
+        System.out.printf("Facets over a 90 day range after warmup: %d events in %d ms%n", faceted, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void assertSameEvents(List<EventView> expected, List<EventView> actual, boolean sortById) {
+        if (sortById) {
+            expected.sort(Comparator.comparingLong(EventView::getId));
+            actual.sort(Comparator.comparingLong(EventView::getId));
+        }
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            EventView e = expected.get(i);
+            EventView a = actual.get(i);
+            assertEquals(List.of(e.getId(), e.getName(), e.getDate(), e.getLocation(), e.getOrganizerid(), e.getDescription(), e.getVersion()),
+                List.of(a.getId(), a.getName(), a.getDate(), a.getLocation(), a.getOrganizerid(), a.getDescription(), a.getVersion()));
+            assertEquals(e.getRecurrence(), a.getRecurrence());
+            assertEquals(e.getCapacity(), a.getCapacity());
+        }
+    }
+
+    private static void assertSameFacets(EventFacets expected, EventFacets actual) {
+        assertEquals(expected.getTotal(), actual.getTotal());
+        assertEquals(expected.getLocations(), actual.getLocations());
+        assertEquals(expected.getMonths(), actual.getMonths());
+        assertEquals(expected.getOrganizers(), actual.getOrganizers());
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        // Repositories read LAST_INSERT_ID(), so each insert must stay on one connection.
+        return new TransactionTemplate(new DataSourceTransactionManager(dataSource)).execute(status -> action.get());
+    }
+
+    private static List<String> names(List<EventView> events) {
+        return events.stream().map(EventView::getName).toList();
+    }
+
+    private static EventModel model(String name, LocalDate date, Long organizerid) {
+        return new EventModel(null, name, date, "Hall", organizerid, name + " description");
+    }
+
+    private static EventEntity entity(String name, LocalDate date, Long organizerid) {
+        return new EventEntity(null, name, date, "Hall", organizerid, name + " description");
+    }
+}
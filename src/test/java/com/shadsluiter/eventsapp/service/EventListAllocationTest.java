@@ -0,0 +1,84 @@
+package com.shadsluiter.eventsapp.service;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Allocation profile of the event list endpoints: bytes allocated per request
+ * to load events as EventViews and serialize them to JSON.
+ *
+ * Run with: mvn test -Dtest=EventListAllocationTest -Dprofile.allocation=true
+ */
+@EnabledIfSystemProperty(named = "profile.allocation", matches = "true")
+class EventListAllocationTest {
+
+    private static final int EVENTS = 5000;
+    private static final int WARMUP = 30;
+    private static final int ROUNDS = 50;
+
+    @Test
+    void profileListEndpoints() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:allocation_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        List<Object[]> rows = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            rows.add(new Object[]{"Event " + i, LocalDate.of(2030, 1, 1).plusDays(i % 365), "Hall " + (i % 20), i % 50 + 1, "Description " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO events (name, date, location, organizerid, description) VALUES (?, ?, ?, ?, ?)", rows);
+
+        ChangeLogRepository changeLog = new ChangeLogRepository(jdbcTemplate);
+        InvalidationBus bus = new InvalidationBus(changeLog, false, 500, 10000, 3600000);
+        EventService events = new EventService(new EventRepository(jdbcTemplate, changeLog, 365), bus, null, null, null, null, null,
+            new SimpleMeterRegistry(), 100, 60000, 0, 0, 1000);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        report("findAll", () -> events.findAll(), objectMapper);
+        report("findByDateRange", () -> events.findByDateRange(LocalDate.of(2030, 1, 1), LocalDate.of(2030, 12, 31), false), objectMapper);
+
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    private static void report(String name, Supplier<List<?>> query, ObjectMapper objectMapper) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            objectMapper.writeValueAsBytes(query.get());
+        }
+
+        long queryBytes = 0;
+        long jsonBytes = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = allocatedBytes();
+            List<?> result = query.get();
+            long loaded = allocatedBytes();
+            objectMapper.writeValueAsBytes(result);
+            long serialized = allocatedBytes();
+            queryBytes += loaded - start;
+            jsonBytes += serialized - loaded;
+        }
+        System.out.printf("%s: %d KB/request loading, %d KB/request serializing, %d bytes/event total%n",
+            name, queryBytes / ROUNDS / 1024, jsonBytes / ROUNDS / 1024, (queryBytes + jsonBytes) / ROUNDS / EVENTS);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
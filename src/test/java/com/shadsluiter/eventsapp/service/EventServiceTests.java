@@ -0,0 +1,134 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepository;
+import com.shadsluiter.eventsapp.models.EventBatch;
+import com.shadsluiter.eventsapp.models.EventModel;
+import com.shadsluiter.eventsapp.models.EventSearch;
+import com.shadsluiter.eventsapp.models.EventView;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs EventService against an embedded H2 database and checks how updates
+ * treat the fields a client leaves out, how searches are cached, how batch
+ * lookups order their results and how read results are shared.
+ */
+class EventServiceTests {
+
+    private static final LocalDate DAY = LocalDate.now().plusDays(10);
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private EventService events;
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:events_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ChangeLogRepository changeLog = new ChangeLogRepository(jdbcTemplate);
+        InvalidationBus bus = new InvalidationBus(changeLog, false, 500, 10000, 3600000);
+        events = new EventService(new EventRepository(jdbcTemplate, changeLog, 365), bus, null, null, null, null, null,
+            new SimpleMeterRegistry(), 100, 60000, 100, 60000, 1000);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void updateWithoutOrganizerKeepsTheStoredOne() {
+        EventModel created = inTransaction(() -> events.save(new EventModel(null, "Launch", DAY, "Phoenix", 7L, "Launch party")));
+
+        EventModel edit = new EventModel(null, "Launch (moved)", DAY, "Tempe", null, "Launch party");
+        EventModel updated = events.updateEvent(created.getId(), edit, null);
+
+        assertEquals(7L, updated.getOrganizerid());
+        EventModel stored = events.findById(created.getId());
+        assertEquals(7L, stored.getOrganizerid());
+        assertEquals("Tempe", stored.getLocation());
+        assertEquals(1, events.findByOrganizerid(7L).size());
+    }
+
+    @Test
+    void updateWithOrganizerChangesIt() {
+        EventModel created = inTransaction(() -> events.save(new EventModel(null, "Launch", DAY, "Phoenix", 7L, "Launch party")));
+
+        EventModel edit = new EventModel(null, "Launch", DAY, "Phoenix", 8L, "Launch party");
+        events.updateEvent(created.getId(), edit, null);
+
+        assertEquals(8L, events.findById(created.getId()).getOrganizerid());
+    }
+
+    @Test
+    void searchesDifferingInInnerWhitespaceAreCachedApart() {
+        inTransaction(() -> events.save(new EventModel(null, "Launch party", DAY, "Phoenix", 7L, "Launch party")));
+
+        assertEquals(1, events.search(new EventSearch(" Launch party ")).size());
+        assertEquals(0, events.search(new EventSearch("Launch  party")).size(), "the query matches the spaces literally");
+    }
+
+    @Test
+    void cachedSearchesShareTheirViewsReadOnly() {
+        EventModel created = inTransaction(() -> events.save(new EventModel(null, "Launch party", DAY, "Phoenix", 7L, "Launch party")));
+
+        List<EventView> first = events.search(new EventSearch("Launch"));
+        List<EventView> second = events.search(new EventSearch("Launch"));
+        assertSame(first.get(0), second.get(0), "the cached result is handed out without a copy");
+        assertThrows(UnsupportedOperationException.class, () -> first.remove(0));
+
+        EventModel form = events.findById(created.getId());
+        form.setName("Edited");
+        assertEquals("Launch party", events.findById(created.getId()).getName(), "each caller binds to its own model");
+    }
+
+    @Test
+    void batchLookupsSpanChunksInRequestOrder() {
+        // More IDs than the repository binds into one IN (...) query.
+        jdbcTemplate.batchUpdate("INSERT INTO events (name, date, location, organizerid, description) VALUES (?, ?, 'Phoenix', 7, 'Batch')",
+            IntStream.rangeClosed(1, 1200).mapToObj(i -> new Object[]{"Event " + i, DAY}).toList());
+        List<Long> stored = jdbcTemplate.queryForList("SELECT id FROM events ORDER BY id", Long.class);
+
+        List<Long> requested = new ArrayList<>(stored);
+        Collections.reverse(requested);
+        requested.add(2, -1L);
+        requested.add(stored.get(0));
+        requested.add(stored.get(600));
+        requested.add(999_999L);
+        EventBatch batch = events.findAllById(requested);
+
+        List<Long> expected = new ArrayList<>(stored);
+        Collections.reverse(expected);
+        assertEquals(expected, batch.getEvents().stream().map(EventView::getId).toList(), "each event once, in request order");
+        assertEquals(List.of(-1L, 999_999L), batch.getMissing());
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        // LAST_INSERT_ID() is per connection, so the insert and its lookup must share one.
+        return new TransactionTemplate(new DataSourceTransactionManager(dataSource)).execute(status -> action.get());
+    }
+}
@@ -0,0 +1,200 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepository;
+import com.shadsluiter.eventsapp.data.ShardedEventRepository;
+import com.shadsluiter.eventsapp.models.EventEntity;
+import com.shadsluiter.eventsapp.models.EventModel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Creates events through the write-behind queue against an embedded H2 database
+ * and checks ID assignment, batching, acknowledgement modes, backpressure and
+ * bulk saves that bypass the queue.
+ */
+class EventWriteBehindTests {
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ChangeLogRepository changeLog;
+    private InvalidationBus bus;
+    private EventWriteBehind writeBehind;
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:writebehind_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        changeLog = new ChangeLogRepository(jdbcTemplate);
+        bus = new InvalidationBus(changeLog, false, 500, 10000, 3600000);
+    }
+
+    @AfterEach
+    void dropDatabase() throws InterruptedException {
+        if (writeBehind != null) {
+            writeBehind.destroy();
+        }
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void burstOfCreatesIsInsertedInBatchesWithUniqueIds() throws Exception {
+        EventRepository repository = new EventRepository(jdbcTemplate, changeLog, 365);
+        // An event created before write-behind was enabled, through AUTO_INCREMENT.
+        long existingId = new TransactionTemplate(new DataSourceTransactionManager(dataSource))
+            .execute(status -> repository.save(entity("Existing"))).getId();
+
+        writeBehind = new EventWriteBehind(repository, true, 10000, 200, 20, 100, false, 5000);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        writeBehind.bindTo(registry);
+        EventService events = new EventService(repository, bus, writeBehind, null, null, null, null, registry, 100, 60000, 0, 0, 1000);
+
+        int threads = 16;
+        int perThread = 100;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(events.save(model("Launch " + i)).getId());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread, ids.size(), "every event gets its own ID");
+        for (long id : ids) {
+            assertTrue(id > existingId, "reserved IDs start past existing events");
+        }
+
+        writeBehind.destroy();
+        assertEquals(threads * perThread + 1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Integer.class));
+        double batches = registry.get("eventsapp.events.writeBehind.batches").functionCounter().count();
+        assertTrue(batches < threads * perThread / 10.0, "events were written in " + batches + " batches");
+    }
+
+    @Test
+    void waitingForTheFlushMakesTheEventReadableOnReturn() {
+        EventRepository repository = new EventRepository(jdbcTemplate, changeLog, 365);
+        writeBehind = new EventWriteBehind(repository, true, 100, 50, 20, 10, true, 5000);
+        EventService events = new EventService(repository, bus, writeBehind, null, null, null, null, new SimpleMeterRegistry(), 100, 60000, 0, 0, 1000);
+
+        EventModel created = events.save(model("Durable"));
+        assertEquals("Durable", events.findById(created.getId()).getName());
+    }
+
+    @Test
+    void bulkSavesBypassTheQueueAndRollBackTogether() throws Exception {
+        EventRepository repository = new EventRepository(jdbcTemplate, changeLog, 365);
+        // A flush interval long enough that nothing queued is written during the test.
+        writeBehind = new EventWriteBehind(repository, true, 100, 50, 60000, 10, false, 5000);
+        EventService events = new EventService(repository, bus, writeBehind, null, null, null, null, new SimpleMeterRegistry(), 100, 60000, 0, 0, 1000);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        List<EventModel> saved = transaction.execute(status -> events.saveAll(List.of(model("Bulk 1"), model("Bulk 2"))));
+        assertEquals(0, writeBehind.getQueued());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Integer.class), "written before saveAll returns");
+
+        assertThrows(IllegalStateException.class, () -> transaction.execute(status -> {
+            events.saveAll(List.of(model("Bulk 3")));
+            throw new IllegalStateException("the rest of the batch failed");
+        }));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Integer.class), "rolled back with the batch");
+
+        long queued = events.save(model("Queued")).getId();
+        assertTrue(saved.stream().noneMatch(event -> event.getId() == queued), "queued events take the next reserved ID");
+        writeBehind.destroy();
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Integer.class));
+    }
+
+    @Test
+    void fullQueueIsRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        EventRepository stalled = new EventRepository(jdbcTemplate, changeLog, 365) {
+            @Override
+            public void insertAll(List<EventEntity> events) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.insertAll(events);
+            }
+        };
+        writeBehind = new EventWriteBehind(stalled, true, 2, 1, 20, 10, false, 5000);
+
+        writeBehind.submit(entity("Being written"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        writeBehind.submit(entity("Queued 1"));
+        writeBehind.submit(entity("Queued 2"));
+        assertThrows(WriteBehindQueueFullException.class, () -> writeBehind.submit(entity("Rejected")));
+
+        release.countDown();
+        writeBehind.destroy();
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM events", Integer.class));
+    }
+
+    @Test
+    void refusesToStartOverShardedEvents() throws Exception {
+        ShardedEventRepository sharded = new ShardedEventRepository(List.of(dataSource), 365, 0);
+        try {
+            assertThrows(IllegalStateException.class, () -> new EventWriteBehind(sharded, true, 100, 50, 20, 10, false, 5000));
+            assertFalse(new EventWriteBehind(sharded, false, 100, 50, 20, 10, false, 5000).isEnabled());
+        } finally {
+            sharded.destroy();
+        }
+    }
+
+    private static EventModel model(String name) {
+        return new EventModel(null, name, LocalDate.of(2030, 1, 1), "Hall", 1L, "Ticket launch");
+    }
+
+    private static EventEntity entity(String name) {
+        EventEntity event = new EventEntity();
+        event.setName(name);
+        event.setDate(LocalDate.of(2030, 1, 1));
+        event.setLocation("Hall");
+        event.setOrganizerid(1L);
+        event.setDescription("Ticket launch");
+        return event;
+    }
+}
@@ -0,0 +1,248 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shadsluiter.eventsapp.data.IdempotencyRepository;
+import com.shadsluiter.eventsapp.models.EventModel;
+
+/**
+ * Sends retries and concurrent duplicates of create requests through the
+ * idempotency service and checks that each key runs its request once.
+ */
+class IdempotencyServiceTests {
+
+    private static final TypeReference<EventModel> EVENT = new TypeReference<EventModel>() {};
+
+    private JdbcDataSource dataSource;
+    private IdempotencyRepository repository;
+    private final AtomicInteger creates = new AtomicInteger();
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:idempotency_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        repository = new IdempotencyRepository(new JdbcTemplate(dataSource));
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+    }
+
+    @Test
+    void concurrentDuplicatesRunOnceAndShareTheResponse() throws Exception {
+        IdempotencyService service = service(false);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<ResponseEntity<EventModel>>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(executor.submit(() -> {
+                start.await();
+                return service.execute("alice POST /api/events", "key-1", event("Launch"), EVENT, () -> {
+                    sleep(50);
+                    return create(event("Launch"));
+                });
+            }));
+        }
+        start.countDown();
+
+        int replays = 0;
+        for (Future<ResponseEntity<EventModel>> response : responses) {
+            assertEquals(1L, response.get().getBody().getId());
+            if (response.get().getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)) {
+                replays++;
+            }
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        assertEquals(1, creates.get());
+        assertEquals(7, replays);
+    }
+
+    @Test
+    void keyReusedWithADifferentBodyIsRejected() {
+        IdempotencyService service = service(false);
+        service.execute("alice POST /api/events", "key-1", event("Launch"), EVENT, () -> create(event("Launch")));
+
+        IdempotencyKeyException e = assertThrows(IdempotencyKeyException.class,
+            () -> service.execute("alice POST /api/events", "key-1", event("Other"), EVENT, () -> create(event("Other"))));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatus());
+
+        // The same key from another user is a different key.
+        service.execute("bob POST /api/events", "key-1", event("Other"), EVENT, () -> create(event("Other")));
+        assertEquals(2, creates.get());
+    }
+
+    @Test
+    void serverErrorsAreNotKept() {
+        IdempotencyService service = service(false);
+        ResponseEntity<EventModel> failed = service.execute("alice POST /api/events", "key-1", event("Launch"), EVENT,
+            () -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, failed.getStatusCode());
+
+        ResponseEntity<EventModel> retried = service.execute("alice POST /api/events", "key-1", event("Launch"), EVENT,
+            () -> create(event("Launch")));
+        assertEquals(HttpStatus.OK, retried.getStatusCode());
+        assertNull(retried.getHeaders().get(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void retryOnAnotherInstanceIsAnsweredFromTheDatabase() {
+        IdempotencyService nodeA = service(true);
+        IdempotencyService nodeB = service(true);
+        nodeA.execute("alice POST /api/events", "key-1", event("Launch"), EVENT, () -> create(event("Launch")));
+
+        ResponseEntity<EventModel> retried = nodeB.execute("alice POST /api/events", "key-1", event("Launch"), EVENT,
+            () -> create(event("Launch")));
+        assertEquals(1, creates.get());
+        assertEquals(1L, retried.getBody().getId());
+        assertEquals("true", retried.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void retryWhileTheFirstRequestRunsElsewhereIsAConflict() {
+        IdempotencyService nodeA = service(true);
+        IdempotencyService nodeB = service(true);
+        nodeA.execute("alice POST /api/events", "key-1", event("Launch"), EVENT, () -> {
+            IdempotencyKeyException e = assertThrows(IdempotencyKeyException.class,
+                () -> nodeB.execute("alice POST /api/events", "key-1", event("Launch"), EVENT, () -> create(event("Launch"))));
+            assertEquals(HttpStatus.CONFLICT, e.getStatus());
+            return create(event("Launch"));
+        });
+        assertEquals(1, creates.get());
+    }
+
+    @Test
+    void duplicateThatOutwaitsTheFirstRequestIsAConflict() throws Exception {
+        IdempotencyService service = new IdempotencyService(repository, new ObjectMapper().findAndRegisterModules(),
+            false, 100, 60000, 60000, 50);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<ResponseEntity<EventModel>> first = executor.submit(() ->
+            service.execute("alice POST /api/events", "key-1", event("Launch"), EVENT, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return create(event("Launch"));
+            }));
+        try {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            IdempotencyKeyException e = assertThrows(IdempotencyKeyException.class,
+                () -> service.execute("alice POST /api/events", "key-1", event("Launch"), EVENT, () -> create(event("Launch"))));
+            assertEquals(HttpStatus.CONFLICT, e.getStatus());
+        } finally {
+            release.countDown();
+        }
+
+        assertEquals(HttpStatus.OK, first.get(10, TimeUnit.SECONDS).getStatusCode());
+        ResponseEntity<EventModel> retried = service.execute("alice POST /api/events", "key-1", event("Launch"), EVENT,
+            () -> create(event("Launch")));
+        assertEquals("true", retried.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(1, creates.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void keyReleasedBetweenClaimAndLookupIsClaimedAfresh() {
+        // Another instance holds the key for the first insert and releases it before the lookup.
+        IdempotencyService service = service(new ContendedRepository(1));
+        ResponseEntity<EventModel> response = service.execute("alice POST /api/events", "key-1", event("Launch"), EVENT,
+            () -> create(event("Launch")));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getHeaders().get(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(1, creates.get());
+        assertTrue(repository.findByKeyHash(onlyKeyHash()).isComplete());
+    }
+
+    @Test
+    void keyThatKeepsBeingReclaimedElsewhereIsAConflict() {
+        IdempotencyService service = service(new ContendedRepository(Integer.MAX_VALUE));
+        IdempotencyKeyException e = assertThrows(IdempotencyKeyException.class,
+            () -> service.execute("alice POST /api/events", "key-1", event("Launch"), EVENT, () -> create(event("Launch"))));
+
+        assertEquals(HttpStatus.CONFLICT, e.getStatus());
+        assertEquals(0, creates.get());
+    }
+
+    private IdempotencyService service(boolean dbEnabled) {
+        return new IdempotencyService(repository, new ObjectMapper().findAndRegisterModules(), dbEnabled, 100, 60000, 60000, 10000);
+    }
+
+    private IdempotencyService service(IdempotencyRepository repository) {
+        return new IdempotencyService(repository, new ObjectMapper().findAndRegisterModules(), true, 100, 60000, 60000, 10000);
+    }
+
+    private String onlyKeyHash() {
+        return new JdbcTemplate(dataSource).queryForObject("SELECT key_hash FROM idempotency_keys", String.class);
+    }
+
+    private ResponseEntity<EventModel> create(EventModel event) {
+        event.setId((long) creates.incrementAndGet());
+        return ResponseEntity.ok(event);
+    }
+
+    private static EventModel event(String name) {
+        return new EventModel(null, name, LocalDate.of(2030, 1, 1), "Hall", 1L, "Ticket launch");
+    }
+
+    /**
+     * Repository whose first claims collide with a key that is gone again by the time it is looked up.
+     */
+    private class ContendedRepository extends IdempotencyRepository {
+        private int collisions;
+
+        ContendedRepository(int collisions) {
+            super(new JdbcTemplate(dataSource));
+            this.collisions = collisions;
+        }
+
+        @Override
+        public void claim(String keyHash, String fingerprint) {
+            if (collisions > 0) {
+                collisions--;
+                throw new DuplicateKeyException("Duplicate entry for key_hash " + keyHash);
+            }
+            super.claim(keyHash, fingerprint);
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
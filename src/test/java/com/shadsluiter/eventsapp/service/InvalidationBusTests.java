@@ -0,0 +1,173 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepository;
+import com.shadsluiter.eventsapp.data.UserRepository;
+import com.shadsluiter.eventsapp.models.EventEntity;
+import com.shadsluiter.eventsapp.models.EventModel;
+import com.shadsluiter.eventsapp.models.UserModel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs two app instances, each with its own caches and invalidation bus, against
+ * one embedded H2 database and checks that writes on one evict caches on the other.
+ */
+class InvalidationBusTests {
+
+    private JdbcDataSource dataSource;
+    private TransactionTemplate transaction;
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void startNodes() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:invalidation_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql"), new ClassPathResource("db/users-h2.sql"))
+            .execute(dataSource);
+        // Repositories read LAST_INSERT_ID(), so each write must stay on one connection.
+        transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        nodeA = new Node(new JdbcTemplate(dataSource));
+        nodeB = new Node(new JdbcTemplate(dataSource));
+    }
+
+    @AfterEach
+    void stopNodes() {
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+    }
+
+    @Test
+    void userWriteOnOneNodeEvictsTheOther() {
+        UserModel user = inTransaction(() -> nodeA.users.save(user("alice", "first")));
+        String firstHash = nodeB.users.loadUserByUsername("alice").getPassword();
+
+        user.setPassword("second");
+        inTransaction(() -> nodeA.users.save(user));
+        assertEquals(firstHash, nodeB.users.loadUserByUsername("alice").getPassword(), "node B serves its cached user until it polls");
+
+        nodeB.bus.pollNow();
+        assertNotEquals(firstHash, nodeB.users.loadUserByUsername("alice").getPassword());
+        assertEquals(nodeA.users.loadUserByUsername("alice").getPassword(), nodeB.users.loadUserByUsername("alice").getPassword());
+    }
+
+    @Test
+    void writesAreNotRecordedWhenNoInstancePolls() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long before = nodeA.changeLog.latestSequence();
+        EventRepository quiet = new EventRepository(jdbcTemplate, new ChangeLogRepository(jdbcTemplate, false), 365);
+        inTransaction(() -> quiet.save(new EventEntity(null, "Quiet", LocalDate.of(2030, 1, 1), "Hall", 1L, "Not logged")));
+
+        assertEquals(before, nodeA.changeLog.latestSequence());
+    }
+
+    @Test
+    void eventDeleteOnOneNodeEvictsTheOther() {
+        EventModel event = inTransaction(() -> nodeA.events.save(
+            new EventModel(null, "Launch", LocalDate.of(2030, 1, 1), "Hall", 1L, "Launch party")));
+        assertEquals("Launch", nodeB.events.findById(event.getId()).getName());
+
+        inTransaction(() -> {
+            nodeA.events.delete(event.getId());
+            return null;
+        });
+        assertEquals("Launch", nodeB.events.findById(event.getId()).getName(), "node B serves its cached event until it polls");
+
+        assertEquals(2, nodeB.bus.pollNow(), "the insert and the delete are both logged");
+        assertThrows(EmptyResultDataAccessException.class, () -> nodeB.events.findById(event.getId()));
+    }
+
+    @Test
+    void eventUpdateChangesTheRowInPlaceAndEvictsTheOther() {
+        EventModel event = inTransaction(() -> nodeA.events.save(
+            new EventModel(null, "Launch", LocalDate.of(2030, 1, 1), "Hall", 1L, "Launch party")));
+        EventModel onB = nodeB.events.findById(event.getId());
+
+        event.setName("Relaunch");
+        assertEquals(1L, inTransaction(() -> nodeA.events.updateEvent(event.getId(), event)).getVersion());
+        nodeB.bus.pollNow();
+        assertEquals("Relaunch", nodeB.events.findById(event.getId()).getName());
+        assertEquals(1, nodeB.events.findAll().size(), "the update does not insert a row");
+
+        // Node B still holds version 0, so its edit is refused rather than overwriting node A's.
+        onB.setDescription("Edited on B");
+        assertThrows(OptimisticLockingFailureException.class, () -> nodeB.events.updateEvent(onB.getId(), onB));
+        assertThrows(EmptyResultDataAccessException.class, () -> nodeB.events.updateEvent(99999L, onB, null));
+    }
+
+    @Test
+    void lateCommitInsideASequenceGapIsStillDelivered() {
+        List<String> evicted = new ArrayList<>();
+        nodeB.bus.register("probe", evicted::add);
+        long seq = nodeB.changeLog.latestSequence();
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        String insert = "INSERT INTO change_log (seq, entity, entity_key) VALUES (?, 'probe', ?)";
+        jdbcTemplate.update(insert, seq + 2, "second");
+        assertEquals(1, nodeB.bus.pollNow());
+
+        // The transaction holding seq + 1 commits after seq + 2 was already read.
+        jdbcTemplate.update(insert, seq + 1, "first");
+        assertEquals(1, nodeB.bus.pollNow());
+        assertEquals(List.of("second", "first"), evicted);
+
+        assertEquals(0, nodeB.bus.pollNow());
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        return transaction.execute(status -> work.get());
+    }
+
+    private static UserModel user(String name, String password) {
+        UserModel user = new UserModel();
+        user.setUserName(name);
+        user.setPassword(password);
+        user.setEnabled(true);
+        user.setAccountNonExpired(true);
+        user.setCredentialsNonExpired(true);
+        user.setAccountNonLocked(true);
+        return user;
+    }
+
+    /**
+     * The caching services of one app instance, with polling driven by the test.
+     */
+    private static class Node {
+        final ChangeLogRepository changeLog;
+        final InvalidationBus bus;
+        final UserService users;
+        final EventService events;
+
+        Node(JdbcTemplate jdbcTemplate) {
+            changeLog = new ChangeLogRepository(jdbcTemplate);
+            bus = new InvalidationBus(changeLog, false, 500, 10000, 3600000);
+            users = new UserService(new UserRepository(jdbcTemplate, changeLog), new BCryptPasswordEncoder(4), bus, 100, 60000);
+            events = new EventService(new EventRepository(jdbcTemplate, changeLog, 365), bus, null, null, null, null, null,
+                new SimpleMeterRegistry(), 100, 60000, 0, 0, 1000);
+            bus.pollNow();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.EventRepository;
+import com.shadsluiter.eventsapp.data.RsvpRepository;
+import com.shadsluiter.eventsapp.models.AttendanceModel;
+import com.shadsluiter.eventsapp.models.EventModel;
+import com.shadsluiter.eventsapp.models.RsvpStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Hammers one limited-capacity event with concurrent RSVPs and cancellations,
+ * through one app instance and through two sharing the database, while their
+ * changes are flushed, and checks that attending users and leased seats never
+ * exceed the capacity and that the stored RSVPs agree with the counts.
+ */
+class RsvpServiceStressTest {
+
+    private static final int CAPACITY = 100;
+    private static final int USERS = 2000;
+    private static final int THREADS = 32;
+    private static final int LEASE_SIZE = 20;
+    private static final long NOBODY = -1;
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private EventService events;
+    private RsvpService rsvps;
+    private long eventId;
+
+    @BeforeEach
+    void createEvent() {
+        dataSource = new JdbcDataSource();
+        // Leases and flushes from both instances wait for the event's attendance row lock.
+        dataSource.setURL("jdbc:h2:mem:rsvp_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        InvalidationBus bus = bus();
+        events = eventService(bus);
+        rsvps = rsvpService(events, bus);
+
+        EventModel event = new EventModel(null, "Keynote", LocalDate.of(2030, 1, 1), "Hall", 1L, "Opening keynote");
+        event.setCapacity(CAPACITY);
+        // The repository reads LAST_INSERT_ID(), so the insert must stay on one connection.
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        eventId = transaction.execute(status -> events.save(event)).getId();
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void concurrentRsvpsFillExactlyTheCapacity() throws Exception {
+        AtomicInteger seated = new AtomicInteger();
+        runConcurrently(USERS, user -> {
+            if (rsvps.rsvp(eventId, user).getStatus() == RsvpStatus.ATTENDING) {
+                seated.incrementAndGet();
+            }
+        });
+
+        // Acknowledged from memory before anything is written.
+        AttendanceModel attendance = rsvps.getAttendance(eventId, NOBODY);
+        assertEquals(CAPACITY, seated.get());
+        assertEquals(CAPACITY, attendance.getAttending());
+        assertEquals(USERS - CAPACITY, attendance.getWaitlisted());
+        assertNull(attendance.getStatus());
+        assertEquals(USERS, rsvps.getQueued());
+
+        rsvps.flush();
+        assertEquals(0, rsvps.getQueued());
+        assertStoredCountsMatch(CAPACITY, USERS - CAPACITY);
+        assertEquals(0, leasedSeats(), "every leased seat was used");
+    }
+
+    @Test
+    void twoInstancesTogetherFillExactlyTheCapacity() throws Exception {
+        // Each instance has its own caches, seats and queue; only the database is shared.
+        InvalidationBus otherBus = bus();
+        RsvpService otherNode = rsvpService(eventService(otherBus), otherBus);
+        Queue<Long> seated = new ConcurrentLinkedQueue<>();
+        AtomicInteger maxBooked = new AtomicInteger();
+        withFlushes(List.of(rsvps, otherNode), maxBooked, () -> runConcurrently(USERS, user -> {
+            RsvpService node = user % 2 == 0 ? rsvps : otherNode;
+            if (node.rsvp(eventId, user).getStatus() == RsvpStatus.ATTENDING) {
+                seated.add(user);
+            }
+        }));
+        assertTrue(maxBooked.get() <= CAPACITY, "attending and leased seats peaked at " + maxBooked.get());
+        assertStoredCountsMatch(CAPACITY, USERS - CAPACITY);
+        // Seats one instance leased but did not need went to the waitlist, so
+        // fewer users may have been seated at once; none was seated and then bumped.
+        assertTrue(seated.size() <= CAPACITY);
+        for (long user : seated) {
+            assertEquals(RsvpStatus.ATTENDING, otherNode.getAttendance(eventId, user).getStatus());
+        }
+
+        // Seats released on one instance go to users waitlisted through the other.
+        List<Long> cancelled = new ArrayList<>();
+        for (long user = 0; user < USERS; user += 2) {
+            if (rsvps.getAttendance(eventId, user).getStatus() == RsvpStatus.ATTENDING) {
+                cancelled.add(user);
+            }
+        }
+        withFlushes(List.of(rsvps, otherNode), maxBooked,
+            () -> runConcurrently(cancelled.size(), i -> rsvps.cancel(eventId, cancelled.get((int) i))));
+        AttendanceModel attendance = otherNode.getAttendance(eventId, NOBODY);
+        assertTrue(maxBooked.get() <= CAPACITY, "attending and leased seats peaked at " + maxBooked.get());
+        assertEquals(CAPACITY, attendance.getAttending());
+        assertEquals(USERS - CAPACITY - cancelled.size(), attendance.getWaitlisted());
+        assertStoredCountsMatch(CAPACITY, attendance.getWaitlisted());
+    }
+
+    @Test
+    void capacityIncreasePromotesTheWaitlist() {
+        for (long user = 0; user < CAPACITY + 5; user++) {
+            rsvps.rsvp(eventId, user);
+        }
+        rsvps.flush();
+        EventModel event = events.findById(eventId);
+        event.setCapacity(CAPACITY + 3);
+        events.updateEvent(eventId, event);
+
+        // Saving the event stores the capacity and fills the new seats from the waitlist.
+        AttendanceModel attendance = rsvps.getAttendance(eventId, NOBODY);
+        assertEquals(CAPACITY + 3, attendance.getCapacity());
+        assertEquals(CAPACITY + 3, attendance.getAttending());
+        assertEquals(2, attendance.getWaitlisted());
+        assertEquals(RsvpStatus.ATTENDING, rsvps.getAttendance(eventId, CAPACITY + 2).getStatus(), "promoted in waitlist order");
+        assertEquals(RsvpStatus.WAITLISTED, rsvps.getAttendance(eventId, CAPACITY + 3).getStatus());
+
+        assertEquals(RsvpStatus.WAITLISTED, rsvps.rsvp(eventId, CAPACITY + 5).getStatus());
+        rsvps.flush();
+        assertStoredCountsMatch(CAPACITY + 3, 3);
+    }
+
+    @Test
+    void cancellingAnUnwrittenRsvpGivesItsSeatToTheWaitlist() {
+        for (long user = 0; user < CAPACITY + 5; user++) {
+            rsvps.rsvp(eventId, user);
+        }
+
+        AttendanceModel attendance = rsvps.cancel(eventId, 0);
+        assertEquals(CAPACITY - 1, attendance.getAttending());
+        assertEquals(RsvpStatus.WAITLISTED, rsvps.rsvp(eventId, CAPACITY + 5).getStatus(), "the seat is not handed to a newcomer");
+
+        rsvps.flush();
+        assertEquals(RsvpStatus.ATTENDING, rsvps.getAttendance(eventId, CAPACITY).getStatus());
+        assertNull(rsvps.getAttendance(eventId, 0).getStatus());
+        assertStoredCountsMatch(CAPACITY, 5);
+        assertEquals(0, leasedSeats());
+    }
+
+    @Test
+    void cancellationsPromoteTheWaitlistWithoutOverbooking() throws Exception {
+        runConcurrently(USERS, user -> rsvps.rsvp(eventId, user));
+        rsvps.flush();
+        List<Long> attendees = jdbcTemplate.queryForList(
+            "SELECT user_id FROM rsvps WHERE event_id = ? AND status = 'ATTENDING'", Long.class, eventId);
+        assertEquals(CAPACITY, attendees.size());
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger maxSeen = new AtomicInteger();
+        Thread watcher = new Thread(() -> {
+            while (running.get()) {
+                maxSeen.accumulateAndGet(rsvps.getAttendance(eventId, NOBODY).getAttending(), Math::max);
+            }
+        });
+        watcher.start();
+
+        // Every seated user cancels while new users keep joining.
+        int newcomers = 500;
+        AtomicInteger maxBooked = new AtomicInteger();
+        withFlushes(List.of(rsvps), maxBooked, () -> runConcurrently(attendees.size() + newcomers, i -> {
+            if (i < attendees.size()) {
+                rsvps.cancel(eventId, attendees.get((int) i));
+            } else {
+                rsvps.rsvp(eventId, USERS + i);
+            }
+        }));
+        running.set(false);
+        watcher.join();
+
+        AttendanceModel attendance = rsvps.getAttendance(eventId, NOBODY);
+        assertTrue(maxSeen.get() <= CAPACITY, "attending peaked at " + maxSeen.get());
+        assertTrue(maxBooked.get() <= CAPACITY, "attending and leased seats peaked at " + maxBooked.get());
+        assertEquals(CAPACITY, attendance.getAttending(), "the waitlist refills every released seat");
+        assertEquals(USERS - CAPACITY + newcomers - CAPACITY, attendance.getWaitlisted());
+        assertNull(rsvps.getAttendance(eventId, attendees.get(0)).getStatus());
+        assertStoredCountsMatch(attendance.getAttending(), attendance.getWaitlisted());
+    }
+
+    private InvalidationBus bus() {
+        return new InvalidationBus(new ChangeLogRepository(jdbcTemplate), false, 500, 10000, 3600000);
+    }
+
+    private EventService eventService(InvalidationBus bus) {
+        return new EventService(new EventRepository(jdbcTemplate, new ChangeLogRepository(jdbcTemplate), 365), bus,
+            null, null, null, null, new RsvpRepository(jdbcTemplate), new SimpleMeterRegistry(), 100, 60000, 0, 0, 1000);
+    }
+
+    private RsvpService rsvpService(EventService eventService, InvalidationBus bus) {
+        return new RsvpService(new RsvpRepository(jdbcTemplate), eventService, bus, 100000, 1000, LEASE_SIZE, 30000, 60000);
+    }
+
+    /**
+     * Runs the work while a background thread flushes the instances, as their
+     * schedulers would, and tracks the most seats attending or leased at once.
+     * Flushes once more afterwards so every change is written.
+     */
+    private void withFlushes(List<RsvpService> nodes, AtomicInteger maxBooked, Work work) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (running.get()) {
+                for (RsvpService node : nodes) {
+                    node.flush();
+                }
+                maxBooked.accumulateAndGet(bookedSeats(), Math::max);
+            }
+        });
+        flusher.start();
+        try {
+            work.run();
+        } finally {
+            running.set(false);
+            flusher.join();
+        }
+        for (RsvpService node : nodes) {
+            node.flush();
+        }
+        maxBooked.accumulateAndGet(bookedSeats(), Math::max);
+    }
+
+    private int bookedSeats() {
+        return jdbcTemplate.queryForObject("SELECT attending FROM event_attendance WHERE event_id = ?", Integer.class, eventId)
+            + leasedSeats();
+    }
+
+    private int leasedSeats() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(seats), 0) FROM rsvp_leases WHERE event_id = ?",
+            Integer.class, eventId);
+    }
+
+    private void assertStoredCountsMatch(int attending, int waitlisted) {
+        assertEquals(attending, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM rsvps WHERE event_id = ? AND status = 'ATTENDING'", Integer.class, eventId));
+        assertEquals(waitlisted, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM rsvps WHERE event_id = ? AND status = 'WAITLISTED'", Integer.class, eventId));
+        assertEquals(attending, jdbcTemplate.queryForObject(
+            "SELECT attending FROM event_attendance WHERE event_id = ?", Integer.class, eventId));
+        assertEquals(waitlisted, jdbcTemplate.queryForObject(
+            "SELECT waitlisted FROM event_attendance WHERE event_id = ?", Integer.class, eventId));
+    }
+
+    private static void runConcurrently(int tasks, Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            long index = i;
+            Callable<Void> call = () -> {
+                start.await();
+                task.run(index);
+                return null;
+            };
+            futures.add(executor.submit(call));
+        }
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run(long index) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,149 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Holds a leader's loader on a latch while other callers join it, and checks
+ * how its result, its exception and interruptions reach each caller.
+ */
+class SingleFlightTests {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    void releaseCallers() throws InterruptedException {
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+    }
+
+    @Test
+    void everyWaiterReceivesTheLeadersException() throws Exception {
+        IllegalArgumentException failure = new IllegalArgumentException("query failed");
+        FutureTask<String> leader = call(() -> {
+            block();
+            throw failure;
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        List<FutureTask<String>> waiters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            waiters.add(call(() -> "not shared"));
+        }
+        awaitWaiting(3);
+
+        release.countDown();
+        assertSame(failure, failureOf(leader));
+        for (FutureTask<String> waiter : waiters) {
+            assertSame(failure, failureOf(waiter));
+        }
+        assertEquals(1, flight.getExecutions());
+        assertEquals(3, flight.getCoalesced());
+        assertEquals(0, flight.getWaiting());
+        assertEquals(0, flight.getInFlight());
+    }
+
+    @Test
+    void interruptingAWaiterLeavesTheSharedCallRunning() throws Exception {
+        FutureTask<String> leader = call(() -> {
+            block();
+            return "events";
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        FutureTask<String> cancelled = call(() -> "not shared");
+        Thread cancelledThread = threads.get(threads.size() - 1);
+        FutureTask<String> patient = call(() -> "not shared");
+        awaitWaiting(2);
+
+        cancelledThread.interrupt();
+        assertInstanceOf(IllegalStateException.class, failureOf(cancelled));
+        awaitWaiting(1);
+
+        release.countDown();
+        assertEquals("events", leader.get(10, TimeUnit.SECONDS));
+        assertEquals("events", patient.get(10, TimeUnit.SECONDS));
+        assertEquals(1, flight.getExecutions());
+        assertEquals(1, flight.getCoalesced());
+    }
+
+    @Test
+    void waitersOfACancelledLeaderRetryAndAreCountedOnce() throws Exception {
+        FutureTask<String> leader = call(() -> {
+            block();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("cancelled");
+            }
+            return "events";
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread leaderThread = threads.get(0);
+        FutureTask<String> first = call(() -> "retried");
+        FutureTask<String> second = call(() -> "retried");
+        awaitWaiting(2);
+
+        leaderThread.interrupt();
+        assertInstanceOf(IllegalStateException.class, failureOf(leader));
+        assertEquals("retried", first.get(10, TimeUnit.SECONDS));
+        assertEquals("retried", second.get(10, TimeUnit.SECONDS));
+
+        // Each retrying waiter either led a new run or joined one, but never
+        // counts as coalesced for the cancelled run it did not get a result from.
+        long reruns = flight.getExecutions() - 1;
+        assertTrue(reruns >= 1, "a waiter should have led a new run");
+        assertEquals(2, reruns + flight.getCoalesced());
+    }
+
+    /**
+     * Runs execute on a new thread for the shared key.
+     */
+    private FutureTask<String> call(Supplier<String> loader) {
+        FutureTask<String> task = new FutureTask<>((Callable<String>) () -> flight.execute("key", loader));
+        Thread thread = new Thread(task, "single-flight-caller-" + threads.size());
+        threads.add(thread);
+        thread.start();
+        return task;
+    }
+
+    private Throwable failureOf(FutureTask<String> task) {
+        return assertThrows(ExecutionException.class, () -> task.get(10, TimeUnit.SECONDS)).getCause();
+    }
+
+    /**
+     * Holds the leader until the test releases it, keeping an interrupt for the caller to see.
+     */
+    private void block() {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitWaiting(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (flight.getWaiting() != expected) {
+            assertTrue(System.nanoTime() < deadline, "callers never joined the leader");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the search cache keeps popular keys through bursts of one-off
+ * keys, and honours its TTL and invalidations.
+ */
+class TinyLfuCacheTests {
+
+    @Test
+    void oneOffKeysDoNotEvictPopularOnes() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, 60000);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 100; i++) {
+                cache.get("popular " + i, key -> key);
+            }
+        }
+
+        // Popular keys keep being requested, at the same rate as never-repeated ones.
+        for (int i = 0; i < 10_000; i++) {
+            cache.get("one-off " + i, key -> key);
+            cache.get("popular " + i % 100, key -> key);
+        }
+        long hitsBefore = cache.getHits();
+        for (int i = 0; i < 100; i++) {
+            cache.get("popular " + i, key -> key);
+        }
+
+        // Plain LRU would hit none: each popular key is reused only after 200 other lookups.
+        // The sketch may overestimate a few one-off keys, so allow a handful of misses.
+        assertTrue(cache.getHits() - hitsBefore >= 90, "popular keys still cached: " + (cache.getHits() - hitsBefore));
+        assertTrue(cache.getRejections() > 9_000);
+    }
+
+    @Test
+    void skewedTrafficHitsMostly() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100, 60000);
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            // 80% of requests go to 100 queries, the rest are spread over a million.
+            int key = random.nextInt(10) < 8 ? random.nextInt(100) : 100 + random.nextInt(1_000_000);
+            cache.get(key, k -> k);
+        }
+        assertTrue(cache.getHitRatio() > 0.75, "hit ratio " + cache.getHitRatio());
+    }
+
+    @Test
+    void expiresAndInvalidates() throws Exception {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(10, 50);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("jazz", key -> loads.incrementAndGet());
+        cache.get("jazz", key -> loads.incrementAndGet());
+        assertEquals(1, loads.get());
+
+        Thread.sleep(60);
+        cache.get("jazz", key -> loads.incrementAndGet());
+        assertEquals(2, loads.get(), "expired after the TTL");
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+
+        // A load that overlaps an invalidation is not stored.
+        cache.get("chess", key -> {
+            cache.invalidateAll();
+            return loads.incrementAndGet();
+        });
+        assertEquals(0, cache.size());
+    }
+}
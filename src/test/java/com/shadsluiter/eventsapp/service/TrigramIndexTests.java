@@ -0,0 +1,155 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Checks the typo-tolerant index's matching and ranking, and benchmarks it at a
+ * million events against its latency budget.
+ */
+class TrigramIndexTests {
+
+    /** Latency budget for a fuzzy search over a million events */
+    private static final long P99_BUDGET_MS = 5;
+
+    @Test
+    void findsMisspelledWords() {
+        TrigramIndex index = new TrigramIndex(16);
+        index.put(1, "Birthday party", "Phoenix Hall", "Cake and music");
+        index.put(2, "Book club", "Tempe Library", "Monthly reading");
+        index.put(3, "Jazz night", "Phoenix Hall", "Live jazz quartet");
+
+        assertArrayEquals(new long[]{1}, index.search("birtday", 10), "one deleted letter");
+        assertArrayEquals(new long[]{1}, index.search("brithday", 10), "two swapped letters");
+        assertArrayEquals(new long[]{2}, index.search("Librray", 10));
+        assertArrayEquals(new long[0], index.search("jaz", 10), "short words must match exactly");
+        assertArrayEquals(new long[0], index.search("b", 10));
+    }
+
+    @Test
+    void ranksByWordsMatchedThenFieldAndRarity() {
+        TrigramIndex index = new TrigramIndex(16);
+        index.put(1, "Concert", "Phoenix Hall", "Jazz trio");
+        index.put(2, "Jazz concert", "Phoenix Hall", "Evening of music");
+        index.put(3, "Jazz brunch", "Tempe Park", "Jazz and pancakes");
+
+        long[] ids = index.search("jazz concert", 10);
+        assertEquals(2, ids[0], "the only event with both words in its name");
+        assertEquals(1, ids[1], "matches both words, one in the description");
+        assertEquals(3, ids[2]);
+    }
+
+    @Test
+    void stoppingEarlyKeepsTheRanking() {
+        TrigramIndex index = new TrigramIndex(16);
+        Random random = new Random(7);
+        for (int i = 1; i <= 400; i++) {
+            String name = (i % 9 == 0 ? "Zebra " : "") + (i % 97 == 0 ? "Okapi " : "") + (random.nextInt(3) == 0 ? "party" : "meetup");
+            String description = random.nextInt(4) == 0 ? "After party" : "Evening";
+            index.put(i, name, i % 2 == 0 ? "Zebra Hall" : "Park", description);
+        }
+
+        long[] all = index.search("zebra party", 400);
+        for (int limit : new int[]{1, 5, 20}) {
+            assertArrayEquals(Arrays.copyOf(all, limit), index.search("zebra party", limit), "top " + limit);
+        }
+        // Few documents have the rare word, so the common word's postings are probed per document.
+        all = index.search("okapi party", 400);
+        for (int limit : new int[]{1, 2, 3}) {
+            assertArrayEquals(Arrays.copyOf(all, limit), index.search("okapi party", limit), "top " + limit + " by probing");
+        }
+    }
+
+    @Test
+    void followsUpdatesAndRemovals() {
+        TrigramIndex index = new TrigramIndex(16);
+        index.put(1, "Birthday party", "Hall", null);
+        index.put(1, "Retirement party", "Hall", null);
+        assertArrayEquals(new long[0], index.search("birthday", 10));
+        assertArrayEquals(new long[]{1}, index.search("retirment", 10));
+
+        index.remove(1);
+        assertArrayEquals(new long[0], index.search("party", 10));
+        index.put(1, "Birthday party", "Hall", null);
+        assertArrayEquals(new long[]{1}, index.search("party", 10));
+    }
+
+    @Test
+    void boundsTheEditDistance() {
+        assertEquals(1, TrigramIndex.distance("birtday", "birthday", 2));
+        assertEquals(1, TrigramIndex.distance("brithday", "birthday", 2));
+        assertEquals(2, TrigramIndex.distance("kitten", "sitting", 1), "stops once the bound is exceeded");
+    }
+
+    /**
+     * Reports query latency over a million events, and fails if the p99 is over
+     * the P99_BUDGET_MS budget.
+     *
+     * Run with: mvn test -Dtest=TrigramIndexTests -Dprofile.fuzzy=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "profile.fuzzy", matches = "true")
+    void profileLatencyPerMillionEvents() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[20_000];
+        String syllables = "ba be bi bo bu da de di do ka ke ki ko la le li lo ma me mi mo na ne ni no ra re ri ro sa se si so ta te ti to";
+        String[] parts = syllables.split(" ");
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(3);
+            for (int j = 0; j < length; j++) {
+                word.append(parts[random.nextInt(parts.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+        vocabulary[200] = "birthday";
+        vocabulary[50] = "party";
+
+        int count = 1_000_000;
+        TrigramIndex index = new TrigramIndex(count);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            String name = vocabulary[zipf(random, vocabulary.length)] + " " + vocabulary[zipf(random, vocabulary.length)];
+            StringBuilder description = new StringBuilder();
+            for (int j = 0; j < 8; j++) {
+                description.append(vocabulary[zipf(random, vocabulary.length)]).append(' ');
+            }
+            index.put(i + 1, name, "Hall " + i % 200, description.toString());
+        }
+        index.trim();
+        System.out.printf("Indexed %d events, %d terms, in %d ms: %d MB heap%n",
+            count, index.getTerms(), (System.nanoTime() - start) / 1_000_000, index.bytes() >> 20);
+
+        String[] queries = {"birtday party", "brithday", "hall 12", vocabulary[500].substring(1), vocabulary[5000] + " " + vocabulary[7000]};
+        // Long enough for the JIT to finish compiling the search path.
+        for (int i = 0; i < 2000; i++) {
+            index.search(queries[i % queries.length], 20);
+        }
+        long[] nanos = new long[1000];
+        for (int i = 0; i < nanos.length; i++) {
+            long begin = System.nanoTime();
+            index.search(queries[i % queries.length], 20);
+            nanos[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("Fuzzy search latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+            nanos[nanos.length / 2] / 1e6, nanos[nanos.length * 99 / 100] / 1e6, nanos[nanos.length - 1] / 1e6);
+        assertTrue(index.search("birtday party", 20).length > 0);
+        assertTrue(nanos[nanos.length * 99 / 100] < P99_BUDGET_MS * 1_000_000,
+            "p99 over the " + P99_BUDGET_MS + " ms budget");
+    }
+
+    /**
+     * Picks a word index with a roughly Zipfian skew, as in natural text.
+     */
+    private static int zipf(Random random, int size) {
+        return (int) Math.min(size - 1, Math.floor(Math.pow(size, random.nextDouble())) - 1);
+    }
+}
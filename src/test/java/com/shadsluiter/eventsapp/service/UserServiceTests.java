@@ -0,0 +1,112 @@
+package com.shadsluiter.eventsapp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.shadsluiter.eventsapp.data.ChangeLogRepository;
+import com.shadsluiter.eventsapp.data.UserRepository;
+import com.shadsluiter.eventsapp.models.UserPage;
+import com.shadsluiter.eventsapp.models.UserSummary;
+
+/**
+ * Pages through and exports users stored in an embedded H2 database.
+ */
+class UserServiceTests {
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private UserService users;
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:users_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/events-h2.sql"), new ClassPathResource("db/users-h2.sql"))
+            .execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ChangeLogRepository changeLog = new ChangeLogRepository(jdbcTemplate);
+        users = new UserService(new UserRepository(jdbcTemplate, changeLog), new BCryptPasswordEncoder(4),
+            new InvalidationBus(changeLog, false, 500, 10000, 3600000), 100, 60000);
+        for (int i = 1; i <= 5; i++) {
+            jdbcTemplate.update("INSERT INTO users (login_name, password) VALUES (?, 'hash')", "user" + i);
+        }
+        jdbcTemplate.update("INSERT INTO roles (user_id, role) VALUES (2, 'USER'), (2, 'ADMIN'), (3, 'USER')");
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void pagesByIdWithTheCursorOfEachPage() {
+        List<List<Long>> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            UserPage page = users.findPage(cursor, 2);
+            pages.add(ids(page.getUsers()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L, 4L), List.of(5L)), pages);
+
+        UserPage first = users.findPage(null, 2);
+        assertEquals("user2", first.getUsers().get(1).getUserName());
+        assertEquals(Set.of("USER", "ADMIN"), first.getUsers().get(1).getRoles(), "every role of a user, not one row per role");
+        assertEquals(Set.of(), first.getUsers().get(0).getRoles());
+
+        jdbcTemplate.update("DELETE FROM users WHERE id = 3");
+        assertEquals(List.of(4L, 5L), ids(users.findPage(first.getNextCursor(), 2).getUsers()), "a cursor survives deletes");
+    }
+
+    @Test
+    void anExactlyFullLastPageIsFollowedByAnEmptyOne() {
+        UserPage last = users.findPage("3", 2);
+        assertEquals(List.of(4L, 5L), ids(last.getUsers()));
+        UserPage empty = users.findPage(last.getNextCursor(), 2);
+        assertEquals(List.of(), empty.getUsers());
+        assertNull(empty.getNextCursor());
+    }
+
+    @Test
+    void exportsEveryUserPageByPage() {
+        List<List<Long>> pages = new ArrayList<>();
+        users.exportAll(2, page -> pages.add(ids(page)));
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L, 4L), List.of(5L)), pages);
+
+        pages.clear();
+        users.exportAll(5, page -> pages.add(ids(page)));
+        assertEquals(List.of(List.of(1L, 2L, 3L, 4L, 5L)), pages, "no empty trailing page is passed on");
+    }
+
+    @Test
+    void rejectsCursorsItDidNotIssue() {
+        for (String cursor : new String[]{"abc", "12a", "-1", "+1", "99999999999999999999"}) {
+            assertThrows(IllegalArgumentException.class, () -> users.findPage(cursor, 2), cursor);
+        }
+        UserPage first = users.findPage("", 2);
+        assertEquals(2, first.getUsers().size());
+        assertEquals(first.getNextCursor(), users.findPage(null, 2).getNextCursor());
+    }
+
+    private static List<Long> ids(List<UserSummary> page) {
+        List<Long> ids = new ArrayList<>(page.size());
+        for (UserSummary user : page) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,79 @@
+-- H2 (MySQL mode) equivalent of the event tables in eventsapp.sql, for repository tests
+
+CREATE TABLE events (
+  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  name VARCHAR(255) NOT NULL,
+  date DATE NOT NULL,
+  location VARCHAR(255) NOT NULL,
+  organizerid BIGINT DEFAULT NULL,
+  description TEXT,
+  recurrence VARCHAR(255) DEFAULT NULL,
+  recurrence_end DATE DEFAULT NULL,
+  capacity INT DEFAULT NULL,
+  version INT NOT NULL DEFAULT 0
+);
+
+CREATE INDEX events_organizerid ON events (organizerid);
+CREATE INDEX events_date ON events (date);
+CREATE INDEX events_recurrence_end ON events (recurrence_end);
+CREATE INDEX events_name ON events (name);
+CREATE INDEX events_location ON events (location);
+
+CREATE TABLE events_archive (
+  id BIGINT PRIMARY KEY,
+  name VARCHAR(255) NOT NULL,
+  date DATE NOT NULL,
+  location VARCHAR(255) NOT NULL,
+  organizerid BIGINT DEFAULT NULL,
+  description TEXT,
+  recurrence VARCHAR(255) DEFAULT NULL,
+  recurrence_end DATE DEFAULT NULL,
+  capacity INT DEFAULT NULL,
+  version INT NOT NULL DEFAULT 0,
+  archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE change_log (
+  seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+  entity VARCHAR(32) NOT NULL,
+  entity_key VARCHAR(255) DEFAULT NULL,
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE rsvps (
+  event_id BIGINT NOT NULL,
+  user_id BIGINT NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+  PRIMARY KEY (event_id, user_id)
+);
+
+CREATE TABLE event_attendance (
+  event_id BIGINT PRIMARY KEY,
+  capacity INT NULL,
+  attending INT NOT NULL DEFAULT 0,
+  waitlisted INT NOT NULL DEFAULT 0,
+  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE TABLE rsvp_leases (
+  event_id BIGINT NOT NULL,
+  instance_id CHAR(36) NOT NULL,
+  seats INT NOT NULL,
+  expires_at TIMESTAMP(3) NOT NULL,
+  PRIMARY KEY (event_id, instance_id)
+);
+
+CREATE TABLE id_blocks (
+  name VARCHAR(64) PRIMARY KEY,
+  next_id BIGINT NOT NULL
+);
+
+INSERT INTO id_blocks (name, next_id) VALUES ('events', 1);
+
+CREATE TABLE idempotency_keys (
+  key_hash CHAR(64) PRIMARY KEY,
+  fingerprint CHAR(64) NOT NULL,
+  status INT DEFAULT NULL,
+  response MEDIUMTEXT,
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
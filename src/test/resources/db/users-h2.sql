@@ -0,0 +1,16 @@
+-- H2 (MySQL mode) equivalent of the user tables in eventsapp.sql, for repository tests
+
+CREATE TABLE users (
+  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+  login_name VARCHAR(255) NOT NULL,
+  password VARCHAR(255) NOT NULL,
+  enabled TINYINT DEFAULT 1,
+  account_non_expired TINYINT DEFAULT 1,
+  credentials_non_expired TINYINT DEFAULT 1,
+  account_non_locked TINYINT DEFAULT 1
+);
+
+CREATE TABLE roles (
+  user_id BIGINT DEFAULT NULL,
+  role VARCHAR(255) DEFAULT NULL
+);